@@ -20,34 +20,61 @@
  ******************************************************************************/
 package fr.pops.activator;
 
-import fr.pops.math.ArrayUtil;
+import fr.pops.math.ndarray.BaseNDArray;
+import fr.pops.math.ndarray.HeapDoubleDataBuffer;
 import fr.pops.popscst.cst.EnumCst;
 import fr.pops.math.ndarray.INDArray;
 
 public abstract class Activator {
 
+    /*****************************************
+     *
+     * Static Attributes
+     *
+     *****************************************/
+    // Kernels are stateless, a single instance of each is shared
+    private static final IActivationKernel SIGMOID = new SigmoidKernel();
+    private static final IActivationKernel RELU = new ReluKernel();
+    private static final IActivationKernel SOFTMAX = new SoftmaxKernel();
+    private static final IActivationKernel TANH = new TanhKernel();
+    private static final IActivationKernel IDENTITY = new IdentityKernel();
+
+    /*****************************************
+     *
+     * Methods
+     *
+     *****************************************/
     /**
      * @param activationFunction The activation function to apply to the input array
      * @param arr The array to apply the activation function
      * @return The same array with the given function applied to the input array
      */
     public static INDArray activate(EnumCst.ActivationFunction activationFunction, INDArray arr){
-        INDArray res;
-        if (activationFunction == EnumCst.ActivationFunction.SIGMOID){
-            res = fr.pops.math.ArrayUtil.apply(fr.pops.math.PopsMath.sigmoid, arr);
-        } else if (activationFunction == EnumCst.ActivationFunction.RELU){
-            res =  fr.pops.math.ArrayUtil.apply(fr.pops.math.PopsMath.ReLu, arr);
-        } else if (activationFunction == EnumCst.ActivationFunction.SOFTMAX){
-            res =  fr.pops.math.PopsMath.softmax.apply(arr);
-        } else if (activationFunction == EnumCst.ActivationFunction.TANH){
-            res =  fr.pops.math.ArrayUtil.apply(fr.pops.math.PopsMath.tanh, arr);
-        } else if (activationFunction == EnumCst.ActivationFunction.IDENTITY) {
-            res = fr.pops.math.ArrayUtil.apply(fr.pops.math.PopsMath.identity, arr);
-        } else {
-            res = arr;
+        INDArray res = new BaseNDArray.BaseNDArrayBuilder().zeros(arr.getShape()).build();
+        return activate(activationFunction, arr, res);
+    }
+
+    /**
+     * Apply the activation function into a preallocated array
+     * @param activationFunction The activation function to apply to the input array
+     * @param arr The array to apply the activation function
+     * @param out The array receiving the activations. It can be arr
+     * @return The array out
+     */
+    public static INDArray activate(EnumCst.ActivationFunction activationFunction, INDArray arr, INDArray out){
+        IActivationKernel kernel = getKernel(activationFunction);
+        if (kernel == null){
             System.out.println("Unknown activation function. Please check input.");
+            return out;
+        } else if (!canWrite("activate", arr, out)){
+            return out;
+        }
+        double[] z = arr.getData();
+        int sampleSize = arr.getShape().getSampleSize();
+        for (int b = 0; b < arr.getShape().getBatchAxisLength(); b++){
+            kernel.activate(z, arr.getOffset() + b * sampleSize, out.getData(), out.getOffset() + b * sampleSize, sampleSize);
         }
-        return res;
+        return out;
     }
 
     /**
@@ -56,22 +83,124 @@ public abstract class Activator {
      * @return The same array with the given function applied to the input array
      */
     public static INDArray dActivate(EnumCst.DActivationFunction dActivationFunction, INDArray arr){
-        INDArray res;
-        if (dActivationFunction == EnumCst.DActivationFunction.dSIGMOID){
-            res = fr.pops.math.ArrayUtil.apply(fr.pops.math.PopsMath.dsigmoid, arr);
-        } else if (dActivationFunction == EnumCst.DActivationFunction.dRELU) {
-            res = fr.pops.math.ArrayUtil.apply(fr.pops.math.PopsMath.dRelu, arr);
-        } else if (dActivationFunction == EnumCst.DActivationFunction.dSOFTMAX){
-            res =  fr.pops.math.PopsMath.dsoftmax.apply(arr);
-        } else if (dActivationFunction == EnumCst.DActivationFunction.dTANH) {
-            res = fr.pops.math.ArrayUtil.apply(fr.pops.math.PopsMath.dtanh, arr);
-        } else if (dActivationFunction == EnumCst.DActivationFunction.dIDENTITY) {
-            res = ArrayUtil.apply(fr.pops.math.PopsMath.identity, arr);
-        } else {
-            res = arr;
+        INDArray res = new BaseNDArray.BaseNDArrayBuilder().zeros(arr.getShape()).build();
+        return dActivate(dActivationFunction, arr, res);
+    }
+
+    /**
+     * Apply the derivative of the activation function into a preallocated array
+     * @param dActivationFunction The dActivation function to apply to the input array
+     * @param arr The array to apply the dActivation function
+     * @param out The array receiving the derivatives. It can be arr
+     * @return The array out
+     */
+    public static INDArray dActivate(EnumCst.DActivationFunction dActivationFunction, INDArray arr, INDArray out){
+        IActivationKernel kernel = getKernel(dActivationFunction);
+        if (kernel == null){
             System.out.println("Unknown derivative of the activation function. Please check input.");
+            return out;
+        } else if (!canWrite("dActivate", arr, out)){
+            return out;
+        }
+        double[] z = arr.getData();
+        int sampleSize = arr.getShape().getSampleSize();
+        for (int b = 0; b < arr.getShape().getBatchAxisLength(); b++){
+            kernel.derivative(z, arr.getOffset() + b * sampleSize, out.getData(), out.getOffset() + b * sampleSize, sampleSize);
+        }
+        return out;
+    }
+
+    /**
+     * Compute the activations and the derivatives of the activation function in a single pass
+     * Backpropagation can then reuse the derivatives instead of evaluating the function again
+     * @param activationFunction The activation function
+     * @param z The pre-activations
+     * @param activations The array receiving the activations
+     * @param dActivations The array receiving the derivatives
+     */
+    public static void activateAndDerive(EnumCst.ActivationFunction activationFunction, INDArray z, INDArray activations, INDArray dActivations){
+        IActivationKernel kernel = getKernel(activationFunction);
+        if (kernel == null){
+            System.out.println("Unknown activation function. Please check input.");
+            return;
+        } else if (!canWrite("activateAndDerive", z, activations, dActivations)){
+            return;
+        }
+        // Each sample of a batch is activated on its own, softmax normalizes per sample
+        double[] values = z.getData();
+        int sampleSize = z.getShape().getSampleSize();
+        for (int b = 0; b < z.getShape().getBatchAxisLength(); b++){
+            kernel.activateAndDerive(values, z.getOffset() + b * sampleSize,
+                                     activations.getData(), activations.getOffset() + b * sampleSize,
+                                     dActivations.getData(), dActivations.getOffset() + b * sampleSize,
+                                     sampleSize);
+        }
+    }
+
+    /**
+     * The kernels read and write the samples as contiguous segments of double arrays
+     * @param method The name of the calling method
+     * @param arr The input array
+     * @param outs The arrays receiving the results, written through their double array
+     * @return True if the kernels can be applied
+     */
+    private static boolean canWrite(String method, INDArray arr, INDArray... outs){
+        if (!arr.isContiguous()){
+            System.out.println("In Activator." + method + ": the input array must be contiguous.");
+            return false;
+        }
+        for (INDArray out : outs){
+            if (out.getShape().getSize() != arr.getShape().getSize()){
+                System.out.println("In Activator." + method + ": the output arrays must have a size of " + arr.getShape().getSize() + ".");
+                return false;
+            } else if (!out.isContiguous() || !(out.getDataBuffer() instanceof HeapDoubleDataBuffer)){
+                System.out.println("In Activator." + method + ": the output arrays must be contiguous and stored in double arrays.");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param activationFunction The activation function
+     * @return The kernel computing the activation function, null if unknown
+     */
+    public static IActivationKernel getKernel(EnumCst.ActivationFunction activationFunction){
+        switch (activationFunction){
+            case SIGMOID:
+                return SIGMOID;
+            case RELU:
+                return RELU;
+            case SOFTMAX:
+                return SOFTMAX;
+            case TANH:
+                return TANH;
+            case IDENTITY:
+                return IDENTITY;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @param dActivationFunction The derivative of the activation function
+     * @return The kernel computing the derivative, null if unknown
+     */
+    public static IActivationKernel getKernel(EnumCst.DActivationFunction dActivationFunction){
+        switch (dActivationFunction){
+            case dSIGMOID:
+                return SIGMOID;
+            case dRELU:
+                return RELU;
+            case dSOFTMAX:
+                return SOFTMAX;
+            case dTANH:
+                return TANH;
+            case dIDENTITY:
+                return IDENTITY;
+            default:
+                return null;
         }
-        return res;
     }
 
 }
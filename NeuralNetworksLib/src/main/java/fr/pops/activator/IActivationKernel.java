@@ -0,0 +1,64 @@
+/*******************************************************************************
+ *
+ *                         PPPP     OOOO     PPPP    SSSS
+ *                        PP  PP   OO  OO   PP  PP  SS
+ *                        PP  PP  OO    OO  PP  PP  SS
+ *                        PP  PP  OO    OO  PP  PP   SSSS
+ *                        PPPP    OO    OO  PPPP        SS
+ *                        PP       OO  OO   PP          SS
+ *                        PP        OOOO    PP       SSSS
+ *
+ * Name: IActivationKernel.java
+ *
+ * Description: Interface of the activation kernels.
+ *              A kernel evaluates an activation function and its derivative
+ *              directly on primitive arrays, the output can be the input array.
+ *
+ * Author: Charles MERINO
+ *
+ * Date: 18/10/2026
+ *
+ ******************************************************************************/
+package fr.pops.activator;
+
+public interface IActivationKernel {
+
+    /*****************************************
+     *
+     * Methods to override
+     *
+     *****************************************/
+    /**
+     * Apply the activation function to z[offZ .. offZ + length[
+     * @param z The pre-activations
+     * @param offZ The index of the first value to activate
+     * @param out The array receiving the activations. It can be z
+     * @param offOut The index receiving the first activation
+     * @param length The number of values to activate
+     */
+    void activate(double[] z, int offZ, double[] out, int offOut, int length);
+
+    /**
+     * Apply the derivative of the activation function to z[offZ .. offZ + length[
+     * @param z The pre-activations
+     * @param offZ The index of the first value
+     * @param out The array receiving the derivatives. It can be z
+     * @param offOut The index receiving the first derivative
+     * @param length The number of values
+     */
+    void derivative(double[] z, int offZ, double[] out, int offOut, int length);
+
+    /**
+     * Compute the activations and the derivatives in a single pass
+     * The derivatives are computed from the activations whenever possible
+     * @param z The pre-activations
+     * @param offZ The index of the first value
+     * @param activations The array receiving the activations. It can be z
+     * @param offA The index receiving the first activation
+     * @param derivatives The array receiving the derivatives
+     * @param offD The index receiving the first derivative
+     * @param length The number of values
+     */
+    void activateAndDerive(double[] z, int offZ, double[] activations, int offA, double[] derivatives, int offD, int length);
+
+}
@@ -0,0 +1,54 @@
+/*******************************************************************************
+ *
+ *                         PPPP     OOOO     PPPP    SSSS
+ *                        PP  PP   OO  OO   PP  PP  SS
+ *                        PP  PP  OO    OO  PP  PP  SS
+ *                        PP  PP  OO    OO  PP  PP   SSSS
+ *                        PPPP    OO    OO  PPPP        SS
+ *                        PP       OO  OO   PP          SS
+ *                        PP        OOOO    PP       SSSS
+ *
+ * Name: ReluKernel.java
+ *
+ * Description: Rectified linear unit activation kernel.
+ *              The derivative at 0 is 0
+ *
+ * Author: Charles MERINO
+ *
+ * Date: 18/10/2026
+ *
+ ******************************************************************************/
+package fr.pops.activator;
+
+public class ReluKernel implements IActivationKernel {
+
+    /*****************************************
+     *
+     * Parent methods
+     *
+     *****************************************/
+    @Override
+    public void activate(double[] z, int offZ, double[] out, int offOut, int length){
+        for (int i = 0; i < length; i++){
+            double v = z[offZ + i];
+            out[offOut + i] = v > 0 ? v : 0.0d;
+        }
+    }
+
+    @Override
+    public void derivative(double[] z, int offZ, double[] out, int offOut, int length){
+        for (int i = 0; i < length; i++){
+            out[offOut + i] = z[offZ + i] > 0 ? 1.0d : 0.0d;
+        }
+    }
+
+    @Override
+    public void activateAndDerive(double[] z, int offZ, double[] activations, int offA, double[] derivatives, int offD, int length){
+        for (int i = 0; i < length; i++){
+            // Read first: activations can be z
+            double v = z[offZ + i];
+            derivatives[offD + i] = v > 0 ? 1.0d : 0.0d;
+            activations[offA + i] = v > 0 ? v : 0.0d;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/*******************************************************************************
+ *
+ *                         PPPP     OOOO     PPPP    SSSS
+ *                        PP  PP   OO  OO   PP  PP  SS
+ *                        PP  PP  OO    OO  PP  PP  SS
+ *                        PP  PP  OO    OO  PP  PP   SSSS
+ *                        PPPP    OO    OO  PPPP        SS
+ *                        PP       OO  OO   PP          SS
+ *                        PP        OOOO    PP       SSSS
+ *
+ * Name: SigmoidKernel.java
+ *
+ * Description: Logistic activation kernel.
+ *              The derivative is computed from the activation: s * (1 - s)
+ *
+ * Author: Charles MERINO
+ *
+ * Date: 18/10/2026
+ *
+ ******************************************************************************/
+package fr.pops.activator;
+
+public class SigmoidKernel implements IActivationKernel {
+
+    /*****************************************
+     *
+     * Parent methods
+     *
+     *****************************************/
+    @Override
+    public void activate(double[] z, int offZ, double[] out, int offOut, int length){
+        for (int i = 0; i < length; i++){
+            out[offOut + i] = 1.0d / (1.0d + Math.exp(-z[offZ + i]));
+        }
+    }
+
+    @Override
+    public void derivative(double[] z, int offZ, double[] out, int offOut, int length){
+        for (int i = 0; i < length; i++){
+            double s = 1.0d / (1.0d + Math.exp(-z[offZ + i]));
+            out[offOut + i] = s * (1.0d - s);
+        }
+    }
+
+    @Override
+    public void activateAndDerive(double[] z, int offZ, double[] activations, int offA, double[] derivatives, int offD, int length){
+        for (int i = 0; i < length; i++){
+            double s = 1.0d / (1.0d + Math.exp(-z[offZ + i]));
+            activations[offA + i] = s;
+            derivatives[offD + i] = s * (1.0d - s);
+        }
+    }
+}
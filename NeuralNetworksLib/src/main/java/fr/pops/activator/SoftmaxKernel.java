@@ -0,0 +1,51 @@
+/*******************************************************************************
+ *
+ *                         PPPP     OOOO     PPPP    SSSS
+ *                        PP  PP   OO  OO   PP  PP  SS
+ *                        PP  PP  OO    OO  PP  PP  SS
+ *                        PP  PP  OO    OO  PP  PP   SSSS
+ *                        PPPP    OO    OO  PPPP        SS
+ *                        PP       OO  OO   PP          SS
+ *                        PP        OOOO    PP       SSSS
+ *
+ * Name: SoftmaxKernel.java
+ *
+ * Description: Softmax activation kernel.
+ *              The segment [offset, offset + length[ is normalized as a whole.
+ *              The derivative is 1: the output error is passed through as is,
+ *              which is the softmax / cross-entropy simplification.
+ *
+ * Author: Charles MERINO
+ *
+ * Date: 18/10/2026
+ *
+ ******************************************************************************/
+package fr.pops.activator;
+
+import fr.pops.math.PopsMath;
+
+import java.util.Arrays;
+
+public class SoftmaxKernel implements IActivationKernel {
+
+    /*****************************************
+     *
+     * Parent methods
+     *
+     *****************************************/
+    @Override
+    public void activate(double[] z, int offZ, double[] out, int offOut, int length){
+        PopsMath.softmax(z, offZ, out, offOut, length);
+    }
+
+    @Override
+    public void derivative(double[] z, int offZ, double[] out, int offOut, int length){
+        Arrays.fill(out, offOut, offOut + length, 1.0d);
+    }
+
+    @Override
+    public void activateAndDerive(double[] z, int offZ, double[] activations, int offA, double[] derivatives, int offD, int length){
+        this.activate(z, offZ, activations, offA, length);
+        this.derivative(z, offZ, derivatives, offD, length);
+    }
+}
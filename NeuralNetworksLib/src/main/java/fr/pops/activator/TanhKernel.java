@@ -0,0 +1,53 @@
+/*******************************************************************************
+ *
+ *                         PPPP     OOOO     PPPP    SSSS
+ *                        PP  PP   OO  OO   PP  PP  SS
+ *                        PP  PP  OO    OO  PP  PP  SS
+ *                        PP  PP  OO    OO  PP  PP   SSSS
+ *                        PPPP    OO    OO  PPPP        SS
+ *                        PP       OO  OO   PP          SS
+ *                        PP        OOOO    PP       SSSS
+ *
+ * Name: TanhKernel.java
+ *
+ * Description: Hyperbolic tangent activation kernel.
+ *              The derivative is computed from the activation: 1 - t^2
+ *
+ * Author: Charles MERINO
+ *
+ * Date: 18/10/2026
+ *
+ ******************************************************************************/
+package fr.pops.activator;
+
+public class TanhKernel implements IActivationKernel {
+
+    /*****************************************
+     *
+     * Parent methods
+     *
+     *****************************************/
+    @Override
+    public void activate(double[] z, int offZ, double[] out, int offOut, int length){
+        for (int i = 0; i < length; i++){
+            out[offOut + i] = Math.tanh(z[offZ + i]);
+        }
+    }
+
+    @Override
+    public void derivative(double[] z, int offZ, double[] out, int offOut, int length){
+        for (int i = 0; i < length; i++){
+            double t = Math.tanh(z[offZ + i]);
+            out[offOut + i] = 1.0d - t * t;
+        }
+    }
+
+    @Override
+    public void activateAndDerive(double[] z, int offZ, double[] activations, int offA, double[] derivatives, int offD, int length){
+        for (int i = 0; i < length; i++){
+            double t = Math.tanh(z[offZ + i]);
+            activations[offA + i] = t;
+            derivatives[offD + i] = 1.0d - t * t;
+        }
+    }
+}
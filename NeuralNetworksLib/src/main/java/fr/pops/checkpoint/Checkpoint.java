@@ -0,0 +1,558 @@
+/*******************************************************************************
+ *
+ *                         PPPP     OOOO     PPPP    SSSS
+ *                        PP  PP   OO  OO   PP  PP  SS
+ *                        PP  PP  OO    OO  PP  PP  SS
+ *                        PP  PP  OO    OO  PP  PP   SSSS
+ *                        PPPP    OO    OO  PPPP        SS
+ *                        PP       OO  OO   PP          SS
+ *                        PP        OOOO    PP       SSSS
+ *
+ * Name: Checkpoint.java
+ *
+ * Description: Binary checkpoint of the parameters of a neural network.
+ *              A header describes the layers and the position of each block,
+ *              the blocks hold the weights, the biases and the optimizer states
+ *              as contiguous little endian float64 or float32 values.
+ *              Each block is mapped when the file is opened: it can be used as a
+ *              DataBuffer without copy, or copied into a network of the same topology.
+ *              Since version 2 the seed of the shuffles is saved after the training step.
+ *
+ * Author: Charles MERINO
+ *
+ * Date: 18/10/2026
+ *
+ ******************************************************************************/
+package fr.pops.checkpoint;
+
+import fr.pops.math.ndarray.BaseNDArray;
+import fr.pops.math.ndarray.DataBuffer;
+import fr.pops.math.ndarray.DirectDataBuffer;
+import fr.pops.math.ndarray.HeapDoubleDataBuffer;
+import fr.pops.math.ndarray.INDArray;
+import fr.pops.math.ndarray.Shape;
+import fr.pops.nn.layers.Layer;
+import fr.pops.nn.networks.NeuralNetwork;
+import fr.pops.nn.networks.NeuralNetworkConfiguration;
+import fr.pops.popscst.cst.EnumCst;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+public class Checkpoint {
+
+    /*****************************************
+     *
+     * Static Attributes
+     *
+     *****************************************/
+    // "POPSCKPT"
+    private static final long MAGIC = 0x54504B4353504F50L;
+    public static final int VERSION = 2;
+
+    // The blocks start on a cache line
+    private static final int ALIGNMENT = 64;
+    private static final int WRITE_BUFFER_SIZE = 1 << 20;
+    private static final String TMP_EXTENSION = ".tmp";
+
+    // Codes of the data types in the file, independent of the order of EnumCst.DataTypes
+    private static final byte CODE_DOUBLE = 1;
+    private static final byte CODE_FLOAT = 2;
+
+    /*****************************************
+     *
+     * Block
+     *
+     *****************************************/
+    /**
+     * Position of an array in the file
+     */
+    private static class Block {
+        private EnumCst.DataTypes dataType;
+        private Shape shape;
+        private long offset;
+        // Mapped once the header is read
+        private ByteBuffer bytes;
+
+        private Block(EnumCst.DataTypes dataType, Shape shape, long offset){
+            this.dataType = dataType;
+            this.shape = shape;
+            this.offset = offset;
+        }
+
+        private int getElementSize(){ return this.dataType == EnumCst.DataTypes.FLOAT ? Float.BYTES : Double.BYTES; }
+
+        private long getLength(){ return (long) this.shape.getSize() * this.getElementSize(); }
+    }
+
+    /**
+     * Topology of a layer and its blocks
+     */
+    private static class LayerEntry {
+        private EnumCst.LayerTypes type;
+        private EnumCst.ActivationFunction activationFunction;
+        private int nIn;
+        private int nOut;
+        private List<Block> values = new ArrayList<>();
+        private List<Block> states = new ArrayList<>();
+    }
+
+    /*****************************************
+     *
+     * Attributes
+     *
+     *****************************************/
+    private Path path;
+    private int version;
+    private EnumCst.NeuralNetworkTypes networkType;
+    private int currentEpoch;
+    private long seed;
+    private List<LayerEntry> layers = new ArrayList<>();
+
+    /*****************************************
+     *
+     * Ctor
+     *
+     *****************************************/
+    /**
+     * Use open
+     */
+    private Checkpoint(Path path){
+        this.path = path;
+    }
+
+    /*****************************************
+     *
+     * Save
+     *
+     *****************************************/
+    /**
+     * Save the parameters of a network as float64
+     * @param neuralNetwork The network to save
+     * @param path The file, replaced once fully written
+     */
+    public static void save(NeuralNetwork neuralNetwork, Path path) throws IOException {
+        save(neuralNetwork, path, EnumCst.DataTypes.DOUBLE);
+    }
+
+    /**
+     * Save the parameters of a network
+     * The file is written next to the destination then moved, a crash never leaves a partial checkpoint
+     * @param neuralNetwork The network to save
+     * @param path The file, replaced once fully written
+     * @param dataType DOUBLE, or FLOAT to halve the size of the file
+     */
+    public static void save(NeuralNetwork neuralNetwork, Path path, EnumCst.DataTypes dataType) throws IOException {
+        List<Layer> layers = neuralNetwork.getNeuralNetworkConfiguration().getLayers();
+        List<List<INDArray>> values = new ArrayList<>();
+        List<List<INDArray>> states = new ArrayList<>();
+        for (Layer layer : layers){
+            values.add(layer.getParameters());
+            states.add(layer.getOptimizerStates());
+        }
+        save(neuralNetwork.getType(), neuralNetwork.getCurrentEpoch(), neuralNetwork.getNeuralNetworkConfiguration().getSeed(),
+             layers, values, states, path, dataType);
+    }
+
+    /**
+     * Save given arrays in place of the ones of the layers, copies of them for instance
+     * @param networkType The type of the network
+     * @param currentEpoch The training step reached
+     * @param seed The seed of the shuffles of the training
+     * @param layers The layers, for their topology
+     * @param values The parameters of each layer, as given by Layer.getParameters
+     * @param states The optimizer states of each layer, as given by Layer.getOptimizerStates
+     * @param path The file, replaced once fully written
+     * @param dataType DOUBLE or FLOAT
+     */
+    public static void save(EnumCst.NeuralNetworkTypes networkType, int currentEpoch, long seed, List<Layer> layers,
+                            List<List<INDArray>> values, List<List<INDArray>> states,
+                            Path path, EnumCst.DataTypes dataType) throws IOException {
+        EnumCst.DataTypes type = dataType == EnumCst.DataTypes.FLOAT ? EnumCst.DataTypes.FLOAT : EnumCst.DataTypes.DOUBLE;
+
+        // Header size, then the position of each block
+        int headerSize = Long.BYTES + 2 * Integer.BYTES + stringSize(String.valueOf(networkType)) + Long.BYTES + Integer.BYTES;
+        for (int l = 0; l < layers.size(); l++){
+            Layer layer = layers.get(l);
+            int nbBlocks = values.get(l).size() + states.get(l).size();
+            headerSize += stringSize(String.valueOf(layer.getType())) + stringSize(String.valueOf(layer.getActivationFunction()))
+                          + 4 * Integer.BYTES + nbBlocks * (1 + 4 * Integer.BYTES + Long.BYTES);
+        }
+        long offset = align(headerSize);
+        ByteBuffer header = ByteBuffer.allocate(headerSize).order(ByteOrder.LITTLE_ENDIAN);
+        header.putLong(MAGIC);
+        header.putInt(VERSION);
+        putString(header, String.valueOf(networkType));
+        header.putInt(currentEpoch);
+        header.putLong(seed);
+        header.putInt(layers.size());
+        List<INDArray> arrays = new ArrayList<>();
+        List<Long> offsets = new ArrayList<>();
+        for (int l = 0; l < layers.size(); l++){
+            Layer layer = layers.get(l);
+            putString(header, String.valueOf(layer.getType()));
+            putString(header, String.valueOf(layer.getActivationFunction()));
+            header.putInt(layer.getNIn());
+            header.putInt(layer.getNOut());
+            header.putInt(values.get(l).size());
+            header.putInt(states.get(l).size());
+            List<INDArray> blocks = new ArrayList<>(values.get(l));
+            blocks.addAll(states.get(l));
+            for (INDArray arr : blocks){
+                Shape shape = arr.getShape();
+                header.put(type == EnumCst.DataTypes.FLOAT ? CODE_FLOAT : CODE_DOUBLE);
+                header.putInt(shape.getXAxisLength());
+                header.putInt(shape.getYAxisLength());
+                header.putInt(shape.getZAxisLength());
+                header.putInt(shape.getBatchAxisLength());
+                header.putLong(offset);
+                arrays.add(arr);
+                offsets.add(offset);
+                offset = align(offset + (long) shape.getSize() * (type == EnumCst.DataTypes.FLOAT ? Float.BYTES : Double.BYTES));
+            }
+        }
+        header.flip();
+
+        // Header then blocks
+        Path tmp = path.resolveSibling(path.getFileName() + TMP_EXTENSION);
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)){
+            writeFully(channel, header, 0);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = 0; i < arrays.size(); i++){
+                writeArray(channel, arrays.get(i), offsets.get(i), type, buffer);
+            }
+            channel.force(false);
+        }
+        try {
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e){
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /*****************************************
+     *
+     * Load
+     *
+     *****************************************/
+    /**
+     * Read the header of a checkpoint and map its blocks
+     * Each block is mapped on its own, the file can exceed 2GB
+     * @param path The file
+     * @return The checkpoint
+     */
+    public static Checkpoint open(Path path) throws IOException {
+        Checkpoint checkpoint = new Checkpoint(path);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+            long size = channel.size();
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, Integer.MAX_VALUE)).order(ByteOrder.LITTLE_ENDIAN);
+            checkpoint.readHeader(header, size);
+            for (LayerEntry entry : checkpoint.layers){
+                for (Block block : entry.values){
+                    block.bytes = channel.map(FileChannel.MapMode.READ_ONLY, block.offset, block.getLength()).order(ByteOrder.LITTLE_ENDIAN);
+                }
+                for (Block block : entry.states){
+                    block.bytes = channel.map(FileChannel.MapMode.READ_ONLY, block.offset, block.getLength()).order(ByteOrder.LITTLE_ENDIAN);
+                }
+            }
+        }
+        return checkpoint;
+    }
+
+    /**
+     * Restore the parameters of a network saved in a file
+     * @param neuralNetwork A network initialized with the topology of the checkpoint
+     * @param path The file
+     * @return True if the parameters have been restored
+     */
+    public static boolean load(NeuralNetwork neuralNetwork, Path path) throws IOException {
+        return open(path).restore(neuralNetwork);
+    }
+
+    /**
+     * Copy the blocks into the parameters and the optimizer states of a network
+     * Nothing is copied if the topology does not match
+     * @param neuralNetwork A network initialized with the topology of the checkpoint
+     * @return True if the parameters have been restored
+     */
+    public boolean restore(NeuralNetwork neuralNetwork){
+        List<Layer> layers = neuralNetwork.getNeuralNetworkConfiguration().getLayers();
+        if (!this.matches(layers)){
+            return false;
+        }
+        for (int l = 0; l < layers.size(); l++){
+            List<INDArray> values = layers.get(l).getParameters();
+            List<INDArray> states = layers.get(l).getOptimizerStates();
+            for (int i = 0; i < values.size(); i++){
+                this.copyBlock(this.layers.get(l).values.get(i), values.get(i));
+            }
+            for (int i = 0; i < states.size(); i++){
+                this.copyBlock(this.layers.get(l).states.get(i), states.get(i));
+            }
+        }
+        neuralNetwork.setCurrentEpoch(this.currentEpoch);
+        // The resumed passes keep the order of the samples of the interrupted training
+        NeuralNetworkConfiguration configuration = neuralNetwork.getNeuralNetworkConfiguration();
+        if (this.version >= 2){
+            configuration.setSeed(this.seed);
+        }
+        // One update per mini-batch, the bias correction of the moments goes on from there
+        configuration.getOptimizer().setStep(this.currentEpoch / Math.max(1, configuration.getBatchSize()));
+        return true;
+    }
+
+    /*****************************************
+     *
+     * Private methods
+     *
+     *****************************************/
+    /**
+     * Parse the header, the blocks are not read
+     * @param header The start of the file
+     * @param fileSize The size of the whole file
+     */
+    private void readHeader(ByteBuffer header, long fileSize) throws IOException {
+        try {
+            if (header.getLong() != MAGIC){
+                throw new IOException("Not a checkpoint: " + this.path);
+            }
+            this.version = header.getInt();
+            if (this.version > VERSION){
+                throw new IOException("Checkpoint version " + this.version + " is not supported, the latest is " + VERSION + ": " + this.path);
+            }
+            this.networkType = valueOf(EnumCst.NeuralNetworkTypes.class, getString(header), EnumCst.NeuralNetworkTypes.UNKNOWN);
+            this.currentEpoch = header.getInt();
+            this.seed = this.version >= 2 ? header.getLong() : 0;
+            int nbLayers = header.getInt();
+            for (int l = 0; l < nbLayers; l++){
+                LayerEntry entry = new LayerEntry();
+                entry.type = valueOf(EnumCst.LayerTypes.class, getString(header), EnumCst.LayerTypes.UNKNOWN);
+                entry.activationFunction = valueOf(EnumCst.ActivationFunction.class, getString(header), EnumCst.ActivationFunction.UNKNOWN);
+                entry.nIn = header.getInt();
+                entry.nOut = header.getInt();
+                int nbValues = header.getInt();
+                int nbStates = header.getInt();
+                for (int i = 0; i < nbValues + nbStates; i++){
+                    EnumCst.DataTypes dataType = dataType(header.get());
+                    Shape shape = new Shape(header.getInt(), header.getInt(), header.getInt(), header.getInt());
+                    Block block = new Block(dataType, shape, header.getLong());
+                    if (block.offset < 0 || block.offset + block.getLength() > fileSize){
+                        throw new IOException("Truncated checkpoint: " + this.path);
+                    } else if (block.getLength() > Integer.MAX_VALUE){
+                        throw new IOException("A block of " + block.getLength() + " bytes cannot be mapped, the limit is 2GB per array: " + this.path);
+                    }
+                    (i < nbValues ? entry.values : entry.states).add(block);
+                }
+                this.layers.add(entry);
+            }
+        } catch (RuntimeException e){
+            throw new IOException("Corrupted checkpoint header: " + this.path, e);
+        }
+    }
+
+    /**
+     * @param code The code of a block in the file
+     * @return The data type of the block
+     */
+    private static EnumCst.DataTypes dataType(byte code){
+        switch (code){
+            case CODE_DOUBLE:
+                return EnumCst.DataTypes.DOUBLE;
+            case CODE_FLOAT:
+                return EnumCst.DataTypes.FLOAT;
+            default:
+                throw new IllegalArgumentException("Unknown data type code " + code);
+        }
+    }
+
+    /**
+     * @return True if the layers have the topology of the checkpoint
+     */
+    private boolean matches(List<Layer> layers){
+        if (layers.size() != this.layers.size()){
+            System.out.println("The checkpoint holds " + this.layers.size() + " layers, the network " + layers.size() + ". Nothing is restored.");
+            return false;
+        }
+        for (int l = 0; l < layers.size(); l++){
+            Layer layer = layers.get(l);
+            LayerEntry entry = this.layers.get(l);
+            List<INDArray> values = layer.getParameters();
+            List<INDArray> states = layer.getOptimizerStates();
+            boolean match = layer.getType() == entry.type && layer.getNIn() == entry.nIn && layer.getNOut() == entry.nOut
+                            && values.size() == entry.values.size() && states.size() == entry.states.size();
+            for (int i = 0; match && i < values.size(); i++){
+                match = values.get(i).getShape().getSize() == entry.values.get(i).shape.getSize();
+            }
+            for (int i = 0; match && i < states.size(); i++){
+                match = states.get(i).getShape().getSize() == entry.states.get(i).shape.getSize();
+            }
+            if (!match){
+                System.out.println("Layer " + l + " of the network does not match the checkpoint: " + entry.type + " " + entry.nIn + " -> " + entry.nOut + " expected. Nothing is restored.");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copy a block into an array, in bulk when the array is on heap
+     */
+    private void copyBlock(Block block, INDArray out){
+        ByteBuffer bytes = this.slice(block);
+        int length = block.shape.getSize();
+        DataBuffer dst = out.getDataBuffer();
+        int offset = out.getOffset();
+        if (dst instanceof HeapDoubleDataBuffer && block.dataType == EnumCst.DataTypes.DOUBLE){
+            bytes.asDoubleBuffer().get(out.getData(), offset, length);
+        } else if (block.dataType == EnumCst.DataTypes.DOUBLE){
+            for (int i = 0; i < length; i++){
+                dst.putDouble(offset + i, bytes.getDouble(i * Double.BYTES));
+            }
+        } else {
+            for (int i = 0; i < length; i++){
+                dst.putDouble(offset + i, bytes.getFloat(i * Float.BYTES));
+            }
+        }
+    }
+
+    /**
+     * @return The bytes of a block, little endian
+     */
+    private ByteBuffer slice(Block block){
+        return block.bytes.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Write the values of an array at the given position of the file
+     */
+    private static void writeArray(FileChannel channel, INDArray arr, long position, EnumCst.DataTypes type, ByteBuffer buffer) throws IOException {
+        DataBuffer data = arr.getDataBuffer();
+        double[] heap = data instanceof HeapDoubleDataBuffer ? arr.getData() : null;
+        int offset = arr.getOffset();
+        int length = arr.getShape().getSize();
+        int elementSize = type == EnumCst.DataTypes.FLOAT ? Float.BYTES : Double.BYTES;
+        int chunk = buffer.capacity() / elementSize;
+        for (int from = 0; from < length; from += chunk){
+            int n = Math.min(chunk, length - from);
+            buffer.clear();
+            if (type == EnumCst.DataTypes.DOUBLE && heap != null){
+                buffer.asDoubleBuffer().put(heap, offset + from, n);
+                buffer.position(n * Double.BYTES);
+            } else if (type == EnumCst.DataTypes.DOUBLE){
+                for (int i = 0; i < n; i++){
+                    buffer.putDouble(data.getDouble(offset + from + i));
+                }
+            } else {
+                for (int i = 0; i < n; i++){
+                    buffer.putFloat((float) (heap != null ? heap[offset + from + i] : data.getDouble(offset + from + i)));
+                }
+            }
+            buffer.flip();
+            writeFully(channel, buffer, position + (long) from * elementSize);
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long p = position;
+        while (buffer.hasRemaining()){
+            p += channel.write(buffer, p);
+        }
+    }
+
+    private static long align(long offset){
+        return (offset + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    private static int stringSize(String s){
+        return Short.BYTES + s.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static void putString(ByteBuffer buffer, String s){
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer){
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return The constant of the given name, the fallback if it does not exist anymore
+     */
+    private static <E extends Enum<E>> E valueOf(Class<E> type, String name, E fallback){
+        try {
+            return Enum.valueOf(type, name);
+        } catch (IllegalArgumentException e){
+            return fallback;
+        }
+    }
+
+    /*****************************************
+     *
+     * Getters
+     *
+     *****************************************/
+    /**
+     * The array shares the memory of the mapped file, it is read only
+     * @param layer The index of the layer
+     * @param i The index of the parameter in Layer.getParameters
+     * @return The values of the parameter
+     */
+    public INDArray getParameter(int layer, int i){
+        return this.toArray(this.layers.get(layer).values.get(i));
+    }
+
+    /**
+     * The array shares the memory of the mapped file, it is read only
+     * @param layer The index of the layer
+     * @param i The index of the state in Layer.getOptimizerStates
+     * @return The values of the optimizer state
+     */
+    public INDArray getOptimizerState(int layer, int i){
+        return this.toArray(this.layers.get(layer).states.get(i));
+    }
+
+    private INDArray toArray(Block block){
+        DataBuffer buffer = new DirectDataBuffer(this.slice(block), fr.pops.commoncst.EnumCst.DataTypes.valueOf(block.dataType.name()));
+        return new BaseNDArray.BaseNDArrayBuilder().withDataBuffer(buffer).withShape(new Shape(block.shape)).build();
+    }
+
+    public Path getPath(){ return this.path; }
+
+    public int getVersion(){ return this.version; }
+
+    public EnumCst.NeuralNetworkTypes getNetworkType(){ return this.networkType; }
+
+    /**
+     * @return The training step reached when the checkpoint was saved
+     */
+    public int getCurrentEpoch(){ return this.currentEpoch; }
+
+    /**
+     * @return The seed of the shuffles of the training, 0 before version 2
+     */
+    public long getSeed(){ return this.seed; }
+
+    public int getNbLayers(){ return this.layers.size(); }
+
+    public EnumCst.LayerTypes getLayerType(int layer){ return this.layers.get(layer).type; }
+
+    public EnumCst.ActivationFunction getActivationFunction(int layer){ return this.layers.get(layer).activationFunction; }
+
+    public int getNbParameters(int layer){ return this.layers.get(layer).values.size(); }
+
+    public int getNbOptimizerStates(int layer){ return this.layers.get(layer).states.size(); }
+}
@@ -0,0 +1,368 @@
+/*******************************************************************************
+ *
+ *                         PPPP     OOOO     PPPP    SSSS
+ *                        PP  PP   OO  OO   PP  PP  SS
+ *                        PP  PP  OO    OO  PP  PP  SS
+ *                        PP  PP  OO    OO  PP  PP   SSSS
+ *                        PPPP    OO    OO  PPPP        SS
+ *                        PP       OO  OO   PP          SS
+ *                        PP        OOOO    PP       SSSS
+ *
+ * Name: CheckpointWriter.java
+ *
+ * Description: Class saving snapshots of a network while it trains.
+ *              A snapshot is taken every N steps or every T seconds: the parameters
+ *              are copied into one of two preallocated buffers and written by a
+ *              background thread while the training goes on with the other one.
+ *
+ * Author: Charles MERINO
+ *
+ * Date: 18/10/2026
+ *
+ ******************************************************************************/
+package fr.pops.checkpoint;
+
+import fr.pops.math.ArrayUtil;
+import fr.pops.math.ndarray.INDArray;
+import fr.pops.nn.layers.Layer;
+import fr.pops.nn.networks.NeuralNetwork;
+import fr.pops.nn.networks.NeuralNetworkConfiguration;
+import fr.pops.popscst.cst.EnumCst;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class CheckpointWriter {
+
+    /*****************************************
+     *
+     * Snapshot
+     *
+     *****************************************/
+    /**
+     * Copy of the parameters and optimizer states of a network
+     */
+    private static class Snapshot {
+        private EnumCst.NeuralNetworkTypes networkType;
+        private int currentEpoch;
+        private long seed;
+        private List<Layer> layers;
+        private List<List<INDArray>> values = new ArrayList<>();
+        private List<List<INDArray>> states = new ArrayList<>();
+        // Set on the snapshot asking the writer to stop
+        private boolean last = false;
+
+        /**
+         * Allocate the copies
+         */
+        private Snapshot(NeuralNetwork neuralNetwork){
+            this.networkType = neuralNetwork.getType();
+            this.layers = neuralNetwork.getNeuralNetworkConfiguration().getLayers();
+            for (Layer layer : this.layers){
+                this.values.add(copies(layer.getParameters()));
+                this.states.add(copies(layer.getOptimizerStates()));
+            }
+        }
+
+        private static List<INDArray> copies(List<INDArray> arrays){
+            List<INDArray> res = new ArrayList<>();
+            for (INDArray arr : arrays){
+                res.add(arr.dup());
+            }
+            return res;
+        }
+
+        /**
+         * Copy the current state of the network
+         */
+        private void capture(NeuralNetwork neuralNetwork){
+            this.currentEpoch = neuralNetwork.getCurrentEpoch();
+            this.seed = neuralNetwork.getNeuralNetworkConfiguration().getSeed();
+            for (int l = 0; l < this.layers.size(); l++){
+                copyAll(this.layers.get(l).getParameters(), this.values.get(l));
+                copyAll(this.layers.get(l).getOptimizerStates(), this.states.get(l));
+            }
+        }
+
+        private static void copyAll(List<INDArray> arrays, List<INDArray> out){
+            for (int i = 0; i < arrays.size(); i++){
+                ArrayUtil.copyInto(arrays.get(i), out.get(i));
+            }
+        }
+    }
+
+    /*****************************************
+     *
+     * Attributes
+     *
+     *****************************************/
+    private Path path;
+    private int interval;
+    private long periodNanos;
+    private EnumCst.DataTypes dataType;
+
+    // Free snapshots, and snapshots waiting for the writer
+    private BlockingQueue<Snapshot> free = new ArrayBlockingQueue<>(2);
+    private BlockingQueue<Snapshot> pending = new ArrayBlockingQueue<>(2);
+    private Thread writer = null;
+
+    // Steps and time since the last snapshot
+    private int steps = 0;
+    private long lastSnapshot = System.nanoTime();
+    private volatile int nbSaved = 0;
+    private int nbSkipped = 0;
+
+    /*****************************************
+     *
+     * Ctor
+     *
+     *****************************************/
+    /**
+     * Use the builder
+     */
+    private CheckpointWriter(){
+        // Nothing to be done
+    }
+
+    /*****************************************
+     *
+     * Main methods
+     *
+     *****************************************/
+    /**
+     * @param configuration The configuration of a network
+     * @return The writer of the checkpoints it asks for, null if there are none
+     */
+    public static CheckpointWriter fromConfiguration(NeuralNetworkConfiguration configuration){
+        if (configuration.getCheckpointPath() == null){
+            return null;
+        }
+        return new CheckpointWriterBuilder().withPath(configuration.getCheckpointPath())
+                                            .withInterval(configuration.getCheckpointInterval())
+                                            .withPeriod(configuration.getCheckpointPeriod())
+                                            .build();
+    }
+
+    /**
+     * Restore the latest snapshot if there is one
+     * @param neuralNetwork The initialized network
+     * @return True if the network has been restored
+     */
+    public boolean resume(NeuralNetwork neuralNetwork){
+        if (!Files.exists(this.path)){
+            return false;
+        }
+        try {
+            if (Checkpoint.load(neuralNetwork, this.path)){
+                System.out.println("Training resumed at epoch " + neuralNetwork.getCurrentEpoch() + " from " + this.path);
+                return true;
+            }
+        } catch (IOException e){
+            System.out.println("Unable to resume from " + this.path + ": " + e.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * To be called after each training step, once the parameters are updated
+     * A snapshot is skipped if both buffers are still being written, the training never waits
+     * @param neuralNetwork The network being trained
+     */
+    public void step(NeuralNetwork neuralNetwork){
+        this.steps++;
+        boolean due = (this.interval > 0 && this.steps >= this.interval)
+                      || (this.periodNanos > 0 && System.nanoTime() - this.lastSnapshot >= this.periodNanos);
+        if (due && this.snapshot(neuralNetwork)){
+            this.steps = 0;
+            this.lastSnapshot = System.nanoTime();
+        }
+    }
+
+    /**
+     * Write a last snapshot and wait for every snapshot to be written
+     * @param neuralNetwork The network being trained
+     */
+    public void close(NeuralNetwork neuralNetwork){
+        if (this.writer == null){
+            this.start(neuralNetwork);
+        }
+        try {
+            Snapshot snapshot = this.free.take();
+            snapshot.capture(neuralNetwork);
+            snapshot.last = true;
+            this.pending.put(snapshot);
+            this.writer.join();
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            System.out.println("Interrupted while writing the last checkpoint to " + this.path);
+        }
+        this.writer = null;
+    }
+
+    /*****************************************
+     *
+     * Private methods
+     *
+     *****************************************/
+    /**
+     * Copy the network into a free buffer and hand it to the writer
+     * @return False if no buffer is free
+     */
+    private boolean snapshot(NeuralNetwork neuralNetwork){
+        if (this.writer == null){
+            this.start(neuralNetwork);
+        }
+        Snapshot snapshot = this.free.poll();
+        if (snapshot == null){
+            this.nbSkipped++;
+            return false;
+        }
+        snapshot.capture(neuralNetwork);
+        snapshot.last = false;
+        this.pending.add(snapshot);
+        return true;
+    }
+
+    /**
+     * Allocate the buffers and start the writer
+     */
+    private void start(NeuralNetwork neuralNetwork){
+        if (this.free.isEmpty() && this.pending.isEmpty()){
+            this.free.add(new Snapshot(neuralNetwork));
+            this.free.add(new Snapshot(neuralNetwork));
+        }
+        this.writer = new Thread(this::write, "pops-checkpoint-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Loop of the writer thread
+     */
+    private void write(){
+        while (true){
+            Snapshot snapshot;
+            try {
+                snapshot = this.pending.take();
+            } catch (InterruptedException e){
+                return;
+            }
+            try {
+                Checkpoint.save(snapshot.networkType, snapshot.currentEpoch, snapshot.seed, snapshot.layers,
+                                snapshot.values, snapshot.states, this.path, this.dataType);
+                this.nbSaved++;
+            } catch (IOException e){
+                System.out.println("Unable to write the checkpoint " + this.path + ": " + e.getMessage());
+            }
+            boolean last = snapshot.last;
+            this.free.add(snapshot);
+            if (last){
+                return;
+            }
+        }
+    }
+
+    /*****************************************
+     *
+     * Getters
+     *
+     *****************************************/
+    public Path getPath(){ return this.path; }
+
+    /**
+     * @return The number of snapshots written
+     */
+    public int getNbSaved(){ return this.nbSaved; }
+
+    /**
+     * @return The number of snapshots skipped because the writer was busy
+     */
+    public int getNbSkipped(){ return this.nbSkipped; }
+
+    /*****************************************
+     *
+     * Builder
+     *
+     *****************************************/
+    public static class CheckpointWriterBuilder {
+
+        /*****************************************
+         *
+         * Attributes
+         *
+         *****************************************/
+        private Path path = null;
+        private int interval = 0;
+        private long period = 0;
+        private EnumCst.DataTypes dataType = EnumCst.DataTypes.DOUBLE;
+
+        /*****************************************
+         *
+         * With methods
+         *
+         *****************************************/
+        /**
+         * @param path The checkpoint file, replaced by each snapshot
+         * @return The builder itself
+         */
+        public CheckpointWriterBuilder withPath(Path path){
+            this.path = path;
+            return this;
+        }
+
+        /**
+         * @param interval The number of training steps between two snapshots, 0 to disable
+         * @return The builder itself
+         */
+        public CheckpointWriterBuilder withInterval(int interval){
+            this.interval = interval;
+            return this;
+        }
+
+        /**
+         * @param seconds The number of seconds between two snapshots, 0 to disable
+         * @return The builder itself
+         */
+        public CheckpointWriterBuilder withPeriod(long seconds){
+            this.period = seconds;
+            return this;
+        }
+
+        /**
+         * @param dataType DOUBLE, or FLOAT to halve the size of the snapshots
+         * @return The builder itself
+         */
+        public CheckpointWriterBuilder withDataType(EnumCst.DataTypes dataType){
+            this.dataType = dataType;
+            return this;
+        }
+
+        /*****************************************
+         *
+         * Build method
+         *
+         *****************************************/
+        /**
+         * The buffers are allocated and the writer started on the first snapshot
+         * @return The writer
+         */
+        public CheckpointWriter build(){
+            if (this.path == null){
+                System.out.println("A CheckpointWriter needs a path.");
+                return null;
+            }
+            CheckpointWriter checkpointWriter = new CheckpointWriter();
+            checkpointWriter.path = this.path;
+            checkpointWriter.interval = Math.max(0, this.interval);
+            checkpointWriter.periodNanos = TimeUnit.SECONDS.toNanos(Math.max(0, this.period));
+            checkpointWriter.dataType = this.dataType;
+            return checkpointWriter;
+        }
+    }
+}
@@ -0,0 +1,482 @@
+/*******************************************************************************
+ *
+ *                         PPPP     OOOO     PPPP    SSSS
+ *                        PP  PP   OO  OO   PP  PP  SS
+ *                        PP  PP  OO    OO  PP  PP  SS
+ *                        PP  PP  OO    OO  PP  PP   SSSS
+ *                        PPPP    OO    OO  PPPP        SS
+ *                        PP       OO  OO   PP          SS
+ *                        PP        OOOO    PP       SSSS
+ *
+ * Name: BatchLoader.java
+ *
+ * Description: Class serving the mini-batches of a DataReader in the background.
+ *              The samples are shuffled at each pass over the dataset, worker threads
+ *              assemble the batches a few steps ahead into a ring of reusable tensors
+ *              and the batches are served in order.
+ *
+ * Author: Charles MERINO
+ *
+ * Date: 18/10/2026
+ *
+ ******************************************************************************/
+package fr.pops.datareader;
+
+import fr.pops.math.ndarray.BaseNDArray;
+import fr.pops.math.ndarray.INDArray;
+import fr.pops.math.ndarray.Shape;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+public class BatchLoader implements AutoCloseable {
+
+    /*****************************************
+     *
+     * Static Attributes
+     *
+     *****************************************/
+    private static final int DEFAULT_PREFETCH_DEPTH = 2;
+
+    /*****************************************
+     *
+     * Batch
+     *
+     *****************************************/
+    /**
+     * Mini-batch served by the loader
+     * Its tensors are reused, they are valid until the next call to next
+     */
+    public static class Batch {
+
+        /*****************************************
+         *
+         * Attributes
+         *
+         *****************************************/
+        private INDArray samples;
+        private INDArray labels;
+        private INDArray[] sampleViews;
+        private INDArray[] labelViews;
+        private long index;
+        private int pass;
+
+        // Set once the batch is filled, cleared once it is released
+        private boolean ready = false;
+        // Index of the next batch to be assembled in this one
+        private long expected;
+        // Set if the batch could not be filled, thrown when it is served
+        private RuntimeException error = null;
+
+        /*****************************************
+         *
+         * Ctor
+         *
+         *****************************************/
+        /**
+         * @param sample A sample of the dataset, it gives the shape and the type of the tensors
+         * @param label A label of the dataset
+         * @param batchSize The number of samples of a batch
+         * @param expected The index of the first batch assembled in it
+         */
+        private Batch(INDArray sample, INDArray label, int batchSize, long expected){
+            this.samples = allocate(sample, batchSize);
+            this.labels = allocate(label, batchSize);
+            this.sampleViews = new INDArray[batchSize];
+            this.labelViews = new INDArray[batchSize];
+            int sampleLength = sample.getShape().getBatchAxisLength();
+            int labelLength = label.getShape().getBatchAxisLength();
+            for (int b = 0; b < batchSize; b++){
+                this.sampleViews[b] = this.samples.samples(b * sampleLength, (b + 1) * sampleLength);
+                this.labelViews[b] = this.labels.samples(b * labelLength, (b + 1) * labelLength);
+            }
+            this.expected = expected;
+        }
+
+        /**
+         * Sequences, whose steps lie along the batch axis, are concatenated along it
+         * @return A contiguous tensor of batchSize arrays of the shape and type of arr
+         */
+        private static INDArray allocate(INDArray arr, int batchSize){
+            return new BaseNDArray.BaseNDArrayBuilder().withDataBuffer(arr.getDataBuffer().allocate(arr.getShape().getSize() * batchSize))
+                                                       .withShape(new Shape(arr.getShape(), arr.getShape().getBatchAxisLength() * batchSize))
+                                                       .build();
+        }
+
+        /*****************************************
+         *
+         * Getters
+         *
+         *****************************************/
+        /**
+         * @return The samples stacked along the batch axis
+         */
+        public INDArray getSamples(){ return this.samples; }
+
+        /**
+         * @return The labels stacked along the batch axis
+         */
+        public INDArray getLabels(){ return this.labels; }
+
+        /**
+         * @return The index of the batch since the loader started
+         */
+        public long getIndex(){ return this.index; }
+
+        /**
+         * @return The index of the pass over the dataset the batch belongs to
+         */
+        public int getPass(){ return this.pass; }
+    }
+
+    /*****************************************
+     *
+     * Attributes
+     *
+     *****************************************/
+    private DataReader dataReader;
+    private int batchSize;
+    private int batchesPerPass;
+    private boolean shuffle;
+    private long seed;
+    private Consumer<INDArray> augmentation;
+
+    // Batch i is assembled in batches[i % batches.length], one of them is held by the consumer
+    private Batch[] batches;
+    private AtomicLong nextToFill = new AtomicLong();
+    private long nextToServe = 0;
+    private Batch current = null;
+
+    // Order of the samples of the passes in progress
+    private Map<Integer, int[]> permutations = new ConcurrentHashMap<>();
+
+    private Thread[] workers;
+    private volatile boolean closed = false;
+
+    /*****************************************
+     *
+     * Ctor
+     *
+     *****************************************/
+    /**
+     * Use the builder
+     */
+    private BatchLoader(){
+        // Nothing to be done
+    }
+
+    /*****************************************
+     *
+     * Main methods
+     *
+     *****************************************/
+    /**
+     * Wait for the next batch, the previous one is given back to the workers
+     * @return The next batch, null once the loader is closed
+     * @throws IllegalStateException If the batch could not be loaded, the following ones can still be served
+     */
+    public Batch next(){
+        if (this.current != null){
+            this.release(this.current);
+            this.current = null;
+        }
+        Batch batch = this.batches[(int) (this.nextToServe % this.batches.length)];
+        synchronized (batch){
+            while (!batch.ready && !this.closed){
+                try {
+                    batch.wait();
+                } catch (InterruptedException e){
+                    Thread.currentThread().interrupt();
+                    System.out.println("Interrupted while waiting for batch " + this.nextToServe + " in BatchLoader.");
+                    return null;
+                }
+            }
+            if (!batch.ready){
+                return null;
+            }
+        }
+
+        // Every batch of the previous pass has been served
+        if (batch.pass > 0){
+            this.permutations.remove(batch.pass - 1);
+        }
+        this.nextToServe++;
+        this.current = batch;
+        if (batch.error != null){
+            throw new IllegalStateException("Unable to load batch " + (this.nextToServe - 1) + " in BatchLoader.", batch.error);
+        }
+        return batch;
+    }
+
+    /**
+     * Stop the workers, the batches cannot be used anymore
+     */
+    @Override
+    public void close(){
+        this.closed = true;
+        for (Batch batch : this.batches){
+            synchronized (batch){
+                batch.notifyAll();
+            }
+        }
+        for (Thread worker : this.workers){
+            worker.interrupt();
+        }
+    }
+
+    /*****************************************
+     *
+     * Private methods
+     *
+     *****************************************/
+    /**
+     * Start the workers
+     */
+    private void start(int nbWorkers){
+        this.workers = new Thread[nbWorkers];
+        for (int i = 0; i < nbWorkers; i++){
+            this.workers[i] = new Thread(this::work, "pops-batch-loader-" + i);
+            this.workers[i].setDaemon(true);
+            this.workers[i].start();
+        }
+    }
+
+    /**
+     * Loop of a worker: claim the next batch index, wait for its tensors to be released and fill them
+     */
+    private void work(){
+        while (!this.closed){
+            long index = this.nextToFill.getAndIncrement();
+            Batch batch = this.batches[(int) (index % this.batches.length)];
+            synchronized (batch){
+                while (!this.closed && (batch.ready || batch.expected != index)){
+                    try {
+                        batch.wait();
+                    } catch (InterruptedException e){
+                        // Closed
+                    }
+                }
+            }
+            if (this.closed){
+                return;
+            }
+            RuntimeException error = null;
+            try {
+                this.fill(batch, index);
+            } catch (RuntimeException e){
+                error = e;
+            }
+            synchronized (batch){
+                batch.error = error;
+                batch.ready = true;
+                batch.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Give the tensors of a served batch back to the workers
+     */
+    private void release(Batch batch){
+        synchronized (batch){
+            batch.ready = false;
+            batch.expected += this.batches.length;
+            batch.notifyAll();
+        }
+    }
+
+    /**
+     * Copy the samples of a batch into its tensors
+     * A pass holds batchesPerPass batches, the last one is completed with the first samples of the pass
+     */
+    private void fill(Batch batch, long index){
+        int nbSamples = this.dataReader.getNbOfTrainingSamples();
+        int pass = (int) (index / this.batchesPerPass);
+        long first = (index % this.batchesPerPass) * this.batchSize;
+        int[] permutation = this.shuffle ? this.permutations.computeIfAbsent(pass, this::permutation) : null;
+        for (int b = 0; b < this.batchSize; b++){
+            int position = (int) ((first + b) % nbSamples);
+            int sample = permutation == null ? position : permutation[position];
+            this.dataReader.copySample(sample, batch.sampleViews[b]);
+            this.dataReader.copyLabel(sample, batch.labelViews[b]);
+            if (this.augmentation != null){
+                this.augmentation.accept(batch.sampleViews[b]);
+            }
+        }
+        batch.index = index;
+        batch.pass = pass;
+    }
+
+    /**
+     * Fisher-Yates shuffle, it only depends on the seed and on the pass
+     * @param pass The index of the pass
+     * @return The order of the samples during the pass
+     */
+    private int[] permutation(int pass){
+        int nbSamples = this.dataReader.getNbOfTrainingSamples();
+        int[] res = new int[nbSamples];
+        for (int i = 0; i < nbSamples; i++){
+            res[i] = i;
+        }
+        Random random = new Random(this.seed + pass);
+        for (int i = nbSamples - 1; i > 0; i--){
+            int j = random.nextInt(i + 1);
+            int tmp = res[i];
+            res[i] = res[j];
+            res[j] = tmp;
+        }
+        return res;
+    }
+
+    /*****************************************
+     *
+     * Getters
+     *
+     *****************************************/
+    public int getBatchSize(){ return this.batchSize; }
+
+    /**
+     * @return The number of batches of a pass over the dataset
+     */
+    public int getBatchesPerPass(){ return this.batchesPerPass; }
+
+    public boolean isShuffle(){ return this.shuffle; }
+
+    /*****************************************
+     *
+     * Builder
+     *
+     *****************************************/
+    public static class BatchLoaderBuilder {
+
+        /*****************************************
+         *
+         * Attributes
+         *
+         *****************************************/
+        private DataReader dataReader = null;
+        private int batchSize = 1;
+        private int prefetchDepth = DEFAULT_PREFETCH_DEPTH;
+        private int nbWorkers = 1;
+        private boolean shuffle = true;
+        private long seed = 0;
+        private long firstBatch = 0;
+        private Consumer<INDArray> augmentation = null;
+
+        /*****************************************
+         *
+         * With methods
+         *
+         *****************************************/
+        /**
+         * @param dataReader The reader of the dataset
+         * @return The builder itself
+         */
+        public BatchLoaderBuilder withDataReader(DataReader dataReader){
+            this.dataReader = dataReader;
+            return this;
+        }
+
+        /**
+         * @param batchSize The number of samples of a batch
+         * @return The builder itself
+         */
+        public BatchLoaderBuilder withBatchSize(int batchSize){
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * @param prefetchDepth The number of batches assembled ahead of the consumer
+         * @return The builder itself
+         */
+        public BatchLoaderBuilder withPrefetchDepth(int prefetchDepth){
+            this.prefetchDepth = prefetchDepth;
+            return this;
+        }
+
+        /**
+         * @param nbWorkers The number of threads assembling the batches
+         * @return The builder itself
+         */
+        public BatchLoaderBuilder withNbWorkers(int nbWorkers){
+            this.nbWorkers = nbWorkers;
+            return this;
+        }
+
+        /**
+         * @param shuffle True to shuffle the samples at each pass, false to serve them in order
+         * @return The builder itself
+         */
+        public BatchLoaderBuilder withShuffle(boolean shuffle){
+            this.shuffle = shuffle;
+            return this;
+        }
+
+        /**
+         * A given seed always gives the same order of the samples at a given pass
+         * @param seed The seed of the shuffles, to reproduce a training
+         * @return The builder itself
+         */
+        public BatchLoaderBuilder withSeed(long seed){
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * @param firstBatch The index of the first batch served, to resume a training
+         * @return The builder itself
+         */
+        public BatchLoaderBuilder withFirstBatch(long firstBatch){
+            this.firstBatch = firstBatch;
+            return this;
+        }
+
+        /**
+         * @param augmentation Applied in place to each sample once copied into its batch, on the worker threads
+         * @return The builder itself
+         */
+        public BatchLoaderBuilder withAugmentation(Consumer<INDArray> augmentation){
+            this.augmentation = augmentation;
+            return this;
+        }
+
+        /*****************************************
+         *
+         * Build method
+         *
+         *****************************************/
+        /**
+         * Allocate the batches and start the workers
+         * @return The loader, to be closed once the training is done
+         */
+        public BatchLoader build(){
+            BatchLoader loader = new BatchLoader();
+            if (this.dataReader == null || this.dataReader.getNbOfTrainingSamples() < 1){
+                System.out.println("A BatchLoader needs a DataReader holding at least one sample.");
+                return null;
+            }
+            loader.dataReader = this.dataReader;
+            loader.batchSize = Math.max(1, this.batchSize);
+            int nbSamples = this.dataReader.getNbOfTrainingSamples();
+            loader.batchesPerPass = (nbSamples + loader.batchSize - 1) / loader.batchSize;
+            loader.shuffle = this.shuffle;
+            loader.seed = this.seed;
+            loader.augmentation = this.augmentation;
+            INDArray sample = this.dataReader.getSample(0);
+            INDArray label = this.dataReader.getLabel(0);
+            loader.batches = new Batch[Math.max(1, this.prefetchDepth) + 1];
+            long first = Math.max(0, this.firstBatch);
+            for (long i = first; i < first + loader.batches.length; i++){
+                loader.batches[(int) (i % loader.batches.length)] = new Batch(sample, label, loader.batchSize, i);
+            }
+            loader.nextToFill.set(first);
+            loader.nextToServe = first;
+            loader.start(Math.max(1, this.nbWorkers));
+            return loader;
+        }
+    }
+}
@@ -19,16 +19,15 @@
  ******************************************************************************/
 package fr.pops.datareader;
 
+import fr.pops.math.ndarray.Shape;
 import fr.pops.popscst.cst.EnumCst;
 import fr.pops.popscst.cst.StrCst;
-import fr.pops.main.PopsMain;
-import fr.pops.math.ndarray.BaseNDArray;
 
-import java.io.DataInputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
 
-public class CifarDataset extends DataReader {
+public class CifarDataset extends MappedImageDataset {
 
     /*****************************************
      *
@@ -57,53 +56,52 @@ public class CifarDataset extends DataReader {
 
         // Read the file containing the labels and add them to their structure
         if (mode == EnumCst.RunningMode.TRAINING){
-            this.readImageFile(StrCst.PATH_CIFAR_TRAINING_IMAGES);
-            this.nbOfTrainingSamples = this.dataset.size();
-            this.nbOfLabels = this.labels.size();
+            this.readImageFile(mapResource(StrCst.PATH_CIFAR + StrCst.PATH_CIFAR_TRAINING_IMAGES));
+            this.nbOfLabels = this.labelIndices.length;
         } else if (mode == EnumCst.RunningMode.TEST){
-            this.readImageFile(StrCst.PATH_CIFAR_TRAINING_IMAGES);
-            this.nbOfTrainingSamples = this.dataset.size();
-            this.nbOfLabels = this.labels.size();
+            this.readImageFile(mapResource(StrCst.PATH_CIFAR + StrCst.PATH_CIFAR_TRAINING_IMAGES));
+            this.nbOfLabels = this.labelIndices.length;
         }
     }
 
+    /**
+     * @param imageFile A binary CIFAR-10 file
+     */
+    public CifarDataset(Path imageFile) throws IOException {
+        // Invoke parent
+        super();
+
+        this.readImageFile(mapFile(imageFile));
+        this.nbOfLabels = this.labelIndices.length;
+    }
+
     /*****************************************
      *
      * Methods
      *
      *****************************************/
     /**
-     * Read the image file
-     * @param imageFile The name of the file
-     * @throws IOException
+     * Keep the mapped image file, the pixels are decoded on request
+     * Each record is one label byte followed by the image, channel by channel
+     * @param file The mapped file
      */
-    private void readImageFile(String imageFile) throws IOException {
-
-        // Build data stream
-        String fullPath = StrCst.PATH_CIFAR + imageFile;
-        InputStream file = PopsMain.class.getResourceAsStream(fullPath);
-        DataInputStream dis = new DataInputStream(file);
+    private void readImageFile(ByteBuffer file){
 
-        // Read the pixel values and vectorize each image
-        int imageCount = 0;
-        while (imageCount < NB_IMAGE_PER_TRAINING_FILE){ //  TODO: change this for testing
-            // First byte for the label
-            int lblIndex = dis.readByte();
-            double[] labelArr = new double[EnumCst.CifarLabels.values().length];
-            labelArr[lblIndex] = 1;
-            this.labels.add(new BaseNDArray(labelArr, EnumCst.CifarLabels.values().length));
+        this.images = file;
+        int recordSize = NB_BYTE_PER_LABEL + NB_BYTE_PER_IMAGE;
+        int nbImages = Math.min(NB_IMAGE_PER_TRAINING_FILE, this.images.capacity() / recordSize); //  TODO: change this for testing
 
-            // Read the actual image channel by channel
-            double[] imageArr = new double[NB_BYTE_PER_IMAGE];
-            for (int i = 0; i < NB_BYTE_PER_IMAGE; i++){
-                double val = dis.readUnsignedByte();
-                imageArr[i] = val / 255;
-            }
-            this.dataset.add(new BaseNDArray(imageArr, NB_ROWS, NB_COLUMNS, NB_CHANNELS));
-            imageCount++;
+        // Copy the label of each record
+        this.labelIndices = new byte[nbImages];
+        for (int i = 0; i < nbImages; i++){
+            this.labelIndices[i] = this.images.get(i * recordSize);
         }
+        this.nbClasses = EnumCst.CifarLabels.values().length;
 
-        // Close stream
-        dis.close();
+        // Images follow their label
+        this.pixelOffset = NB_BYTE_PER_LABEL;
+        this.imageStride = recordSize;
+        this.sampleShape = new Shape(NB_ROWS, NB_COLUMNS, NB_CHANNELS);
+        this.nbOfTrainingSamples = nbImages;
     }
 }
@@ -20,7 +20,10 @@
  ******************************************************************************/
 package fr.pops.datareader;
 
+import fr.pops.math.ArrayUtil;
+import fr.pops.math.ndarray.BaseNDArray;
 import fr.pops.math.ndarray.INDArray;
+import fr.pops.math.ndarray.Shape;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -57,4 +60,72 @@ public abstract class DataReader {
 
     public Character getFromDictionary(int index){ return this.dictionary.get(index); }
 
+    /*****************************************
+     *
+     * Mini-batches
+     *
+     *****************************************/
+    /**
+     * Stack consecutive samples along the batch axis
+     * The indices wrap around the dataset
+     * @param from The index of the first sample
+     * @param batchSize The number of samples
+     * @return The batch of samples. A single sample is returned without copy
+     */
+    public INDArray getSamples(int from, int batchSize){
+        if (batchSize <= 1){
+            return this.getSample(from % this.nbOfTrainingSamples);
+        }
+        INDArray batch = null;
+        for (int b = 0; b < batchSize; b++){
+            INDArray sample = this.getSample((from + b) % this.nbOfTrainingSamples);
+            if (batch == null){
+                batch = new BaseNDArray.BaseNDArrayBuilder().zeros(new Shape(sample.getShape(), batchSize)).build();
+            }
+            ArrayUtil.copyInto(sample, batch.sample(b));
+        }
+        return batch;
+    }
+
+    /**
+     * Stack the labels of consecutive samples along the batch axis
+     * The indices wrap around the dataset
+     * @param from The index of the first label
+     * @param batchSize The number of labels
+     * @return The batch of labels. A single label is returned without copy
+     */
+    public INDArray getLabels(int from, int batchSize){
+        if (batchSize <= 1){
+            return this.getLabel(from % this.nbOfTrainingSamples);
+        }
+        INDArray batch = null;
+        for (int b = 0; b < batchSize; b++){
+            INDArray label = this.getLabel((from + b) % this.nbOfTrainingSamples);
+            if (batch == null){
+                batch = new BaseNDArray.BaseNDArrayBuilder().zeros(new Shape(label.getShape(), batchSize)).build();
+            }
+            ArrayUtil.copyInto(label, batch.sample(b));
+        }
+        return batch;
+    }
+
+    /**
+     * Copy a sample into a preallocated array, a sample of a batch for instance
+     * Readers decoding their samples on request can override it to decode in place
+     * @param i The index of the sample
+     * @param out The array receiving the values, of the size of a sample
+     */
+    public void copySample(int i, INDArray out){
+        ArrayUtil.copyInto(this.getSample(i), out);
+    }
+
+    /**
+     * Copy a label into a preallocated array
+     * @param i The index of the label
+     * @param out The array receiving the values, of the size of a label
+     */
+    public void copyLabel(int i, INDArray out){
+        ArrayUtil.copyInto(this.getLabel(i), out);
+    }
+
 }
@@ -19,17 +19,15 @@
  ******************************************************************************/
 package fr.pops.datareader;
 
-import fr.pops.main.PopsMain;
-import fr.pops.math.ndarray.BaseNDArray;
-import fr.pops.math.ndarray.INDArray;
+import fr.pops.math.ndarray.Shape;
 import fr.pops.popscst.cst.EnumCst;
 import fr.pops.popscst.cst.StrCst;
 
-import java.io.DataInputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
 
-public class MNISTDataset extends DataReader {
+public class MNISTDataset extends MappedImageDataset {
 
     /*****************************************
      *
@@ -38,6 +36,8 @@ public class MNISTDataset extends DataReader {
      *****************************************/
     // Cst
     private static final int SIZE_LABEL_VECTOR = 10;
+    private static final int LABEL_HEADER_SIZE = 8;
+    private static final int IMAGE_HEADER_SIZE = 16;
 
     // Data structure
     private int nbRows = 1;
@@ -55,93 +55,66 @@ public class MNISTDataset extends DataReader {
 
         // Read the file containing the labels and add them to their structure
         if (mode == EnumCst.RunningMode.TRAINING){
-            this.readLabelFile(StrCst.PATH_MNIST_TRAINING_LABELS);
-            this.readImageFile(StrCst.PATH_MNIST_TRAINING_IMAGES);
+            this.readLabelFile(mapResource("/resources" + StrCst.PATH_MNIST + StrCst.PATH_MNIST_TRAINING_LABELS));
+            this.readImageFile(mapResource("/resources" + StrCst.PATH_MNIST + StrCst.PATH_MNIST_TRAINING_IMAGES));
         } else if (mode == EnumCst.RunningMode.TEST){
-            this.readLabelFile(StrCst.PATH_MNIST_TESTING_LABELS);
-            this.readImageFile(StrCst.PATH_MNIST_TESTING_IMAGES);
+            this.readLabelFile(mapResource("/resources" + StrCst.PATH_MNIST + StrCst.PATH_MNIST_TESTING_LABELS));
+            this.readImageFile(mapResource("/resources" + StrCst.PATH_MNIST + StrCst.PATH_MNIST_TESTING_IMAGES));
         }
 
     }
 
+    /**
+     * @param imageFile An IDX file of images
+     * @param labelFile The IDX file of their labels
+     */
+    public MNISTDataset(Path imageFile, Path labelFile) throws IOException {
+        // Invoke parent
+        super();
+
+        this.readLabelFile(mapFile(labelFile));
+        this.readImageFile(mapFile(imageFile));
+    }
+
     /*****************************************
      *
      * Methods
      *
      *****************************************/
     /**
-     * Read the labels
-     * @param labelFile The name of the file
-     * @throws IOException
+     * Read the labels, one byte each
+     * @param file The mapped file, IDX integers are big-endian
      */
-    private void readLabelFile(String labelFile) throws IOException {
-
-        // Build data stream
-        String fullPath = StrCst.PATH_MNIST + labelFile;
-        InputStream file = PopsMain.class.getResourceAsStream("/resources" + fullPath);
-        DataInputStream dis = new DataInputStream(file);
-
-        // First read the magic number
-        int magicNumber = dis.readInt();
-
-        // Read the number of labels
-        int nbofBytesToRead = dis.readInt();
-        this.nbOfLabels = nbofBytesToRead;
-
-        // Read the actual labels and vectorize them
-        for (int i = 0; i < nbofBytesToRead; i++){
-            int val = dis.readByte();
-            double[] labelVectorArr = new double[SIZE_LABEL_VECTOR];
-            labelVectorArr[val] = 1;
-            INDArray labelVector = new BaseNDArray(labelVectorArr, SIZE_LABEL_VECTOR);
-            this.labels.add(labelVector);
-        }
-        // Close stream
-        dis.close();
+    private void readLabelFile(ByteBuffer file){
+
+        // The magic number is followed by the number of labels
+        this.nbOfLabels = file.getInt(4);
+
+        // Copy the actual labels
+        this.labelIndices = new byte[this.nbOfLabels];
+        ByteBuffer labels = file.duplicate();
+        labels.position(LABEL_HEADER_SIZE);
+        labels.get(this.labelIndices);
+        this.nbClasses = SIZE_LABEL_VECTOR;
     }
 
     /**
-     * Read the image file
-     * @param imageFile The name of the file
-     * @throws IOException
+     * Keep the mapped image file, the pixels are decoded on request
+     * @param file The mapped file, IDX integers are big-endian
      */
-    private void readImageFile(String imageFile) throws IOException {
+    private void readImageFile(ByteBuffer file){
 
-        // Build data stream
-        String fullPath = StrCst.PATH_MNIST + imageFile;
-        InputStream file = PopsMain.class.getResourceAsStream("/resources" + fullPath);
-        DataInputStream dis = new DataInputStream(file);
+        this.images = file;
 
-        // First read the magic number
-        int magicNumber = dis.readInt();
-
-        this.nbOfTrainingSamples = dis.readInt();
-        this.nbRows = dis.readInt();
-        this.nbColumns = dis.readInt();
+        // The magic number is followed by the number of images and their size
+        this.nbOfTrainingSamples = this.images.getInt(4);
+        this.nbRows = this.images.getInt(8);
+        this.nbColumns = this.images.getInt(12);
         this.vectorizedImageSize = this.nbRows * this.nbColumns;
-        int nbofBytesToRead = this.nbOfTrainingSamples * this.nbRows * this.nbColumns;
-
-        // Read the pixel values and vectorize each image
-        int counter = 0;
-        int i = 0;
-        int arrSize = this.nbRows * this.nbColumns;
-        int[] shape = new int[]{arrSize};
-        double[] data = new double[arrSize];
-        while (i < nbofBytesToRead){
-            if (counter < this.vectorizedImageSize){
-                double val = dis.readUnsignedByte();
-                data[counter] = val / 255;
-                counter++;
-                i++;
-            } else {
-                super.dataset.add(new BaseNDArray(data, shape));
-                counter = 0;
-                data = new double[this.nbRows * this.nbColumns];
-            }
-        }
-        // Add final image
-        super.dataset.add(new BaseNDArray(data, shape));
-        // Close stream
-        dis.close();
+
+        // Images are stored one after the other, row by row
+        this.pixelOffset = IMAGE_HEADER_SIZE;
+        this.imageStride = this.vectorizedImageSize;
+        this.sampleShape = new Shape(this.vectorizedImageSize);
     }
 }
@@ -0,0 +1,258 @@
+/*******************************************************************************
+ *
+ *                         PPPP     OOOO     PPPP    SSSS
+ *                        PP  PP   OO  OO   PP  PP  SS
+ *                        PP  PP  OO    OO  PP  PP  SS
+ *                        PP  PP  OO    OO  PP  PP   SSSS
+ *                        PPPP    OO    OO  PPPP        SS
+ *                        PP       OO  OO   PP          SS
+ *                        PP        OOOO    PP       SSSS
+ *
+ * Name: MappedImageDataset.java
+ *
+ * Description: Class defining a dataset of 8-bit images kept as raw bytes.
+ *              The files are mapped in memory, the pixels are only decoded
+ *              to normalized values when a sample or a batch is requested.
+ *              Labels are stored as one byte per image.
+ *
+ * Author: Charles MERINO
+ *
+ * Date: 18/10/2026
+ *
+ ******************************************************************************/
+package fr.pops.datareader;
+
+import fr.pops.main.PopsMain;
+import fr.pops.math.ndarray.BaseNDArray;
+import fr.pops.math.ndarray.DataBuffer;
+import fr.pops.math.ndarray.HeapDoubleDataBuffer;
+import fr.pops.math.ndarray.HeapFloatDataBuffer;
+import fr.pops.math.ndarray.INDArray;
+import fr.pops.math.ndarray.Shape;
+import fr.pops.popscst.cst.EnumCst;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+public abstract class MappedImageDataset extends DataReader {
+
+    /*****************************************
+     *
+     * Static Attributes
+     *
+     *****************************************/
+    // NORMALIZED[b] = b / 255 for an unsigned byte b
+    private static final double[] NORMALIZED = new double[256];
+    static {
+        for (int i = 0; i < NORMALIZED.length; i++){
+            NORMALIZED[i] = i / 255.0d;
+        }
+    }
+
+    /*****************************************
+     *
+     * Attributes
+     *
+     *****************************************/
+    // Pixels of image i are the sampleSize bytes starting at pixelOffset + i * imageStride
+    protected ByteBuffer images;
+    protected int pixelOffset = 0;
+    protected int imageStride = 1;
+    protected Shape sampleShape = new Shape(1);
+
+    // Class of each image
+    protected byte[] labelIndices = new byte[0];
+    protected int nbClasses = 1;
+
+    // Type of the decoded samples: DOUBLE or FLOAT
+    private EnumCst.DataTypes dataType = EnumCst.DataTypes.DOUBLE;
+
+    /*****************************************
+     *
+     * Parent methods
+     *
+     *****************************************/
+    /**
+     * @param i The index of the image
+     * @return The image decoded to values in [0, 1]
+     */
+    @Override
+    public INDArray getSample(int i){
+        return this.decode(i, 1);
+    }
+
+    /**
+     * @param i The index of the image
+     * @return The one hot vector of its class
+     */
+    @Override
+    public INDArray getLabel(int i){
+        return this.oneHot(i, 1);
+    }
+
+    /**
+     * The images are decoded straight into the batch
+     */
+    @Override
+    public INDArray getSamples(int from, int batchSize){
+        return this.decode(from, Math.max(1, batchSize));
+    }
+
+    @Override
+    public INDArray getLabels(int from, int batchSize){
+        return this.oneHot(from, Math.max(1, batchSize));
+    }
+
+    /**
+     * The image is decoded straight into out
+     */
+    @Override
+    public void copySample(int i, INDArray out){
+        int sampleSize = this.sampleShape.getSize();
+        if (out.getShape().getSize() != sampleSize){
+            System.out.println("Invalid output size in MappedImageDataset.copySample: " + out.getShape().getSize() + " instead of " + sampleSize + ".");
+            return;
+        }
+        int position = this.pixelOffset + (i % this.nbOfTrainingSamples) * this.imageStride;
+        DataBuffer buffer = out.getDataBuffer();
+        int offset = out.getOffset();
+        if (buffer instanceof HeapDoubleDataBuffer){
+            double[] data = out.getData();
+            for (int p = 0; p < sampleSize; p++){
+                data[offset + p] = NORMALIZED[this.images.get(position + p) & 0xFF];
+            }
+        } else {
+            for (int p = 0; p < sampleSize; p++){
+                buffer.putDouble(offset + p, NORMALIZED[this.images.get(position + p) & 0xFF]);
+            }
+        }
+    }
+
+    @Override
+    public void copyLabel(int i, INDArray out){
+        out.getDataBuffer().fill(out.getOffset(), out.getOffset() + out.getShape().getSize(), 0);
+        out.getDataBuffer().putDouble(out.getOffset() + this.labelIndices[i % this.labelIndices.length], 1);
+    }
+
+    /*****************************************
+     *
+     * Protected methods
+     *
+     *****************************************/
+    /**
+     * Map a resource of the application
+     * A resource packed in an archive cannot be mapped, its bytes are then read once
+     * @param resourcePath The path of the resource
+     * @return The bytes of the resource
+     */
+    protected static ByteBuffer mapResource(String resourcePath) throws IOException {
+        URL url = PopsMain.class.getResource(resourcePath);
+        if (url == null){
+            throw new IOException("Resource not found: " + resourcePath);
+        }
+        if ("file".equals(url.getProtocol())){
+            try {
+                return mapFile(Paths.get(url.toURI()));
+            } catch (URISyntaxException e){
+                System.out.println("Invalid path " + url + ", the resource is read instead of mapped.");
+            }
+        }
+        try (InputStream stream = url.openStream()){
+            return ByteBuffer.wrap(stream.readAllBytes());
+        }
+    }
+
+    /**
+     * Map a file
+     * @param path The path of the file
+     * @return The bytes of the file
+     */
+    protected static ByteBuffer mapFile(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /*****************************************
+     *
+     * Private methods
+     *
+     *****************************************/
+    /**
+     * Decode consecutive images, the indices wrap around the dataset
+     * @param from The index of the first image
+     * @param batchSize The number of images
+     * @return One image or a batch of images along the batch axis
+     */
+    private INDArray decode(int from, int batchSize){
+        int sampleSize = this.sampleShape.getSize();
+        Shape shape = batchSize == 1 ? new Shape(this.sampleShape) : new Shape(this.sampleShape, batchSize);
+        if (this.dataType == EnumCst.DataTypes.FLOAT){
+            float[] data = new float[sampleSize * batchSize];
+            for (int b = 0; b < batchSize; b++){
+                int position = this.pixelOffset + ((from + b) % this.nbOfTrainingSamples) * this.imageStride;
+                for (int p = 0; p < sampleSize; p++){
+                    data[b * sampleSize + p] = (float) NORMALIZED[this.images.get(position + p) & 0xFF];
+                }
+            }
+            return new BaseNDArray.BaseNDArrayBuilder().withDataBuffer(new HeapFloatDataBuffer(data)).withShape(shape).build();
+        }
+        double[] data = new double[sampleSize * batchSize];
+        for (int b = 0; b < batchSize; b++){
+            int position = this.pixelOffset + ((from + b) % this.nbOfTrainingSamples) * this.imageStride;
+            for (int p = 0; p < sampleSize; p++){
+                data[b * sampleSize + p] = NORMALIZED[this.images.get(position + p) & 0xFF];
+            }
+        }
+        return new BaseNDArray.BaseNDArrayBuilder().withData(data).withShape(shape).build();
+    }
+
+    /**
+     * One hot vectors of consecutive images, the indices wrap around the dataset
+     */
+    private INDArray oneHot(int from, int batchSize){
+        double[] data = new double[this.nbClasses * batchSize];
+        for (int b = 0; b < batchSize; b++){
+            data[b * this.nbClasses + this.labelIndices[(from + b) % this.labelIndices.length]] = 1;
+        }
+        return new BaseNDArray.BaseNDArrayBuilder().withData(data).withShape(new Shape(this.nbClasses, 1, 1, batchSize)).build();
+    }
+
+    /*****************************************
+     *
+     * Getters
+     *
+     *****************************************/
+    /**
+     * @param i The index of the image
+     * @return Its class
+     */
+    public int getLabelIndex(int i){ return this.labelIndices[i]; }
+
+    public Shape getSampleShape(){ return this.sampleShape; }
+
+    public EnumCst.DataTypes getDataType(){ return this.dataType; }
+
+    /*****************************************
+     *
+     * Setters
+     *
+     *****************************************/
+    /**
+     * @param dataType The type of the decoded samples: DOUBLE or FLOAT
+     */
+    public void setDataType(EnumCst.DataTypes dataType){
+        if (dataType != EnumCst.DataTypes.DOUBLE && dataType != EnumCst.DataTypes.FLOAT){
+            System.out.println("Unsupported data type in MappedImageDataset: " + dataType + ". DOUBLE is kept.");
+            return;
+        }
+        this.dataType = dataType;
+    }
+}
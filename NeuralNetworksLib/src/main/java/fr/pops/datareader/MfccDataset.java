@@ -0,0 +1,205 @@
+/*******************************************************************************
+ *
+ *                         PPPP     OOOO     PPPP    SSSS
+ *                        PP  PP   OO  OO   PP  PP  SS
+ *                        PP  PP  OO    OO  PP  PP  SS
+ *                        PP  PP  OO    OO  PP  PP   SSSS
+ *                        PPPP    OO    OO  PPPP        SS
+ *                        PP       OO  OO   PP          SS
+ *                        PP        OOOO    PP       SSSS
+ *
+ * Name: MfccDataset.java
+ *
+ * Description: Class serving the MFCC frames of a directory of wave files.
+ *              Each sub-directory is a label. As for the other sequential datasets,
+ *              a sample is a sequence of frames along the batch axis, the whole
+ *              recording or windows of a fixed number of frames, and its label is
+ *              the one hot vector of its directory for each frame.
+ *              Recordings are processed in parallel.
+ *
+ * Author: Charles MERINO
+ *
+ * Date: 18/10/2026
+ *
+ ******************************************************************************/
+package fr.pops.datareader;
+
+import fr.pops.math.Parallel;
+import fr.pops.math.ndarray.BaseNDArray;
+import fr.pops.math.ndarray.INDArray;
+import fr.pops.math.ndarray.Shape;
+import fr.pops.speechrecognizer.MfccExtractor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class MfccDataset extends DataReader {
+
+    /*****************************************
+     *
+     * Attributes
+     *
+     *****************************************/
+    private static final String WAVE_EXTENSION = ".wav";
+    private Path directory;
+    private MfccExtractor extractor;
+    private List<String> labelNames = new ArrayList<>();
+    // Number of frames of a sequence, 0 for whole recordings
+    private int sequenceLength = 0;
+
+    // First sample of each recording, the last value is the number of samples
+    private List<Integer> recordingStarts = new ArrayList<>();
+
+    /*****************************************
+     *
+     * Ctor
+     *
+     *****************************************/
+    /**
+     * @param directory The directory holding one sub-directory of wave files per label,
+     *                  or the wave files themselves for a single label
+     * @param extractor The extractor applied to every recording
+     */
+    public MfccDataset(Path directory, MfccExtractor extractor){
+        // Invoke parent
+        super();
+        this.directory = directory;
+        this.extractor = extractor;
+    }
+
+    /*****************************************
+     *
+     * Main methods
+     *
+     *****************************************/
+    /**
+     * Extract the frames of every recording and cut them into sequences
+     * With a sequence length, the frames after the last whole window of a recording are dropped
+     * @return The dataset itself
+     */
+    public DataReader buildDataset() throws IOException {
+        // Recordings and their label
+        List<Path> labelDirectories = list(this.directory, Files::isDirectory);
+        if (labelDirectories.isEmpty()){
+            labelDirectories.add(this.directory);
+        }
+        List<Path> files = new ArrayList<>();
+        List<Integer> fileLabels = new ArrayList<>();
+        for (int l = 0; l < labelDirectories.size(); l++){
+            this.labelNames.add(labelDirectories.get(l).getFileName().toString());
+            for (Path file : list(labelDirectories.get(l), p -> p.toString().toLowerCase().endsWith(WAVE_EXTENSION))){
+                files.add(file);
+                fileLabels.add(l);
+            }
+        }
+
+        // One recording per task, the frames of a recording are then computed sequentially
+        INDArray[] coefficients = new INDArray[files.size()];
+        long work = 0;
+        for (Path file : files){
+            work += Files.size(file);
+        }
+        Parallel.forRange(0, files.size(), work, (from, to) -> {
+            for (int i = from; i < to; i++){
+                try {
+                    coefficients[i] = this.extractor.extract(new WaveReader(files.get(i)));
+                } catch (IOException e){
+                    System.out.println("Unable to extract the coefficients of " + files.get(i) + ": " + e.getMessage());
+                }
+            }
+        });
+
+        // One hot labels shared by the windows
+        this.nbOfLabels = this.labelNames.size();
+        INDArray[] oneHot = new INDArray[this.nbOfLabels];
+        for (int l = 0; l < this.nbOfLabels && this.sequenceLength > 0; l++){
+            oneHot[l] = this.oneHot(l, this.sequenceLength);
+        }
+
+        for (int i = 0; i < coefficients.length; i++){
+            if (coefficients[i] == null){
+                continue;
+            }
+            this.recordingStarts.add(this.dataset.size());
+            int nbFrames = coefficients[i].getShape().getBatchAxisLength();
+            if (this.sequenceLength <= 0){
+                this.dataset.add(coefficients[i]);
+                this.labels.add(this.oneHot(fileLabels.get(i), nbFrames));
+                continue;
+            }
+            for (int f = 0; f + this.sequenceLength <= nbFrames; f += this.sequenceLength){
+                this.dataset.add(coefficients[i].samples(f, f + this.sequenceLength).dup());
+                this.labels.add(oneHot[fileLabels.get(i)]);
+            }
+        }
+        this.recordingStarts.add(this.dataset.size());
+        this.nbOfTrainingSamples = this.dataset.size();
+        return this;
+    }
+
+    /**
+     * @return The one hot vector of a label repeated for each frame, shape (nbLabels, 1, 1, nbFrames)
+     */
+    private INDArray oneHot(int label, int nbFrames){
+        INDArray res = new BaseNDArray.BaseNDArrayBuilder().zeros(new Shape(this.nbOfLabels, 1, 1, nbFrames)).build();
+        for (int f = 0; f < nbFrames; f++){
+            res.getDataBuffer().putDouble(res.getOffset() + f * this.nbOfLabels + label, 1);
+        }
+        return res;
+    }
+
+    /**
+     * @return The entries of the directory accepted by the filter, sorted by name
+     */
+    private static List<Path> list(Path directory, Predicate<Path> filter) throws IOException {
+        try (Stream<Path> entries = Files.list(directory)){
+            return entries.filter(filter).sorted().collect(Collectors.toCollection(ArrayList::new));
+        }
+    }
+
+    /*****************************************
+     *
+     * Getters
+     *
+     *****************************************/
+    /**
+     * @param label The index of a label
+     * @return The name of its sub-directory
+     */
+    public String getLabelName(int label){ return this.labelNames.get(label); }
+
+    public int getNbOfRecordings(){ return this.recordingStarts.size() - 1; }
+
+    /**
+     * The sequences of recording r are the samples getRecordingStart(r) to getRecordingStart(r + 1) - 1
+     * @param recording The index of a recording
+     * @return The index of its first sequence
+     */
+    public int getRecordingStart(int recording){ return this.recordingStarts.get(recording); }
+
+    /**
+     * @return The number of frames of a sequence, 0 if a sequence is a whole recording
+     */
+    public int getSequenceLength(){ return this.sequenceLength; }
+
+    /*****************************************
+     *
+     * With methods
+     *
+     *****************************************/
+    /**
+     * Sequences of the same length can be stacked into mini-batches by a BatchLoader
+     * @param length The number of frames of a sequence, 0 to serve whole recordings; set before building the dataset
+     * @return The dataset itself
+     */
+    public MfccDataset withSequenceLength(int length){
+        this.sequenceLength = Math.max(0, length);
+        return this;
+    }
+}
@@ -12,36 +12,67 @@
  *
  * Description: Read raw text files, build a dictionary containing
  *              each distinct individual letter from the text and store the whole
- *              text in sequence-like data to be learnt by RNN / LSTM.
+ *              text as tokens to be learnt by RNN / LSTM.
+ *              The text is streamed, each character is stored as the 16 bits index
+ *              of its letter in the dictionary. A sample is a window of sequenceLength
+ *              characters, its one hot vectors are only built when it is requested.
  *
  * Author: Charles MERINO
  *
  * Date: 18/05/2019
  *
- * TODO: correct this class with sequences
- *
  ******************************************************************************/
 package fr.pops.datareader;
 
+import fr.pops.main.PopsMain;
 import fr.pops.math.ndarray.BaseNDArray;
 import fr.pops.math.ndarray.INDArray;
+import fr.pops.math.ndarray.Shape;
 
-import java.io.*;
-import java.util.*;
-import java.util.stream.Collectors;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 public class RawTextDataset extends DataReader {
 
-    // Attributes
-    private final static String ROOT_PATH = "../../../resources/data/Text/"; // For now
+    /*****************************************
+     *
+     * Static Attributes
+     *
+     *****************************************/
+    private final static String ROOT_PATH = "/resources/data/Text/"; // For now
+    private static final int READ_BUFFER_SIZE = 1 << 16;
+    private static final short NO_TOKEN = -1;
+
+    /*****************************************
+     *
+     * Attributes
+     *
+     *****************************************/
     private String fullPath;
-    private int  sequenceLength = 50;
+    private Path file = null;
+    private int sequenceLength = 50;
 
-    // Objects
-    private String fullText = "";
-    private List<Character> textAsList = new ArrayList<>();
+    // tokens[i] is the index in the dictionary of the character i of the text, read as unsigned
+    private short[] tokens = new short[0];
+    private int nbTokens = 0;
 
-    // Ctor
+    /*****************************************
+     *
+     * Ctor
+     *
+     *****************************************/
+    /**
+     * @param filename The name of a text resource of the application
+     */
     public RawTextDataset(String filename){
         // Invoke parent
         super();
@@ -50,86 +81,196 @@ public class RawTextDataset extends DataReader {
         this.fullPath = ROOT_PATH + filename;
     }
 
+    /**
+     * @param file A text file
+     */
+    public RawTextDataset(Path file){
+        // Invoke parent
+        super();
+        this.fullPath = file.toString();
+        this.file = file;
+    }
+
+    /*****************************************
+     *
+     * Main methods
+     *
+     *****************************************/
+    /**
+     * Read the text and build its dictionary
+     * The text is cut into sequences of the same length so that they can be stacked
+     * into mini-batches, the characters after the last whole sequence are dropped
+     * @return The dataset itself
+     */
     public DataReader buildDataset() throws IOException {
-        this.readFile();
-        this.textToObj();
-        this.buildDictionary();
-        this.buildData();
-        this.buildLabels();
-        this.nbOfTrainingSamples = this.dataset.size();
+        try (Reader reader = this.open()){
+            this.readText(reader);
+        }
+        this.nbOfLabels = this.dictionary.size();
+        // The label of each character is the next one
+        this.nbOfTrainingSamples = Math.max(1, (this.nbTokens - 1) / this.sequenceLength);
         return this;
     }
 
-    // Read the file
-    private void readFile() throws IOException {
-        // Create Stream
-        File file = new File(getClass().getResource(this.fullPath).getFile());
-        BufferedReader bufferedReader = new BufferedReader(new FileReader(file));
-        // Read lines
-        String string;
-        while ((string = bufferedReader.readLine()) != null){
-            this.fullText += string;
-        }
+    /*****************************************
+     *
+     * Parent methods
+     *
+     *****************************************/
+    /**
+     * @param i The index of the sequence
+     * @return The one hot vectors of its characters along the batch axis, shape (dictionarySize, 1, 1, length)
+     */
+    @Override
+    public INDArray getSample(int i){
+        return this.oneHot(this.getSequenceStart(i), this.getSequenceLength(i));
     }
 
-    // Retrieve all characters from the file
-    private void textToObj(){
-        this.textAsList = this.fullText.chars().mapToObj(c -> (char) c).collect(Collectors.toList());
+    /**
+     * @param i The index of the sequence
+     * @return The one hot vectors of the characters following each of its characters
+     */
+    @Override
+    public INDArray getLabel(int i){
+        return this.oneHot(this.getSequenceStart(i) + 1, this.getSequenceLength(i));
     }
 
-    // Build the dictionary
-    private void buildDictionary(){
-        // Build stream to collect the dictionary
-        this.dictionary = this.fullText.chars().mapToObj(c -> (char) c).distinct().collect(Collectors.toList());
+    @Override
+    public void copySample(int i, INDArray out){
+        this.oneHotInto(this.getSequenceStart(i), this.getSequenceLength(i), out);
     }
 
-    // Fill parent structure ; dataset
-    private void buildData(){
-        Sequence sequence = new Sequence();
-        for (int i = 0; i < this.textAsList.size()-1; i++){
-            double[] sampleArr = new double[this.dictionary.size()];
-            sampleArr[this.dictionary.indexOf(this.textAsList.get(i))] = 1;
-            INDArray sample = new BaseNDArray(sampleArr, this.dictionary.size());
-            if ( i > 0 & i % (this.sequenceLength) == 0){
-                this.dataset.add(null); // null <-> sequence
-                sequence = new Sequence();
-                sequence.add(sample);
-            } else {
-                sequence.add(sample);
-            }
+    @Override
+    public void copyLabel(int i, INDArray out){
+        this.oneHotInto(this.getSequenceStart(i) + 1, this.getSequenceLength(i), out);
+    }
+
+    /*****************************************
+     *
+     * Private methods
+     *
+     *****************************************/
+    /**
+     * @return A reader over the file, or over the resource
+     */
+    private Reader open() throws IOException {
+        if (this.file != null){
+            return Files.newBufferedReader(this.file, StandardCharsets.UTF_8);
         }
-        // Add last sequence if it has not been added in the loop
-        if ((this.textAsList.size() - 1) % this.sequenceLength != 0) {
-            this.dataset.add(null); // null <-> sequence
+        InputStream stream = PopsMain.class.getResourceAsStream(this.fullPath);
+        if (stream == null){
+            throw new IOException("Resource not found: " + this.fullPath);
         }
+        return new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8), READ_BUFFER_SIZE);
     }
 
-    // Fill parent structure : labels
-    private void buildLabels(){
-        Sequence sequence = new Sequence();
-        List<Character> textForLabels = this.textAsList;
-        textForLabels.remove(0);
-        for (int i = 0; i < textForLabels.size(); i++){
-            double[] sampleArr = new double[this.dictionary.size()];
-            sampleArr[this.dictionary.indexOf(this.textAsList.get(i))] = 1;
-            INDArray sample = new BaseNDArray(sampleArr, new int[]{this.dictionary.size()});
-            if (i > 0 & i % (this.sequenceLength) == 0){
-                this.labels.add(null); // null <-> sequence
-                sequence = new Sequence();
-                sequence.add(sample);
-            } else {
-                sequence.add(sample);
+    /**
+     * Tokenize the text block by block
+     * The dictionary is indexed by a table over the 2^16 possible characters
+     */
+    private void readText(Reader reader) throws IOException {
+        short[] tokenOf = new short[Character.MAX_VALUE + 1];
+        Arrays.fill(tokenOf, NO_TOKEN);
+        List<Character> letters = new ArrayList<>();
+        char[] buffer = new char[READ_BUFFER_SIZE];
+        short[] res = new short[READ_BUFFER_SIZE];
+        int length = 0;
+        int read;
+        while ((read = reader.read(buffer)) > 0){
+            if (length + read > res.length){
+                res = Arrays.copyOf(res, Math.max(2 * res.length, length + read));
+            }
+            for (int i = 0; i < read; i++){
+                char c = buffer[i];
+                if (c == '\r'){
+                    continue;
+                }
+                short token = tokenOf[c];
+                if (token == NO_TOKEN){
+                    token = (short) letters.size();
+                    tokenOf[c] = token;
+                    letters.add(c);
+                }
+                res[length++] = token;
             }
         }
-        // Add last sequence if it has not been added in the loop
-        if ((this.textAsList.size() - 1) % this.sequenceLength != 0) {
-            this.labels.add(null); // null <-> sequence
+        this.tokens = Arrays.copyOf(res, length);
+        this.nbTokens = length;
+        this.dictionary = letters;
+    }
+
+    /**
+     * One hot vectors of consecutive characters
+     */
+    private INDArray oneHot(int from, int length){
+        INDArray res = new BaseNDArray.BaseNDArrayBuilder().zeros(new Shape(this.dictionary.size(), 1, 1, length)).build();
+        this.oneHotInto(from, length, res);
+        return res;
+    }
+
+    /**
+     * Write the one hot vectors of consecutive characters into out
+     */
+    private void oneHotInto(int from, int length, INDArray out){
+        int size = this.dictionary.size();
+        if (out.getShape().getSize() != size * length){
+            System.out.println("Invalid output size in RawTextDataset: " + out.getShape().getSize() + " instead of " + size * length + ".");
+            return;
+        }
+        int offset = out.getOffset();
+        out.getDataBuffer().fill(offset, offset + size * length, 0);
+        for (int t = 0; t < length; t++){
+            out.getDataBuffer().putDouble(offset + t * size + this.getToken(from + t), 1);
         }
     }
 
-    // With
+    /*****************************************
+     *
+     * Getters
+     *
+     *****************************************/
+    /**
+     * Tokens can be used directly as indices of an embedding
+     * @param position The position of a character in the text
+     * @return The index of the character in the dictionary
+     */
+    public int getToken(int position){ return this.tokens[position] & 0xFFFF; }
+
+    /**
+     * @return The number of characters of the text
+     */
+    public int getNbTokens(){ return this.nbTokens; }
+
+    public int getDictionarySize(){ return this.dictionary.size(); }
+
+    /**
+     * @param i The index of a sequence
+     * @return The position in the text of its first character
+     */
+    public int getSequenceStart(int i){ return (i % this.nbOfTrainingSamples) * this.sequenceLength; }
+
+    /**
+     * Every sequence has the same length, unless the text is shorter than a single sequence
+     * @param i The index of a sequence
+     * @return Its number of characters
+     */
+    public int getSequenceLength(int i){
+        return Math.max(0, Math.min(this.sequenceLength, this.nbTokens - 1 - this.getSequenceStart(i)));
+    }
+
+    public int getSequenceLength(){ return this.sequenceLength; }
+
+    /*****************************************
+     *
+     * With methods
+     *
+     *****************************************/
+    /**
+     * @param length The number of characters of a sequence, set before building the dataset
+     * @return The dataset itself
+     */
     public RawTextDataset withSequenceLength(int length){
-        this.sequenceLength = length;
+        this.sequenceLength = Math.max(1, length);
         return this;
     }
 }
@@ -11,6 +11,9 @@
  * Name: WaveReader.java
  *
  * Description: Class used to read Wave files.
+ *              The file is read through a stream or mapped in memory.
+ *              PCM samples stored on 1 to 4 bytes and IEEE float samples are decoded,
+ *              with any number of channels. Files too large to be mapped are streamed.
  *
  * Author: Charles MERINO
  *
@@ -24,18 +27,23 @@ package fr.pops.datareader;
 import fr.pops.math.Complex;
 
 import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 public class WaveReader {
 
-    /*
-     * TODO: Generalize this class for more WAVE formats depending on the header of the file
-     *       Move it to the data reader package
-     */
-
     /*****************************************
      *
      * Attributes
@@ -50,7 +58,18 @@ public class WaveReader {
     private static final int BYTES_INT16 = 2;
     private static final int INT16_MAX = 32767;
     private static final int INT16_MIN = -32768;
+    private static final int INT8_MAX = 127;
+    private static final int INT24_MAX = 8388607;
     private static final int STANDARD_FMT_CHUNCK = 16;
+    private static final int EXTENSIBLE_FMT_CHUNCK = 26;
+    private static final int FORMAT_PCM = 1;
+    private static final int FORMAT_FLOAT = 3;
+    private static final int FORMAT_EXTENSIBLE = 0xFFFE;
+    private static final String FMT_ID = "fmt ";
+    private static final String DATA_ID = "data";
+    private static final int READ_BUFFER_SIZE = 1 << 16;
+    // Size of a data chunck written before the end of the signal is known
+    private static final long UNKNOWN_DATA_SIZE = 0xFFFFFFFFL;
 
     // First chunck
     private String m_riffString;
@@ -65,11 +84,20 @@ public class WaveReader {
     private int m_bytesRate;
     private int m_nbBlockAligned;
     private int m_bitsPerSample;
+    private int m_bytesPerSample;
     // Data chunck
     private String m_dataString;
+    private long m_dataSize;
+    private boolean m_untilEof;
     private int m_nbSamples;
     private double[] m_normalizedData;
     private double m_duration;
+    // Streaming
+    private int m_nbSamplesRead;
+    private ByteBuffer m_readBuffer;
+    // Memory mapping
+    private Path m_mappedPath;
+    private ByteBuffer m_mappedData;
 
     // Specter
     private Complex[][] m_specter;
@@ -79,27 +107,149 @@ public class WaveReader {
      * Ctor
      *
      *****************************************/
+    /**
+     * Read a resource through a stream
+     * @param filePath The path of the resource
+     */
     public WaveReader(String filePath) {
         this.m_filePath = filePath;
         this.m_fileStream = getClass().getResourceAsStream(filePath);
     }
 
+    /**
+     * Read a file mapped in memory
+     * The samples are decoded straight from the mapped bytes, the file is never copied
+     * @param filePath The path of the file
+     */
+    public WaveReader(Path filePath) {
+        this.m_filePath = filePath.toString();
+        this.m_mappedPath = filePath;
+    }
+
     /*****************************************
      *
      * Main methods
      *
      *****************************************/
     /**
-     *
+     * Read the whole signal, channels are averaged
      * @throws Exception
      */
     public void readFile() throws Exception {
-        this.m_dataStream = new DataInputStream(this.m_fileStream);
-        this.readRIFFChunck();
-        this.readFMTChunck();
-        this.readDATAChunck();
-        this.m_duration = this.m_nbSamples / this.m_sampleRate;
-        this.m_dataStream.close();
+        this.readHeader();
+        if (this.m_untilEof && this.m_mappedData == null) {
+            // Streamed signal of unknown length
+            this.m_normalizedData = new double[READ_BUFFER_SIZE];
+            while (this.readSamples(this.m_normalizedData, this.m_nbSamplesRead, this.m_normalizedData.length - this.m_nbSamplesRead) > 0) {
+                if (this.m_nbSamplesRead == this.m_normalizedData.length) {
+                    this.m_normalizedData = Arrays.copyOf(this.m_normalizedData, 2 * this.m_normalizedData.length);
+                }
+            }
+            this.m_normalizedData = Arrays.copyOf(this.m_normalizedData, this.m_nbSamplesRead);
+        } else {
+            this.m_normalizedData = new double[this.m_nbSamples];
+            this.readRawSound();
+        }
+        this.close();
+    }
+
+    /**
+     * Read the chuncks up to the first sample
+     * The samples can then be read by blocks with readSamples
+     * without holding the whole signal in memory
+     * A data chunck of size 0 or 0xFFFFFFFF, written by a recorder that was not stopped cleanly,
+     * runs until the end of the file: when streamed, the number of samples is only known once read
+     */
+    public void readHeader() throws IOException {
+        if (this.m_mappedPath != null && Files.size(this.m_mappedPath) <= Integer.MAX_VALUE) {
+            this.mapFile();
+        } else {
+            if (this.m_mappedPath != null) {
+                // A buffer cannot map more than 2GB
+                this.m_fileStream = Files.newInputStream(this.m_mappedPath);
+            } else if (this.m_fileStream == null) {
+                throw new IOException("Resource not found : " + this.m_filePath + ".");
+            }
+            this.m_dataStream = new DataInputStream(this.m_fileStream);
+            this.readRIFFChunck();
+            this.readChuncks();
+        }
+        // Samples are stored on whole bytes: 12-bit samples take 2 bytes, 20-bit ones 3
+        this.m_bytesPerSample = this.m_nbChannels > 0 && this.m_nbBlockAligned >= this.m_nbChannels ? this.m_nbBlockAligned / this.m_nbChannels
+                                                                                                     : (this.m_bitsPerSample + 7) / 8;
+        int bytesPerFrame = this.m_nbChannels * this.m_bytesPerSample;
+        this.m_nbSamples = bytesPerFrame > 0 ? (int) Math.min(Integer.MAX_VALUE, this.m_dataSize / bytesPerFrame) : 0;
+        this.m_duration = (double) this.m_nbSamples / this.m_sampleRate;
+        this.m_nbSamplesRead = 0;
+    }
+
+    /**
+     * Read the next normalized samples, the channels of a frame are averaged
+     * @param dst The array receiving the samples
+     * @param offset The index of the first sample in dst
+     * @param length The maximal number of samples to read
+     * @return The number of samples read, 0 at the end of the data
+     */
+    public int readSamples(double[] dst, int offset, int length) throws IOException {
+        return this.readFrames(dst, null, offset, length, true);
+    }
+
+    /**
+     * Single precision version of readSamples
+     */
+    public int readSamples(float[] dst, int offset, int length) throws IOException {
+        return this.readFrames(null, dst, offset, length, true);
+    }
+
+    /**
+     * Read the next normalized frames, channels interleaved
+     * @param dst The array receiving nbFrames * nbChannels samples
+     * @param offset The index of the first sample in dst
+     * @param nbFrames The maximal number of frames to read
+     * @return The number of frames read, 0 at the end of the data
+     */
+    public int readInterleaved(double[] dst, int offset, int nbFrames) throws IOException {
+        return this.readFrames(dst, null, offset, nbFrames, false);
+    }
+
+    /**
+     * Iterate over the signal by chunks, the channels being averaged
+     * Only one chunk is decoded at a time, the header must have been read
+     * @param chunkSize The number of samples of each chunk, the last one may be shorter
+     * @return An iterator over the chunks
+     */
+    public Iterator<double[]> chunks(int chunkSize) {
+        int size = Math.max(1, chunkSize);
+        return new Iterator<double[]>() {
+            @Override
+            public boolean hasNext() {
+                return m_nbSamplesRead < m_nbSamples;
+            }
+
+            @Override
+            public double[] next() {
+                if (!this.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                double[] chunk = new double[Math.min(size, m_nbSamples - m_nbSamplesRead)];
+                try {
+                    int read = readSamples(chunk, 0, chunk.length);
+                    return read == chunk.length ? chunk : Arrays.copyOf(chunk, read);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Close the file
+     */
+    public void close() throws IOException {
+        if (this.m_dataStream != null) {
+            this.m_dataStream.close();
+        }
+        this.m_mappedData = null;
     }
 
     /**
@@ -113,43 +263,84 @@ public class WaveReader {
     }
 
     /**
-     * FMT chunck
+     * Read the chuncks of the stream until the data one
+     * Chuncks other than fmt and data are skipped
      */
-    private void readFMTChunck() {
-        this.m_formatString = this.readHexToASCII(BYTES_INT32);
-        this.m_formatChunckSize = this.readLittleEndianInt(BYTES_INT32); // Need to differentiate the case depending on this value
-        if (m_formatChunckSize == STANDARD_FMT_CHUNCK) {
-            try {
-                this.m_audioFormat = this.m_dataStream.readByte();
-                this.skipLine();
-                this.m_nbChannels = this.m_dataStream.readByte();
-                this.skipLine();
-                this.m_sampleRate = this.readLittleEndianInt(BYTES_INT32);
-                this.m_bytesRate = this.readLittleEndianInt(BYTES_INT32);
-                this.m_nbBlockAligned = this.m_dataStream.readByte();
-                this.skipLine();
-                this.m_bitsPerSample = this.m_dataStream.readByte();
-                this.skipLine();
-            } catch (IOException e) {
-                e.printStackTrace();
+    private void readChuncks() throws IOException {
+        byte[] header = new byte[2 * BYTES_INT32];
+        while (true) {
+            this.m_dataStream.readFully(header);
+            ByteBuffer buffer = ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN);
+            String id = new String(header, 0, BYTES_INT32, StandardCharsets.US_ASCII);
+            long size = buffer.getInt(BYTES_INT32) & 0xFFFFFFFFL;
+            if (FMT_ID.equals(id)) {
+                byte[] format = new byte[(int) (size + (size & 1))];
+                this.m_dataStream.readFully(format);
+                this.m_formatString = id;
+                this.readFMTChunck(ByteBuffer.wrap(format, 0, (int) size).order(ByteOrder.LITTLE_ENDIAN));
+            } else if (DATA_ID.equals(id)) {
+                this.m_dataString = id;
+                this.m_untilEof = size == 0 || size == UNKNOWN_DATA_SIZE;
+                this.m_dataSize = this.m_untilEof ? Long.MAX_VALUE : size;
+                return;
+            } else {
+                this.skip(size + (size & 1));
             }
-        }else {
-            System.out.println("Size of the format chunck is not yet recognised.");
         }
     }
 
     /**
-     * DATA chunck
-     * @throws IOException
+     * Map the file and locate its chuncks
      */
-    private void readDATAChunck() throws IOException {
-        this.m_dataString = this.readHexToASCII(BYTES_INT32);
-        this.m_nbSamples = this.readLittleEndianInt(BYTES_INT32) / 2;
-        this.m_normalizedData= new double[this.m_nbSamples];
-        try {
-            this.readRawSound();
-        } catch (IOException e) {
-            e.printStackTrace();
+    private void mapFile() throws IOException {
+        try (FileChannel channel = FileChannel.open(this.m_mappedPath, StandardOpenOption.READ)) {
+            ByteBuffer file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+            this.m_riffString = readId(file, 0);
+            this.m_fileSize = file.getInt(BYTES_INT32);
+            this.m_waveString = readId(file, 2 * BYTES_INT32);
+            long position = 3 * BYTES_INT32;
+            while (position + 2 * BYTES_INT32 <= file.limit()) {
+                String id = readId(file, (int) position);
+                long size = file.getInt((int) position + BYTES_INT32) & 0xFFFFFFFFL;
+                int start = (int) position + 2 * BYTES_INT32;
+                if (FMT_ID.equals(id)) {
+                    this.m_formatString = id;
+                    this.readFMTChunck(slice(file, start, (int) Math.min(size, file.limit() - start)));
+                } else if (DATA_ID.equals(id)) {
+                    this.m_dataString = id;
+                    this.m_untilEof = size == 0 || size == UNKNOWN_DATA_SIZE;
+                    this.m_dataSize = this.m_untilEof ? file.limit() - start : Math.min(size, file.limit() - start);
+                    this.m_mappedData = slice(file, start, (int) this.m_dataSize);
+                    return;
+                }
+                position = start + size + (size & 1);
+            }
+        }
+        throw new IOException("No data chunck in file : " + this.m_filePath + ".");
+    }
+
+    /**
+     * FMT chunck
+     * @param format The content of the chunck
+     */
+    private void readFMTChunck(ByteBuffer format) {
+        this.m_formatChunckSize = format.limit();
+        if (this.m_formatChunckSize < STANDARD_FMT_CHUNCK) {
+            System.out.println("Size of the format chunck is not yet recognised.");
+            return;
+        }
+        this.m_audioFormat = format.getShort(0) & 0xFFFF;
+        this.m_nbChannels = format.getShort(2) & 0xFFFF;
+        this.m_sampleRate = format.getInt(4);
+        this.m_bytesRate = format.getInt(8);
+        this.m_nbBlockAligned = format.getShort(12) & 0xFFFF;
+        this.m_bitsPerSample = format.getShort(14) & 0xFFFF;
+        // The actual format of an extensible chunck is the start of its sub format
+        if (this.m_audioFormat == FORMAT_EXTENSIBLE && this.m_formatChunckSize >= EXTENSIBLE_FMT_CHUNCK) {
+            this.m_audioFormat = format.getShort(24) & 0xFFFF;
+        }
+        if (this.m_audioFormat != FORMAT_PCM && this.m_audioFormat != FORMAT_FLOAT) {
+            System.out.println("Audio format " + this.m_audioFormat + " is not supported, only PCM and IEEE float are.");
         }
     }
 
@@ -158,11 +349,175 @@ public class WaveReader {
      * @throws IOException
      */
     private void readRawSound() throws IOException {
-        int data;
-        for(int i = 0; i < this.m_nbSamples; i++) {
-            data = this.readLittleEndianInt(BYTES_INT16);
-            this.m_normalizedData[i] = (double) data / INT16_MAX;
+        this.readSamples(this.m_normalizedData, 0, this.m_nbSamples);
+    }
+
+    /**
+     * Decode the next frames into one of the destinations
+     * @param dst The double destination, null to use floatDst
+     * @param floatDst The float destination
+     * @param offset The index of the first value in the destination
+     * @param nbFrames The maximal number of frames to read
+     * @param mix True to average the channels of a frame, false to interleave them
+     * @return The number of frames read
+     */
+    private int readFrames(double[] dst, float[] floatDst, int offset, int nbFrames, boolean mix) throws IOException {
+        int bytesPerFrame = this.m_nbChannels * this.m_bytesPerSample;
+        int toRead = Math.min(nbFrames, this.m_nbSamples - this.m_nbSamplesRead);
+        if (toRead <= 0) {
+            return 0;
         }
+        int valuesPerFrame = mix ? 1 : this.m_nbChannels;
+
+        // Mapped file: decode in place
+        if (this.m_mappedData != null) {
+            this.decode(this.m_mappedData, this.m_nbSamplesRead * bytesPerFrame, toRead, mix, dst, floatDst, offset);
+            this.m_nbSamplesRead += toRead;
+            return toRead;
+        }
+
+        // Stream: decode by blocks of whole frames
+        if (this.m_readBuffer == null) {
+            this.m_readBuffer = ByteBuffer.allocate(Math.max(bytesPerFrame, READ_BUFFER_SIZE - READ_BUFFER_SIZE % bytesPerFrame))
+                                          .order(ByteOrder.LITTLE_ENDIAN);
+        }
+        int framesPerRead = this.m_readBuffer.capacity() / bytesPerFrame;
+        int done = 0;
+        while (done < toRead) {
+            int frames = Math.min(toRead - done, framesPerRead);
+            int read = this.readBlock(this.m_readBuffer.array(), frames * bytesPerFrame) / bytesPerFrame;
+            this.decode(this.m_readBuffer, 0, read, mix, dst, floatDst, offset + done * valuesPerFrame);
+            done += read;
+            if (read < frames) {
+                if (!this.m_untilEof) {
+                    System.out.println("Unexpected end of file : " + this.m_filePath + " after " + (this.m_nbSamplesRead + done) + " samples.");
+                }
+                this.m_nbSamples = this.m_nbSamplesRead + done;
+                this.m_duration = (double) this.m_nbSamples / this.m_sampleRate;
+                break;
+            }
+        }
+        this.m_nbSamplesRead += done;
+        return done;
+    }
+
+    /**
+     * Decode frames from little-endian bytes into normalized values
+     */
+    private void decode(ByteBuffer src, int position, int nbFrames, boolean mix, double[] dst, float[] floatDst, int offset) {
+        int bytesPerSample = this.m_bytesPerSample;
+        int index = offset;
+        // Most common case: mono 16-bit PCM
+        if (this.m_nbChannels == 1 && this.m_audioFormat == FORMAT_PCM && bytesPerSample == BYTES_INT16 && dst != null) {
+            for (int f = 0; f < nbFrames; f++) {
+                dst[index + f] = (double) src.getShort(position + f * BYTES_INT16) / INT16_MAX;
+            }
+            return;
+        }
+        for (int f = 0; f < nbFrames; f++) {
+            if (mix) {
+                double sum = 0;
+                for (int c = 0; c < this.m_nbChannels; c++) {
+                    sum += this.decodeSample(src, position + c * bytesPerSample);
+                }
+                double value = sum / this.m_nbChannels;
+                if (dst != null) {
+                    dst[index++] = value;
+                } else {
+                    floatDst[index++] = (float) value;
+                }
+            } else {
+                for (int c = 0; c < this.m_nbChannels; c++) {
+                    double value = this.decodeSample(src, position + c * bytesPerSample);
+                    if (dst != null) {
+                        dst[index++] = value;
+                    } else {
+                        floatDst[index++] = (float) value;
+                    }
+                }
+            }
+            position += this.m_nbChannels * bytesPerSample;
+        }
+    }
+
+    /**
+     * 1-byte PCM is unsigned, 2, 3 and 4-byte PCM are signed, float samples are already normalized
+     * The valid bits of a PCM sample are the most significant ones of its bytes: a 12-bit sample
+     * is normalized as a 16-bit one
+     * @param src The bytes
+     * @param position The index of the first byte of the sample
+     * @return The sample normalized by the largest positive value of its bytes
+     */
+    private double decodeSample(ByteBuffer src, int position) {
+        if (this.m_audioFormat == FORMAT_FLOAT) {
+            return this.m_bytesPerSample == Double.BYTES ? src.getDouble(position) : src.getFloat(position);
+        }
+        switch (this.m_bytesPerSample) {
+            case 1:
+                return (double) ((src.get(position) & 0xFF) - 128) / INT8_MAX;
+            case 2:
+                return (double) src.getShort(position) / INT16_MAX;
+            case 3:
+                int value = (src.get(position) & 0xFF) | (src.get(position + 1) & 0xFF) << 8 | src.get(position + 2) << 16;
+                return (double) value / INT24_MAX;
+            case 4:
+                return (double) src.getInt(position) / Integer.MAX_VALUE;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Read up to length bytes of the stream, fewer only at the end of the file
+     * @return The number of bytes read
+     */
+    private int readBlock(byte[] dst, int length) throws IOException {
+        int done = 0;
+        while (done < length) {
+            int read = this.m_dataStream.read(dst, done, length - done);
+            if (read < 0) {
+                break;
+            }
+            done += read;
+        }
+        return done;
+    }
+
+    /**
+     * Skip bytes of the stream
+     */
+    private void skip(long length) throws IOException {
+        long done = 0;
+        while (done < length) {
+            long skipped = this.m_dataStream.skip(length - done);
+            if (skipped <= 0) {
+                if (this.m_dataStream.read() < 0) {
+                    throw new EOFException("No data chunck in file : " + this.m_filePath + ".");
+                }
+                skipped = 1;
+            }
+            done += skipped;
+        }
+    }
+
+    /**
+     * @return The four characters identifying a chunck
+     */
+    private static String readId(ByteBuffer buffer, int position) {
+        byte[] id = new byte[BYTES_INT32];
+        for (int i = 0; i < BYTES_INT32; i++) {
+            id[i] = buffer.get(position + i);
+        }
+        return new String(id, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * @return A little-endian view of [start, start + length[ sharing the bytes of buffer
+     */
+    private static ByteBuffer slice(ByteBuffer buffer, int start, int length) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(start).limit(start + length);
+        return view.slice().order(ByteOrder.LITTLE_ENDIAN);
     }
 
     /**
@@ -210,17 +565,6 @@ public class WaveReader {
         return res;
     }
 
-    /**
-     * Skip a line
-     */
-    private void skipLine() {
-        try {
-            this.m_dataStream.readByte();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-    }
-
     /*****************************************
      *
      * Getters
@@ -232,6 +576,8 @@ public class WaveReader {
 
     public int getBitsPerSample() { return this.m_bitsPerSample; }
 
+    public int getNbChannels() { return this.m_nbChannels; }
+
     public double[] getData(){ return this.m_normalizedData; }
 
     public double getDuration(){return this.m_duration; }
@@ -24,9 +24,14 @@ import fr.pops.math.ArrayUtil;
 import fr.pops.math.ndarray.BaseNDArray;
 import fr.pops.math.ndarray.INDArray;
 import fr.pops.math.ndarray.Shape;
+import fr.pops.optimizer.Optimizer;
 import org.json.JSONObject;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class Bias implements IRecordable {
@@ -39,6 +44,7 @@ public class Bias implements IRecordable {
     private INDArray value;
     private INDArray gradient;
     private INDArray learningRates;
+    private INDArray firstMoments;
 
     /*****************************************
      *
@@ -85,6 +91,7 @@ public class Bias implements IRecordable {
         this.value = new BaseNDArray.BaseNDArrayBuilder().ones(nbNeuron).build();
         this.gradient = new BaseNDArray.BaseNDArrayBuilder().zeros(nbNeuron).build();
         this.learningRates = new BaseNDArray.BaseNDArrayBuilder().zeros(nbNeuron).build();
+        this.firstMoments = new BaseNDArray.BaseNDArrayBuilder().zeros(nbNeuron).build();
     }
 
     /**
@@ -94,6 +101,7 @@ public class Bias implements IRecordable {
         this.value = new BaseNDArray.BaseNDArrayBuilder().zeros(shape).build();
         this.gradient = new BaseNDArray.BaseNDArrayBuilder().zeros(shape).build();
         this.learningRates = new BaseNDArray.BaseNDArrayBuilder().zeros(shape).build();
+        this.firstMoments = new BaseNDArray.BaseNDArrayBuilder().zeros(shape).build();
     }
 
     /**
@@ -103,14 +111,16 @@ public class Bias implements IRecordable {
         this.value = new BaseNDArray.BaseNDArrayBuilder().ones(shape).build();
         this.gradient = new BaseNDArray.BaseNDArrayBuilder().zeros(shape).build();
         this.learningRates = new BaseNDArray.BaseNDArrayBuilder().zeros(shape).build();
+        this.firstMoments = new BaseNDArray.BaseNDArrayBuilder().zeros(shape).build();
     }
 
     /**
      * Compute individual gradients of the biases
+     * The errors of the samples of a mini-batch are summed
      * @param sigma The error from the from the previous layer
      */
     public void computeBiasesIndividualGradient(INDArray sigma){
-        completeGradient(sigma);
+        ArrayUtil.addSamples(sigma, this.gradient);
     }
 
     /**
@@ -118,14 +128,50 @@ public class Bias implements IRecordable {
      * @param gradient The gradient to add to already computed gradients
      */
     public void completeGradient(INDArray gradient){
-        this.gradient =  ArrayUtil.add(this.gradient, gradient);
+        ArrayUtil.addInPlace(this.gradient, gradient);
+    }
+
+    /**
+     * Copy for a worker of a data-parallel training
+     * @return A bias sharing these values, with its own gradient
+     */
+    public Bias replicate(){
+        Bias res = new Bias();
+        res.value = this.value;
+        res.gradient = new BaseNDArray.BaseNDArrayBuilder().zeros(this.gradient.getShape()).build();
+        res.learningRates = this.learningRates;
+        res.firstMoments = this.firstMoments;
+        return res;
+    }
+
+    /**
+     * Copy holding its own values, for a frozen snapshot of a network
+     * @return A bias with a copy of these values and its own gradient
+     */
+    public Bias copy(){
+        Bias res = this.replicate();
+        res.value = this.value.dup();
+        return res;
+    }
+
+    /**
+     * Update the values in place from the gradient
+     * The bias is left out of the weight decay
+     * @param optimizer The update rule
+     * @param learningRate The learning rate
+     * @param batchSize The number of samples the gradient is summed over
+     */
+    public void update(Optimizer optimizer, double learningRate, int batchSize){
+        optimizer.update(this.value, this.gradient, this.firstMoments, this.learningRates, learningRate, batchSize, false);
     }
 
     /**
      * Clear the gradient
      */
     public void clearGradient(){
-        this.gradient = new BaseNDArray.BaseNDArrayBuilder().zeros(this.value.getShape().getSize()).build();
+        // The gradient is cleared in place and keeps the shape of the bias
+        int offset = this.gradient.getOffset();
+        Arrays.fill(this.gradient.getData(), offset, offset + this.gradient.getShape().getSize(), 0.0d);
     }
 
     /*****************************************
@@ -148,6 +194,21 @@ public class Bias implements IRecordable {
      */
     public INDArray getLearningRates(){return this.learningRates;}
 
+    /**
+     * @return The arrays holding the values of the bias, as saved in the checkpoints
+     */
+    public List<INDArray> getParameters(){ return new ArrayList<>(Collections.singletonList(this.value)); }
+
+    /**
+     * @return The arrays holding the gradient of the bias, in the order of the parameters
+     */
+    public List<INDArray> getGradients(){ return new ArrayList<>(Collections.singletonList(this.gradient)); }
+
+    /**
+     * @return The arrays holding the state of the optimizer, as saved in the checkpoints
+     */
+    public List<INDArray> getOptimizerStates(){ return new ArrayList<>(Arrays.asList(this.learningRates, this.firstMoments)); }
+
     /*****************************************
      *
      * Setters
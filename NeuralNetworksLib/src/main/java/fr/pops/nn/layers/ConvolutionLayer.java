@@ -21,6 +21,7 @@
 package fr.pops.nn.layers;
 
 import fr.pops.activator.Activator;
+import fr.pops.math.Convolution;
 import fr.pops.math.ndarray.BaseNDArray;
 import fr.pops.math.ndarray.INDArray;
 import fr.pops.math.ndarray.Shape;
@@ -45,9 +46,8 @@ public class ConvolutionLayer extends Layer {
     private Shape kernelShape;
     private int stride;
     private int padding;
-    private int sigmaPadding;
-    private Shape transmitterKernelShape;
     private Shape previousLayerActivationsShape;
+    private Convolution convolution;
     private boolean nInSpecified;
     protected Bias bias;
 
@@ -98,8 +98,7 @@ public class ConvolutionLayer extends Layer {
     @Override
     public void initializeWeights(int nIn){
         this.kernelShape = new Shape(this.kernelShape.getXAxisLength(), this.kernelShape.getYAxisLength(), nIn);
-        this.transmitterKernelShape = new Shape(this.kernelShape.getXAxisLength(), this.kernelShape.getYAxisLength(), this.nOut);
-        this.weight = new KernelFilter(this.weightsInitMethod, this.kernelShape, nIn, this.nOut);
+        this.weight = new KernelFilter(this.weightsInitMethod, this.kernelShape, nIn, this.nOut, this.convolution);
     }
 
     /**
@@ -124,28 +123,21 @@ public class ConvolutionLayer extends Layer {
         this.previousLayerActivationsShape = previousLayer.getActivations().getShape();
 
         /*
-         * Initialize the weights
-         * Need to be done here since nIn might have not been properly defined
-         */
-        this.initializeWeights(this.nIn);
-        /*
-         * Previous layer values used to compute the shape of 1 channel of this layer
-         * Retrieve the shape of the first kernel filter, there is at least one
-         * The shape is the same for all of the kernel filters
+         * Build the convolution engine
+         * It defines the shape of 1 channel of this layer from the previous layer values
          */
-        int xAxisLength = 1;
-        int yAxisLength = 1;
-        if (previousLayerActivationsShape.getXAxisLength() > 1 && this.previousLayerActivationsShape.getXAxisLength() > 1){
-            xAxisLength = ((this.previousLayerActivationsShape.getXAxisLength() - this.weight.getValue(0).getShape().getXAxisLength()) / this.stride) + 1;
-            yAxisLength = ((this.previousLayerActivationsShape.getYAxisLength() - this.weight.getValue(0).getShape().getYAxisLength()) / this.stride) + 1;
-        } else {
+        if (this.previousLayerActivationsShape.getXAxisLength() <= 1 || this.previousLayerActivationsShape.getYAxisLength() <= 1){
             System.out.println("Can't initialize a convolution layer from something else than a 2D+ array in the previous layer.");
         }
+        this.convolution = this.buildConvolution();
+        int xAxisLength = this.convolution.getOutputShape().getXAxisLength();
+        int yAxisLength = this.convolution.getOutputShape().getYAxisLength();
 
-        // Cache the padding to add to sigma for backward propagation
-        // TODO: make computation possible with non squared padding
-        int buffer = this.stride * (this.previousLayerActivationsShape.getXAxisLength() - 1) + this.kernelShape.getXAxisLength() - xAxisLength;
-        this.sigmaPadding = buffer % 2 == 0 ? (int)(0.5 * buffer) : 0;
+        /*
+         * Initialize the weights
+         * Need to be done here since nIn might have not been properly defined
+         */
+        this.initializeWeights(this.nIn);
 
         /*
          * The shape of the layer has not been fully configured yet
@@ -154,6 +146,7 @@ public class ConvolutionLayer extends Layer {
          */
         this.z = new BaseNDArray.BaseNDArrayBuilder().zeros(xAxisLength, yAxisLength, nOut).build();
         this.activations = new BaseNDArray.BaseNDArrayBuilder().zeros(xAxisLength, yAxisLength, nOut).build();
+        this.dActivations = new BaseNDArray.BaseNDArrayBuilder().zeros(xAxisLength, yAxisLength, nOut).build();
         this.bias = new Bias(xAxisLength, yAxisLength, nOut);
 
         // The layer is now fully configured
@@ -161,26 +154,37 @@ public class ConvolutionLayer extends Layer {
     }
 
     /**
+     * @return A convolution engine matching the configuration of the layer
+     */
+    private Convolution buildConvolution(){
+        return new Convolution.ConvolutionBuilder().withInputShape(this.previousLayerActivationsShape)
+                                                   .withKernelShape(this.kernelShape.getXAxisLength(), this.kernelShape.getYAxisLength())
+                                                   .withNbFilters(this.nOut)
+                                                   .withStride(this.stride)
+                                                   .withPadding(this.padding)
+                                                   .build();
+    }
+
+    /**
+     * Convolve the activations of the previous layer by every kernel filters at once
+     * Each sample of a mini-batch is convolved into its own slice of z
      * @param previousLayer Previous layer
      */
     @Override
     public void computeZ(Layer previousLayer){
-        // Loop over the kernel filter values
-        INDArray buffer = new BaseNDArray.BaseNDArrayBuilder().zeros(this.activations.getShape()).build();
-        for (int i = 0; i < this.nOut; i++){
-            INDArray convolution = ArrayUtil.convolve(previousLayer.getActivations(), this.weight.getValue(i), this.stride);
-            buffer.merge(convolution, i);
-        }
+        this.ensureBatchSize(previousLayer.getBatchSize());
+        this.convolution.forward(previousLayer.getActivations(), this.weight.getPackedValues(), this.z);
         // Add the bias, this should be a list of values and should be added in the loop
-        this.z = ArrayUtil.add(buffer, this.bias.getValue());
+        ArrayUtil.addToSamples(this.z, this.bias.getValue());
     }
 
     /**
      * Apply the selected non-linear function to the previously computed z
+     * The derivative is computed at the same time for the backward pass
      */
     @Override
     public void activate(){
-        this.activations = Activator.activate(this.activationFunction, this.z);
+        Activator.activateAndDerive(this.activationFunction, this.z, this.activations, this.dActivations);
     }
 
     /**
@@ -198,42 +202,32 @@ public class ConvolutionLayer extends Layer {
 
     /**
      * Transmit the sigma to the designated layer
+     * The error is multiplied by the transposed filters and scattered back
+     * onto the previous layer's activations shape with col2im
      * @param layer The previous layer to transmit the to
      */
     @Override
     public void transmitSigma(Layer layer) {
-        // Add padding to sigma per every channel
-        INDArray sigmaToConvolve = ArrayUtil.addPadding(this.sigma, this.sigmaPadding);
-
-        // Loop over every previous layer channels
-        INDArray buffer = new BaseNDArray.BaseNDArrayBuilder().zeros(this.previousLayerActivationsShape).build();
-        for (int i = 0; i < this.previousLayerActivationsShape.getZAxisLength(); i++){
-            // Loop over all kernel filters of this layer to extract 1 channel
-            // to be used to convolve with sigma
-            INDArray transmitterKernel = new BaseNDArray.BaseNDArrayBuilder().zeros(this.transmitterKernelShape).build();
-            for (int w = 0; w < this.nOut; w++){
-                transmitterKernel.merge(this.weight.getValue(w).extractChannel(i).rot180(), w);
-            }
-            // Make a convolution between padded sigma and each i-th channel of the kernel filters flipped 180deg
-            buffer.merge(ArrayUtil.convolve(sigmaToConvolve, transmitterKernel, this.stride), i);
-        }
-        // Compute the Hadamard product between the computation above and the previous layer's z array
-        INDArray sigmaToTransmit = ArrayUtil.hadamard(buffer, layer.getZ());
+        INDArray sigmaToTransmit = this.getSigmaToTransmit(layer);
+        this.convolution.backwardData(this.sigma, this.weight.getPackedValues(), sigmaToTransmit);
+        // Compute the Hadamard product with the derivative of the previous layer's activation function
+        ArrayUtil.hadamardInPlace(sigmaToTransmit, layer.getDActivations());
         layer.setSigma(sigmaToTransmit);
     }
 
     /**
      * Update the internal values such as internal weights and/or bias
      * @param baseLearningRate The learning rate to use to update the internal values
-     * @param optimizer The optimizer to use
+     * @param batchSize The batch size defined for mini-batch training
+     * @param optimizer The update rule, each array is updated in place in a single pass
      */
     @Override
-    public void updateInternalState(double baseLearningRate,  int batchSize, EnumCst.Optimizer optimizer){
+    public void updateInternalState(double baseLearningRate, int batchSize, Optimizer optimizer){
         // Update the weight array
-        updateWeights(baseLearningRate, batchSize, optimizer);
+        this.weight.update(optimizer, baseLearningRate, batchSize);
 
         // Update the bias array
-        updateBias(baseLearningRate, batchSize, optimizer);
+        this.bias.update(optimizer, baseLearningRate, batchSize);
     }
 
     /**
@@ -247,65 +241,23 @@ public class ConvolutionLayer extends Layer {
         this.bias.clearGradient();
     }
 
-    /*****************************************
-     *
-     * Update methods
-     *
-     *****************************************/
     /**
-     * The method is used to update the weight array between the previous layer and this one
-     * Computes the following equation:
-     *      *  X (t + 1) = X (t) - (alpha / m) * grad(X)
-     * @param learningRate The learning rate used to update the bias values
-     * @param batchSize The batch size defined for mini-batch training
-     * @param optimizer Specify the optimizer to use to update the values:
-     *                      -   NONE
-     *                      -   Adagrad
+     * The convolution engine holds a scratch buffer, each replica gets its own
      */
-    private void updateWeights(double learningRate, int batchSize, EnumCst.Optimizer optimizer){
-        // Initialisation
-        INDArray lambdaWeights;
-        if (optimizer == EnumCst.Optimizer.ADAGRAD){
-            lambdaWeights = Optimizer.updateLearningRates(learningRate,
-                    this.weight.getLearningRates(),
-                    this.weight.getGradient());
-        } else {
-            double eta = (-1) * learningRate / batchSize;
-            lambdaWeights = ArrayUtil.apply(x -> x * eta, new BaseNDArray.BaseNDArrayBuilder().ones(this.weight.getValue(0).getShape()).build());
-        }
-        // Actual update
-        for (int w = 0; w < this.nOut; w++){
-            INDArray weightsGrad = ArrayUtil.hadamard(lambdaWeights, this.weight.getGradient(w));
-            INDArray weightsUpdate = ArrayUtil.add(this.weight.getValue(w), weightsGrad);
-            this.weight.setValue(w, weightsUpdate);
-        }
+    @Override
+    protected void replicateState(){
+        this.convolution = this.buildConvolution();
+        this.weight = this.weight.replicate(this.convolution);
+        this.bias = this.bias.replicate();
     }
 
     /**
-     * This method is used to update the bias array of this layer
-     * Computes the following equation:
-     *      *  X (t + 1) = X (t) - (alpha / m) * grad(X)
-     * @param learningRate The learning rate used to update the bias values
-     * @param batchSize The batch size defined for mini-batch training
-     * @param optimizer Specify the optimizer to use to update the values:
-     *                      -   NONE
-     *                      -   Adagrad
+     * The filters and the bias are copied
      */
-    private void updateBias(double learningRate, int batchSize, EnumCst.Optimizer optimizer){
-        // Initialisation
-        INDArray lambdaBiases;
-        if (optimizer == EnumCst.Optimizer.ADAGRAD){
-            lambdaBiases = Optimizer.updateLearningRates(learningRate,
-                    this.bias.getLearningRates(),
-                    this.bias.getGradient());
-        } else {
-            double eta = (-1) * learningRate / batchSize;
-            lambdaBiases = ArrayUtil.apply(x -> x * eta,  new BaseNDArray.BaseNDArrayBuilder().ones(this.bias.getGradient().getShape()).build());
-        }
-        // Actual update
-        INDArray biasGrad = ArrayUtil.hadamard(lambdaBiases, this.bias.getGradient());
-        INDArray biasUpdate = ArrayUtil.add(this.bias.getValue(), biasGrad);
-        this.bias.setValue(biasUpdate);
+    @Override
+    public void detachParameters(){
+        this.weight = this.weight.copy();
+        this.bias = this.bias.copy();
     }
 
     /*****************************************
@@ -417,14 +369,22 @@ public class ConvolutionLayer extends Layer {
         }
 
         /**
-         * Padding is not a working feature yet
+         * @param padding The zero padding to add around the activations
+         * @return The builder itself
+         */
+        public ConvolutionLayerBuilder withPadding(int padding){
+            this.padding = padding;
+            return this;
+        }
+
+        /**
          * @param padding The padding to add around the activations
          * @return The builder itself
+         * @deprecated Padding is now supported, use withPadding
          */
         @Deprecated
         public ConvolutionLayerBuilder withPaddingUnsafe(int padding){
-            this.padding = padding;
-            return this;
+            return this.withPadding(padding);
         }
 
         public ConvolutionLayerBuilder withActivationFunction(EnumCst.ActivationFunction activationFunction){
@@ -22,7 +22,6 @@
 package fr.pops.nn.layers;
 
 import fr.pops.activator.Activator;
-import fr.pops.math.ArrayUtil;
 import fr.pops.nn.weights.weight.StandardWeight;
 import fr.pops.nn.weights.weight.Weight;
 import fr.pops.nn.bias.Bias;
@@ -96,6 +95,7 @@ public class DenseLayer extends Layer {
 
         // Initialize the fr.pops.main structures of the layer
         this.activations = new BaseNDArray.BaseNDArrayBuilder().zeros(nOut).build();
+        this.dActivations = new BaseNDArray.BaseNDArrayBuilder().zeros(nOut).build();
         this.bias = new Bias(nOut);
         this.z = new BaseNDArray.BaseNDArrayBuilder().zeros(nOut).build();
 
@@ -106,20 +106,24 @@ public class DenseLayer extends Layer {
      * Reshape the data from the previous layer to fit
      * the shape of the data expected in a dense layer.
      * Turns every INDArray to a flat vectorized one.
+     * A mini-batch goes through a single matrix-matrix product
      * @param previousLayer Previous layer
      */
     @Override
     public void computeZ(Layer previousLayer){
+        this.ensureBatchSize(previousLayer.getBatchSize());
         // Compute z
-        this.z = fr.pops.math.ArrayUtil.add(fr.pops.math.ArrayUtil.dot(this.weight.getValue(), previousLayer.getActivations()), this.bias.getValue());
+        fr.pops.math.ArrayUtil.dot(this.weight.getValue(), previousLayer.getActivations(), this.z);
+        fr.pops.math.ArrayUtil.addToSamples(this.z, this.bias.getValue());
     }
 
     /**
      * Apply the selected non-linear function to the previously computed z
+     * The derivative is computed at the same time for the backward pass
      */
     @Override
     public void activate(){
-        this.activations = Activator.activate(this.activationFunction, this.z);
+        Activator.activateAndDerive(this.activationFunction, this.z, this.activations, this.dActivations);
     }
 
     /**
@@ -131,7 +135,7 @@ public class DenseLayer extends Layer {
     @Override
     public INDArray computeSigmaUnsafe(Weight weight, INDArray sigma){
         INDArray eta = Activator.dActivate(this.dActivationFunction, this.z);
-        INDArray weightsT =  fr.pops.math.ArrayUtil.transpose(weight.getValue());
+        INDArray weightsT =  weight.getValue().transposeView();
         INDArray tmp = fr.pops.math.ArrayUtil.dot(weightsT, sigma);
         return fr.pops.math.ArrayUtil.hadamard(eta, tmp);
     }
@@ -142,10 +146,9 @@ public class DenseLayer extends Layer {
      */
     @Override
     public void transmitSigma(Layer layer) {
-        INDArray eta = Activator.dActivate(layer.getDActivationFunction(), layer.getZ());
-        INDArray weightsT =  fr.pops.math.ArrayUtil.transpose(this.weight.getValue());
-        INDArray tmp = fr.pops.math.ArrayUtil.dot(weightsT, this.sigma);
-        INDArray sigmaToTransmit = fr.pops.math.ArrayUtil.hadamard(eta, tmp);
+        INDArray weightsT =  this.weight.getValue().transposeView();
+        INDArray sigmaToTransmit = fr.pops.math.ArrayUtil.dot(weightsT, this.sigma, this.getSigmaToTransmit(layer));
+        fr.pops.math.ArrayUtil.hadamardInPlace(sigmaToTransmit, layer.getDActivations());
         layer.setSigma(sigmaToTransmit);
     }
 
@@ -153,17 +156,15 @@ public class DenseLayer extends Layer {
      * Update the internal values such as internal weights and/or bias
      * @param baseLearningRate The learning rate to use to update the internal values
      * @param batchSize The batch size defined for mini-batch training
-     * @param optimizer Specify the optimizer to use to update the values:
-     *                      -   NONE
-     *                      -   Adagrad
+     * @param optimizer The update rule, each array is updated in place in a single pass
      */
     @Override
-    public void updateInternalState(double baseLearningRate, int batchSize, EnumCst.Optimizer optimizer){
+    public void updateInternalState(double baseLearningRate, int batchSize, Optimizer optimizer){
         // Update the weight array
-        updateWeights(baseLearningRate, batchSize, optimizer);
+        this.weight.update(optimizer, baseLearningRate, batchSize);
 
         // Update the bias array
-        updateBias(baseLearningRate, batchSize, optimizer);
+        this.bias.update(optimizer, baseLearningRate, batchSize);
     }
 
     /**
@@ -175,63 +176,22 @@ public class DenseLayer extends Layer {
         this.bias.clearGradient();
     }
 
-    /*****************************************
-     *
-     * Update methods
-     *
-     *****************************************/
     /**
-     * The method is used to update the weight array between the previous layer and this one
-     * Computes the following equation:
-     *      *  X (t + 1) = X (t) - (alpha / m) * grad(X)
-     * @param learningRate The learning rate used to update the bias values
-     * @param batchSize The batch size defined for mini-batch training
-     * @param optimizer Specify the optimizer to use to update the values:
-     *                      -   NONE
-     *                      -   Adagrad
+     * The replica gets its own gradients over the shared weights and bias
      */
-    private void updateWeights(double learningRate, int batchSize, EnumCst.Optimizer optimizer){
-        // Initialisation
-        INDArray lambdaWeights;
-        if (optimizer == EnumCst.Optimizer.ADAGRAD){
-             lambdaWeights = Optimizer.updateLearningRates(learningRate,
-                     this.weight.getLearningRates(),
-                    this.weight.getGradient());
-        } else {
-             double eta = (-1) * learningRate / batchSize;
-             lambdaWeights = fr.pops.math.ArrayUtil.apply(x -> x * eta, new BaseNDArray.BaseNDArrayBuilder().ones(this.weight.getGradient().getShape()).build());
-        }
-        // Actual update
-        INDArray weightsGrad = fr.pops.math.ArrayUtil.hadamard(lambdaWeights, this.weight.getGradient());
-        INDArray weightsUpdate = fr.pops.math.ArrayUtil.add(this.weight.getValue(), weightsGrad);
-        this.weight.setValue(weightsUpdate);
+    @Override
+    protected void replicateState(){
+        this.weight = this.weight == null ? null : this.weight.replicate();
+        this.bias = this.bias == null ? null : this.bias.replicate();
     }
 
     /**
-     * This method is used to update the bias array of this layer
-     * Computes the following equation:
-     *      *  X (t + 1) = X (t) - (alpha / m) * grad(X)
-     * @param learningRate The learning rate used to update the bias values
-     * @param batchSize The batch size defined for mini-batch training
-     * @param optimizer Specify the optimizer to use to update the values:
-     *                      -   NONE
-     *                      -   Adagrad
+     * The weights and the bias are copied
      */
-    private void updateBias(double learningRate, int batchSize, EnumCst.Optimizer optimizer){
-        // Initialisation
-        INDArray lambdaBiases;
-        if (optimizer == EnumCst.Optimizer.ADAGRAD){
-            lambdaBiases = Optimizer.updateLearningRates(learningRate,
-                    this.bias.getLearningRates(),
-                    this.bias.getGradient());
-        } else {
-            double eta = (-1) * learningRate / batchSize;
-            lambdaBiases = fr.pops.math.ArrayUtil.apply(x -> x * eta,  new BaseNDArray.BaseNDArrayBuilder().ones(this.bias.getGradient().getShape()).build());
-        }
-        // Actual update
-        INDArray biasGrad = fr.pops.math.ArrayUtil.hadamard(lambdaBiases, this.bias.getGradient());
-        INDArray biasUpdate = ArrayUtil.add(this.bias.getValue(), biasGrad);
-        this.bias.setValue(biasUpdate);
+    @Override
+    public void detachParameters(){
+        this.weight = this.weight == null ? null : this.weight.copy();
+        this.bias = this.bias == null ? null : this.bias.copy();
     }
 
     /*****************************************
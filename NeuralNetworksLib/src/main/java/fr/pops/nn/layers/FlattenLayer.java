@@ -27,9 +27,9 @@ import fr.pops.math.ndarray.Shape;
 import fr.pops.nn.bias.Bias;
 import fr.pops.nn.weights.weight.StandardWeight;
 import fr.pops.nn.weights.weight.Weight;
+import fr.pops.optimizer.Optimizer;
 import fr.pops.popscst.cst.EnumCst;
 import fr.pops.math.ArrayUtil;
-import fr.pops.math.PopsMath;
 
 public class FlattenLayer extends Layer {
 
@@ -82,21 +82,28 @@ public class FlattenLayer extends Layer {
 
     /**
      * Flatten the previous layer
+     * Each sample of a batch is flattened on its own
      * @param previousLayer Previous layer
      */
     @Override
     public void computeZ(Layer previousLayer) {
+        Shape previousShape = previousLayer.getActivations().getShape();
         INDArray dataToFlatten = new BaseNDArray(previousLayer.getActivations());
-        dataToFlatten.reshape(previousLayer.getActivations().getShape().getSize());
+        dataToFlatten.reshape(previousShape.getSampleSize(), 1, 1, previousShape.getBatchAxisLength());
         this.z = dataToFlatten;
+        // The derivative of the identity, only reallocated when the number of samples changes
+        if (this.dActivations == null || this.dActivations.getShape().getSize() != this.z.getShape().getSize()){
+            this.dActivations = new BaseNDArray.BaseNDArrayBuilder().ones(this.z.getShape()).build();
+        }
     }
 
     /**
      * Activate the layer by applying the identity function to z
+     * The activations are z itself, nothing is copied
      */
     @Override
     public void activate() {
-        this.activations = ArrayUtil.apply(PopsMath.identity, this.z);
+        this.activations = this.z;
     }
 
     /**
@@ -107,7 +114,7 @@ public class FlattenLayer extends Layer {
     @Override
     public INDArray computeSigmaUnsafe(Weight weight, INDArray sigma) {
         INDArray eta = Activator.dActivate(this.dActivationFunction, this.z);
-        INDArray weightsT =  ArrayUtil.transpose(weight.getValue());
+        INDArray weightsT =  weight.getValue().transposeView();
         INDArray tmp = ArrayUtil.dot(weightsT, sigma);
         this.sigma = ArrayUtil.hadamard(eta, tmp);
         this.sigma.reshape(this.previousLayerShape);
@@ -126,7 +133,7 @@ public class FlattenLayer extends Layer {
     @Override
     public void transmitSigma(Layer layer) {
         INDArray sigmaToTransmit = new BaseNDArray(this.sigma);
-        sigmaToTransmit.reshape(this.previousLayerShape);
+        sigmaToTransmit.reshape(new Shape(this.previousLayerShape, this.sigma.getShape().getBatchAxisLength()));
         layer.setSigma(sigmaToTransmit);
     }
 
@@ -136,7 +143,7 @@ public class FlattenLayer extends Layer {
      * @param optimizer The optimizer to use
      */
     @Override
-    public void updateInternalState(double baseLearningRate, int batchSize, EnumCst.Optimizer optimizer) {
+    public void updateInternalState(double baseLearningRate, int batchSize, Optimizer optimizer) {
         // Nothing to be done
     }
 
@@ -21,12 +21,21 @@ package fr.pops.nn.layers;
 
 import fr.pops.math.ndarray.BaseNDArray;
 import fr.pops.math.ndarray.INDArray;
+import fr.pops.math.ndarray.Shape;
 import fr.pops.nn.bias.Bias;
 import fr.pops.nn.weights.weight.Weight;
+import fr.pops.optimizer.Optimizer;
 import fr.pops.popscst.cst.EnumCst;
 
 public class InputLayer extends Layer {
 
+    /*****************************************
+     *
+     * Attributes
+     *
+     *****************************************/
+    private Shape inputShape;
+
     /*****************************************
      *
      * Ctor
@@ -56,6 +65,7 @@ public class InputLayer extends Layer {
         }
 
         this.activations = new BaseNDArray.BaseNDArrayBuilder().zeros(shape).build();
+        this.inputShape = this.activations.getShape();
         this.isReady = true;
     }
 
@@ -114,7 +124,7 @@ public class InputLayer extends Layer {
      * @param optimizer The optimizer to use
      */
     @Override
-    public void updateInternalState(double baseLearningRate, int batchSize, EnumCst.Optimizer optimizer) {
+    public void updateInternalState(double baseLearningRate, int batchSize, Optimizer optimizer) {
         // Nothing to be done
     }
 
@@ -134,4 +144,13 @@ public class InputLayer extends Layer {
     public Bias getBias() {
         return null;
     }
+
+    /**
+     * The activations take the shape of the data fed to the network,
+     * mini-batches included
+     * @return The shape of one sample given to the input layer
+     */
+    public Shape getInputShape() {
+        return this.inputShape;
+    }
 }
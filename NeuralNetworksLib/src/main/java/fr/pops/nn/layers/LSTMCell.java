@@ -25,6 +25,7 @@ import fr.pops.math.ndarray.INDArray;
 import fr.pops.nn.bias.Bias;
 import fr.pops.nn.weights.weight.StandardWeight;
 import fr.pops.nn.weights.weight.Weight;
+import fr.pops.optimizer.Optimizer;
 import fr.pops.popscst.cst.EnumCst;
 import fr.pops.popscst.defaultvalues.LayerDefaultValues;
 import fr.pops.popsmath.PopsMath;
@@ -180,7 +181,7 @@ public class LSTMCell extends Layer {
      * @param optimizer The optimizer to use
      */
     @Override
-    public void updateInternalState(double baseLearningRate, int batchSize, EnumCst.Optimizer optimizer) {
+    public void updateInternalState(double baseLearningRate, int batchSize, Optimizer optimizer) {
 
     }
 
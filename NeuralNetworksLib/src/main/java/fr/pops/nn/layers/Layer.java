@@ -22,17 +22,22 @@ package fr.pops.nn.layers;
 import fr.pops.activator.Activator;
 import fr.pops.jsonparser.IRecordable;
 import fr.pops.math.ArrayUtil;
+import fr.pops.math.ndarray.BaseNDArray;
 import fr.pops.math.ndarray.INDArray;
+import fr.pops.math.ndarray.Shape;
 import fr.pops.nn.bias.Bias;
 import fr.pops.nn.weights.weight.Weight;
+import fr.pops.optimizer.Optimizer;
 import fr.pops.popscst.cst.EnumCst;
 import org.json.JSONObject;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
-public abstract class Layer implements Serializable, IRecordable {
+public abstract class Layer implements Serializable, Cloneable, IRecordable {
 
     /*****************************************
      *
@@ -47,9 +52,14 @@ public abstract class Layer implements Serializable, IRecordable {
     protected int nOut;
     protected INDArray z;
     protected INDArray activations;
+    protected INDArray dActivations;
     protected INDArray sigma;
     protected boolean isReady;
 
+    // Workspaces of the backward pass, reused from one mini-batch to the next
+    protected INDArray sigmaToTransmit;
+    private INDArray outputSigma;
+
     /*****************************************
      *
      * Methods to override
@@ -89,8 +99,11 @@ public abstract class Layer implements Serializable, IRecordable {
      * @param error The initial error relative to the label
      */
     public void initializeSigma(INDArray error){
-        this.sigma =  ArrayUtil.hadamard(Activator.dActivate(this.dActivationFunction, this.z),
-                                  error);
+        INDArray dActivations = this.getDActivations();
+        if (this.outputSigma == null || this.outputSigma.getShape().getSize() != dActivations.getShape().getSize()){
+            this.outputSigma = new BaseNDArray.BaseNDArrayBuilder().zeros(dActivations.getShape()).build();
+        }
+        this.sigma = ArrayUtil.hadamardInto(dActivations, error, this.outputSigma);
     }
 
     /**
@@ -111,15 +124,92 @@ public abstract class Layer implements Serializable, IRecordable {
     /**
      * Update the internal values such as internal weights and/or bias
      * @param baseLearningRate The learning rate to use to update the internal values
-     * @param optimizer The optimizer to use
+     * @param optimizer The update rule of the network
      */
-    public abstract void updateInternalState(double baseLearningRate, int batchSize, EnumCst.Optimizer optimizer);
+    public abstract void updateInternalState(double baseLearningRate, int batchSize, Optimizer optimizer);
 
     /**
      * Clear the internal states
      */
     public void clearInternalState(){}
 
+    /**
+     * Copy the engines holding scratch buffers, the weights and the bias of a replica
+     * The values of the weights and bias must stay shared with the original layer
+     */
+    protected void replicateState(){}
+
+    /**
+     * Give the layer its own copy of the weights and bias, to be called on a replica
+     * The updates of the layer it was replicated from do not reach it anymore
+     */
+    public void detachParameters(){}
+
+    /*****************************************
+     *
+     * Replication
+     *
+     *****************************************/
+    /**
+     * Copy of the layer for a worker of a data-parallel training
+     * The replica shares the values of the weights and bias of this layer,
+     * it has its own activations, errors and gradients
+     * @return The replica
+     */
+    public Layer replicate(){
+        Layer res;
+        try {
+            res = (Layer) super.clone();
+        } catch (CloneNotSupportedException e){
+            System.out.println("Unable to replicate the layer " + this.type + ".");
+            return null;
+        }
+        res.z = this.z == null ? null : this.z.dup();
+        res.activations = this.activations == null ? null : this.activations.dup();
+        res.dActivations = this.dActivations == null ? null : this.dActivations.dup();
+        res.sigma = null;
+        res.sigmaToTransmit = this.sigmaToTransmit == null ? null : this.sigmaToTransmit.dup();
+        res.outputSigma = null;
+        res.replicateState();
+        return res;
+    }
+
+    /*****************************************
+     *
+     * Batch handling
+     *
+     *****************************************/
+    /**
+     * Resize the buffers of the layer to hold a mini-batch
+     * They are only reallocated when the number of samples changes
+     * @param batchSize The number of samples going through the layer
+     */
+    protected void ensureBatchSize(int batchSize){
+        if (this.activations == null || this.activations.getShape().getBatchAxisLength() == batchSize){
+            return;
+        }
+        Shape shape = new Shape(this.activations.getShape().getSampleShape(), batchSize);
+        this.z = new BaseNDArray.BaseNDArrayBuilder().zeros(shape).build();
+        this.activations = new BaseNDArray.BaseNDArrayBuilder().zeros(shape).build();
+        if (this.dActivations != null){
+            this.dActivations = new BaseNDArray.BaseNDArrayBuilder().zeros(shape).build();
+        }
+    }
+
+    /**
+     * Workspace receiving the error transmitted to the previous layer
+     * It is only reallocated when the number of samples changes
+     * @param previousLayer The layer the error is transmitted to
+     * @return The workspace, shaped as the activations of the previous layer
+     */
+    protected INDArray getSigmaToTransmit(Layer previousLayer){
+        Shape shape = previousLayer.getActivations().getShape();
+        if (this.sigmaToTransmit == null || this.sigmaToTransmit.getShape().getSize() != shape.getSize()){
+            this.sigmaToTransmit = new BaseNDArray.BaseNDArrayBuilder().zeros(shape).build();
+        }
+        return this.sigmaToTransmit;
+    }
+
     /*****************************************
      *
      * Getters
@@ -131,6 +221,11 @@ public abstract class Layer implements Serializable, IRecordable {
      */
     public boolean isReady(){ return this.isReady; }
 
+    /**
+     * @return The number of samples of the last batch that went through the layer
+     */
+    public int getBatchSize(){ return this.activations == null ? 1 : this.activations.getShape().getBatchAxisLength(); }
+
     /**
      * @return The type of the layer
      */
@@ -161,6 +256,15 @@ public abstract class Layer implements Serializable, IRecordable {
      */
     public INDArray getActivations(){ return this.activations; }
 
+    /**
+     * @return The derivative of the activation function evaluated at z
+     *         It is cached by the layers computing it along with the activations,
+     *         otherwise it is computed on demand
+     */
+    public INDArray getDActivations(){
+        return this.dActivations != null ? this.dActivations : Activator.dActivate(this.dActivationFunction, this.z);
+    }
+
     /**
      * @return The bias of the layer
      */
@@ -186,6 +290,49 @@ public abstract class Layer implements Serializable, IRecordable {
      */
     public abstract Weight getWeight();
 
+    /**
+     * The weights come first, then the bias
+     * @return The arrays holding the trainable values of the layer, as saved in the checkpoints
+     */
+    public List<INDArray> getParameters(){
+        List<INDArray> res = new ArrayList<>();
+        if (this.getWeight() != null){
+            res.addAll(this.getWeight().getParameters());
+        }
+        if (this.getBias() != null){
+            res.addAll(this.getBias().getParameters());
+        }
+        return res;
+    }
+
+    /**
+     * @return The arrays holding the gradients of the layer, in the order of the parameters
+     */
+    public List<INDArray> getGradients(){
+        List<INDArray> res = new ArrayList<>();
+        if (this.getWeight() != null){
+            res.addAll(this.getWeight().getGradients());
+        }
+        if (this.getBias() != null){
+            res.addAll(this.getBias().getGradients());
+        }
+        return res;
+    }
+
+    /**
+     * @return The arrays holding the state of the optimizer, in the order of the parameters
+     */
+    public List<INDArray> getOptimizerStates(){
+        List<INDArray> res = new ArrayList<>();
+        if (this.getWeight() != null){
+            res.addAll(this.getWeight().getOptimizerStates());
+        }
+        if (this.getBias() != null){
+            res.addAll(this.getBias().getOptimizerStates());
+        }
+        return res;
+    }
+
     /*****************************************
      *
      * Setters
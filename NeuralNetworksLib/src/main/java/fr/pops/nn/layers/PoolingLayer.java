@@ -25,11 +25,13 @@ import fr.pops.math.ndarray.INDArray;
 import fr.pops.math.ndarray.Shape;
 import fr.pops.nn.bias.Bias;
 import fr.pops.nn.weights.weight.Weight;
+import fr.pops.optimizer.Optimizer;
+import fr.pops.commoncst.EnumCst.PoolingMethod;
 import fr.pops.popscst.cst.EnumCst;
 import fr.pops.popscst.defaultvalues.LayerDefaultValues;
 import fr.pops.math.ArrayUtil;
-import fr.pops.math.PopsMath;
-import java.util.AbstractMap;
+import fr.pops.math.Pooling;
+import fr.pops.activator.Activator;
 
 public class PoolingLayer extends Layer {
 
@@ -41,7 +43,8 @@ public class PoolingLayer extends Layer {
     private int stride;
     private int padding;
     private Shape kernelShape;
-    private Integer[] mask;
+    private PoolingMethod poolingMethod;
+    private Pooling pooling;
     private Shape previousLayerShape;
 
     /*****************************************
@@ -59,12 +62,17 @@ public class PoolingLayer extends Layer {
     /**
      * @param kernel2DShape The shape to give to the kernel filter in 2D, the depth is defined by nOut
      * @param stride The step to slide the kernel filters across the activation array in the previous layer
+     * @param padding The padding around the activation array in the previous layer
+     * @param poolingMethod The pooling method
      */
-    private PoolingLayer(Shape kernel2DShape, int stride, int padding){
+    private PoolingLayer(Shape kernel2DShape, int stride, int padding, PoolingMethod poolingMethod){
         this.type = EnumCst.LayerTypes.POOLING;
+        this.activationFunction = EnumCst.ActivationFunction.IDENTITY;
+        this.dActivationFunction = EnumCst.DActivationFunction.dIDENTITY;
         this.kernelShape = kernel2DShape;
         this.stride = stride;
         this.padding = padding;
+        this.poolingMethod = poolingMethod;
     }
 
     /*****************************************
@@ -98,9 +106,10 @@ public class PoolingLayer extends Layer {
         this.previousLayerShape = previousLayerActivationsShape;
         int xAxisLength = 1;
         int yAxisLength = 1;
-        if (previousLayerActivationsShape.getXAxisLength() > 1 && previousLayerActivationsShape.getXAxisLength() > 1){
-            xAxisLength = ((previousLayerActivationsShape.getXAxisLength() - this.kernelShape.getXAxisLength()) / this.stride) + 1;
-            yAxisLength = ((previousLayerActivationsShape.getYAxisLength() - this.kernelShape.getYAxisLength()) / this.stride) + 1;
+        if (previousLayerActivationsShape.getXAxisLength() > 1 && previousLayerActivationsShape.getYAxisLength() > 1){
+            this.pooling = this.buildPooling();
+            xAxisLength = this.pooling.getOutputShape().getXAxisLength();
+            yAxisLength = this.pooling.getOutputShape().getYAxisLength();
         } else {
             System.out.println("Can't initialize a convolution layer from something else than a 2D+ array in the previous layer.");
         }
@@ -112,27 +121,42 @@ public class PoolingLayer extends Layer {
          */
         this.z = new BaseNDArray.BaseNDArrayBuilder().zeros(xAxisLength, yAxisLength, nOut).build();
         this.activations = new BaseNDArray.BaseNDArrayBuilder().zeros(xAxisLength, yAxisLength, nOut).build();
+        this.dActivations = new BaseNDArray.BaseNDArrayBuilder().zeros(xAxisLength, yAxisLength, nOut).build();
+        this.sigmaToTransmit = new BaseNDArray.BaseNDArrayBuilder().zeros(previousLayerActivationsShape).build();
 
         // The layer is now fully configured
         this.isReady = true;
     }
 
     /**
+     * @return A pooling engine matching the configuration of the layer
+     */
+    private Pooling buildPooling(){
+        return new Pooling.PoolingBuilder().withInputShape(this.previousLayerShape)
+                                           .withMethod(this.poolingMethod)
+                                           .withKernelShape(this.kernelShape.getXAxisLength(), this.kernelShape.getYAxisLength())
+                                           .withStride(this.stride)
+                                           .withPadding(this.padding)
+                                           .build();
+    }
+
+    /**
+     * Each sample of a mini-batch is pooled into its own slice of z
      * @param previousLayer Previous layer
      */
     @Override
     public void computeZ(Layer previousLayer){
-        AbstractMap.SimpleEntry<Integer[], INDArray> pairMaskZ = ArrayUtil.maskedMaxPool(previousLayer.getActivations(), this.kernelShape, this.stride);
-        this.mask = pairMaskZ.getKey();
-        this.z = pairMaskZ.getValue();
+        this.ensureBatchSize(previousLayer.getBatchSize());
+        this.pooling.forward(previousLayer.getActivations(), this.z);
     }
 
     /**
      * Apply the selected non-linear function to the previously computed z
+     * The derivative is computed at the same time for the backward pass
      */
     @Override
     public void activate(){
-        this.activations = ArrayUtil.apply(PopsMath.identity, this.z);
+        Activator.activateAndDerive(this.activationFunction, this.z, this.activations, this.dActivations);
     }
 
     /**
@@ -155,7 +179,8 @@ public class PoolingLayer extends Layer {
         }
 
         // Store sigma coming from the next layer
-        this.sigma = ArrayUtil.invPool(sigma, this.mask, this.previousLayerShape);
+        this.sigma = new BaseNDArray.BaseNDArrayBuilder().zeros(this.previousLayerShape).build();
+        this.pooling.backward(sigma, this.sigma);
 
         // Reverse pooling
         return this.sigma;
@@ -163,13 +188,16 @@ public class PoolingLayer extends Layer {
 
     /**
      * Transmit the sigma to the designated layer
+     * The transmitted array is reused by every call
      * @param layer The previous layer to transmit the to
      */
     @Override
     public void transmitSigma(Layer layer) {
         // Reverse pooling
-        INDArray newSigma = ArrayUtil.invPool(sigma, this.mask, this.previousLayerShape);
-        layer.setSigma(newSigma);
+        INDArray sigmaToTransmit = this.getSigmaToTransmit(layer);
+        this.pooling.backward(this.sigma, sigmaToTransmit);
+        ArrayUtil.hadamardInPlace(sigmaToTransmit, layer.getDActivations());
+        layer.setSigma(sigmaToTransmit);
     }
 
     /**
@@ -178,7 +206,7 @@ public class PoolingLayer extends Layer {
      * @param optimizer The optimizer to use
      */
     @Override
-    public void updateInternalState(double baseLearningRate,  int batchSize, EnumCst.Optimizer optimizer){
+    public void updateInternalState(double baseLearningRate,  int batchSize, Optimizer optimizer){
         // Nothing to be done
     }
 
@@ -192,6 +220,16 @@ public class PoolingLayer extends Layer {
         // Nothing to be done
     }
 
+    /**
+     * The pooling engine holds the mask of the max pooling, each replica gets its own
+     */
+    @Override
+    protected void replicateState(){
+        if (this.pooling != null){
+            this.pooling = this.buildPooling();
+        }
+    }
+
     /*****************************************
      *
      * Parent getters
@@ -228,6 +266,7 @@ public class PoolingLayer extends Layer {
         private int stride = LayerDefaultValues.DEFAULT_KERNEL_STRIDE;
         private int padding = LayerDefaultValues.DEFAULT_PADDING;
         private Shape kernel2DShape = new Shape(LayerDefaultValues.DEFAULT_KERNEL_FILTER_HEIGHT, LayerDefaultValues.DEFAULT_KERNEL_FILTER_WIDTH);
+        private PoolingMethod poolingMethod = LayerDefaultValues.DEFAULT_POOLING_METHOD;
 
         /*****************************************
          *
@@ -267,16 +306,34 @@ public class PoolingLayer extends Layer {
         }
 
         /**
-         * Padding is not a working feature yet
+         * @param poolingMethod The pooling method, max or average
+         * @return The builder itself
+         */
+        public PoolingLayerBuilder withPoolingMethod(PoolingMethod poolingMethod){
+            this.poolingMethod = poolingMethod;
+            return this;
+        }
+
+        /**
+         * Padded positions are ignored by the pooling windows
          * @param padding The padding to add around the activations
          * @return The builder itself
          */
-        @Deprecated
-        public PoolingLayerBuilder withPaddingUnsafe(int padding){
+        public PoolingLayerBuilder withPadding(int padding){
             this.padding = padding;
             return this;
         }
 
+        /**
+         * @param padding The padding to add around the activations
+         * @return The builder itself
+         * @deprecated Padding is now supported, use withPadding
+         */
+        @Deprecated
+        public PoolingLayerBuilder withPaddingUnsafe(int padding){
+            return this.withPadding(padding);
+        }
+
         /*****************************************
          *
          * Build method
@@ -287,7 +344,7 @@ public class PoolingLayer extends Layer {
          * @return The built layer
          */
         public PoolingLayer build(){
-            return new PoolingLayer(this.kernel2DShape, this.stride, this.padding);
+            return new PoolingLayer(this.kernel2DShape, this.stride, this.padding, this.poolingMethod);
         }
     }
 }
@@ -23,7 +23,6 @@
 package fr.pops.nn.layers;
 
 import fr.pops.activator.Activator;
-import fr.pops.math.ArrayUtil;
 import fr.pops.math.ndarray.BaseNDArray;
 import fr.pops.math.ndarray.INDArray;
 import fr.pops.nn.weights.weight.StandardWeight;
@@ -32,6 +31,8 @@ import fr.pops.optimizer.Optimizer;
 import fr.pops.popscst.cst.EnumCst;
 import fr.pops.popscst.defaultvalues.LayerDefaultValues;
 
+import java.util.List;
+
 @SuppressWarnings("unused")
 public class RecurrentDenseLayer extends DenseLayer {
 
@@ -73,8 +74,9 @@ public class RecurrentDenseLayer extends DenseLayer {
     public void computeZ(Layer previousLayer){
         INDArray wa  = fr.pops.math.ArrayUtil.dot(this.weight.getValue(), previousLayer.getActivations());
         INDArray wh = fr.pops.math.ArrayUtil.dot(this.weightsBetweenTimeSteps.getValue(), this.activations);
-        INDArray z = fr.pops.math.ArrayUtil.add(fr.pops.math.ArrayUtil.add(wa, wh), this.bias.getValue());
-        this.z = z;
+        fr.pops.math.ArrayUtil.addInPlace(wa, wh);
+        fr.pops.math.ArrayUtil.addInPlace(wa, this.bias.getValue());
+        this.z = wa;
     }
 
     /**
@@ -97,7 +99,7 @@ public class RecurrentDenseLayer extends DenseLayer {
     public INDArray computeSigmaUnsafe(Weight weight, INDArray sigma){
         // Compute sigma
         INDArray eta = Activator.dActivate(this.dActivationFunction, this.z);
-        INDArray weightsT =  fr.pops.math.ArrayUtil.transpose(weight.getValue());
+        INDArray weightsT =  weight.getValue().transposeView();
         INDArray tmp = fr.pops.math.ArrayUtil.dot(eta, weightsT);
         INDArray newSigma = fr.pops.math.ArrayUtil.dot(tmp, sigma);
 
@@ -124,37 +126,12 @@ public class RecurrentDenseLayer extends DenseLayer {
      * @param optimizer The optimizer to use
      */
     @Override
-    public void updateInternalState(double baseLearningRate, int batchSize, EnumCst.Optimizer optimizer){
+    public void updateInternalState(double baseLearningRate, int batchSize, Optimizer optimizer){
         // Weights
-        // Initialisation
-        INDArray lambda;
-        if (optimizer == EnumCst.Optimizer.ADAGRAD){
-            lambda = Optimizer.updateLearningRates(baseLearningRate,
-                    this.weightsBetweenTimeSteps.getLearningRates(),
-                    this.weightsBetweenTimeSteps.getGradient());
-        } else {
-            lambda = fr.pops.math.ArrayUtil.apply(x -> x * (-1) * baseLearningRate, new BaseNDArray.BaseNDArrayBuilder().zeros(this.weightsBetweenTimeSteps.getValue().getShape()).build());
-        }
-
-        INDArray weightGrad = fr.pops.math.ArrayUtil.dot(lambda, this.weightsBetweenTimeSteps.getGradient());
-        INDArray weightUpdate = fr.pops.math.ArrayUtil.add(this.weightsBetweenTimeSteps.getValue(), weightGrad);
-        this.weightsBetweenTimeSteps.setValue(weightUpdate);
+        this.weightsBetweenTimeSteps.update(optimizer, baseLearningRate, batchSize);
 
         // Biases
-        INDArray lambdaBiases;
-        // Initialisation
-        if (optimizer == EnumCst.Optimizer.ADAGRAD){
-            lambdaBiases = Optimizer.updateLearningRates(baseLearningRate,
-                    this.bias.getLearningRates(),
-                    this.bias.getGradient());
-        } else {
-            double eta = (-1) * baseLearningRate / batchSize;
-            lambdaBiases = fr.pops.math.ArrayUtil.apply(x -> x * eta,  new BaseNDArray.BaseNDArrayBuilder().ones(this.bias.getGradient().getShape()).build());
-        }
-
-        INDArray biasGrad = fr.pops.math.ArrayUtil.hadamard(lambdaBiases, this.bias.getGradient());
-        INDArray biasUpdate = ArrayUtil.add(this.bias.getValue(), biasGrad);
-        this.bias.setValue(biasUpdate);
+        this.bias.update(optimizer, baseLearningRate, batchSize);
     }
 
     /**
@@ -166,6 +143,54 @@ public class RecurrentDenseLayer extends DenseLayer {
         this.weightsBetweenTimeSteps.clearGradient();
     }
 
+    /**
+     * The recurrent state and its weights gradient belong to the replica
+     */
+    @Override
+    protected void replicateState(){
+        super.replicateState();
+        this.previousActivations = this.previousActivations.dup();
+        this.weightsBetweenTimeSteps = this.weightsBetweenTimeSteps.replicate();
+    }
+
+    /**
+     * The weights between time steps are copied along with the ones of the dense layer
+     */
+    @Override
+    public void detachParameters(){
+        super.detachParameters();
+        this.weightsBetweenTimeSteps = this.weightsBetweenTimeSteps.copy();
+    }
+
+    /*****************************************
+     *
+     * Getters
+     *
+     *****************************************/
+    /**
+     * The weights between time steps follow the ones of the dense layer
+     */
+    @Override
+    public List<INDArray> getParameters(){
+        List<INDArray> res = super.getParameters();
+        res.addAll(this.weightsBetweenTimeSteps.getParameters());
+        return res;
+    }
+
+    @Override
+    public List<INDArray> getGradients(){
+        List<INDArray> res = super.getGradients();
+        res.addAll(this.weightsBetweenTimeSteps.getGradients());
+        return res;
+    }
+
+    @Override
+    public List<INDArray> getOptimizerStates(){
+        List<INDArray> res = super.getOptimizerStates();
+        res.addAll(this.weightsBetweenTimeSteps.getOptimizerStates());
+        return res;
+    }
+
     /*****************************************
      *
      * Builder
@@ -0,0 +1,364 @@
+/*******************************************************************************
+ *
+ *                         PPPP     OOOO     PPPP    SSSS
+ *                        PP  PP   OO  OO   PP  PP  SS
+ *                        PP  PP  OO    OO  PP  PP  SS
+ *                        PP  PP  OO    OO  PP  PP   SSSS
+ *                        PPPP    OO    OO  PPPP        SS
+ *                        PP       OO  OO   PP          SS
+ *                        PP        OOOO    PP       SSSS
+ *
+ * Name: BatchingPredictor.java
+ *
+ * Description: Class coalescing prediction requests into mini-batches.
+ *              The requests are queued, a background thread gathers them until
+ *              the batch is full or the first request has waited long enough,
+ *              runs a single forward pass on a frozen model and hands each
+ *              caller its own output.
+ *
+ * Author: Charles MERINO
+ *
+ * Date: 18/10/2026
+ *
+ ******************************************************************************/
+package fr.pops.nn.networks;
+
+import fr.pops.math.ndarray.INDArray;
+import fr.pops.popscst.defaultvalues.InferenceDefaultValues;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class BatchingPredictor {
+
+    /*****************************************
+     *
+     * Request
+     *
+     *****************************************/
+    /**
+     * A sample waiting for its prediction
+     */
+    private static class Request {
+        private INDArray sample;
+        private long arrival;
+        private CompletableFuture<INDArray> result = new CompletableFuture<>();
+
+        private Request(INDArray sample){
+            this.sample = sample;
+            this.arrival = System.nanoTime();
+        }
+    }
+
+    // Asks the batching thread to stop
+    private static final Request STOP = new Request(null);
+
+    /*****************************************
+     *
+     * Attributes
+     *
+     *****************************************/
+    private FrozenModel model;
+    private int maxBatchSize;
+    private long maxDelayNanos;
+
+    private BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private Thread batcher = null;
+    private volatile boolean running = false;
+
+    // Number of forward passes and of samples predicted
+    private volatile long nbBatches = 0;
+    private volatile long nbPredictions = 0;
+
+    /*****************************************
+     *
+     * Ctor
+     *
+     *****************************************/
+    /**
+     * Use the builder
+     */
+    private BatchingPredictor(){
+        // Nothing to be done
+    }
+
+    /*****************************************
+     *
+     * Main methods
+     *
+     *****************************************/
+    /**
+     * Queue a sample for the next batch
+     * The future fails with an IllegalArgumentException if the sample doesn't have the size
+     * of the input layer, and with an IllegalStateException if the predictor is closed
+     * @param sample The sample, with the size of the input layer of the model
+     * @return The activations of the output layer once predicted
+     */
+    public CompletableFuture<INDArray> submit(INDArray sample){
+        Request request = new Request(sample);
+        if (!this.model.isValid(sample)){
+            request.result.completeExceptionally(new IllegalArgumentException("The sample must have a size of "
+                    + (this.model.getInputShape() == null ? "?" : this.model.getInputShape().getSize()) + "."));
+            return request.result;
+        } else if (!this.running){
+            request.result.completeExceptionally(new IllegalStateException("The predictor is closed."));
+            return request.result;
+        }
+        this.queue.add(request);
+        // The predictor may have been closed meanwhile, the request is not served if still queued
+        if (!this.running && this.queue.remove(request)){
+            request.result.completeExceptionally(new IllegalStateException("The predictor is closed."));
+        }
+        return request.result;
+    }
+
+    /**
+     * Queue a sample and wait for its prediction
+     * @param sample The sample, with the size of the input layer of the model
+     * @return The activations of the output layer
+     * @throws java.util.concurrent.CompletionException If the sample can't be predicted
+     */
+    public INDArray predict(INDArray sample){
+        return this.submit(sample).join();
+    }
+
+    /**
+     * Serve the queued requests and stop the batching thread
+     */
+    public void close(){
+        if (!this.running){
+            return;
+        }
+        this.running = false;
+        this.queue.add(STOP);
+        try {
+            this.batcher.join();
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            System.out.println("Interrupted while closing the predictor.");
+        }
+
+        // Requests queued behind the stop
+        List<Request> remaining = new ArrayList<>();
+        this.queue.drainTo(remaining);
+        remaining.remove(STOP);
+        for (int from = 0; from < remaining.size(); from += this.maxBatchSize){
+            this.run(remaining.subList(from, Math.min(remaining.size(), from + this.maxBatchSize)));
+        }
+    }
+
+    /*****************************************
+     *
+     * Private methods
+     *
+     *****************************************/
+    /**
+     * Start the batching thread
+     */
+    private void start(){
+        this.running = true;
+        this.batcher = new Thread(this::serve, "pops-batching-predictor");
+        this.batcher.setDaemon(true);
+        this.batcher.start();
+    }
+
+    /**
+     * Loop of the batching thread
+     * A batch is closed when it is full or when its first request reaches the deadline,
+     * the requests already queued at the deadline still join it up to the maximal size
+     * If the loop dies, every pending request fails instead of waiting forever
+     */
+    private void serve(){
+        List<Request> batch = new ArrayList<>(this.maxBatchSize);
+        boolean stop = false;
+        boolean interrupted = false;
+        try {
+            while (!stop){
+                try {
+                    Request first = this.queue.take();
+                    if (first == STOP){
+                        return;
+                    }
+                    batch.add(first);
+                    long deadline = first.arrival + this.maxDelayNanos;
+                    while (batch.size() < this.maxBatchSize){
+                        long wait = deadline - System.nanoTime();
+                        Request next = wait > 0 ? this.queue.poll(wait, TimeUnit.NANOSECONDS) : this.queue.poll();
+                        if (next == null){
+                            break;
+                        } else if (next == STOP){
+                            stop = true;
+                            break;
+                        }
+                        batch.add(next);
+                    }
+                } catch (InterruptedException e){
+                    interrupted = true;
+                    stop = true;
+                }
+                this.run(batch);
+                batch.clear();
+            }
+            // Interrupted: the requests still queued won't be served
+            if (interrupted){
+                this.abort(batch, new IllegalStateException("The predictor has been interrupted."));
+            }
+        } catch (Throwable t){
+            this.abort(batch, t);
+            throw t;
+        }
+    }
+
+    /**
+     * Stop accepting requests and fail the pending ones
+     * @param batch The batch being served
+     * @param cause The reason of the failure
+     */
+    private void abort(List<Request> batch, Throwable cause){
+        this.running = false;
+        List<Request> pending = new ArrayList<>(batch);
+        this.queue.drainTo(pending);
+        for (Request request : pending){
+            if (request != STOP){
+                request.result.completeExceptionally(cause);
+            }
+        }
+    }
+
+    /**
+     * Single forward pass over the requests
+     * @param requests The requests of the batch
+     */
+    private void run(List<Request> requests){
+        if (requests.isEmpty()){
+            return;
+        }
+        List<INDArray> samples = new ArrayList<>(requests.size());
+        for (Request request : requests){
+            samples.add(request.sample);
+        }
+        List<INDArray> outputs;
+        try {
+            outputs = this.model.predictBatch(samples);
+        } catch (RuntimeException e){
+            for (Request request : requests){
+                request.result.completeExceptionally(e);
+            }
+            return;
+        }
+        for (int r = 0; r < requests.size(); r++){
+            INDArray output = r < outputs.size() ? outputs.get(r) : null;
+            if (output != null){
+                requests.get(r).result.complete(output);
+            } else {
+                requests.get(r).result.completeExceptionally(new IllegalStateException("The sample could not be predicted."));
+            }
+        }
+        this.nbBatches++;
+        this.nbPredictions += requests.size();
+    }
+
+    /*****************************************
+     *
+     * Getters
+     *
+     *****************************************/
+    public FrozenModel getModel(){ return this.model; }
+
+    public int getMaxBatchSize(){ return this.maxBatchSize; }
+
+    /**
+     * @return The number of forward passes run so far
+     */
+    public long getNbBatches(){ return this.nbBatches; }
+
+    /**
+     * @return The number of samples predicted so far
+     */
+    public long getNbPredictions(){ return this.nbPredictions; }
+
+    /*****************************************
+     *
+     * Builder
+     *
+     *****************************************/
+    public static class BatchingPredictorBuilder {
+
+        /*****************************************
+         *
+         * Attributes
+         *
+         *****************************************/
+        private FrozenModel model = null;
+        private int maxBatchSize = InferenceDefaultValues.DEFAULT_MAX_BATCH_SIZE;
+        private long maxDelay = InferenceDefaultValues.DEFAULT_MAX_DELAY;
+
+        /*****************************************
+         *
+         * With methods
+         *
+         *****************************************/
+        /**
+         * @param model The model running the forward passes
+         * @return The builder itself
+         */
+        public BatchingPredictorBuilder withModel(FrozenModel model){
+            this.model = model;
+            return this;
+        }
+
+        /**
+         * @param neuralNetwork The trained network, frozen when the predictor is built
+         * @return The builder itself
+         */
+        public BatchingPredictorBuilder withNeuralNetwork(NeuralNetwork neuralNetwork){
+            this.model = new FrozenModel(neuralNetwork);
+            return this;
+        }
+
+        /**
+         * @param maxBatchSize The maximal number of samples of a forward pass
+         * @return The builder itself
+         */
+        public BatchingPredictorBuilder withMaxBatchSize(int maxBatchSize){
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        /**
+         * Longer delays give larger batches, at the cost of the latency of the requests
+         * @param microseconds The time a request can wait for other ones to join its batch, 0 to never wait
+         * @return The builder itself
+         */
+        public BatchingPredictorBuilder withMaxDelay(long microseconds){
+            this.maxDelay = microseconds;
+            return this;
+        }
+
+        /*****************************************
+         *
+         * Build method
+         *
+         *****************************************/
+        /**
+         * The batching thread is started
+         * @return The predictor
+         */
+        public BatchingPredictor build(){
+            if (this.model == null){
+                System.out.println("A BatchingPredictor needs a model.");
+                return null;
+            }
+            BatchingPredictor batchingPredictor = new BatchingPredictor();
+            batchingPredictor.model = this.model;
+            batchingPredictor.maxBatchSize = Math.max(1, this.maxBatchSize);
+            batchingPredictor.maxDelayNanos = TimeUnit.MICROSECONDS.toNanos(Math.max(0, this.maxDelay));
+            batchingPredictor.start();
+            return batchingPredictor;
+        }
+    }
+}
@@ -24,8 +24,10 @@ import fr.pops.guesser.FeedForward;
 import fr.pops.math.ndarray.INDArray;
 import fr.pops.math.ndarray.Shape;
 import fr.pops.nn.layers.FlattenLayer;
+import fr.pops.nn.layers.InputLayer;
 import fr.pops.popscst.cst.EnumCst;
 import fr.pops.solver.StochasticGradientDescent;
+import fr.pops.trainer.DataParallelTrainer;
 import fr.pops.trainer.StandardTrainer;
 
 import java.io.Serializable;
@@ -73,7 +75,7 @@ public class CNN extends NeuralNetwork implements Serializable {
         // TODO: to be adjusted...
         this.guesser = new FeedForward();
         this.solver = new StochasticGradientDescent();
-        this.trainer = new StandardTrainer();
+        this.trainer = this.neuralNetworkConfiguration.getNbWorkers() > 1 ? new DataParallelTrainer() : new StandardTrainer();
 
         /* *
          * Initialize the different structures not ready yet
@@ -113,7 +115,7 @@ public class CNN extends NeuralNetwork implements Serializable {
     public void feedNetwork(int epoch) {
         // Set the values of the input layer
         INDArray data = this.neuralNetworkConfiguration.getDataReader().getSample(epoch);
-        Shape inputShape = this.neuralNetworkConfiguration.getLayers().get(0).getActivations().getShape();
+        Shape inputShape = ((InputLayer) this.neuralNetworkConfiguration.getLayers().get(0)).getInputShape();
         if (data.getShape() != inputShape){
 //            System.out.println("The shape of the data to be recognized is not the same as the shape of the input layer. The data has been reshaped. Be careful with the results.");
 //            System.out.println("The shape of the data: " + data.getShape());
@@ -148,4 +150,18 @@ public class CNN extends NeuralNetwork implements Serializable {
         this.trainer.run(this);
     }
 
+    /**
+     * The replica shares the guesser and the solver, they hold no state
+     * @return A CNN over replicas of the layers
+     */
+    @Override
+    public CNN replicate(){
+        CNN res = new CNN(this.neuralNetworkConfiguration.replicate());
+        res.type = this.type;
+        res.guesser = this.guesser;
+        res.solver = this.solver;
+        res.trainer = this.trainer;
+        return res;
+    }
+
 }
@@ -24,6 +24,7 @@ import fr.pops.guesser.FeedForward;
 import fr.pops.math.ndarray.INDArray;
 import fr.pops.popscst.cst.EnumCst;
 import fr.pops.solver.StochasticGradientDescent;
+import fr.pops.trainer.DataParallelTrainer;
 import fr.pops.trainer.StandardTrainer;
 
 import java.io.Serializable;
@@ -69,7 +70,7 @@ public final class Classifier extends NeuralNetwork implements Serializable {
         this.type = EnumCst.NeuralNetworkTypes.CLASSIFIER;
         this.guesser = new FeedForward();
         this.solver = new StochasticGradientDescent();
-        this.trainer = new StandardTrainer();
+        this.trainer = this.neuralNetworkConfiguration.getNbWorkers() > 1 ? new DataParallelTrainer() : new StandardTrainer();
 
         // Initialize the weights
         for (int i = 1; i < this.neuralNetworkConfiguration.getNbLayers(); i++){
@@ -113,4 +114,18 @@ public final class Classifier extends NeuralNetwork implements Serializable {
         this.trainer.run(this);
     }
 
+    /**
+     * The replica shares the guesser and the solver, they hold no state
+     * @return A classifier over replicas of the layers
+     */
+    @Override
+    public Classifier replicate(){
+        Classifier res = new Classifier(this.neuralNetworkConfiguration.replicate());
+        res.type = this.type;
+        res.guesser = this.guesser;
+        res.solver = this.solver;
+        res.trainer = this.trainer;
+        return res;
+    }
+
 }
@@ -0,0 +1,212 @@
+/*******************************************************************************
+ *
+ *                         PPPP     OOOO     PPPP    SSSS
+ *                        PP  PP   OO  OO   PP  PP  SS
+ *                        PP  PP  OO    OO  PP  PP  SS
+ *                        PP  PP  OO    OO  PP  PP   SSSS
+ *                        PPPP    OO    OO  PPPP        SS
+ *                        PP       OO  OO   PP          SS
+ *                        PP        OOOO    PP       SSSS
+ *
+ * Name: FrozenModel.java
+ *
+ * Description: Class serving the predictions of a trained network.
+ *              The weights and bias are copied once when the model is frozen,
+ *              each thread then runs the forward pass on its own replica of
+ *              the snapshot: predictions can be made concurrently without locking.
+ *
+ * Author: Charles MERINO
+ *
+ * Date: 18/10/2026
+ *
+ ******************************************************************************/
+package fr.pops.nn.networks;
+
+import fr.pops.math.ArrayUtil;
+import fr.pops.math.ndarray.BaseNDArray;
+import fr.pops.math.ndarray.INDArray;
+import fr.pops.math.ndarray.Shape;
+import fr.pops.nn.layers.InputLayer;
+import fr.pops.nn.layers.Layer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class FrozenModel {
+
+    /*****************************************
+     *
+     * Workspace
+     *
+     *****************************************/
+    /**
+     * Replica of the snapshot owned by a single thread
+     * It holds the activations of the forward pass and the input buffer
+     */
+    private static class Workspace {
+        private NeuralNetwork replica;
+        private Layer outputLayer;
+        private INDArray input;
+
+        private Workspace(NeuralNetwork replica){
+            this.replica = replica;
+            this.outputLayer = replica.getNeuralNetworkConfiguration().getLayers().get(replica.getNeuralNetworkConfiguration().getNbLayers() - 1);
+        }
+
+        /**
+         * The input buffer is only reallocated when the number of samples changes
+         * @return The input buffer of the replica
+         */
+        private INDArray getInput(Shape inputShape, int batchSize){
+            if (this.input == null || this.input.getShape().getBatchAxisLength() != batchSize){
+                this.input = new BaseNDArray.BaseNDArrayBuilder().zeros(new Shape(inputShape, batchSize)).build();
+            }
+            return this.input;
+        }
+    }
+
+    /*****************************************
+     *
+     * Attributes
+     *
+     *****************************************/
+    // Snapshot of the network, never fed: the replicas share its weights and bias
+    private NeuralNetwork snapshot;
+    private Shape inputShape;
+
+    // One replica per thread calling the model
+    private ThreadLocal<Workspace> workspaces;
+
+    /*****************************************
+     *
+     * Ctor
+     *
+     *****************************************/
+    /**
+     * Freeze the current weights and bias of the network
+     * The network can keep training, the model does not see the later updates
+     * @param neuralNetwork The initialized network
+     */
+    public FrozenModel(NeuralNetwork neuralNetwork){
+        this.snapshot = neuralNetwork.replicate();
+        if (this.snapshot == null){
+            System.out.println("Unable to freeze a network of type " + neuralNetwork.getType() + ".");
+            return;
+        }
+        for (Layer layer : this.snapshot.getNeuralNetworkConfiguration().getLayers()){
+            layer.detachParameters();
+        }
+
+        Layer inputLayer = this.snapshot.getNeuralNetworkConfiguration().getLayers().get(0);
+        this.inputShape = inputLayer instanceof InputLayer ? ((InputLayer) inputLayer).getInputShape()
+                                                           : inputLayer.getActivations().getShape().getSampleShape();
+        this.workspaces = ThreadLocal.withInitial(() -> {
+            NeuralNetwork replica = this.snapshot.replicate();
+            return replica == null ? null : new Workspace(replica);
+        });
+    }
+
+    /*****************************************
+     *
+     * Main methods
+     *
+     *****************************************/
+    /**
+     * Run the forward pass on a single sample
+     * @param sample The sample, with the size of the input layer
+     * @return A copy of the activations of the output layer, null if the sample can't be predicted
+     */
+    public INDArray predict(INDArray sample){
+        Workspace workspace = this.getWorkspace();
+        if (workspace == null){
+            return null;
+        } else if (!this.isValid(sample)){
+            System.out.println("In FrozenModel.predict: the sample must have a size of " + this.inputShape.getSize() + ".");
+            return null;
+        }
+
+        INDArray input = workspace.getInput(this.inputShape, 1);
+        ArrayUtil.copyInto(sample, input);
+        workspace.replica.feedNetwork(input);
+        workspace.replica.guess();
+        return workspace.outputLayer.getActivations().dup();
+    }
+
+    /**
+     * Run a single forward pass on all the samples stacked along the batch axis
+     * A sample without the size of the input layer is left out of the batch
+     * @param samples The samples, each with the size of the input layer
+     * @return A copy of the activations of the output layer for each sample, in the same order,
+     *         null for the samples that can't be predicted
+     */
+    public List<INDArray> predictBatch(List<INDArray> samples){
+        List<INDArray> res = new ArrayList<>();
+        Workspace workspace = this.getWorkspace();
+        if (workspace == null){
+            return res;
+        }
+
+        // Positions of the samples which can be predicted
+        List<Integer> valid = new ArrayList<>();
+        for (int s = 0; s < samples.size(); s++){
+            res.add(null);
+            if (this.isValid(samples.get(s))){
+                valid.add(s);
+            } else {
+                System.out.println("In FrozenModel.predictBatch: the sample " + s + " must have a size of " + this.inputShape.getSize() + ".");
+            }
+        }
+        if (valid.isEmpty()){
+            return res;
+        }
+
+        // Stack the samples
+        INDArray input = workspace.getInput(this.inputShape, valid.size());
+        for (int b = 0; b < valid.size(); b++){
+            ArrayUtil.copyInto(samples.get(valid.get(b)), input.sample(b));
+        }
+
+        // Forward pass and split of the outputs
+        workspace.replica.feedNetwork(input);
+        workspace.replica.guess();
+        INDArray output = workspace.outputLayer.getActivations();
+        for (int b = 0; b < valid.size(); b++){
+            res.set(valid.get(b), output.sample(b).dup());
+        }
+        return res;
+    }
+
+    /**
+     * @param sample A sample to predict
+     * @return True if the sample has the size of the input layer
+     */
+    public boolean isValid(INDArray sample){
+        return sample != null && this.inputShape != null && sample.getShape().getSize() == this.inputShape.getSize();
+    }
+
+    /*****************************************
+     *
+     * Private methods
+     *
+     *****************************************/
+    /**
+     * @return The replica of the calling thread, null if the network could not be frozen
+     */
+    private Workspace getWorkspace(){
+        if (this.workspaces == null){
+            System.out.println("The model has not been frozen.");
+            return null;
+        }
+        return this.workspaces.get();
+    }
+
+    /*****************************************
+     *
+     * Getters
+     *
+     *****************************************/
+    /**
+     * @return The shape of one sample expected by the model
+     */
+    public Shape getInputShape(){ return this.inputShape; }
+}
@@ -22,6 +22,9 @@ package fr.pops.nn.networks;
 import fr.pops.guesser.IGuesser;
 import fr.pops.jsonparser.IRecordable;
 import fr.pops.math.ndarray.INDArray;
+import fr.pops.math.ndarray.Shape;
+import fr.pops.nn.layers.InputLayer;
+import fr.pops.nn.layers.Layer;
 import fr.pops.popscst.cst.EnumCst;
 import fr.pops.solver.ISolver;
 import fr.pops.trainer.ITrainer;
@@ -78,6 +81,37 @@ public abstract class NeuralNetwork implements IRecordable {
      */
     abstract public void feedNetwork(int epoch);
 
+    /**
+     * Feed the network with a mini-batch of consecutive data from the DataReader
+     * The samples are stacked along the batch axis so that every layer
+     * processes the whole batch at once
+     * The indices wrap around the dataset
+     * @param epoch The index of the first feature of the batch
+     * @param batchSize The number of features in the batch
+     */
+    public void feedNetwork(int epoch, int batchSize){
+        this.feedNetwork(this.neuralNetworkConfiguration.getDataReader().getSamples(epoch, batchSize));
+    }
+
+    /**
+     * Feed the network with a mini-batch already assembled, by a BatchLoader for instance
+     * @param data The samples stacked along the batch axis
+     */
+    public void feedNetwork(INDArray data){
+        Layer inputLayer = this.neuralNetworkConfiguration.getLayers().get(0);
+        if (inputLayer instanceof InputLayer){
+            // The data might be stored flat, give it the shape of the input layer
+            Shape inputShape = ((InputLayer) inputLayer).getInputShape();
+            Shape dataShape = data.getShape();
+            if (dataShape.getXAxisLength() != inputShape.getXAxisLength()
+                    || dataShape.getYAxisLength() != inputShape.getYAxisLength()
+                    || dataShape.getZAxisLength() != inputShape.getZAxisLength()){
+                data.reshape(new Shape(inputShape, dataShape.getBatchAxisLength()));
+            }
+        }
+        inputLayer.setActivations(data);
+    }
+
     /**
      *  Guess the given input
      */
@@ -94,6 +128,16 @@ public abstract class NeuralNetwork implements IRecordable {
      */
     abstract public void train();
 
+    /**
+     * Copy of the network for a worker of a data-parallel training
+     * The weights and bias are shared, the activations, errors and gradients are not
+     * @return The replica, null if the network cannot be replicated
+     */
+    public NeuralNetwork replicate(){
+        System.out.println("The neural network " + this.type + " cannot be replicated.");
+        return null;
+    }
+
     /*****************************************
      *
      * Getters
@@ -25,11 +25,12 @@ import fr.pops.datareader.DataReader;
 import fr.pops.jsonparser.IRecordable;
 import fr.pops.nn.layers.InputLayer;
 import fr.pops.nn.layers.Layer;
+import fr.pops.optimizer.Optimizer;
 import fr.pops.popscst.cst.EnumCst;
-import fr.pops.popscst.cst.StrCst;
 import fr.pops.popscst.defaultvalues.NeuralNetworkDefaultValues;
 import org.json.JSONObject;
 
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -49,17 +50,26 @@ public class NeuralNetworkConfiguration implements IRecordable {
     private double l2LearningRate;
     private int batchSize;
     private int nbIterations;
+    private int prefetchDepth;
+    private int nbWorkers;
+    private int checkpointInterval;
+    private long checkpointPeriod;
+    private long seed;
 
     // Flags
     private boolean inTraining = false;
+    private boolean shuffle;
     protected boolean regularisationOn;
 
     // Enum
-    private EnumCst.Optimizer optimizer;
+    private Optimizer optimizer;
 
     // Data reader
     private DataReader dataReader;
 
+    // Checkpoints written during the training
+    private Path checkpointPath;
+
     // Layers
     private List<Layer> layers;
 
@@ -76,10 +86,17 @@ public class NeuralNetworkConfiguration implements IRecordable {
                                        double l2LearningRate,
                                        int batchSize,
                                        int nbIterations,
+                                       int prefetchDepth,
+                                       int nbWorkers,
                                        boolean regularisationOn,
-                                       EnumCst.Optimizer optimizer,
+                                       boolean shuffle,
+                                       Optimizer optimizer,
                                        List<Layer> layers,
-                                       DataReader dataReader) {
+                                       DataReader dataReader,
+                                       Path checkpointPath,
+                                       int checkpointInterval,
+                                       long checkpointPeriod,
+                                       long seed) {
 
         // Hyper parameters
         this.learningRate = learningRate;
@@ -87,10 +104,17 @@ public class NeuralNetworkConfiguration implements IRecordable {
         this.l2LearningRate = l2LearningRate;
         this.batchSize = batchSize;
         this.nbIterations = nbIterations;
+        this.prefetchDepth = prefetchDepth;
+        this.nbWorkers = nbWorkers;
         this.regularisationOn = regularisationOn;
+        this.shuffle = shuffle;
         this.optimizer = optimizer;
         this.layers = layers;
         this.dataReader = dataReader;
+        this.checkpointPath = checkpointPath;
+        this.checkpointInterval = checkpointInterval;
+        this.checkpointPeriod = checkpointPeriod;
+        this.seed = seed;
     }
 
     /*****************************************
@@ -123,15 +147,45 @@ public class NeuralNetworkConfiguration implements IRecordable {
      */
     public int getNbIterations(){ return this.nbIterations; }
 
+    /**
+     * @return Number of mini-batches loaded ahead of the training, 0 to load them on the training thread
+     */
+    public int getPrefetchDepth(){ return this.prefetchDepth; }
+
+    /**
+     * @return Number of workers sharing each mini-batch during the training
+     */
+    public int getNbWorkers(){ return this.nbWorkers; }
+
     /**
      * @return The data reader used
      */
     public DataReader getDataReader() { return this.dataReader; }
 
+    /**
+     * @return The checkpoint file written during the training, null if there is none
+     */
+    public Path getCheckpointPath() { return this.checkpointPath; }
+
+    /**
+     * @return The number of training steps between two checkpoints, 0 if they are not periodic in steps
+     */
+    public int getCheckpointInterval() { return this.checkpointInterval; }
+
+    /**
+     * @return The number of seconds between two checkpoints, 0 if they are not periodic in time
+     */
+    public long getCheckpointPeriod() { return this.checkpointPeriod; }
+
+    /**
+     * @return The seed of the shuffles of the samples, saved with the checkpoints
+     */
+    public long getSeed() { return this.seed; }
+
     /**
      * @return The optimizer used during training
      */
-    public EnumCst.Optimizer getOptimizer() { return this.optimizer; }
+    public Optimizer getOptimizer() { return this.optimizer; }
 
     /**
      * @return The list of layers
@@ -153,6 +207,44 @@ public class NeuralNetworkConfiguration implements IRecordable {
      */
     public boolean isRegularisationOn() { return this.regularisationOn; }
 
+    /**
+     * @return True if the samples are shuffled at each pass over the dataset
+     */
+    public boolean isShuffle() { return this.shuffle; }
+
+    /*****************************************
+     *
+     * Replication
+     *
+     *****************************************/
+    /**
+     * Copy of the configuration for a worker of a data-parallel training
+     * The layers are replicated: they share the values of the weights and bias
+     * @return The configuration of the worker
+     */
+    public NeuralNetworkConfiguration replicate(){
+        List<Layer> replicas = new ArrayList<>();
+        for (Layer layer : this.layers){
+            replicas.add(layer.replicate());
+        }
+        return new NeuralNetworkConfiguration(this.learningRate,
+                                              this.l1LearningRate,
+                                              this.l2LearningRate,
+                                              this.batchSize,
+                                              this.nbIterations,
+                                              this.prefetchDepth,
+                                              this.nbWorkers,
+                                              this.regularisationOn,
+                                              this.shuffle,
+                                              this.optimizer,
+                                              replicas,
+                                              this.dataReader,
+                                              this.checkpointPath,
+                                              this.checkpointInterval,
+                                              this.checkpointPeriod,
+                                              this.seed);
+    }
+
     /*****************************************
      *
      * Setters
@@ -168,6 +260,8 @@ public class NeuralNetworkConfiguration implements IRecordable {
 
     public void setL2(double l2){ this.l2LearningRate = l2; }
 
+    public void setSeed(long seed){ this.seed = seed; }
+
     /*****************************************
      *
      * Save / load
@@ -227,12 +321,15 @@ public class NeuralNetworkConfiguration implements IRecordable {
         private double l2LearningRate = NeuralNetworkDefaultValues.DEFAULT_L2_LEARNING_RATE_VALUE;
         private int batchSize = NeuralNetworkDefaultValues.DEFAULT_BATCH_SIZE;
         private int nbIterations = NeuralNetworkDefaultValues.DEFAULT_NB_ITERATIONS;
+        private int prefetchDepth = NeuralNetworkDefaultValues.DEFAULT_PREFETCH_DEPTH;
+        private int nbWorkers = NeuralNetworkDefaultValues.DEFAULT_NB_WORKERS;
 
         // Flags
         private boolean regularisationOn = NeuralNetworkDefaultValues.DEFAULT_REGULARISATION_ON;
+        private boolean shuffle = NeuralNetworkDefaultValues.DEFAULT_SHUFFLE;
 
         // Enum
-        private EnumCst.Optimizer optimizer = NeuralNetworkDefaultValues.DEFAULT_OPTIMIZER;
+        private Optimizer optimizer = null;
 
         // Layers
         List<Layer> layers = new ArrayList<>();
@@ -240,6 +337,14 @@ public class NeuralNetworkConfiguration implements IRecordable {
         // Data reader
         private DataReader dataReader = NeuralNetworkDefaultValues.DEFAULT_DATA_READER;
 
+        // Checkpoints
+        private Path checkpointPath = null;
+        private int checkpointInterval = 0;
+        private long checkpointPeriod = 0;
+
+        // Shuffles
+        private long seed = NeuralNetworkDefaultValues.DEFAULT_SEED;
+
         /*****************************************
          *
          * Ctor
@@ -314,6 +419,46 @@ public class NeuralNetworkConfiguration implements IRecordable {
             return this;
         }
 
+        /**
+         * Initialize the number of mini-batches loaded in the background ahead of the training
+         * @param prefetchDepth The number of batches, 0 to load them on the training thread
+         * @return The builder itself
+         */
+        public NeuralNetworkConfigurationBuilder withPrefetchDepth(int prefetchDepth){
+            this.prefetchDepth = prefetchDepth;
+            return this;
+        }
+
+        /**
+         * Split each mini-batch between several workers training in parallel
+         * @param nbWorkers The number of workers, 1 to train on a single thread
+         * @return The builder itself
+         */
+        public NeuralNetworkConfigurationBuilder withNbWorkers(int nbWorkers){
+            this.nbWorkers = Math.max(1, nbWorkers);
+            return this;
+        }
+
+        /**
+         * Shuffle the samples at each pass over the dataset
+         * @param shuffle True to shuffle the samples
+         * @return The builder itself
+         */
+        public NeuralNetworkConfigurationBuilder withShuffle(boolean shuffle){
+            this.shuffle = shuffle;
+            return this;
+        }
+
+        /**
+         * Initialize the seed of the shuffles, a resumed training uses the one of its checkpoint
+         * @param seed The seed
+         * @return The builder itself
+         */
+        public NeuralNetworkConfigurationBuilder withSeed(long seed){
+            this.seed = seed;
+            return this;
+        }
+
         /**
          * Add an input layer to the neural network
          * It always add it at the first position of the list
@@ -341,14 +486,25 @@ public class NeuralNetworkConfiguration implements IRecordable {
          * @return The builder itself
          */
         public NeuralNetworkConfigurationBuilder withOptimizer(String optimizerStr){
-            if (optimizerStr.equalsIgnoreCase(StrCst.ADAGRAD)){
-                this.optimizer = EnumCst.Optimizer.ADAGRAD;
-            } else {
+            try {
+                EnumCst.Optimizer type = EnumCst.Optimizer.valueOf(optimizerStr.toUpperCase());
+                this.optimizer = new Optimizer.OptimizerBuilder().withType(type).build();
+            } catch (IllegalArgumentException e){
                 System.out.println("Unknown given optimizer. No optimizer is used instead.");
             }
             return this;
         }
 
+        /**
+         * Configure an optimizer to be used during the training
+         * @param optimizer The optimizer, with its hyper parameters
+         * @return The builder itself
+         */
+        public NeuralNetworkConfigurationBuilder withOptimizer(Optimizer optimizer){
+            this.optimizer = optimizer;
+            return this;
+        }
+
         /**
          * Initialize data reader
          * @param dataReader The data reader
@@ -359,6 +515,20 @@ public class NeuralNetworkConfiguration implements IRecordable {
             return this;
         }
 
+        /**
+         * Save snapshots of the network during the training, the training resumes from the file if it exists
+         * @param path The checkpoint file
+         * @param interval The number of training steps between two snapshots, 0 to disable
+         * @param seconds The number of seconds between two snapshots, 0 to disable
+         * @return The builder itself
+         */
+        public NeuralNetworkConfigurationBuilder withCheckpoint(Path path, int interval, long seconds){
+            this.checkpointPath = path;
+            this.checkpointInterval = interval;
+            this.checkpointPeriod = seconds;
+            return this;
+        }
+
         /*****************************************
          *
          * Build method
@@ -374,10 +544,17 @@ public class NeuralNetworkConfiguration implements IRecordable {
                                                   this.l2LearningRate,
                                                   this.batchSize,
                                                   this.nbIterations,
+                                                  this.prefetchDepth,
+                                                  this.nbWorkers,
                                                   this.regularisationOn,
-                                                  this.optimizer,
+                                                  this.shuffle,
+                                                  this.optimizer != null ? this.optimizer : new Optimizer.OptimizerBuilder().build(),
                                                   this.layers,
-                                                  this.dataReader);
+                                                  this.dataReader,
+                                                  this.checkpointPath,
+                                                  this.checkpointInterval,
+                                                  this.checkpointPeriod,
+                                                  this.seed);
         }
     }
 }
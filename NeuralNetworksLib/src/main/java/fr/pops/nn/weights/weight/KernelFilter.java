@@ -19,17 +19,20 @@
  ******************************************************************************/
 package fr.pops.nn.weights.weight;
 
+import fr.pops.math.Convolution;
 import fr.pops.math.ndarray.BaseNDArray;
 import fr.pops.math.ndarray.INDArray;
 import fr.pops.math.ndarray.Shape;
 import fr.pops.nn.weights.weightInit.WeightInitUtil;
+import fr.pops.optimizer.Optimizer;
 import fr.pops.popscst.cst.EnumCst;
 import fr.pops.math.ArrayUtil;
 import org.json.JSONObject;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
 
 public class KernelFilter extends Weight {
 
@@ -43,6 +46,14 @@ public class KernelFilter extends Weight {
     protected List<INDArray> gradients = new ArrayList<>();
     protected List<INDArray> learningRatesPerElements = new ArrayList<>();
 
+    // Convolution engine and its packed buffers: one filter per row
+    // The filters, their gradients and their learning rates are views over these buffers
+    protected Convolution convolution;
+    protected INDArray packedValues;
+    protected INDArray packedGradients;
+    protected INDArray packedLearningRates;
+    protected INDArray packedFirstMoments;
+
     /*****************************************
      *
      * Ctor
@@ -64,19 +75,23 @@ public class KernelFilter extends Weight {
         this.initializeValues(initMethod, nIn, nOut);
     }
 
+    /**
+     * @param initMethod The method used to initialize the weights
+     * @param shape The shape to give to the filters
+     * @param convolution The convolution engine of the layer owning the filters
+     *                    It defines the stride and the padding used to compute the gradients
+     */
+    public KernelFilter(EnumCst.WeightsInitMethod initMethod, Shape shape, int nIn, int nOut, Convolution convolution){
+        this(initMethod, shape, nIn, nOut);
+        this.convolution = convolution;
+    }
+
     /**
      * @param values The value to give to the weights
      */
     private KernelFilter(List<INDArray> values){
-        this.values = values;
-        // Initialize the gradient arrays
-        this.gradients = values.stream()
-                             .map(indArray -> new BaseNDArray.BaseNDArrayBuilder().zeros(indArray.getShape()).build())
-                             .collect(Collectors.toList());
-        // Initialize the gradient arrays
-        this.learningRatesPerElements = values.stream()
-                                             .map(indArray -> new BaseNDArray.BaseNDArrayBuilder().zeros(indArray.getShape()).build())
-                                             .collect(Collectors.toList());
+        this.kernelShape = values.get(0).getShape();
+        this.packFilters(values);
     }
 
     /*****************************************
@@ -91,36 +106,112 @@ public class KernelFilter extends Weight {
      */
     @Override
     protected void initializeValues(EnumCst.WeightsInitMethod initMethod, int nIn, int nOut) {
+        List<INDArray> initialValues = new ArrayList<>();
         for (int i = 0; i < nOut; i++) {
             // Initialize the values
-            this.values.add(WeightInitUtil.init(initMethod, this.kernelShape, nIn, nOut));
-            // Initialize the gradient as an empty matrix
-            this.gradients.add(new BaseNDArray.BaseNDArrayBuilder().zeros(this.kernelShape).build());
-            // Initialize the learning rates per element as an empty matrix
-            this.learningRatesPerElements.add(new BaseNDArray.BaseNDArrayBuilder().zeros(this.kernelShape).build());
+            initialValues.add(WeightInitUtil.init(initMethod, this.kernelShape, nIn, nOut));
         }
+        this.packFilters(initialValues);
+    }
+
+    /**
+     * Copy the given filters into a single nbFilters x filterSize matrix
+     * as expected by the convolution engine
+     * Each filter and its gradient become a view over one row of the packed buffers
+     * @param filters The values of the filters
+     */
+    private void packFilters(List<INDArray> filters){
+        int nbFilters = filters.size();
+        int filterSize = this.kernelShape.getSize();
+        this.packedValues = new BaseNDArray.BaseNDArrayBuilder().zeros(nbFilters, filterSize).build();
+        this.packedGradients = new BaseNDArray.BaseNDArrayBuilder().zeros(nbFilters, filterSize).build();
+        this.packedLearningRates = new BaseNDArray.BaseNDArrayBuilder().zeros(nbFilters, filterSize).build();
+        this.packedFirstMoments = new BaseNDArray.BaseNDArrayBuilder().zeros(nbFilters, filterSize).build();
+        this.values = new ArrayList<>();
+        this.gradients = new ArrayList<>();
+        this.learningRatesPerElements = new ArrayList<>();
+        for (int w = 0; w < nbFilters; w++){
+            INDArray value = this.packedValues.rows(w, w + 1).reshapeView(this.kernelShape);
+            ArrayUtil.copyInto(filters.get(w), value);
+            this.values.add(value);
+            this.gradients.add(this.packedGradients.rows(w, w + 1).reshapeView(this.kernelShape));
+            this.learningRatesPerElements.add(this.packedLearningRates.rows(w, w + 1).reshapeView(this.kernelShape));
+        }
+    }
+
+    /**
+     * The filters are views over this buffer: nothing is copied
+     * @return The packed filters, nbFilters x filterSize
+     */
+    public double[] getPackedValues(){
+        return this.packedValues.getData();
     }
 
     /**
      * Convolution between sigma and the activations of the previous layer
+     * All the filters are computed at once by the convolution engine
      * @param sigma The error transmitted through the layers
      * @param activations The activations of the previous layer
      */
     @Override
     public void computeWeightsIndividualGradient(INDArray sigma, INDArray activations) {
-        // TODO: First draft, optimize the computation to avoid recreating arrays when it is not necessary
-        // Loop over all filters
-        for (int w = 0; w < this.gradients.size(); w++){
-            INDArray gradient = new BaseNDArray.BaseNDArrayBuilder().zeros(this.kernelShape).build();
-            // Loop over every channels of the activations
-            for (int c = 0; c < activations.getShape().getZAxisLength(); c++){
-                INDArray activationChannel = activations.extractChannel(c);
-                INDArray sigmaChannel = sigma.extractChannel(w);
-                INDArray gradientChannel = ArrayUtil.convolve(activationChannel, sigmaChannel, 1); // Need to compute the stride
-                gradient.merge(gradientChannel, c);
-            }
-            this.completeGradient(gradient, w);
+        // Filters built without a layer: stride 1, no padding
+        if (this.convolution == null){
+            this.convolution = new Convolution.ConvolutionBuilder().withInputShape(activations.getShape())
+                                                                   .withKernelShape(this.kernelShape.getXAxisLength(), this.kernelShape.getYAxisLength())
+                                                                   .withNbFilters(this.values.size())
+                                                                   .build();
+        }
+        // The gradients of the filters are views over the packed buffer
+        this.convolution.backwardFilters(activations, sigma, this.packedGradients.getData(), true);
+    }
+
+    /**
+     * Copy for a worker of a data-parallel training
+     * The filters stay views over the shared packed values, the gradients get their own buffer
+     * @param convolution The convolution engine of the replica of the layer
+     * @return Filters sharing these values, with their own gradients
+     */
+    public KernelFilter replicate(Convolution convolution){
+        KernelFilter res = new KernelFilter();
+        res.kernelShape = this.kernelShape;
+        res.convolution = convolution;
+        res.packedValues = this.packedValues;
+        res.values = this.values;
+        res.learningRatesPerElements = this.learningRatesPerElements;
+        res.packedLearningRates = this.packedLearningRates;
+        res.packedFirstMoments = this.packedFirstMoments;
+        res.packedGradients = new BaseNDArray.BaseNDArrayBuilder().zeros(this.packedGradients.getShape()).build();
+        res.gradients = new ArrayList<>();
+        for (int w = 0; w < this.values.size(); w++){
+            res.gradients.add(res.packedGradients.rows(w, w + 1).reshapeView(this.kernelShape));
         }
+        return res;
+    }
+
+    /**
+     * Copy holding its own values, for a frozen snapshot of a network
+     * @return Filters with a copy of these values and their own gradients
+     */
+    public KernelFilter copy(){
+        KernelFilter res = this.replicate(this.convolution);
+        res.packedValues = this.packedValues.dup();
+        res.values = new ArrayList<>();
+        for (int w = 0; w < this.values.size(); w++){
+            res.values.add(res.packedValues.rows(w, w + 1).reshapeView(this.kernelShape));
+        }
+        return res;
+    }
+
+    /**
+     * Update all the filters at once from the packed buffers
+     * @param optimizer The update rule
+     * @param learningRate The learning rate
+     * @param batchSize The number of samples the gradient is summed over
+     */
+    @Override
+    public void update(Optimizer optimizer, double learningRate, int batchSize){
+        optimizer.update(this.packedValues, this.packedGradients, this.packedFirstMoments, this.packedLearningRates, learningRate, batchSize);
     }
 
     /**
@@ -132,7 +223,7 @@ public class KernelFilter extends Weight {
         if (this.gradients.size() < i){
             this.gradients.add(arr);
         } else {
-            this.gradients.set(i, ArrayUtil.add(this.gradients.get(i), arr));
+            ArrayUtil.addInPlace(this.gradients.get(i), arr);
         }
     }
 
@@ -141,10 +232,8 @@ public class KernelFilter extends Weight {
      */
     @Override
     public void clearGradient() {
-        this.gradients.clear();
-        for (int i = 0; i < this.values.size(); i++) {
-            this.gradients.add(new BaseNDArray.BaseNDArrayBuilder().zeros(this.kernelShape).build());
-        }
+        // The gradients are views: clear the buffer in place
+        Arrays.fill(this.packedGradients.getData(), 0.0d);
     }
 
     /*****************************************
@@ -161,12 +250,27 @@ public class KernelFilter extends Weight {
     @Override
     public INDArray getLearningRates(int i){ return this.learningRatesPerElements.get(i); }
 
+    /**
+     * @return The packed filters, the filters are views over it
+     */
+    @Override
+    public List<INDArray> getParameters(){ return new ArrayList<>(Collections.singletonList(this.packedValues)); }
+
+    /**
+     * @return The packed gradients, the gradients of the filters are views over it
+     */
+    @Override
+    public List<INDArray> getGradients(){ return new ArrayList<>(Collections.singletonList(this.packedGradients)); }
+
+    @Override
+    public List<INDArray> getOptimizerStates(){ return new ArrayList<>(Arrays.asList(this.packedLearningRates, this.packedFirstMoments)); }
+
     /*****************************************
      *
      * Setters
      *
      *****************************************/
-    public void setValue(int i, INDArray arr){ this.values.set(i, arr);}
+    public void setValue(int i, INDArray arr){ ArrayUtil.copyInto(arr, this.values.get(i)); }
 
     /**
      * Cast the instance of the object into a JSONObject
@@ -22,12 +22,17 @@ package fr.pops.nn.weights.weight;
 import fr.pops.math.ArrayUtil;
 import fr.pops.math.ndarray.Shape;
 import fr.pops.nn.weights.weightInit.WeightInitUtil;
+import fr.pops.optimizer.Optimizer;
 import fr.pops.popscst.cst.EnumCst;
 import fr.pops.math.ndarray.BaseNDArray;
 import fr.pops.math.ndarray.INDArray;
 import org.json.JSONObject;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class StandardWeight extends Weight {
@@ -40,6 +45,7 @@ public class StandardWeight extends Weight {
     private INDArray value;
     private INDArray gradient;
     private INDArray learningRatesPerElements;
+    private INDArray firstMoments;
 
     /*****************************************
      *
@@ -69,6 +75,7 @@ public class StandardWeight extends Weight {
         this.value = value;
         this.gradient = new BaseNDArray.BaseNDArrayBuilder().zeros(value.getShape()).build();
         this.learningRatesPerElements = new BaseNDArray.BaseNDArrayBuilder().zeros(value.getShape()).build();
+        this.firstMoments = new BaseNDArray.BaseNDArrayBuilder().zeros(value.getShape()).build();
     }
 
     /*****************************************
@@ -91,33 +98,62 @@ public class StandardWeight extends Weight {
         this.gradient =  new BaseNDArray.BaseNDArrayBuilder().zeros(shape).build();
         // Initialize the learning rates per element as an empty matrix
         this.learningRatesPerElements =  new BaseNDArray.BaseNDArrayBuilder().zeros(shape).build();
+        // Initialize the velocities / first moments as an empty matrix
+        this.firstMoments = new BaseNDArray.BaseNDArrayBuilder().zeros(shape).build();
     }
 
     /**
      * Compute individual gradients of the weights
+     * They are accumulated in place into the gradient:
+     * a single sample is a rank-1 update, a mini-batch a single matrix-matrix product
      * @param sigma The error transmitted through the layers
      * @param activations The activations of the previous layer
      */
     @Override
     public void computeWeightsIndividualGradient(INDArray sigma, INDArray activations){
-        double[][] res = new double[sigma.getShape().getSize()][activations.getShape().getSize()];
-        for(int i = 0; i < sigma.getShape().getSize(); i++){
-            for(int j = 0; j < activations.getShape().getSize(); j++){
-                res[i][j] = activations.getData()[j] * sigma.getData()[i];
-            }
-        }
-        INDArray gradient = new BaseNDArray(res, sigma.getShape().getSize(), activations.getShape().getSize());
-        completeGradient(gradient);
+        ArrayUtil.addOuterProducts(sigma, activations, this.gradient);
     }
 
+    /**
+     * Copy for a worker of a data-parallel training
+     * @return Weights sharing these values, with their own gradient
+     */
+    public StandardWeight replicate(){
+        StandardWeight res = new StandardWeight();
+        res.value = this.value;
+        res.gradient = new BaseNDArray.BaseNDArrayBuilder().zeros(this.gradient.getShape()).build();
+        res.learningRatesPerElements = this.learningRatesPerElements;
+        res.firstMoments = this.firstMoments;
+        return res;
+    }
 
+    /**
+     * Copy holding its own values, for a frozen snapshot of a network
+     * @return Weights with a copy of these values and their own gradient
+     */
+    public StandardWeight copy(){
+        StandardWeight res = this.replicate();
+        res.value = this.value.dup();
+        return res;
+    }
 
     /**
      * @param arr The array containing new gradient values to add to the current gradient
      */
     @Override
     public void completeGradient(INDArray arr){
-        this.gradient = ArrayUtil.add(this.gradient, arr);
+        ArrayUtil.addInPlace(this.gradient, arr);
+    }
+
+    /**
+     * Update the values in place from the gradient
+     * @param optimizer The update rule
+     * @param learningRate The learning rate
+     * @param batchSize The number of samples the gradient is summed over
+     */
+    @Override
+    public void update(Optimizer optimizer, double learningRate, int batchSize){
+        optimizer.update(this.value, this.gradient, this.firstMoments, this.learningRatesPerElements, learningRate, batchSize);
     }
 
     /**
@@ -125,7 +161,9 @@ public class StandardWeight extends Weight {
      */
     @Override
     public void clearGradient() {
-        this.gradient = new BaseNDArray.BaseNDArrayBuilder().zeros(this.gradient.getShape()).build();
+        // The gradient is cleared in place, the optimizer and the workers keep their references to it
+        int offset = this.gradient.getOffset();
+        Arrays.fill(this.gradient.getData(), offset, offset + this.gradient.getShape().getSize(), 0.0d);
     }
 
     /*****************************************
@@ -151,6 +189,15 @@ public class StandardWeight extends Weight {
     @Override
     public INDArray getLearningRates(){ return this.learningRatesPerElements; }
 
+    @Override
+    public List<INDArray> getParameters(){ return new ArrayList<>(Collections.singletonList(this.value)); }
+
+    @Override
+    public List<INDArray> getGradients(){ return new ArrayList<>(Collections.singletonList(this.gradient)); }
+
+    @Override
+    public List<INDArray> getOptimizerStates(){ return new ArrayList<>(Arrays.asList(this.learningRatesPerElements, this.firstMoments)); }
+
     /*****************************************
      *
      * Setters
@@ -21,8 +21,12 @@ package fr.pops.nn.weights.weight;
 
 import fr.pops.jsonparser.IRecordable;
 import fr.pops.math.ndarray.INDArray;
+import fr.pops.optimizer.Optimizer;
 import fr.pops.popscst.cst.EnumCst;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public abstract class Weight implements IRecordable {
 
     /*****************************************
@@ -60,6 +64,14 @@ public abstract class Weight implements IRecordable {
      */
     public abstract void clearGradient();
 
+    /**
+     * Update the values in place from the gradient
+     * @param optimizer The update rule
+     * @param learningRate The learning rate
+     * @param batchSize The number of samples the gradient is summed over
+     */
+    public void update(Optimizer optimizer, double learningRate, int batchSize){}
+
     /*****************************************
      *
      * Getters
@@ -77,6 +89,21 @@ public abstract class Weight implements IRecordable {
 
     public INDArray getLearningRates(int i){ return null; }
 
+    /**
+     * @return The arrays holding the values of the weights, as saved in the checkpoints
+     */
+    public List<INDArray> getParameters(){ return new ArrayList<>(); }
+
+    /**
+     * @return The arrays holding the gradients, in the order of the parameters
+     */
+    public List<INDArray> getGradients(){ return new ArrayList<>(); }
+
+    /**
+     * @return The arrays holding the state of the optimizer, as saved in the checkpoints
+     */
+    public List<INDArray> getOptimizerStates(){ return new ArrayList<>(); }
+
     /*****************************************
      *
      * Setters
@@ -11,6 +11,10 @@
  * Name: Optimizer.java
  *
  * Description: Class defining optimizers.
+ *              Each parameter tensor is updated in place by a single loop
+ *              reading its gradient and its moments: SGD, momentum, Nesterov,
+ *              Adagrad, RMSProp, Adam and AdamW.
+ *              The moments are kept by the weights and the bias between two updates.
  *
  * Author: Charles MERINO
  *
@@ -19,16 +23,16 @@
  ******************************************************************************/
 package fr.pops.optimizer;
 
-import fr.pops.math.ArrayUtil;
+import fr.pops.math.Parallel;
+import fr.pops.math.ndarray.HeapDoubleDataBuffer;
 import fr.pops.math.ndarray.INDArray;
+import fr.pops.popscst.cst.EnumCst;
+import fr.pops.popscst.defaultvalues.NeuralNetworkDefaultValues;
+import fr.pops.popscst.defaultvalues.OptimizerDefaultValues;
 
 @SuppressWarnings("unused")
 public class Optimizer {
 
-    // Parameter to avoid dividing by 0
-    private final static float EPSILON = 1E-8f;
-
-
     /*****************************************
      *
      * TODO: Restore this part
@@ -49,24 +53,31 @@ public class Optimizer {
 
     /*****************************************
      *
-     * Adagrad
+     * Attributes
+     *
+     *****************************************/
+    private EnumCst.Optimizer type;
+    private double momentum;
+    private double decay;
+    private double beta1;
+    private double beta2;
+    // Parameter to avoid dividing by 0
+    private double epsilon;
+    private double weightDecay;
+
+    // Number of updates, used by the bias correction of Adam
+    private int step = 0;
+
+    /*****************************************
+     *
+     * Ctor
      *
      *****************************************/
     /**
-     * Method for the learning rates of the biases
-     * @param baseLearningRate
-     * @param previousLearningRates
-     * @param gradient
-     * @return
+     * Use the builder
      */
-    private static INDArray Adagrad(double baseLearningRate, INDArray previousLearningRates, INDArray gradient){
-        // w^2
-        INDArray squaredGradient = fr.pops.math.ArrayUtil.hadamard(gradient, gradient);
-        // v(t+1) = v(t) + w^2
-        INDArray updatedLearningRates = fr.pops.math.ArrayUtil.add(previousLearningRates, squaredGradient);
-        // res = eta / sqrt(v(t+1) + epsilon)
-        INDArray toto = ArrayUtil.apply(x -> ((-1) * baseLearningRate * Math.pow(x + EPSILON, -(1/Math.sqrt(2)))), updatedLearningRates);
-        return toto;
+    private Optimizer(){
+        // Nothing to be done
     }
 
     /*****************************************
@@ -75,14 +86,272 @@ public class Optimizer {
      *
      *****************************************/
     /**
-     * For weights
-     * @param baseLearningRate
-     * @param previousLearningRates
-     * @param gradient
-     * @return
+     * To be called once before updating every parameter of the network
+     */
+    public void nextStep(){
+        this.step++;
+    }
+
+    /**
+     * Update a weight tensor in place
+     * @param value The values, modified
+     * @param gradient The gradient summed over the mini-batch
+     * @param firstMoments The velocities or the first moments, modified
+     * @param secondMoments The accumulated squared gradients or the second moments, modified
+     * @param learningRate The learning rate
+     * @param batchSize The number of samples the gradient is summed over
+     */
+    public void update(INDArray value, INDArray gradient, INDArray firstMoments, INDArray secondMoments, double learningRate, int batchSize){
+        this.update(value, gradient, firstMoments, secondMoments, learningRate, batchSize, true);
+    }
+
+    /**
+     * Update a parameter tensor in place
+     * The loop reads each value, its gradient and its moments once
+     * @param value The values, modified
+     * @param gradient The gradient summed over the mini-batch
+     * @param firstMoments The velocities or the first moments, modified
+     * @param secondMoments The accumulated squared gradients or the second moments, modified
+     * @param learningRate The learning rate
+     * @param batchSize The number of samples the gradient is summed over
+     * @param decayed False to leave the values out of the weight decay of AdamW, for a bias for instance
+     */
+    public void update(INDArray value, INDArray gradient, INDArray firstMoments, INDArray secondMoments, double learningRate, int batchSize, boolean decayed){
+        int size = value.getShape().getSize();
+        if (gradient.getShape().getSize() != size
+                || firstMoments.getShape().getSize() != size
+                || secondMoments.getShape().getSize() != size){
+            System.out.println("In Optimizer.update: the values, the gradient and the moments must have the same size.");
+            return;
+        } else if (!onHeapDoubles(value, gradient, firstMoments, secondMoments)){
+            System.out.println("In Optimizer.update: the parameters must be stored in double arrays.");
+            return;
+        }
+
+        double[] w = value.getData();
+        double[] g = gradient.getData();
+        double[] m = firstMoments.getData();
+        double[] v = secondMoments.getData();
+        int offW = value.getOffset();
+        int offG = gradient.getOffset();
+        int offM = firstMoments.getOffset();
+        int offV = secondMoments.getOffset();
+
+        // The gradient is averaged over the mini-batch
+        double scale = 1.0d / Math.max(1, batchSize);
+        double lr = learningRate;
+        double mu = this.momentum;
+        double rho = this.decay;
+        double b1 = this.beta1;
+        double b2 = this.beta2;
+        double eps = this.epsilon;
+        int t = Math.max(1, this.step);
+        double correction1 = 1 - Math.pow(b1, t);
+        double correction2 = 1 - Math.pow(b2, t);
+        double shrink = this.type == EnumCst.Optimizer.ADAMW && decayed ? 1 - lr * this.weightDecay : 1;
+
+        switch (this.type){
+            case MOMENTUM:
+                Parallel.forRange(0, size, size, (from, to) -> {
+                    for (int i = from; i < to; i++){
+                        double vel = mu * m[offM + i] + scale * g[offG + i];
+                        m[offM + i] = vel;
+                        w[offW + i] -= lr * vel;
+                    }
+                });
+                break;
+            case NESTEROV:
+                Parallel.forRange(0, size, size, (from, to) -> {
+                    for (int i = from; i < to; i++){
+                        double grad = scale * g[offG + i];
+                        double vel = mu * m[offM + i] + grad;
+                        m[offM + i] = vel;
+                        w[offW + i] -= lr * (grad + mu * vel);
+                    }
+                });
+                break;
+            case ADAGRAD:
+                Parallel.forRange(0, size, size, (from, to) -> {
+                    for (int i = from; i < to; i++){
+                        double grad = scale * g[offG + i];
+                        double acc = v[offV + i] + grad * grad;
+                        v[offV + i] = acc;
+                        w[offW + i] -= lr * grad / (Math.sqrt(acc) + eps);
+                    }
+                });
+                break;
+            case RMSPROP:
+                Parallel.forRange(0, size, size, (from, to) -> {
+                    for (int i = from; i < to; i++){
+                        double grad = scale * g[offG + i];
+                        double acc = rho * v[offV + i] + (1 - rho) * grad * grad;
+                        v[offV + i] = acc;
+                        w[offW + i] -= lr * grad / (Math.sqrt(acc) + eps);
+                    }
+                });
+                break;
+            case ADAM:
+            case ADAMW:
+                Parallel.forRange(0, size, size, (from, to) -> {
+                    for (int i = from; i < to; i++){
+                        double grad = scale * g[offG + i];
+                        double first = b1 * m[offM + i] + (1 - b1) * grad;
+                        double second = b2 * v[offV + i] + (1 - b2) * grad * grad;
+                        m[offM + i] = first;
+                        v[offV + i] = second;
+                        w[offW + i] = shrink * w[offW + i] - lr * (first / correction1) / (Math.sqrt(second / correction2) + eps);
+                    }
+                });
+                break;
+            default:
+                Parallel.forRange(0, size, size, (from, to) -> {
+                    for (int i = from; i < to; i++){
+                        w[offW + i] -= lr * scale * g[offG + i];
+                    }
+                });
+        }
+    }
+
+    /*****************************************
+     *
+     * Private methods
+     *
+     *****************************************/
+    /**
+     * @param arrays The arrays to check
+     * @return True if all the arrays are stored in double arrays
      */
-    public static INDArray updateLearningRates(double baseLearningRate, INDArray previousLearningRates, INDArray gradient){
-        return Adagrad(baseLearningRate, previousLearningRates, gradient);
+    private static boolean onHeapDoubles(INDArray... arrays){
+        for (INDArray arr : arrays){
+            if (!(arr.getDataBuffer() instanceof HeapDoubleDataBuffer)){
+                return false;
+            }
+        }
+        return true;
     }
 
+    /*****************************************
+     *
+     * Getters
+     *
+     *****************************************/
+    public EnumCst.Optimizer getType(){ return this.type; }
+
+    /**
+     * @return The number of updates done so far
+     */
+    public int getStep(){ return this.step; }
+
+    /*****************************************
+     *
+     * Setters
+     *
+     *****************************************/
+    /**
+     * The number of updates is restored along with the moments when a training resumes
+     * @param step The number of updates done so far
+     */
+    public void setStep(int step){ this.step = Math.max(0, step); }
+
+    /*****************************************
+     *
+     * Builder
+     *
+     *****************************************/
+    public static class OptimizerBuilder {
+
+        /*****************************************
+         *
+         * Attributes
+         *
+         *****************************************/
+        private EnumCst.Optimizer type = NeuralNetworkDefaultValues.DEFAULT_OPTIMIZER;
+        private double momentum = OptimizerDefaultValues.DEFAULT_MOMENTUM;
+        private double decay = OptimizerDefaultValues.DEFAULT_RMSPROP_DECAY;
+        private double beta1 = OptimizerDefaultValues.DEFAULT_BETA_1;
+        private double beta2 = OptimizerDefaultValues.DEFAULT_BETA_2;
+        private double epsilon = OptimizerDefaultValues.DEFAULT_EPSILON;
+        private double weightDecay = OptimizerDefaultValues.DEFAULT_WEIGHT_DECAY;
+
+        /*****************************************
+         *
+         * With methods
+         *
+         *****************************************/
+        /**
+         * @param type The update rule
+         * @return The builder itself
+         */
+        public OptimizerBuilder withType(EnumCst.Optimizer type){
+            this.type = type;
+            return this;
+        }
+
+        /**
+         * @param momentum The factor of the velocity for MOMENTUM and NESTEROV
+         * @return The builder itself
+         */
+        public OptimizerBuilder withMomentum(double momentum){
+            this.momentum = momentum;
+            return this;
+        }
+
+        /**
+         * @param decay The decay of the squared gradients for RMSPROP
+         * @return The builder itself
+         */
+        public OptimizerBuilder withDecay(double decay){
+            this.decay = decay;
+            return this;
+        }
+
+        /**
+         * @param beta1 The decay of the first moments for ADAM and ADAMW
+         * @param beta2 The decay of the second moments for ADAM and ADAMW
+         * @return The builder itself
+         */
+        public OptimizerBuilder withBetas(double beta1, double beta2){
+            this.beta1 = beta1;
+            this.beta2 = beta2;
+            return this;
+        }
+
+        /**
+         * @param epsilon The term avoiding to divide by 0
+         * @return The builder itself
+         */
+        public OptimizerBuilder withEpsilon(double epsilon){
+            this.epsilon = epsilon;
+            return this;
+        }
+
+        /**
+         * @param weightDecay The decoupled weight decay of ADAMW
+         * @return The builder itself
+         */
+        public OptimizerBuilder withWeightDecay(double weightDecay){
+            this.weightDecay = weightDecay;
+            return this;
+        }
+
+        /*****************************************
+         *
+         * Build method
+         *
+         *****************************************/
+        /**
+         * @return The optimizer
+         */
+        public Optimizer build(){
+            Optimizer optimizer = new Optimizer();
+            optimizer.type = this.type == null ? EnumCst.Optimizer.NONE : this.type;
+            optimizer.momentum = this.momentum;
+            optimizer.decay = this.decay;
+            optimizer.beta1 = this.beta1;
+            optimizer.beta2 = this.beta2;
+            optimizer.epsilon = this.epsilon;
+            optimizer.weightDecay = this.weightDecay;
+            return optimizer;
+        }
+    }
 }
@@ -83,7 +83,7 @@ public abstract class EnumCst {
     /**
      * Optimizer
      */
-    public enum Optimizer { NONE, ADAGRAD }
+    public enum Optimizer { NONE, MOMENTUM, NESTEROV, ADAGRAD, RMSPROP, ADAM, ADAMW }
 
     /*****************************************
      *
@@ -93,11 +93,16 @@ public abstract class EnumCst {
     /**
      * Value type
      */
-    public enum DataTypes { INTEGER, DOUBLE }
+    public enum DataTypes { INTEGER, DOUBLE, FLOAT }
 
     /**
      * Colors of an image
      */
     public enum ImageTypes { COLORIZED, GREYSCALE }
 
+    /**
+     * Window applied to the frames of a signal
+     */
+    public enum WindowFunctions { RECTANGULAR, HANN, HAMMING }
+
 }
@@ -0,0 +1,31 @@
+/*******************************************************************************
+ *
+ *                         PPPP     OOOO     PPPP    SSSS
+ *                        PP  PP   OO  OO   PP  PP  SS
+ *                        PP  PP  OO    OO  PP  PP  SS
+ *                        PP  PP  OO    OO  PP  PP   SSSS
+ *                        PPPP    OO    OO  PPPP        SS
+ *                        PP       OO  OO   PP          SS
+ *                        PP        OOOO    PP       SSSS
+ *
+ * Name: InferenceDefaultValues.java
+ *
+ * Description: Default values for the inference of the neural networks
+ *
+ * Author: Charles MERINO
+ *
+ * Date: 18/10/2026
+ *
+ ******************************************************************************/
+package fr.pops.popscst.defaultvalues;
+
+public abstract class InferenceDefaultValues {
+
+    // Int
+    public final static int DEFAULT_MAX_BATCH_SIZE = 32;
+
+    // Long
+    // Microseconds a request can wait for other ones to join its batch
+    public final static long DEFAULT_MAX_DELAY = 1000L;
+
+}
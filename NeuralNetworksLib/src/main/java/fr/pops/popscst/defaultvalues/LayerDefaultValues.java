@@ -19,6 +19,7 @@
  ******************************************************************************/
 package fr.pops.popscst.defaultvalues;
 
+import fr.pops.commoncst.EnumCst.PoolingMethod;
 import fr.pops.popscst.cst.EnumCst;
 
 public abstract class LayerDefaultValues {
@@ -39,5 +40,6 @@ public abstract class LayerDefaultValues {
     public final static EnumCst.ActivationFunction DEFAULT_ACTIVATION_FUNCTION_DENSE = EnumCst.ActivationFunction.SIGMOID;
     public final static EnumCst.ActivationFunction DEFAULT_ACTIVATION_FUNCTION_CONVOLUTION = EnumCst.ActivationFunction.RELU;
     public final static EnumCst.WeightsInitMethod DEFAULT_WEIGHT_INIT_METHOD = EnumCst.WeightsInitMethod.XAVIER;
+    public final static PoolingMethod DEFAULT_POOLING_METHOD = PoolingMethod.MAX;
 
 }
@@ -36,9 +36,15 @@ public abstract class NeuralNetworkDefaultValues {
     // Int
     public static final int DEFAULT_BATCH_SIZE = 1;
     public static final int DEFAULT_NB_ITERATIONS = 1;
+    public static final int DEFAULT_PREFETCH_DEPTH = 2;
+    public static final int DEFAULT_NB_WORKERS = 1;
+
+    // Long
+    public static final long DEFAULT_SEED = 0L;
 
     // Boolean
     public static final boolean DEFAULT_REGULARISATION_ON = false;
+    public static final boolean DEFAULT_SHUFFLE = false;
 
     // Enum
     public final static EnumCst.Optimizer DEFAULT_OPTIMIZER = EnumCst.Optimizer.NONE;
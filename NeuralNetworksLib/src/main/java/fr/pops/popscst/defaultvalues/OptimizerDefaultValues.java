@@ -0,0 +1,32 @@
+/*******************************************************************************
+ *
+ *                         PPPP     OOOO     PPPP    SSSS
+ *                        PP  PP   OO  OO   PP  PP  SS
+ *                        PP  PP  OO    OO  PP  PP  SS
+ *                        PP  PP  OO    OO  PP  PP   SSSS
+ *                        PPPP    OO    OO  PPPP        SS
+ *                        PP       OO  OO   PP          SS
+ *                        PP        OOOO    PP       SSSS
+ *
+ * Name: OptimizerDefaultValues.java
+ *
+ * Description: Default values for the optimizers updating the neural networks
+ *
+ * Author: Charles MERINO
+ *
+ * Date: 18/10/2026
+ *
+ ******************************************************************************/
+package fr.pops.popscst.defaultvalues;
+
+public abstract class OptimizerDefaultValues {
+
+    // Dbl
+    public final static double DEFAULT_MOMENTUM = 0.9d;
+    public final static double DEFAULT_RMSPROP_DECAY = 0.9d;
+    public final static double DEFAULT_BETA_1 = 0.9d;
+    public final static double DEFAULT_BETA_2 = 0.999d;
+    public final static double DEFAULT_EPSILON = 1E-8d;
+    public final static double DEFAULT_WEIGHT_DECAY = 0.01d;
+
+}
@@ -0,0 +1,174 @@
+/*******************************************************************************
+ *
+ *                         PPPP     OOOO     PPPP    SSSS
+ *                        PP  PP   OO  OO   PP  PP  SS
+ *                        PP  PP  OO    OO  PP  PP  SS
+ *                        PP  PP  OO    OO  PP  PP   SSSS
+ *                        PPPP    OO    OO  PPPP        SS
+ *                        PP       OO  OO   PP          SS
+ *                        PP        OOOO    PP       SSSS
+ *
+ * Name: MelFilterbank.java
+ *
+ * Description: Class defining a bank of triangular filters evenly spaced on the mel scale.
+ *              Only the non zero weights of each filter are stored.
+ *              Filterbanks are computed once per configuration and shared.
+ *
+ * Author: Charles MERINO
+ *
+ * Date: 18/10/2026
+ *
+ ******************************************************************************/
+package fr.pops.speechrecognizer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class MelFilterbank {
+
+    /*****************************************
+     *
+     * Static Attributes
+     *
+     *****************************************/
+    // Filterbanks already computed, by configuration
+    private static final Map<String, MelFilterbank> FILTERBANKS = new ConcurrentHashMap<>();
+
+    /*****************************************
+     *
+     * Attributes
+     *
+     *****************************************/
+    private int sampleRate;
+    private int fftSize;
+    private int nbFilters;
+    private double minFrequency;
+    private double maxFrequency;
+
+    // Filter i weights the bins firstBins[i] to firstBins[i] + weights[i].length - 1
+    private int[] firstBins;
+    private double[][] weights;
+
+    /*****************************************
+     *
+     * Ctor
+     *
+     *****************************************/
+    /**
+     * Use get to share the filterbanks
+     */
+    private MelFilterbank(int sampleRate, int fftSize, int nbFilters, double minFrequency, double maxFrequency){
+        this.sampleRate = sampleRate;
+        this.fftSize = fftSize;
+        this.nbFilters = nbFilters;
+        this.minFrequency = minFrequency;
+        this.maxFrequency = maxFrequency;
+        this.firstBins = new int[nbFilters];
+        this.weights = new double[nbFilters][];
+
+        // Edges of the filters, evenly spaced in mel
+        double minMel = toMel(minFrequency);
+        double maxMel = toMel(maxFrequency);
+        double[] edges = new double[nbFilters + 2];
+        for (int i = 0; i < edges.length; i++){
+            edges[i] = toHertz(minMel + i * (maxMel - minMel) / (nbFilters + 1));
+        }
+
+        // Triangles evaluated at the frequency of each bin
+        double binWidth = (double) sampleRate / fftSize;
+        int nbBins = fftSize / 2 + 1;
+        for (int i = 0; i < nbFilters; i++){
+            double left = edges[i];
+            double center = edges[i + 1];
+            double right = edges[i + 2];
+            int first = Math.min(nbBins, (int) Math.ceil(left / binWidth));
+            int last = Math.min(nbBins - 1, (int) Math.floor(right / binWidth));
+            this.firstBins[i] = first;
+            this.weights[i] = new double[Math.max(0, last - first + 1)];
+            if (this.weights[i].length == 0){
+                System.out.println("Filter " + i + " of the mel filterbank covers no bin: use fewer filters or a larger FFT.");
+            }
+            for (int k = first; k <= last; k++){
+                double f = k * binWidth;
+                // An edge of zero width, when the edges are equal, is a step
+                double w;
+                if (f <= center){
+                    w = center > left ? (f - left) / (center - left) : 1;
+                } else {
+                    w = right > center ? (right - f) / (right - center) : 1;
+                }
+                this.weights[i][k - first] = Math.max(0, w);
+            }
+        }
+    }
+
+    /*****************************************
+     *
+     * Main methods
+     *
+     *****************************************/
+    /**
+     * The filterbank is computed on first use and shared afterwards
+     * @param sampleRate The sample rate of the signal
+     * @param fftSize The size of the transforms, the spectra hold fftSize / 2 + 1 bins
+     * @param nbFilters The number of filters
+     * @param minFrequency The lower edge of the first filter in Hz
+     * @param maxFrequency The upper edge of the last filter in Hz, at most sampleRate / 2
+     * @return The filterbank
+     */
+    public static MelFilterbank get(int sampleRate, int fftSize, int nbFilters, double minFrequency, double maxFrequency){
+        double max = Math.min(maxFrequency, sampleRate / 2.0);
+        double min = Math.max(0, Math.min(minFrequency, max));
+        String key = sampleRate + ":" + fftSize + ":" + nbFilters + ":" + min + ":" + max;
+        return FILTERBANKS.computeIfAbsent(key, k -> new MelFilterbank(sampleRate, fftSize, nbFilters, min, max));
+    }
+
+    /**
+     * Energy of a spectrum in each filter
+     * @param spectrum The power spectrum, fftSize / 2 + 1 bins
+     * @param out Receives the nbFilters energies from offset
+     * @param offset The index of the first energy in out
+     */
+    public void apply(double[] spectrum, double[] out, int offset){
+        for (int i = 0; i < this.nbFilters; i++){
+            double[] w = this.weights[i];
+            int first = this.firstBins[i];
+            double energy = 0;
+            for (int k = 0; k < w.length; k++){
+                energy += w[k] * spectrum[first + k];
+            }
+            out[offset + i] = energy;
+        }
+    }
+
+    /**
+     * @param frequency A frequency in Hz
+     * @return The same frequency in mel
+     */
+    public static double toMel(double frequency){
+        return 2595 * Math.log10(1 + frequency / 700);
+    }
+
+    /**
+     * @param mel A frequency in mel
+     * @return The same frequency in Hz
+     */
+    public static double toHertz(double mel){
+        return 700 * (Math.pow(10, mel / 2595) - 1);
+    }
+
+    /*****************************************
+     *
+     * Getters
+     *
+     *****************************************/
+    public int getSampleRate(){ return this.sampleRate; }
+
+    public int getFftSize(){ return this.fftSize; }
+
+    public int getNbFilters(){ return this.nbFilters; }
+
+    public double getMinFrequency(){ return this.minFrequency; }
+
+    public double getMaxFrequency(){ return this.maxFrequency; }
+}
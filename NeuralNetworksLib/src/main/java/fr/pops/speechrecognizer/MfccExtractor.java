@@ -0,0 +1,331 @@
+/*******************************************************************************
+ *
+ *                         PPPP     OOOO     PPPP    SSSS
+ *                        PP  PP   OO  OO   PP  PP  SS
+ *                        PP  PP  OO    OO  PP  PP  SS
+ *                        PP  PP  OO    OO  PP  PP   SSSS
+ *                        PPPP    OO    OO  PPPP        SS
+ *                        PP       OO  OO   PP          SS
+ *                        PP        OOOO    PP       SSSS
+ *
+ * Name: MfccExtractor.java
+ *
+ * Description: Class extracting the Mel-Frequency Cepstral Coefficients of a signal.
+ *              Pre-emphasis, framing, windowing, power spectrum, mel filterbank,
+ *              logarithm and DCT. The frames are produced as batches along the
+ *              batch axis of an INDArray, one block of frames at a time.
+ *
+ * Author: Charles MERINO
+ *
+ * Date: 18/10/2026
+ *
+ ******************************************************************************/
+package fr.pops.speechrecognizer;
+
+import fr.pops.datareader.WaveReader;
+import fr.pops.math.Parallel;
+import fr.pops.math.ndarray.BaseNDArray;
+import fr.pops.math.ndarray.INDArray;
+import fr.pops.math.ndarray.Shape;
+import fr.pops.popscst.cst.EnumCst;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+public class MfccExtractor {
+
+    /*****************************************
+     *
+     * Static Attributes
+     *
+     *****************************************/
+    // Floor of the filter energies before the logarithm
+    private static final double MIN_ENERGY = 1E-10;
+
+    /*****************************************
+     *
+     * Attributes
+     *
+     *****************************************/
+    private Spectrogram spectrogram;
+    private double preEmphasis;
+    private int nbFilters;
+    private int nbCoefficients;
+    private double minFrequency;
+    private double maxFrequency;
+
+    // dct[i][m] = weight of the log energy of filter m in coefficient i
+    private double[][] dct;
+
+    // Filter energies of each thread
+    private ThreadLocal<double[]> energies;
+
+    /*****************************************
+     *
+     * Ctor
+     *
+     *****************************************/
+    /**
+     * Use the builder
+     */
+    private MfccExtractor(){
+        // Nothing to be done
+    }
+
+    /*****************************************
+     *
+     * Main methods
+     *
+     *****************************************/
+    /**
+     * Stream a wave file through the pipeline, its header is read here and the file is closed at the end
+     * @param reader The reader of a file not read yet
+     * @param consumer Receives the coefficients of each block of frames, shape (nbCoefficients, 1, 1, nbFrames)
+     */
+    public void process(WaveReader reader, Consumer<INDArray> consumer) throws IOException {
+        reader.readHeader();
+        try {
+            MelFilterbank filterbank = MelFilterbank.get(reader.getSampleRate(), this.spectrogram.getWindowSize(),
+                                                         this.nbFilters, this.minFrequency, this.maxFrequency);
+
+            // y[n] = x[n] - a * x[n - 1], the last sample of a read is kept for the next one
+            double[] previous = new double[1];
+            Spectrogram.SampleSource source = (dst, offset, length) -> {
+                int read = reader.readSamples(dst, offset, length);
+                if (read > 0){
+                    double last = dst[offset + read - 1];
+                    for (int i = offset + read - 1; i > offset; i--){
+                        dst[i] -= this.preEmphasis * dst[i - 1];
+                    }
+                    dst[offset] -= this.preEmphasis * previous[0];
+                    previous[0] = last;
+                }
+                return read;
+            };
+
+            this.spectrogram.process(source, (firstFrame, powers, nbFrames) ->
+                    consumer.accept(this.computeCoefficients(filterbank, powers, nbFrames)));
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Coefficients of a whole file
+     * @param reader The reader of a file not read yet
+     * @return The coefficients of every frame, shape (nbCoefficients, 1, 1, nbFrames)
+     */
+    public INDArray extract(WaveReader reader) throws IOException {
+        List<INDArray> blocks = new ArrayList<>();
+        this.process(reader, blocks::add);
+        int nbFrames = 0;
+        for (INDArray block : blocks){
+            nbFrames += block.getShape().getBatchAxisLength();
+        }
+        double[] data = new double[nbFrames * this.nbCoefficients];
+        int offset = 0;
+        for (INDArray block : blocks){
+            double[] blockData = block.getData();
+            System.arraycopy(blockData, 0, data, offset, blockData.length);
+            offset += blockData.length;
+        }
+        return new BaseNDArray.BaseNDArrayBuilder().withData(data)
+                                                   .withShape(new Shape(this.nbCoefficients, 1, 1, nbFrames))
+                                                   .build();
+    }
+
+    /*****************************************
+     *
+     * Private methods
+     *
+     *****************************************/
+    /**
+     * Filterbank, logarithm and DCT of the frames of a block, split across the threads
+     */
+    private INDArray computeCoefficients(MelFilterbank filterbank, double[][] powers, int nbFrames){
+        double[] data = new double[nbFrames * this.nbCoefficients];
+        long work = (long) nbFrames * this.nbFilters * (this.nbCoefficients + powers[0].length / this.nbFilters);
+        Parallel.forRange(0, nbFrames, work, (from, to) -> {
+            double[] logEnergies = this.energies.get();
+            for (int f = from; f < to; f++){
+                filterbank.apply(powers[f], logEnergies, 0);
+                for (int m = 0; m < this.nbFilters; m++){
+                    logEnergies[m] = Math.log(Math.max(logEnergies[m], MIN_ENERGY));
+                }
+                int offset = f * this.nbCoefficients;
+                for (int i = 0; i < this.nbCoefficients; i++){
+                    double[] row = this.dct[i];
+                    double c = 0;
+                    for (int m = 0; m < this.nbFilters; m++){
+                        c += row[m] * logEnergies[m];
+                    }
+                    data[offset + i] = c;
+                }
+            }
+        });
+        return new BaseNDArray.BaseNDArrayBuilder().withData(data)
+                                                   .withShape(new Shape(this.nbCoefficients, 1, 1, nbFrames))
+                                                   .build();
+    }
+
+    /**
+     * Orthonormal DCT-II
+     * @return The matrix of size nbCoefficients * nbFilters
+     */
+    private static double[][] dctMatrix(int nbCoefficients, int nbFilters){
+        double[][] res = new double[nbCoefficients][nbFilters];
+        for (int i = 0; i < nbCoefficients; i++){
+            double scale = Math.sqrt((i == 0 ? 1.0 : 2.0) / nbFilters);
+            for (int m = 0; m < nbFilters; m++){
+                res[i][m] = scale * Math.cos(Math.PI * i * (m + 0.5) / nbFilters);
+            }
+        }
+        return res;
+    }
+
+    /*****************************************
+     *
+     * Getters
+     *
+     *****************************************/
+    public int getNbCoefficients(){ return this.nbCoefficients; }
+
+    public int getNbFilters(){ return this.nbFilters; }
+
+    public Spectrogram getSpectrogram(){ return this.spectrogram; }
+
+    /*****************************************
+     *
+     * Builder
+     *
+     *****************************************/
+    public static class MfccExtractorBuilder {
+
+        /*****************************************
+         *
+         * Attributes
+         *
+         *****************************************/
+        private int windowSize = 512;
+        private int hopSize = 160;
+        private EnumCst.WindowFunctions windowFunction = EnumCst.WindowFunctions.HAMMING;
+        private double preEmphasis = 0.97;
+        private int nbFilters = 26;
+        private int nbCoefficients = 13;
+        private double minFrequency = 0;
+        private double maxFrequency = Double.MAX_VALUE;
+        private int framesPerBlock = 256;
+
+        /*****************************************
+         *
+         * With methods
+         *
+         *****************************************/
+        /**
+         * @param windowSize The number of samples of a frame, a power of 2
+         * @return The builder itself
+         */
+        public MfccExtractorBuilder withWindowSize(int windowSize){
+            this.windowSize = windowSize;
+            return this;
+        }
+
+        /**
+         * @param hopSize The number of samples between the starts of two frames
+         * @return The builder itself
+         */
+        public MfccExtractorBuilder withHopSize(int hopSize){
+            this.hopSize = hopSize;
+            return this;
+        }
+
+        /**
+         * @param windowFunction The window applied to each frame
+         * @return The builder itself
+         */
+        public MfccExtractorBuilder withWindowFunction(EnumCst.WindowFunctions windowFunction){
+            this.windowFunction = windowFunction;
+            return this;
+        }
+
+        /**
+         * @param preEmphasis The coefficient of the pre-emphasis filter, 0 to disable it
+         * @return The builder itself
+         */
+        public MfccExtractorBuilder withPreEmphasis(double preEmphasis){
+            this.preEmphasis = preEmphasis;
+            return this;
+        }
+
+        /**
+         * @param nbFilters The number of mel filters
+         * @return The builder itself
+         */
+        public MfccExtractorBuilder withNbFilters(int nbFilters){
+            this.nbFilters = nbFilters;
+            return this;
+        }
+
+        /**
+         * @param nbCoefficients The number of coefficients kept per frame
+         * @return The builder itself
+         */
+        public MfccExtractorBuilder withNbCoefficients(int nbCoefficients){
+            this.nbCoefficients = nbCoefficients;
+            return this;
+        }
+
+        /**
+         * @param minFrequency The lower edge of the filterbank in Hz
+         * @param maxFrequency The upper edge of the filterbank in Hz, bounded by half the sample rate
+         * @return The builder itself
+         */
+        public MfccExtractorBuilder withFrequencyRange(double minFrequency, double maxFrequency){
+            this.minFrequency = minFrequency;
+            this.maxFrequency = maxFrequency;
+            return this;
+        }
+
+        /**
+         * @param framesPerBlock The number of frames computed at once
+         * @return The builder itself
+         */
+        public MfccExtractorBuilder withFramesPerBlock(int framesPerBlock){
+            this.framesPerBlock = framesPerBlock;
+            return this;
+        }
+
+        /*****************************************
+         *
+         * Build method
+         *
+         *****************************************/
+        /**
+         * Build the extractor, its spectrogram and its DCT
+         * @return The extractor
+         */
+        public MfccExtractor build(){
+            MfccExtractor extractor = new MfccExtractor();
+            extractor.spectrogram = new Spectrogram.SpectrogramBuilder().withWindowSize(this.windowSize)
+                                                                        .withHopSize(this.hopSize)
+                                                                        .withWindowFunction(this.windowFunction)
+                                                                        .withFramesPerBlock(this.framesPerBlock)
+                                                                        .withPower(true)
+                                                                        .build();
+            extractor.preEmphasis = this.preEmphasis;
+            extractor.nbFilters = Math.max(1, this.nbFilters);
+            if (this.nbCoefficients < 1 || this.nbCoefficients > extractor.nbFilters){
+                System.out.println("Invalid number of coefficients in MfccExtractor: " + this.nbCoefficients + ". It must be between 1 and the number of filters.");
+            }
+            extractor.nbCoefficients = Math.min(Math.max(1, this.nbCoefficients), extractor.nbFilters);
+            extractor.minFrequency = this.minFrequency;
+            extractor.maxFrequency = this.maxFrequency;
+            extractor.dct = dctMatrix(extractor.nbCoefficients, extractor.nbFilters);
+            int nbFilters = extractor.nbFilters;
+            extractor.energies = ThreadLocal.withInitial(() -> new double[nbFilters]);
+            return extractor;
+        }
+    }
+}
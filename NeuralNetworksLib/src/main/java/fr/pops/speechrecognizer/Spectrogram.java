@@ -0,0 +1,346 @@
+/*******************************************************************************
+ *
+ *                         PPPP     OOOO     PPPP    SSSS
+ *                        PP  PP   OO  OO   PP  PP  SS
+ *                        PP  PP  OO    OO  PP  PP  SS
+ *                        PP  PP  OO    OO  PP  PP   SSSS
+ *                        PPPP    OO    OO  PPPP        SS
+ *                        PP       OO  OO   PP          SS
+ *                        PP        OOOO    PP       SSSS
+ *
+ * Name: Spectrogram.java
+ *
+ * Description: Class computing the spectrogram of a signal read as a stream.
+ *              The samples are read by blocks of frames, each frame is windowed
+ *              and transformed, the frames of a block are run in parallel.
+ *              Only one block is held in memory whatever the length of the signal.
+ *
+ * Author: Charles MERINO
+ *
+ * Date: 18/10/2026
+ *
+ ******************************************************************************/
+package fr.pops.speechrecognizer;
+
+import fr.pops.datareader.WaveReader;
+import fr.pops.math.FFT;
+import fr.pops.math.Parallel;
+import fr.pops.popscst.cst.EnumCst;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class Spectrogram {
+
+    /*****************************************
+     *
+     * Static Attributes
+     *
+     *****************************************/
+    private static final int DEFAULT_WINDOW_SIZE = 2048;
+    private static final int DEFAULT_FRAMES_PER_BLOCK = 256;
+
+    /*****************************************
+     *
+     * Stream interfaces
+     *
+     *****************************************/
+    /**
+     * Source of the samples, WaveReader::readSamples for instance
+     */
+    @FunctionalInterface
+    public interface SampleSource {
+        /**
+         * @return The number of samples read, 0 at the end of the signal
+         */
+        int read(double[] dst, int offset, int length) throws IOException;
+    }
+
+    /**
+     * Receive the magnitudes of the frames of a block
+     * The arrays are reused by the next block, they must be copied to be kept
+     */
+    @FunctionalInterface
+    public interface BlockConsumer {
+        /**
+         * @param firstFrame The index of the first frame of the block in the signal
+         * @param magnitudes The magnitudes, or powers, of the bins 0 to windowSize / 2 of each frame
+         * @param nbFrames The number of valid frames, the next arrays are not meaningful
+         */
+        void accept(int firstFrame, double[][] magnitudes, int nbFrames);
+    }
+
+    /*****************************************
+     *
+     * Attributes
+     *
+     *****************************************/
+    private int windowSize;
+    private int hopSize;
+    private int framesPerBlock;
+    private EnumCst.WindowFunctions windowFunction;
+    private double[] window;
+    private boolean power;
+
+    // Windowed frame and transform of each thread
+    private ThreadLocal<double[][]> workArrays;
+
+    /*****************************************
+     *
+     * Ctor
+     *
+     *****************************************/
+    /**
+     * Use the builder
+     */
+    private Spectrogram(){
+        // Nothing to be done
+    }
+
+    /*****************************************
+     *
+     * Main methods
+     *
+     *****************************************/
+    /**
+     * Stream the samples of a wave file, its header is read here and the file is closed at the end
+     * @param reader The reader of a file not read yet
+     * @param consumer Receives each block of frames
+     */
+    public void process(WaveReader reader, BlockConsumer consumer) throws IOException {
+        reader.readHeader();
+        try {
+            this.process(reader::readSamples, consumer);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Stream the samples of a source
+     * A frame starts every hopSize samples as long as it starts inside the signal,
+     * the last frames are padded with zeros
+     * @param source The source of the samples
+     * @param consumer Receives each block of frames
+     */
+    public void process(SampleSource source, BlockConsumer consumer) throws IOException {
+        int bufferLength = (this.framesPerBlock - 1) * this.hopSize + this.windowSize;
+        double[] samples = new double[bufferLength];
+        double[][] block = new double[this.framesPerBlock][this.windowSize / 2 + 1];
+
+        int filled = fill(source, samples, 0, bufferLength);
+        int firstFrame = 0;
+        while (filled > 0){
+            int nbFrames = Math.min(this.framesPerBlock, (filled + this.hopSize - 1) / this.hopSize);
+            Arrays.fill(samples, filled, bufferLength, 0);
+            this.computeBlock(samples, block, nbFrames);
+            consumer.accept(firstFrame, block, nbFrames);
+            firstFrame += nbFrames;
+
+            // Keep the samples shared with the next block
+            int consumed = nbFrames * this.hopSize;
+            int kept = Math.max(0, filled - consumed);
+            System.arraycopy(samples, consumed, samples, 0, kept);
+            filled = kept + fill(source, samples, kept, bufferLength);
+        }
+    }
+
+    /**
+     * Spectrogram of a whole file, for signals whose spectrogram fits in memory
+     * @param reader The reader of a file not read yet
+     * @return The magnitudes of the bins 0 to windowSize / 2 of each frame
+     */
+    public double[][] compute(WaveReader reader) throws IOException {
+        List<double[]> frames = new ArrayList<>();
+        this.process(reader, (firstFrame, magnitudes, nbFrames) -> {
+            for (int i = 0; i < nbFrames; i++){
+                frames.add(magnitudes[i].clone());
+            }
+        });
+        return frames.toArray(new double[0][]);
+    }
+
+    /**
+     * @param windowFunction The window
+     * @param size The number of coefficients
+     * @return The coefficients of the periodic window, as used for spectral analysis
+     */
+    public static double[] windowCoefficients(EnumCst.WindowFunctions windowFunction, int size){
+        double[] res = new double[size];
+        for (int i = 0; i < size; i++){
+            double cos = Math.cos(2 * Math.PI * i / size);
+            switch (windowFunction){
+                case HANN:
+                    res[i] = 0.5 - 0.5 * cos;
+                    break;
+                case HAMMING:
+                    res[i] = 0.54 - 0.46 * cos;
+                    break;
+                default:
+                    res[i] = 1;
+                    break;
+            }
+        }
+        return res;
+    }
+
+    /*****************************************
+     *
+     * Private methods
+     *
+     *****************************************/
+    /**
+     * Window and transform the frames of a block, split across the threads
+     */
+    private void computeBlock(double[] samples, double[][] block, int nbFrames){
+        long work = (long) nbFrames * this.windowSize * Integer.numberOfTrailingZeros(this.windowSize);
+        Parallel.forRange(0, nbFrames, work, (from, to) -> {
+            double[][] arrays = this.workArrays.get();
+            double[] frame = arrays[0];
+            double[] re = arrays[1];
+            double[] im = arrays[2];
+            for (int f = from; f < to; f++){
+                int start = f * this.hopSize;
+                for (int i = 0; i < this.windowSize; i++){
+                    frame[i] = samples[start + i] * this.window[i];
+                }
+                FFT.realTransform(frame, 0, this.windowSize, re, im);
+                double[] magnitudes = block[f];
+                for (int k = 0; k < magnitudes.length; k++){
+                    double squared = re[k] * re[k] + im[k] * im[k];
+                    magnitudes[k] = this.power ? squared : Math.sqrt(squared);
+                }
+            }
+        });
+    }
+
+    /**
+     * Read from the source until the buffer is full or the signal ends
+     * @return The number of samples read
+     */
+    private static int fill(SampleSource source, double[] dst, int from, int to) throws IOException {
+        int offset = from;
+        while (offset < to){
+            int read = source.read(dst, offset, to - offset);
+            if (read <= 0){
+                break;
+            }
+            offset += read;
+        }
+        return offset - from;
+    }
+
+    /*****************************************
+     *
+     * Getters
+     *
+     *****************************************/
+    public int getWindowSize(){ return this.windowSize; }
+
+    public int getHopSize(){ return this.hopSize; }
+
+    public int getNbBins(){ return this.windowSize / 2 + 1; }
+
+    public EnumCst.WindowFunctions getWindowFunction(){ return this.windowFunction; }
+
+    public boolean isPower(){ return this.power; }
+
+    /*****************************************
+     *
+     * Builder
+     *
+     *****************************************/
+    public static class SpectrogramBuilder {
+
+        /*****************************************
+         *
+         * Attributes
+         *
+         *****************************************/
+        private int windowSize = DEFAULT_WINDOW_SIZE;
+        private int hopSize = DEFAULT_WINDOW_SIZE / 2;
+        private int framesPerBlock = DEFAULT_FRAMES_PER_BLOCK;
+        private EnumCst.WindowFunctions windowFunction = EnumCst.WindowFunctions.HANN;
+        private boolean power = false;
+
+        /*****************************************
+         *
+         * With methods
+         *
+         *****************************************/
+        /**
+         * @param windowSize The number of samples of a frame, a power of 2
+         * @return The builder itself
+         */
+        public SpectrogramBuilder withWindowSize(int windowSize){
+            this.windowSize = windowSize;
+            return this;
+        }
+
+        /**
+         * @param hopSize The number of samples between the starts of two frames
+         * @return The builder itself
+         */
+        public SpectrogramBuilder withHopSize(int hopSize){
+            this.hopSize = hopSize;
+            return this;
+        }
+
+        /**
+         * @param windowFunction The window applied to each frame
+         * @return The builder itself
+         */
+        public SpectrogramBuilder withWindowFunction(EnumCst.WindowFunctions windowFunction){
+            this.windowFunction = windowFunction;
+            return this;
+        }
+
+        /**
+         * @param power True to output the squared magnitudes
+         * @return The builder itself
+         */
+        public SpectrogramBuilder withPower(boolean power){
+            this.power = power;
+            return this;
+        }
+
+        /**
+         * @param framesPerBlock The number of frames computed at once, it bounds the memory used
+         * @return The builder itself
+         */
+        public SpectrogramBuilder withFramesPerBlock(int framesPerBlock){
+            this.framesPerBlock = framesPerBlock;
+            return this;
+        }
+
+        /*****************************************
+         *
+         * Build method
+         *
+         *****************************************/
+        /**
+         * Build the spectrogram and its window
+         * @return The spectrogram
+         */
+        public Spectrogram build(){
+            Spectrogram spectrogram = new Spectrogram();
+            if (!FFT.isPowerOf2(this.windowSize) || this.windowSize < 2){
+                System.out.println("Invalid window size in Spectrogram: " + this.windowSize + ". It must be a power of 2. " + DEFAULT_WINDOW_SIZE + " is used instead.");
+                this.windowSize = DEFAULT_WINDOW_SIZE;
+            }
+            spectrogram.windowSize = this.windowSize;
+            spectrogram.hopSize = Math.min(Math.max(1, this.hopSize), this.windowSize);
+            spectrogram.framesPerBlock = Math.max(1, this.framesPerBlock);
+            spectrogram.windowFunction = this.windowFunction == null ? EnumCst.WindowFunctions.HANN : this.windowFunction;
+            spectrogram.power = this.power;
+            spectrogram.window = windowCoefficients(spectrogram.windowFunction, spectrogram.windowSize);
+            int windowSize = spectrogram.windowSize;
+            spectrogram.workArrays = ThreadLocal.withInitial(() -> new double[][]{ new double[windowSize],
+                                                                                   new double[windowSize / 2 + 1],
+                                                                                   new double[windowSize / 2 + 1] });
+            return spectrogram;
+        }
+    }
+}
@@ -24,11 +24,7 @@ package fr.pops.speechrecognizer;
 
 import fr.pops.datareader.WaveReader;
 import fr.pops.math.Complex;
-import fr.pops.math.FFT;
-import fr.pops.math.Specter;
-
-import java.util.ArrayList;
-import java.util.List;
+import fr.pops.popscst.cst.EnumCst;
 
 @SuppressWarnings("unused")
 public class SpeechRecognizer {
@@ -41,10 +37,8 @@ public class SpeechRecognizer {
     private static final String SPEECH_FILE = "../../../resources/media/wave/a440.wav"; //TMP
     private final static int SIZE_WINDOW = 2048; // Need to compute these ...
     private final static int SIZE_OVERLAP = 20;
-    private static WaveReader p_wr;
-    private Complex[] m_inputSignal;
-    private List<Complex[]> m_wdwData = new ArrayList<>();
-    private List<Complex[]> m_specter = new ArrayList<>();
+    private WaveReader p_wr;
+    private double[][] m_specter = new double[0][];
     private Complex[] m_fft;
 
     /*****************************************
@@ -66,48 +60,15 @@ public class SpeechRecognizer {
      *
      *****************************************/
     /**
-     *
+     * Stream the file through the spectrogram, the signal is read by blocks
      * @throws Exception
      */
     public void processSpeech() throws Exception {
-        this.p_wr.readFile();
-        Complex[] data = FFT.initiateComputation(this.p_wr.getData());
-        this.m_inputSignal = data;
-        this.prepareSpecter(data, SIZE_WINDOW, SIZE_OVERLAP);
-        Specter specter = new Specter(this.m_wdwData);
-        specter.computeSpecter();
-        this.m_specter = specter.getSpecter();
-        specter.buildFrequenciesAmp(this.p_wr.getSampleRate(), this.p_wr.getDuration(), SIZE_WINDOW);
-
-    }
-
-    /**
-     * Transform the input signal into a list of windows for computing the spectrogram
-     * TODO : Correct the windowing, no value after window 108 ...
-     * @param data
-     * @param windowSize
-     * @param overlapSize
-     */
-    private void prepareSpecter(Complex[] data, int windowSize, int overlapSize){
-        int length = data.length;
-        int finalIndex = length;
-        int k = 0;
-        int firstIndex = 0;
-        while(k < finalIndex){
-            Complex[] buffer = new Complex[windowSize];
-            for (int i = 0 ; i < windowSize; i++){
-                if (k < length){
-                    buffer[i] = data[k];
-                } else {
-                    buffer[i] = new Complex(0,0);
-                }
-                k++;
-            }
-            this.m_wdwData.add(buffer);
-
-            k-=overlapSize;
-            //System.out.println("k = "+k);
-        }
+        Spectrogram spectrogram = new Spectrogram.SpectrogramBuilder().withWindowSize(SIZE_WINDOW)
+                                                                      .withHopSize(SIZE_WINDOW - SIZE_OVERLAP)
+                                                                      .withWindowFunction(EnumCst.WindowFunctions.HANN)
+                                                                      .build();
+        this.m_specter = spectrogram.compute(this.p_wr);
     }
 
     /*****************************************
@@ -115,11 +76,14 @@ public class SpeechRecognizer {
      * Getters
      *
      *****************************************/
-    public Complex[] getData(){
-        return this.m_inputSignal;
-    }
-
     public Complex[] getFFT(){
         return this.m_fft;
     }
+
+    /**
+     * @return The magnitudes of the bins 0 to SIZE_WINDOW / 2 of each frame
+     */
+    public double[][] getSpecter(){
+        return this.m_specter;
+    }
 }
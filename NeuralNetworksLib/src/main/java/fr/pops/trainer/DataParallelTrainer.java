@@ -0,0 +1,256 @@
+/*******************************************************************************
+ *
+ *                         PPPP     OOOO     PPPP    SSSS
+ *                        PP  PP   OO  OO   PP  PP  SS
+ *                        PP  PP  OO    OO  PP  PP  SS
+ *                        PP  PP  OO    OO  PP  PP   SSSS
+ *                        PPPP    OO    OO  PPPP        SS
+ *                        PP       OO  OO   PP          SS
+ *                        PP        OOOO    PP       SSSS
+ *
+ * Name: DataParallelTrainer.java
+ *
+ * Description: Class training a neural network with several workers.
+ *              Each worker is a replica of the network sharing its weights and bias,
+ *              with its own activations, errors and gradients. A mini-batch is split
+ *              into one shard per worker, the gradients of the workers are summed
+ *              by a tree reduction into the network before it is updated.
+ *
+ * Author: Charles MERINO
+ *
+ * Date: 18/10/2026
+ *
+ ******************************************************************************/
+package fr.pops.trainer;
+
+import fr.pops.checkpoint.CheckpointWriter;
+import fr.pops.consoledisplay.ConsoleDisplay;
+import fr.pops.datareader.BatchLoader;
+import fr.pops.math.ArrayUtil;
+import fr.pops.math.Parallel;
+import fr.pops.math.PopsMath;
+import fr.pops.math.ndarray.INDArray;
+import fr.pops.nn.layers.Layer;
+import fr.pops.nn.networks.NeuralNetwork;
+import fr.pops.nn.networks.NeuralNetworkConfiguration;
+import fr.pops.scorer.Error;
+import fr.pops.updater.Updater;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class DataParallelTrainer implements ITrainer {
+
+    /*****************************************
+     *
+     * Attributes
+     *
+     *****************************************/
+    // The network itself is the first worker, its replicas follow
+    private List<NeuralNetwork> workers = new ArrayList<>();
+
+    // Results of each worker on its last shard
+    private double[] shardErrors;
+    private int[] shardWellGuessed;
+
+    /*****************************************
+     *
+     * Parent methods
+     *
+     *****************************************/
+    @Override
+    public void run(NeuralNetwork neuralNetwork) {
+        // Initialization
+        double initTime = System.currentTimeMillis();
+        // Samples classified since the start of this run, a resumed training starts over
+        int nbWellGuessed = 0;
+        int nbGuessed = 0;
+        NeuralNetworkConfiguration configuration = neuralNetwork.getNeuralNetworkConfiguration();
+
+        // Replicate the network once per worker
+        if (!this.createWorkers(neuralNetwork)){
+            System.out.println("The network is trained on a single thread instead.");
+            new StandardTrainer().run(neuralNetwork);
+            return;
+        }
+
+        // Resume from the latest snapshot, the replicas share the restored values
+        CheckpointWriter checkpointWriter = CheckpointWriter.fromConfiguration(configuration);
+        if (checkpointWriter != null){
+            checkpointWriter.resume(neuralNetwork);
+        }
+
+        // The mini-batches are assembled in the background while the network trains
+        BatchLoader loader = configuration.getPrefetchDepth() <= 0 ? null :
+                new BatchLoader.BatchLoaderBuilder().withDataReader(configuration.getDataReader())
+                                                    .withBatchSize(configuration.getBatchSize())
+                                                    .withPrefetchDepth(configuration.getPrefetchDepth())
+                                                    .withShuffle(configuration.isShuffle())
+                                                    .withSeed(configuration.getSeed())
+                                                    .withFirstBatch(neuralNetwork.getCurrentEpoch() / Math.max(1, configuration.getBatchSize()))
+                                                    .build();
+
+        try {
+            // Loop over all the training samples
+            while (neuralNetwork.getCurrentEpoch() < configuration.getNbIterations()){
+
+                // Retrieve the mini-batch
+                int batchSize = configuration.getBatchSize();
+                INDArray samples;
+                INDArray labels;
+                if (loader != null){
+                    BatchLoader.Batch batch = loader.next();
+                    if (batch == null){
+                        break;
+                    }
+                    batchSize = loader.getBatchSize();
+                    samples = batch.getSamples();
+                    labels = batch.getLabels();
+                } else {
+                    samples = configuration.getDataReader().getSamples(neuralNetwork.getCurrentEpoch(), batchSize);
+                    labels = configuration.getDataReader().getLabels(neuralNetwork.getCurrentEpoch(), batchSize);
+                }
+
+                // Each worker runs the forward and backward passes over its shard
+                // Inside a worker the kernels stay sequential: the parallelism comes from the shards
+                int nbActive = Math.min(this.workers.size(), batchSize);
+                int size = batchSize;
+                Parallel.forRange(nbActive, 0, nbActive, Long.MAX_VALUE, (from, to) -> {
+                    for (int w = from; w < to; w++){
+                        this.trainShard(w, samples, labels, w * size / nbActive, (w + 1) * size / nbActive);
+                    }
+                });
+
+                // Sum the gradients of the workers into the network
+                this.reduceGradients(nbActive);
+
+                // Gather the results of the workers
+                double error = 0;
+                for (int w = 0; w < nbActive; w++){
+                    error += this.shardErrors[w];
+                    nbWellGuessed += this.shardWellGuessed[w];
+                }
+                nbGuessed += batchSize;
+                neuralNetwork.setCurrentError(error / batchSize);
+
+                // Increase step to control fr.pops.main loop
+                // The samples are read modulo the size of the dataset
+                neuralNetwork.setCurrentEpoch(neuralNetwork.getCurrentEpoch() + batchSize);
+
+                // Add a progress bar
+                double achieved = PopsMath.round(Math.min(1.0d, (double) neuralNetwork.getCurrentEpoch() / configuration.getNbIterations()), 2);
+                ConsoleDisplay.progressBar("Training in progress ", achieved, Arrays.asList("Error"), Arrays.asList(1 - (double) nbWellGuessed / nbGuessed));
+
+                // Update the weights and biases, the replicas see the new values
+                Updater.update(neuralNetwork);
+
+                // Clear the gradients of every worker
+                for (NeuralNetwork worker : this.workers){
+                    Updater.clearGradients(worker);
+                }
+
+                // Periodic snapshot, written in the background
+                if (checkpointWriter != null){
+                    checkpointWriter.step(neuralNetwork);
+                }
+            }
+
+            if (checkpointWriter != null){
+                checkpointWriter.close(neuralNetwork);
+            }
+        } finally {
+            if (loader != null){
+                loader.close();
+            }
+        }
+
+        // Small terminal output
+        double finalTime = System.currentTimeMillis();
+
+        System.out.println("\nTraining done in " + (finalTime - initTime) / 1000 + " s with " + this.workers.size() + " workers.");
+    }
+
+    /*****************************************
+     *
+     * Private methods
+     *
+     *****************************************/
+    /**
+     * Build the replicas of the network
+     * @return False if the network cannot be replicated
+     */
+    private boolean createWorkers(NeuralNetwork neuralNetwork){
+        int nbWorkers = Math.max(1, neuralNetwork.getNeuralNetworkConfiguration().getNbWorkers());
+        this.workers = new ArrayList<>();
+        this.workers.add(neuralNetwork);
+        for (int w = 1; w < nbWorkers; w++){
+            NeuralNetwork replica = neuralNetwork.replicate();
+            if (replica == null){
+                return false;
+            }
+            this.workers.add(replica);
+        }
+        this.shardErrors = new double[nbWorkers];
+        this.shardWellGuessed = new int[nbWorkers];
+        return true;
+    }
+
+    /**
+     * Forward and backward passes of a worker over the samples [from, to[ of the batch
+     * The gradients are accumulated in the worker
+     */
+    private void trainShard(int w, INDArray samples, INDArray labels, int from, int to){
+        NeuralNetwork worker = this.workers.get(w);
+        INDArray shardLabels = labels.samples(from, to);
+
+        // Feed forward pass
+        worker.feedNetwork(samples.samples(from, to));
+        worker.guess();
+
+        // Compute error
+        Layer outputLayer = worker.getNeuralNetworkConfiguration().getLayers().get(worker.getNeuralNetworkConfiguration().getNbLayers() - 1);
+        this.shardErrors[w] = ArrayUtil.average(Error.quadraticError(outputLayer, shardLabels)) * (to - from);
+
+        // Back propagate
+        worker.backpropagate(Error.dQuadraticError(outputLayer, shardLabels));
+
+        // Classification error of the shard
+        this.shardWellGuessed[w] = StandardTrainer.countWellGuessed(outputLayer.getActivations(), shardLabels, to - from);
+    }
+
+    /**
+     * Sum the gradients of the active workers into the first one
+     * At each level, worker w receives the gradients of worker w + stride,
+     * the pairs of a level are summed in parallel
+     * @param nbActive The number of workers which trained on the batch
+     */
+    private void reduceGradients(int nbActive){
+        List<List<INDArray>> gradients = new ArrayList<>();
+        for (int w = 0; w < nbActive; w++){
+            List<INDArray> res = new ArrayList<>();
+            for (Layer layer : this.workers.get(w).getNeuralNetworkConfiguration().getLayers()){
+                res.addAll(layer.getGradients());
+            }
+            gradients.add(res);
+        }
+        long size = 0;
+        for (INDArray gradient : gradients.get(0)){
+            size += gradient.getShape().getSize();
+        }
+
+        for (int stride = 1; stride < nbActive; stride *= 2){
+            int step = stride;
+            int nbPairs = (nbActive - stride + 2 * stride - 1) / (2 * stride);
+            Parallel.forRange(0, nbPairs, nbPairs * size, (from, to) -> {
+                for (int p = from; p < to; p++){
+                    List<INDArray> dst = gradients.get(2 * p * step);
+                    List<INDArray> src = gradients.get(2 * p * step + step);
+                    for (int i = 0; i < dst.size(); i++){
+                        ArrayUtil.addInPlace(dst.get(i), src.get(i));
+                    }
+                }
+            });
+        }
+    }
+}
@@ -20,7 +20,7 @@
  ******************************************************************************/
 package fr.pops.trainer;
 
-import fr.pops.datareader.Sequence;
+import fr.pops.checkpoint.CheckpointWriter;
 import fr.pops.nn.networks.NeuralNetwork;
 import fr.pops.math.ndarray.INDArray;
 import fr.pops.scorer.Error;
@@ -39,21 +39,29 @@ public class SequentialTrainer implements ITrainer {
         // Initialization
         double initTime = System.currentTimeMillis();
         int toto = 0;
+
+        // Resume from the latest snapshot
+        CheckpointWriter checkpointWriter = CheckpointWriter.fromConfiguration(neuralNetwork.getNeuralNetworkConfiguration());
+        if (checkpointWriter != null){
+            checkpointWriter.resume(neuralNetwork);
+        }
+
         // Loop over all the training samples
         while(neuralNetwork.getCurrentEpoch() < neuralNetwork.getNeuralNetworkConfiguration().getNbIterations()){
-            // Set the sequence to run the training
-            Sequence sequence = (Sequence) neuralNetwork.getNeuralNetworkConfiguration().getDataReader().getSample(neuralNetwork.getCurrentEpoch());
-            int sequenceLength = sequence.size();
+            // Set the sequence to run the training, its steps are along the batch axis
+            INDArray sequence = neuralNetwork.getNeuralNetworkConfiguration().getDataReader().getSample(neuralNetwork.getCurrentEpoch());
+            INDArray labels = neuralNetwork.getNeuralNetworkConfiguration().getDataReader().getLabel(neuralNetwork.getCurrentEpoch());
+            int sequenceLength = sequence.getShape().getBatchAxisLength();
 
             for (int i = 0; i < sequenceLength; i++){
 
                 // Set input : first layer
-                neuralNetwork.getNeuralNetworkConfiguration().getLayers().get(0).setActivations(sequence.get(i));
+                neuralNetwork.getNeuralNetworkConfiguration().getLayers().get(0).setActivations(sequence.sample(i));
                 // Feed forward pass
                 neuralNetwork.guess();
                 // Compute error
                 INDArray error = Error.dQuadraticError(neuralNetwork.getNeuralNetworkConfiguration().getLayers().get(neuralNetwork.getNeuralNetworkConfiguration().getNbLayers()-1),
-                        ((Sequence) neuralNetwork.getNeuralNetworkConfiguration().getDataReader().getLabel(neuralNetwork.getCurrentEpoch())).get(i));
+                        labels.sample(i));
                 // Back propagate
                 neuralNetwork.backpropagate(error);
             }
@@ -66,12 +74,20 @@ public class SequentialTrainer implements ITrainer {
 
             if (neuralNetwork.getCurrentEpoch() % 100 == 0){
                 System.out.println("Epoch : " + neuralNetwork.getCurrentEpoch());
-                System.out.println(SequenceGenerator.generateStringSequence(neuralNetwork, ((Sequence) neuralNetwork.getNeuralNetworkConfiguration().getDataReader().getSample(neuralNetwork.getCurrentEpoch())).get(0), 50));
+                System.out.println(SequenceGenerator.generateStringSequence(neuralNetwork, neuralNetwork.getNeuralNetworkConfiguration().getDataReader().getSample(neuralNetwork.getCurrentEpoch()).sample(0), 50));
                 System.out.println("-------------------------------------------------------------------------" + "\n");
             }
 
             neuralNetwork.setCurrentEpoch(neuralNetwork.getCurrentEpoch() == neuralNetwork.getNeuralNetworkConfiguration().getDataReader().getNbOfTrainingSamples() ? 0 : neuralNetwork.getCurrentEpoch() + 1);
 
+            // Periodic snapshot, written in the background
+            if (checkpointWriter != null){
+                checkpointWriter.step(neuralNetwork);
+            }
+        }
+
+        if (checkpointWriter != null){
+            checkpointWriter.close(neuralNetwork);
         }
 
         // Small terminal output
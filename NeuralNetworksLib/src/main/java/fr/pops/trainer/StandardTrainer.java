@@ -23,12 +23,14 @@
  ******************************************************************************/
 package fr.pops.trainer;
 
+import fr.pops.checkpoint.CheckpointWriter;
 import fr.pops.consoledisplay.ConsoleDisplay;
+import fr.pops.datareader.BatchLoader;
 import fr.pops.math.ndarray.INDArray;
 import fr.pops.nn.networks.NeuralNetwork;
+import fr.pops.nn.networks.NeuralNetworkConfiguration;
 import fr.pops.math.ArrayUtil;
 import fr.pops.math.PopsMath;
-import fr.pops.math.Vector;
 import fr.pops.scorer.Error;
 import fr.pops.updater.Updater;
 
@@ -45,23 +47,54 @@ public class StandardTrainer implements ITrainer {
     public void run(NeuralNetwork neuralNetwork) {
         // Initialization
         double initTime = System.currentTimeMillis();
-        int wellGuessed = 0; // TMP
-
-        // Loop over all the training samples
-        while(neuralNetwork.getCurrentEpoch() < neuralNetwork.getNeuralNetworkConfiguration().getNbIterations()) {
-
-            for (int i = 0; i < neuralNetwork.getNeuralNetworkConfiguration().getBatchSize(); i++){
+        // Samples classified since the start of this run, a resumed training starts over
+        int nbWellGuessed = 0;
+        int nbGuessed = 0;
+
+        // Resume from the latest snapshot
+        NeuralNetworkConfiguration configuration = neuralNetwork.getNeuralNetworkConfiguration();
+        CheckpointWriter checkpointWriter = CheckpointWriter.fromConfiguration(configuration);
+        if (checkpointWriter != null){
+            checkpointWriter.resume(neuralNetwork);
+        }
 
-                // Set input : first layer
-                neuralNetwork.feedNetwork(neuralNetwork.getCurrentEpoch());
+        // The mini-batches are assembled in the background while the network trains
+        BatchLoader loader = configuration.getPrefetchDepth() <= 0 ? null :
+                new BatchLoader.BatchLoaderBuilder().withDataReader(configuration.getDataReader())
+                                                    .withBatchSize(configuration.getBatchSize())
+                                                    .withPrefetchDepth(configuration.getPrefetchDepth())
+                                                    .withShuffle(configuration.isShuffle())
+                                                    .withSeed(configuration.getSeed())
+                                                    .withFirstBatch(neuralNetwork.getCurrentEpoch() / Math.max(1, configuration.getBatchSize()))
+                                                    .build();
+
+        try {
+            // Loop over all the training samples
+            while(neuralNetwork.getCurrentEpoch() < neuralNetwork.getNeuralNetworkConfiguration().getNbIterations()) {
+
+                // The whole mini-batch goes through the network at once
+                int batchSize = neuralNetwork.getNeuralNetworkConfiguration().getBatchSize();
+                INDArray labels;
+                if (loader != null){
+                    BatchLoader.Batch batch = loader.next();
+                    if (batch == null){
+                        break;
+                    }
+                    batchSize = loader.getBatchSize();
+                    labels = batch.getLabels();
+                    // Set input : first layer
+                    neuralNetwork.feedNetwork(batch.getSamples());
+                } else {
+                    labels = neuralNetwork.getNeuralNetworkConfiguration().getDataReader().getLabels(neuralNetwork.getCurrentEpoch(), batchSize);
+                    // Set input : first layer
+                    neuralNetwork.feedNetwork(neuralNetwork.getCurrentEpoch(), batchSize);
+                }
                 // Feed forward pass
                 neuralNetwork.guess();
                 // Compute error
-                INDArray error = Error.quadraticError(neuralNetwork.getNeuralNetworkConfiguration().getLayers().get(neuralNetwork.getNeuralNetworkConfiguration().getNbLayers()-1),
-                                                    neuralNetwork.getNeuralNetworkConfiguration().getDataReader().getLabel(neuralNetwork.getCurrentEpoch()));
+                INDArray error = Error.quadraticError(neuralNetwork.getNeuralNetworkConfiguration().getLayers().get(neuralNetwork.getNeuralNetworkConfiguration().getNbLayers()-1), labels);
 
-                INDArray dError = Error.dQuadraticError(neuralNetwork.getNeuralNetworkConfiguration().getLayers().get(neuralNetwork.getNeuralNetworkConfiguration().getNbLayers()-1),
-                                                        neuralNetwork.getNeuralNetworkConfiguration().getDataReader().getLabel(neuralNetwork.getCurrentEpoch()));
+                INDArray dError = Error.dQuadraticError(neuralNetwork.getNeuralNetworkConfiguration().getLayers().get(neuralNetwork.getNeuralNetworkConfiguration().getNbLayers()-1), labels);
                 /* TEMP ? */
                 neuralNetwork.setCurrentError(ArrayUtil.average(error));
 //                neuralNetwork.getScorer().fillConfusionMatrix(neuralNetwork.getCurrentEpoch(), neuralNetwork.getDataReader(), neuralNetwork.getLayers().get(neuralNetwork.getNbLayers()-1));
@@ -70,34 +103,82 @@ public class StandardTrainer implements ITrainer {
                 // Back propagate
                 neuralNetwork.backpropagate(dError);
 
-                // TMP
-                int valueGuessed = Vector.indexOfMinMaxValue(Vector.toVector(neuralNetwork.getNeuralNetworkConfiguration().getLayers().get(neuralNetwork.getNeuralNetworkConfiguration().getLayers().size()-1).getActivations().getData()), "max");
-                int lbl = Vector.indexOfMinMaxValue(Vector.toVector(neuralNetwork.getNeuralNetworkConfiguration().getDataReader().getLabel(neuralNetwork.getCurrentEpoch()).getData()), "max") ;
-                if (valueGuessed == lbl){
-                    wellGuessed++;
-                }
+                // Classification error of the run
+                INDArray guesses = neuralNetwork.getNeuralNetworkConfiguration().getLayers().get(neuralNetwork.getNeuralNetworkConfiguration().getNbLayers()-1).getActivations();
+                nbWellGuessed += countWellGuessed(guesses, labels, batchSize);
+                nbGuessed += batchSize;
+
+                // Increase step to control fr.pops.main loop
+                // The samples are read modulo the size of the dataset
+                neuralNetwork.setCurrentEpoch(neuralNetwork.getCurrentEpoch() + batchSize);
 
                 // Add a progress bar
-                double achieved = PopsMath.round( (double)(neuralNetwork.getCurrentEpoch()+1) / (neuralNetwork.getNeuralNetworkConfiguration().getNbIterations()), 2);
-                ConsoleDisplay.progressBar("Training in progress ", achieved, Arrays.asList("Error"), Arrays.asList(1 - (double)wellGuessed / (neuralNetwork.getCurrentEpoch()+1)));
+                double achieved = PopsMath.round(Math.min(1.0d, (double) neuralNetwork.getCurrentEpoch() / neuralNetwork.getNeuralNetworkConfiguration().getNbIterations()), 2);
+                ConsoleDisplay.progressBar("Training in progress ", achieved, Arrays.asList("Error"), Arrays.asList(1 - (double) nbWellGuessed / nbGuessed));
 
-                // Increase step to control fr.pops.main loop
-                // TODO: Check infinite loop when else
-                neuralNetwork.setCurrentEpoch(neuralNetwork.getCurrentEpoch() == neuralNetwork.getNeuralNetworkConfiguration().getDataReader().getNbOfTrainingSamples() ? 0 : neuralNetwork.getCurrentEpoch() + 1);
-            }
+                // Update the weights and biases
+                Updater.update(neuralNetwork);
 
-            // Update the weights and biases
-            Updater.update(neuralNetwork);
+                // Clear the weights and biases
+                Updater.clearGradients(neuralNetwork);
 
-            // Clear the weights and biases
-            Updater.clearGradients(neuralNetwork);
+                // Periodic snapshot, written in the background
+                if (checkpointWriter != null){
+                    checkpointWriter.step(neuralNetwork);
+                }
+            }
 
+            if (checkpointWriter != null){
+                checkpointWriter.close(neuralNetwork);
+            }
+        } finally {
+            if (loader != null){
+                loader.close();
+            }
         }
 
         // Small terminal output
         double finalTime = System.currentTimeMillis();
 
         System.out.println("\nTraining done in " + (finalTime - initTime) / 1000 + " s.");
-        System.out.println("Well guessed = " + wellGuessed + " / " + neuralNetwork.getNeuralNetworkConfiguration().getNbIterations()); // TMP
+    }
+
+    /*****************************************
+     *
+     * Private methods
+     *
+     *****************************************/
+    /**
+     * @param guesses The activations of the output layer for a batch
+     * @param labels The labels of the batch
+     * @param nbSamples The number of samples of the batch
+     * @return The number of samples whose greatest activation is the one of their label
+     */
+    static int countWellGuessed(INDArray guesses, INDArray labels, int nbSamples){
+        int res = 0;
+        for (int b = 0; b < nbSamples; b++){
+            if (indexOfMax(guesses, b) == indexOfMax(labels, b)){
+                res++;
+            }
+        }
+        return res;
+    }
+
+    /**
+     * @param arr A batch of vectors
+     * @param sample The index of the sample in the batch
+     * @return The index of the greatest value of the sample
+     */
+    private static int indexOfMax(INDArray arr, int sample){
+        int size = arr.getShape().getSampleSize();
+        int offset = arr.getOffset() + sample * size;
+        double[] data = arr.getData();
+        int res = 0;
+        for (int i = 1; i < size; i++){
+            if (data[offset + i] > data[offset + res]){
+                res = i;
+            }
+        }
+        return res;
     }
 }
@@ -31,11 +31,13 @@ public abstract class Updater {
      *
      *****************************************/
     /**
-     * Retrieve all gradients previously computed and compute the following equation:
+     * Retrieve all gradients previously computed and update every parameter with the optimizer
+     * Without optimizer it computes the following equation:
      *  X (t + 1) = X (t) - (alpha / m) * grad(X)
      * @param nn The neural network to update
      */
     public static void update(NeuralNetwork nn){
+        nn.getNeuralNetworkConfiguration().getOptimizer().nextStep();
         for(Layer l : nn.getNeuralNetworkConfiguration().getLayers()){
             l.updateInternalState(nn.getNeuralNetworkConfiguration().getLearningRate(), nn.getNeuralNetworkConfiguration().getBatchSize(), nn.getNeuralNetworkConfiguration().getOptimizer());
         }
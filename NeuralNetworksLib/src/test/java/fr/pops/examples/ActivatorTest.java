@@ -0,0 +1,67 @@
+package fr.pops.examples;
+
+import fr.pops.activator.Activator;
+import fr.pops.math.ndarray.BaseNDArray;
+import fr.pops.math.ndarray.HeapFloatDataBuffer;
+import fr.pops.math.ndarray.INDArray;
+import fr.pops.popscst.cst.EnumCst;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ActivatorTest {
+
+    private static final double EPS = 1e-12;
+
+    private static double[] values(INDArray arr){
+        double[] res = new double[arr.getShape().getSize()];
+        for (int i = 0; i < res.length; i++){
+            res[i] = arr.getDataBuffer().getDouble(arr.getOffset() + i);
+        }
+        return res;
+    }
+
+    @Test
+    public void testIdentityOnRowView(){
+        INDArray base = new BaseNDArray(new double[]{0, 1, 2, 3, 4, 5, 6, 7}, 8);
+        INDArray res = Activator.activate(EnumCst.ActivationFunction.IDENTITY, base.rows(3, 6));
+        assertArrayEquals(new double[]{3, 4, 5}, values(res), EPS);
+    }
+
+    @Test
+    public void testActivateIntoView(){
+        INDArray z = new BaseNDArray(new double[]{-1, 2, -3, 4}, 4);
+        INDArray out = new BaseNDArray(new double[]{9, 9, 9, 9, 9, 9, 9, 9}, 8);
+        Activator.activate(EnumCst.ActivationFunction.RELU, z, out.rows(2, 6));
+        assertArrayEquals(new double[]{9, 9, 0, 2, 0, 4, 9, 9}, values(out), EPS);
+    }
+
+    @Test
+    public void testSoftmaxOnBatchView(){
+        // Three samples of two values, the last two are activated
+        INDArray batch = new BaseNDArray(new double[]{5, 5, 0, 0, 1, 0}, 2, 1, 1, 3);
+        INDArray view = batch.samples(1, 3);
+        INDArray activations = new BaseNDArray.BaseNDArrayBuilder().zeros(view.getShape()).build();
+        INDArray derivatives = new BaseNDArray.BaseNDArrayBuilder().zeros(view.getShape()).build();
+        Activator.activateAndDerive(EnumCst.ActivationFunction.SOFTMAX, view, activations, derivatives);
+        double e = Math.exp(1);
+        assertArrayEquals(new double[]{0.5, 0.5, e / (e + 1), 1 / (e + 1)}, values(activations), EPS);
+        assertArrayEquals(new double[]{1, 1, 1, 1}, values(derivatives), EPS);
+    }
+
+    @Test
+    public void testSigmoidDerivativeFromView(){
+        INDArray base = new BaseNDArray(new double[]{7, 0, 7}, 3);
+        INDArray res = Activator.dActivate(EnumCst.DActivationFunction.dSIGMOID, base.rows(1, 2));
+        assertEquals(0.25, values(res)[0], EPS);
+    }
+
+    @Test
+    public void testFloatOutputIsRejected(){
+        INDArray z = new BaseNDArray(new double[]{1, 2}, 2);
+        INDArray out = new BaseNDArray.BaseNDArrayBuilder().withDataBuffer(new HeapFloatDataBuffer(2)).withShape(2).build();
+        Activator.activate(EnumCst.ActivationFunction.IDENTITY, z, out);
+        assertArrayEquals(new double[]{0, 0}, values(out), EPS);
+    }
+}
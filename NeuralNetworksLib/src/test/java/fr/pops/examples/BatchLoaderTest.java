@@ -0,0 +1,127 @@
+package fr.pops.examples;
+
+import fr.pops.datareader.BatchLoader;
+import fr.pops.math.ndarray.INDArray;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BatchLoaderTest {
+
+    private static final int NB_SAMPLES = 20;
+    private static final int BATCH_SIZE = 4;
+
+    /**
+     * A seed gives the same batches whatever the number of workers and the depth of the prefetch
+     */
+    @Test
+    public void testSameSeedSameBatches(){
+        SyntheticReader reader = new SyntheticReader(NB_SAMPLES, 3);
+        List<double[]> expected = serve(reader, 42, 1, 1, 0, 15);
+        assertEquals(15, expected.size());
+        List<double[]> actual = serve(reader, 42, 3, 4, 0, 15);
+        for (int i = 0; i < expected.size(); i++){
+            assertArrayEquals(expected.get(i), actual.get(i), 0.0d);
+        }
+    }
+
+    /**
+     * A loader resumed at a given batch serves the batches of the interrupted one
+     */
+    @Test
+    public void testResumeServesSameBatches(){
+        SyntheticReader reader = new SyntheticReader(NB_SAMPLES, 3);
+        List<double[]> expected = serve(reader, 7, 2, 2, 0, 15);
+        List<double[]> resumed = serve(reader, 7, 2, 2, 8, 7);
+        for (int i = 0; i < resumed.size(); i++){
+            assertArrayEquals(expected.get(8 + i), resumed.get(i), 0.0d);
+        }
+    }
+
+    /**
+     * Each pass is a permutation of the dataset, another seed gives another order
+     */
+    @Test
+    public void testPassIsPermutation(){
+        SyntheticReader reader = new SyntheticReader(NB_SAMPLES, 3);
+        List<double[]> first = serve(reader, 1, 1, 2, 0, NB_SAMPLES / BATCH_SIZE);
+        List<double[]> other = serve(reader, 2, 1, 2, 0, NB_SAMPLES / BATCH_SIZE);
+
+        // The first input of each sample of the pass, against the ones of the dataset
+        double[] served = new double[NB_SAMPLES];
+        double[] dataset = new double[NB_SAMPLES];
+        boolean sameOrder = true;
+        for (int s = 0; s < NB_SAMPLES; s++){
+            served[s] = first.get(s / BATCH_SIZE)[(s % BATCH_SIZE) * SyntheticReader.NB_INPUTS];
+            dataset[s] = reader.getSample(s).getData()[reader.getSample(s).getOffset()];
+            sameOrder &= served[s] == other.get(s / BATCH_SIZE)[(s % BATCH_SIZE) * SyntheticReader.NB_INPUTS];
+        }
+        Arrays.sort(served);
+        Arrays.sort(dataset);
+        assertArrayEquals(dataset, served, 0.0d);
+        assertFalse(sameOrder);
+    }
+
+    /**
+     * A batch which could not be filled is reported when served, the next ones are still served
+     */
+    @Test
+    public void testFillErrorIsThrown(){
+        SyntheticReader reader = new SyntheticReader(NB_SAMPLES, 3){
+            @Override
+            public void copySample(int i, INDArray out){
+                if (i == 5){
+                    throw new IllegalArgumentException("Bad sample");
+                }
+                super.copySample(i, out);
+            }
+        };
+        BatchLoader loader = new BatchLoader.BatchLoaderBuilder().withDataReader(reader)
+                                                                 .withBatchSize(BATCH_SIZE)
+                                                                 .withShuffle(false)
+                                                                 .build();
+        try {
+            assertNotNull(loader.next());
+            IllegalStateException e = assertThrows(IllegalStateException.class, loader::next);
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+            BatchLoader.Batch batch = loader.next();
+            assertNotNull(batch);
+            assertEquals(2L, batch.getIndex());
+        } finally {
+            loader.close();
+        }
+    }
+
+    /**
+     * @return Copies of the samples of nbBatches batches
+     */
+    private static List<double[]> serve(SyntheticReader reader, long seed, int nbWorkers, int prefetchDepth, long firstBatch, int nbBatches){
+        BatchLoader loader = new BatchLoader.BatchLoaderBuilder().withDataReader(reader)
+                                                                 .withBatchSize(BATCH_SIZE)
+                                                                 .withShuffle(true)
+                                                                 .withSeed(seed)
+                                                                 .withNbWorkers(nbWorkers)
+                                                                 .withPrefetchDepth(prefetchDepth)
+                                                                 .withFirstBatch(firstBatch)
+                                                                 .build();
+        List<double[]> res = new ArrayList<>();
+        try {
+            for (int i = 0; i < nbBatches; i++){
+                INDArray samples = loader.next().getSamples();
+                res.add(samples.dup().getData());
+            }
+        } finally {
+            loader.close();
+        }
+        return res;
+    }
+}
@@ -0,0 +1,117 @@
+package fr.pops.examples;
+
+import fr.pops.checkpoint.Checkpoint;
+import fr.pops.math.ndarray.INDArray;
+import fr.pops.nn.layers.Layer;
+import fr.pops.nn.networks.Classifier;
+import fr.pops.optimizer.Optimizer;
+import fr.pops.popscst.cst.EnumCst;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CheckpointTest {
+
+    /**
+     * Parameters, optimizer states, training step and seed come back unchanged in float64
+     */
+    @Test
+    public void testDoubleRoundTrip() throws IOException {
+        this.testRoundTrip(EnumCst.DataTypes.DOUBLE, 0.0d);
+    }
+
+    /**
+     * Float32 checkpoints hold the values rounded to single precision
+     */
+    @Test
+    public void testFloatRoundTrip() throws IOException {
+        this.testRoundTrip(EnumCst.DataTypes.FLOAT, 1e-6);
+    }
+
+    /**
+     * Nothing is restored into a network of another topology
+     */
+    @Test
+    public void testTopologyMismatch() throws IOException {
+        SyntheticReader reader = new SyntheticReader(30, 1);
+        Classifier trained = train(reader);
+        Path path = temporaryFile();
+        Checkpoint.save(trained, path);
+
+        Classifier other = SyntheticReader.classifier(reader.configuration(30, 5).build());
+        other.getNeuralNetworkConfiguration().getLayers().remove(other.getNeuralNetworkConfiguration().getNbLayers() - 1);
+        assertFalse(Checkpoint.load(other, path));
+        assertEquals(0, other.getCurrentEpoch());
+    }
+
+    private void testRoundTrip(EnumCst.DataTypes dataType, double tolerance) throws IOException {
+        SyntheticReader reader = new SyntheticReader(30, 1);
+        Classifier trained = train(reader);
+        Path path = temporaryFile();
+        Checkpoint.save(trained, path, dataType);
+
+        Classifier restored = SyntheticReader.classifier(reader.configuration(30, 5).withOptimizer(adam()).build());
+        Checkpoint checkpoint = Checkpoint.open(path);
+        assertEquals(Checkpoint.VERSION, checkpoint.getVersion());
+        assertEquals(trained.getCurrentEpoch(), checkpoint.getCurrentEpoch());
+        assertEquals(123L, checkpoint.getSeed());
+        assertTrue(checkpoint.restore(restored));
+
+        assertEquals(trained.getCurrentEpoch(), restored.getCurrentEpoch());
+        assertEquals(123L, restored.getNeuralNetworkConfiguration().getSeed());
+        assertEquals(trained.getNeuralNetworkConfiguration().getOptimizer().getStep(), restored.getNeuralNetworkConfiguration().getOptimizer().getStep());
+        List<Layer> expected = trained.getNeuralNetworkConfiguration().getLayers();
+        List<Layer> actual = restored.getNeuralNetworkConfiguration().getLayers();
+        for (int l = 0; l < expected.size(); l++){
+            assertSame(expected.get(l).getParameters(), actual.get(l).getParameters(), tolerance);
+            assertSame(expected.get(l).getOptimizerStates(), actual.get(l).getOptimizerStates(), tolerance);
+            for (int i = 0; i < checkpoint.getNbParameters(l); i++){
+                assertSame(List.of(expected.get(l).getParameters().get(i)), List.of(checkpoint.getParameter(l, i)), tolerance);
+            }
+        }
+    }
+
+    /*****************************************
+     *
+     * Helpers
+     *
+     *****************************************/
+    private static Optimizer adam(){
+        return new Optimizer.OptimizerBuilder().withType(EnumCst.Optimizer.ADAM).build();
+    }
+
+    /**
+     * @return A network trained a few steps with Adam, so that its optimizer states are not zero
+     */
+    private static Classifier train(SyntheticReader reader){
+        Classifier classifier = SyntheticReader.classifier(reader.configuration(30, 5).withOptimizer(adam()).withSeed(123).build());
+        classifier.train();
+        return classifier;
+    }
+
+    private static Path temporaryFile() throws IOException {
+        Path path = Files.createTempFile("pops", ".ckpt");
+        path.toFile().deleteOnExit();
+        return path;
+    }
+
+    private static void assertSame(List<INDArray> expected, List<INDArray> actual, double tolerance){
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++){
+            INDArray a = expected.get(i);
+            INDArray b = actual.get(i);
+            assertEquals(a.getShape().getSize(), b.getShape().getSize());
+            for (int k = 0; k < a.getShape().getSize(); k++){
+                double x = a.getDataBuffer().getDouble(a.getOffset() + k);
+                assertEquals(x, b.getDataBuffer().getDouble(b.getOffset() + k), tolerance * Math.max(1, Math.abs(x)));
+            }
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package fr.pops.examples;
+
+import fr.pops.checkpoint.Checkpoint;
+import fr.pops.checkpoint.CheckpointWriter;
+import fr.pops.math.ArrayUtil;
+import fr.pops.math.ndarray.INDArray;
+import fr.pops.nn.networks.Classifier;
+import fr.pops.optimizer.Optimizer;
+import fr.pops.popscst.cst.EnumCst;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CheckpointWriterTest {
+
+    private static final int NB_SAMPLES = 60;
+    private static final int NB_ITERATIONS = 120;
+    private static final int BATCH_SIZE = 10;
+    // Number of batches between two snapshots, the run is interrupted between two of them
+    private static final int INTERVAL = 4;
+    private static final int MAX_STEPS = 100000;
+
+    /**
+     * A training interrupted half way and resumed from its checkpoint ends with the parameters of an uninterrupted training
+     */
+    @Test
+    public void testResumeMatchesUninterrupted() throws IOException {
+        SyntheticReader reader = new SyntheticReader(NB_SAMPLES, 7);
+        for (int nbWorkers : new int[]{1, 2}){
+            Path path = temporaryPath();
+            Classifier reference = SyntheticReader.classifier(reader.configuration(NB_ITERATIONS, BATCH_SIZE)
+                                                                    .withShuffle(true)
+                                                                    .withSeed(9)
+                                                                    .withOptimizer(adam())
+                                                                    .withNbWorkers(nbWorkers)
+                                                                    .build());
+            Classifier interrupted = SyntheticReader.classifier(reader.configuration(NB_ITERATIONS / 2, BATCH_SIZE)
+                                                                      .withShuffle(true)
+                                                                      .withSeed(9)
+                                                                      .withOptimizer(adam())
+                                                                      .withNbWorkers(nbWorkers)
+                                                                      .withCheckpoint(path, INTERVAL, 0)
+                                                                      .build());
+            copyParameters(reference, interrupted);
+            interrupted.train();
+
+            // The last interval snapshot is older than the end of the run: close wrote the final one
+            assertEquals(NB_ITERATIONS / 2, Checkpoint.open(path).getCurrentEpoch());
+
+            Classifier resumed = SyntheticReader.classifier(reader.configuration(NB_ITERATIONS, BATCH_SIZE)
+                                                                  .withShuffle(true)
+                                                                  .withSeed(9)
+                                                                  .withOptimizer(adam())
+                                                                  .withNbWorkers(nbWorkers)
+                                                                  .withCheckpoint(path, INTERVAL, 0)
+                                                                  .build());
+            reference.train();
+            resumed.train();
+
+            assertEquals(NB_ITERATIONS, resumed.getCurrentEpoch());
+            assertEquals(reference.getNeuralNetworkConfiguration().getOptimizer().getStep(),
+                         resumed.getNeuralNetworkConfiguration().getOptimizer().getStep());
+            assertTrue(maxDifference(reference, resumed) < 1e-12, "Workers: " + nbWorkers);
+        }
+    }
+
+    /**
+     * A snapshot every N steps, plus the last one written by close
+     */
+    @Test
+    public void testInterval() throws IOException {
+        Classifier classifier = SyntheticReader.classifier(new SyntheticReader(NB_SAMPLES, 3).configuration(NB_ITERATIONS, BATCH_SIZE).build());
+        Path path = temporaryPath();
+        CheckpointWriter writer = new CheckpointWriter.CheckpointWriterBuilder().withPath(path).withInterval(3).build();
+
+        // Let each snapshot be written before the next one is due so that none is skipped
+        for (int i = 1; i <= 7; i++){
+            classifier.setCurrentEpoch(i);
+            writer.step(classifier);
+            waitForWriter(writer, i / 3);
+        }
+        assertEquals(2, writer.getNbSaved());
+        assertEquals(6, Checkpoint.open(path).getCurrentEpoch());
+
+        classifier.setCurrentEpoch(8);
+        writer.close(classifier);
+        assertEquals(3, writer.getNbSaved());
+        assertEquals(0, writer.getNbSkipped());
+        assertEquals(8, Checkpoint.open(path).getCurrentEpoch());
+    }
+
+    /**
+     * A snapshot once the period has elapsed, whatever the number of steps
+     */
+    @Test
+    public void testPeriod() throws IOException, InterruptedException {
+        Classifier classifier = SyntheticReader.classifier(new SyntheticReader(NB_SAMPLES, 3).configuration(NB_ITERATIONS, BATCH_SIZE).build());
+        Path path = temporaryPath();
+        CheckpointWriter writer = new CheckpointWriter.CheckpointWriterBuilder().withPath(path).withPeriod(1).build();
+
+        classifier.setCurrentEpoch(1);
+        writer.step(classifier);
+        assertFalse(Files.exists(path));
+
+        Thread.sleep(1100);
+        classifier.setCurrentEpoch(2);
+        writer.step(classifier);
+        waitForWriter(writer, 1);
+        assertEquals(2, Checkpoint.open(path).getCurrentEpoch());
+
+        writer.close(classifier);
+        assertEquals(2, writer.getNbSaved());
+    }
+
+    /**
+     * Steps faster than the writer skip snapshots instead of waiting, every step is either saved or skipped
+     */
+    @Test
+    public void testSkipWhenBuffersBusy() throws IOException {
+        Classifier classifier = SyntheticReader.classifier(new SyntheticReader(NB_SAMPLES, 3).configuration(NB_ITERATIONS, BATCH_SIZE).build());
+        Path path = temporaryPath();
+        CheckpointWriter writer = new CheckpointWriter.CheckpointWriterBuilder().withPath(path).withInterval(1).build();
+
+        int nbSteps = 0;
+        while (writer.getNbSkipped() == 0 && nbSteps < MAX_STEPS){
+            classifier.setCurrentEpoch(++nbSteps);
+            writer.step(classifier);
+        }
+        assertTrue(writer.getNbSkipped() > 0);
+
+        classifier.setCurrentEpoch(nbSteps + 1);
+        writer.close(classifier);
+        assertEquals(nbSteps - writer.getNbSkipped() + 1, writer.getNbSaved());
+        assertEquals(nbSteps + 1, Checkpoint.open(path).getCurrentEpoch());
+    }
+
+    /*****************************************
+     *
+     * Helpers
+     *
+     *****************************************/
+    private static Optimizer adam(){
+        return new Optimizer.OptimizerBuilder().withType(EnumCst.Optimizer.ADAM).build();
+    }
+
+    /**
+     * @return A path in a new directory, with no file yet
+     */
+    private static Path temporaryPath() throws IOException {
+        Path directory = Files.createTempDirectory("pops");
+        directory.toFile().deleteOnExit();
+        Path path = directory.resolve("model.ckpt");
+        path.toFile().deleteOnExit();
+        return path;
+    }
+
+    private static void waitForWriter(CheckpointWriter writer, int nbSaved){
+        long deadline = System.currentTimeMillis() + 10000;
+        while (writer.getNbSaved() < nbSaved && System.currentTimeMillis() < deadline){
+            Thread.yield();
+        }
+    }
+
+    private static void copyParameters(Classifier from, Classifier to){
+        for (int l = 0; l < from.getNeuralNetworkConfiguration().getNbLayers(); l++){
+            List<INDArray> src = from.getNeuralNetworkConfiguration().getLayers().get(l).getParameters();
+            List<INDArray> dst = to.getNeuralNetworkConfiguration().getLayers().get(l).getParameters();
+            for (int i = 0; i < src.size(); i++){
+                ArrayUtil.copyInto(src.get(i), dst.get(i));
+            }
+        }
+    }
+
+    private static double maxDifference(Classifier a, Classifier b){
+        double res = 0;
+        for (int l = 0; l < a.getNeuralNetworkConfiguration().getNbLayers(); l++){
+            List<INDArray> pa = a.getNeuralNetworkConfiguration().getLayers().get(l).getParameters();
+            List<INDArray> pb = b.getNeuralNetworkConfiguration().getLayers().get(l).getParameters();
+            for (int i = 0; i < pa.size(); i++){
+                double[] x = pa.get(i).getData();
+                double[] y = pb.get(i).getData();
+                for (int k = 0; k < pa.get(i).getShape().getSize(); k++){
+                    res = Math.max(res, Math.abs(x[pa.get(i).getOffset() + k] - y[pb.get(i).getOffset() + k]));
+                }
+            }
+        }
+        return res;
+    }
+}
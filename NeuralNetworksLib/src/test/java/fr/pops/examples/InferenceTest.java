@@ -0,0 +1,125 @@
+package fr.pops.examples;
+
+import fr.pops.math.ndarray.BaseNDArray;
+import fr.pops.math.ndarray.INDArray;
+import fr.pops.nn.networks.BatchingPredictor;
+import fr.pops.nn.networks.Classifier;
+import fr.pops.nn.networks.FrozenModel;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InferenceTest {
+
+    private static final double EPS = 1e-12;
+
+    private final SyntheticReader reader = new SyntheticReader(64, 1);
+
+    private static void assertSameValues(INDArray expected, INDArray actual){
+        assertNotNull(actual);
+        assertEquals(expected.getShape().getSize(), actual.getShape().getSize());
+        for (int i = 0; i < expected.getShape().getSize(); i++){
+            assertEquals(expected.getData()[expected.getOffset() + i], actual.getData()[actual.getOffset() + i], EPS);
+        }
+    }
+
+    @Test
+    public void testFrozenModelIgnoresLaterTraining(){
+        Classifier classifier = SyntheticReader.classifier(this.reader.configuration(64, 4).build());
+        FrozenModel model = new FrozenModel(classifier);
+        INDArray before = model.predict(this.reader.getSample(0));
+        classifier.train();
+        assertSameValues(before, model.predict(this.reader.getSample(0)));
+    }
+
+    @Test
+    public void testPredictBatchMatchesPredict(){
+        FrozenModel model = new FrozenModel(SyntheticReader.classifier(this.reader.configuration(64, 4).build()));
+        List<INDArray> samples = new ArrayList<>();
+        for (int s = 0; s < 10; s++){
+            samples.add(this.reader.getSample(s));
+        }
+        List<INDArray> outputs = model.predictBatch(samples);
+        for (int s = 0; s < samples.size(); s++){
+            assertSameValues(model.predict(samples.get(s)), outputs.get(s));
+        }
+    }
+
+    @Test
+    public void testPredictBatchSkipsOnlyTheBadSample(){
+        FrozenModel model = new FrozenModel(SyntheticReader.classifier(this.reader.configuration(64, 4).build()));
+        INDArray bad = new BaseNDArray(new double[]{1, 2, 3}, 3);
+        List<INDArray> samples = Arrays.asList(this.reader.getSample(0), this.reader.getSample(1), bad, null, this.reader.getSample(2));
+        List<INDArray> outputs = model.predictBatch(samples);
+        assertEquals(5, outputs.size());
+        assertSameValues(model.predict(this.reader.getSample(0)), outputs.get(0));
+        assertSameValues(model.predict(this.reader.getSample(1)), outputs.get(1));
+        assertNull(outputs.get(2));
+        assertNull(outputs.get(3));
+        assertSameValues(model.predict(this.reader.getSample(2)), outputs.get(4));
+    }
+
+    @Test
+    public void testConcurrentPredictions() throws Exception {
+        FrozenModel model = new FrozenModel(SyntheticReader.classifier(this.reader.configuration(64, 4).build()));
+        List<INDArray> expected = new ArrayList<>();
+        for (int s = 0; s < 64; s++){
+            expected.add(model.predict(this.reader.getSample(s)));
+        }
+        BatchingPredictor predictor = new BatchingPredictor.BatchingPredictorBuilder().withModel(model)
+                                                                                      .withMaxBatchSize(8)
+                                                                                      .withMaxDelay(200)
+                                                                                      .build();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++){
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                for (int r = 0; r < 100; r++){
+                    int s = (r * 8 + thread) % 64;
+                    assertSameValues(expected.get(s), r % 2 == 0 ? model.predict(this.reader.getSample(s))
+                                                                  : predictor.predict(this.reader.getSample(s)));
+                }
+            }));
+        }
+        for (Future<?> future : futures){
+            future.get();
+        }
+        executor.shutdown();
+        predictor.close();
+        assertEquals(400, predictor.getNbPredictions());
+    }
+
+    @Test
+    public void testBadRequestOnlyFailsItself(){
+        FrozenModel model = new FrozenModel(SyntheticReader.classifier(this.reader.configuration(64, 4).build()));
+        BatchingPredictor predictor = new BatchingPredictor.BatchingPredictorBuilder().withModel(model)
+                                                                                      .withMaxBatchSize(5)
+                                                                                      .withMaxDelay(100000)
+                                                                                      .build();
+        List<CompletableFuture<INDArray>> futures = new ArrayList<>();
+        for (int s = 0; s < 5; s++){
+            futures.add(predictor.submit(s == 2 ? new BaseNDArray(new double[]{1, 2, 3}, 3) : this.reader.getSample(s)));
+        }
+        for (int s = 0; s < 5; s++){
+            if (s == 2){
+                CompletionException e = assertThrows(CompletionException.class, futures.get(s)::join);
+                assertTrue(e.getCause() instanceof IllegalArgumentException);
+            } else {
+                assertSameValues(model.predict(this.reader.getSample(s)), futures.get(s).join());
+            }
+        }
+        predictor.close();
+        CompletionException e = assertThrows(CompletionException.class, () -> predictor.predict(this.reader.getSample(0)));
+        assertTrue(e.getCause() instanceof IllegalStateException);
+    }
+}
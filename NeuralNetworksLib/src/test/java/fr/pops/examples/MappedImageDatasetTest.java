@@ -0,0 +1,198 @@
+package fr.pops.examples;
+
+import fr.pops.datareader.CifarDataset;
+import fr.pops.datareader.MNISTDataset;
+import fr.pops.datareader.MappedImageDataset;
+import fr.pops.math.ndarray.BaseNDArray;
+import fr.pops.math.ndarray.HeapFloatDataBuffer;
+import fr.pops.math.ndarray.INDArray;
+import fr.pops.popscst.cst.EnumCst;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class MappedImageDatasetTest {
+
+    private static final int NB_IMAGES = 5;
+    private static final int NB_ROWS = 3;
+    private static final int NB_COLUMNS = 4;
+    private static final int CIFAR_IMAGE_SIZE = 32 * 32 * 3;
+    private static final int NB_CLASSES = 10;
+    private static final byte[] LABELS = new byte[]{ 3, 9, 0, 7, 5 };
+    private static final double FLOAT_TOLERANCE = 1e-7;
+
+    /**
+     * The header gives the number and the size of the images, the labels follow their own header
+     */
+    @Test
+    public void testMnistHeader() throws IOException {
+        MNISTDataset dataset = mnist();
+        assertEquals(NB_IMAGES, dataset.getNbOfTrainingSamples());
+        assertEquals(NB_ROWS * NB_COLUMNS, dataset.getSampleShape().getSize());
+        for (int i = 0; i < NB_IMAGES; i++){
+            assertEquals(LABELS[i], dataset.getLabelIndex(i));
+            assertArrayEquals(pixels(i, NB_ROWS * NB_COLUMNS), dataset.getSample(i).getData(), 0.0d);
+            assertArrayEquals(oneHot(i), dataset.getLabel(i).getData(), 0.0d);
+        }
+    }
+
+    /**
+     * Each record is a label byte followed by the image
+     */
+    @Test
+    public void testCifarRecords() throws IOException {
+        CifarDataset dataset = cifar();
+        assertEquals(NB_IMAGES, dataset.getNbOfTrainingSamples());
+        assertEquals(CIFAR_IMAGE_SIZE, dataset.getSampleShape().getSize());
+        for (int i = 0; i < NB_IMAGES; i++){
+            assertEquals(LABELS[i], dataset.getLabelIndex(i));
+            assertArrayEquals(pixels(i, CIFAR_IMAGE_SIZE), dataset.getSample(i).getData(), 0.0d);
+            assertArrayEquals(oneHot(i), dataset.getLabel(i).getData(), 0.0d);
+        }
+    }
+
+    /**
+     * Batches wrap around the dataset, the labels are one hot vectors along the batch axis
+     */
+    @Test
+    public void testBatches() throws IOException {
+        for (MappedImageDataset dataset : new MappedImageDataset[]{ mnist(), cifar() }){
+            int sampleSize = dataset.getSampleShape().getSize();
+            int from = NB_IMAGES - 2;
+            int batchSize = 4;
+            INDArray samples = dataset.getSamples(from, batchSize);
+            INDArray labels = dataset.getLabels(from, batchSize);
+            assertEquals(batchSize, samples.getShape().getBatchAxisLength());
+            assertEquals(batchSize, labels.getShape().getBatchAxisLength());
+            for (int b = 0; b < batchSize; b++){
+                int i = (from + b) % NB_IMAGES;
+                assertArrayEquals(pixels(i, sampleSize), samples.sample(b).dup().getData(), 0.0d);
+                assertArrayEquals(oneHot(i), labels.sample(b).dup().getData(), 0.0d);
+            }
+        }
+    }
+
+    /**
+     * Images and labels are copied into the samples of a batch, in double and float buffers
+     */
+    @Test
+    public void testCopyIntoBatchViews() throws IOException {
+        for (MappedImageDataset dataset : new MappedImageDataset[]{ mnist(), cifar() }){
+            int sampleSize = dataset.getSampleShape().getSize();
+            int batchSize = 3;
+            INDArray doubles = new BaseNDArray(new double[batchSize * sampleSize], sampleSize, 1, 1, batchSize);
+            INDArray floats = new BaseNDArray(new HeapFloatDataBuffer(batchSize * sampleSize), sampleSize, 1, 1, batchSize);
+            INDArray labels = new BaseNDArray(new double[batchSize * NB_CLASSES], NB_CLASSES, 1, 1, batchSize);
+            // Stale values must be overwritten
+            labels.getDataBuffer().fill(0, batchSize * NB_CLASSES, 0.5);
+
+            for (int b = 0; b < batchSize; b++){
+                dataset.copySample(b + 2, doubles.sample(b));
+                dataset.copySample(b + 2, floats.sample(b));
+                dataset.copyLabel(b + 2, labels.sample(b));
+            }
+            for (int b = 0; b < batchSize; b++){
+                int i = (b + 2) % NB_IMAGES;
+                assertEquals(b * sampleSize, doubles.sample(b).getOffset());
+                assertArrayEquals(pixels(i, sampleSize), doubles.sample(b).dup().getData(), 0.0d);
+                assertArrayEquals(pixels(i, sampleSize), floats.sample(b).dup().getData(), FLOAT_TOLERANCE);
+                assertArrayEquals(oneHot(i), labels.sample(b).dup().getData(), 0.0d);
+            }
+        }
+    }
+
+    /**
+     * Samples decoded in float are stored in a float buffer
+     */
+    @Test
+    public void testFloatDecoding() throws IOException {
+        for (MappedImageDataset dataset : new MappedImageDataset[]{ mnist(), cifar() }){
+            int sampleSize = dataset.getSampleShape().getSize();
+            dataset.setDataType(EnumCst.DataTypes.FLOAT);
+            assertEquals(EnumCst.DataTypes.FLOAT, dataset.getDataType());
+
+            INDArray sample = dataset.getSample(1);
+            INDArray samples = dataset.getSamples(3, 3);
+            assertEquals(HeapFloatDataBuffer.class, sample.getDataBuffer().getClass());
+            assertEquals(HeapFloatDataBuffer.class, samples.getDataBuffer().getClass());
+            assertArrayEquals(pixels(1, sampleSize), sample.getData(), FLOAT_TOLERANCE);
+            for (int b = 0; b < 3; b++){
+                assertArrayEquals(pixels((3 + b) % NB_IMAGES, sampleSize), samples.sample(b).dup().getData(), FLOAT_TOLERANCE);
+            }
+
+            // Only DOUBLE and FLOAT are supported
+            dataset.setDataType(EnumCst.DataTypes.INTEGER);
+            assertEquals(EnumCst.DataTypes.FLOAT, dataset.getDataType());
+        }
+    }
+
+    /*****************************************
+     *
+     * Helpers
+     *
+     *****************************************/
+    /**
+     * @return The raw value of pixel p of image i, every byte value appears
+     */
+    private static byte pixel(int i, int p){
+        return (byte) (37 * i + 11 * p);
+    }
+
+    private static double[] pixels(int i, int size){
+        double[] res = new double[size];
+        for (int p = 0; p < size; p++){
+            res[p] = (pixel(i, p) & 0xFF) / 255.0d;
+        }
+        return res;
+    }
+
+    private static double[] oneHot(int i){
+        double[] res = new double[NB_CLASSES];
+        res[LABELS[i]] = 1;
+        return res;
+    }
+
+    /**
+     * An IDX image file with its IDX label file
+     */
+    private static MNISTDataset mnist() throws IOException {
+        int imageSize = NB_ROWS * NB_COLUMNS;
+        ByteBuffer images = ByteBuffer.allocate(16 + NB_IMAGES * imageSize);
+        images.putInt(0x00000803).putInt(NB_IMAGES).putInt(NB_ROWS).putInt(NB_COLUMNS);
+        for (int i = 0; i < NB_IMAGES; i++){
+            for (int p = 0; p < imageSize; p++){
+                images.put(pixel(i, p));
+            }
+        }
+        ByteBuffer labels = ByteBuffer.allocate(8 + NB_IMAGES);
+        labels.putInt(0x00000801).putInt(NB_IMAGES).put(LABELS);
+        return new MNISTDataset(temporaryFile(images.array()), temporaryFile(labels.array()));
+    }
+
+    /**
+     * A binary CIFAR-10 file
+     */
+    private static CifarDataset cifar() throws IOException {
+        ByteBuffer records = ByteBuffer.allocate(NB_IMAGES * (1 + CIFAR_IMAGE_SIZE));
+        for (int i = 0; i < NB_IMAGES; i++){
+            records.put(LABELS[i]);
+            for (int p = 0; p < CIFAR_IMAGE_SIZE; p++){
+                records.put(pixel(i, p));
+            }
+        }
+        return new CifarDataset(temporaryFile(records.array()));
+    }
+
+    private static Path temporaryFile(byte[] content) throws IOException {
+        Path file = Files.createTempFile("pops", ".bin");
+        file.toFile().deleteOnExit();
+        Files.write(file, content);
+        return file;
+    }
+}
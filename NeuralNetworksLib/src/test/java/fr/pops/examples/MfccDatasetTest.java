@@ -0,0 +1,140 @@
+package fr.pops.examples;
+
+import fr.pops.datareader.MfccDataset;
+import fr.pops.datareader.WaveReader;
+import fr.pops.math.ndarray.INDArray;
+import fr.pops.speechrecognizer.MelFilterbank;
+import fr.pops.speechrecognizer.MfccExtractor;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+public class MfccDatasetTest {
+
+    private static final int SAMPLE_RATE = 8000;
+    private static final int NB_COEFFICIENTS = 13;
+
+    /**
+     * Too many filters for the FFT: neighbouring edges fall on the same frequency
+     */
+    @Test
+    public void testDegenerateFilters(){
+        double[] spectrum = new double[9];
+        Arrays.fill(spectrum, 1);
+        for (MelFilterbank filterbank : new MelFilterbank[]{ MelFilterbank.get(SAMPLE_RATE, 16, 40, 0, 4000),
+                                                             MelFilterbank.get(SAMPLE_RATE, 16, 4, 1000, 1000) }){
+            double[] energies = new double[filterbank.getNbFilters()];
+            filterbank.apply(spectrum, energies, 0);
+            for (double energy : energies){
+                assertFalse(Double.isNaN(energy));
+            }
+        }
+    }
+
+    /**
+     * Whole recordings are a single sequence of frames along the batch axis
+     */
+    @Test
+    public void testRecordings() throws IOException {
+        MfccExtractor extractor = extractor();
+        Path directory = directory(new int[]{ 4000, 2500 }, new int[]{ 3000 });
+        MfccDataset dataset = new MfccDataset(directory, extractor);
+        dataset.buildDataset();
+
+        assertEquals(3, dataset.getNbOfTrainingSamples());
+        assertEquals("b", dataset.getLabelName(1));
+        for (int s = 0; s < dataset.getNbOfTrainingSamples(); s++){
+            INDArray sample = dataset.getSample(s);
+            INDArray label = dataset.getLabel(s);
+            int nbFrames = sample.getShape().getBatchAxisLength();
+            assertEquals(NB_COEFFICIENTS, sample.getShape().getSampleShape().getSize());
+            assertEquals(nbFrames, label.getShape().getBatchAxisLength());
+            double[] expected = s < 2 ? new double[]{ 1, 0 } : new double[]{ 0, 1 };
+            for (int f = 0; f < nbFrames; f++){
+                assertArrayEquals(expected, label.sample(f).dup().getData(), 0);
+            }
+        }
+    }
+
+    /**
+     * Fixed windows have the same length, the tail of each recording is dropped
+     */
+    @Test
+    public void testWindows() throws IOException {
+        MfccExtractor extractor = extractor();
+        Path directory = directory(new int[]{ 4000, 2500 }, new int[]{ 3000 });
+        int length = 4;
+        MfccDataset dataset = new MfccDataset(directory, extractor).withSequenceLength(length);
+        dataset.buildDataset();
+
+        int expected = 0;
+        for (String name : new String[]{ "a/0.wav", "a/1.wav", "b/0.wav" }){
+            INDArray frames = extractor.extract(new WaveReader(directory.resolve(name)));
+            expected += frames.getShape().getBatchAxisLength() / length;
+        }
+        assertEquals(expected, dataset.getNbOfTrainingSamples());
+        assertEquals(3, dataset.getNbOfRecordings());
+
+        // Windows are contiguous frames of their recording
+        INDArray frames = extractor.extract(new WaveReader(directory.resolve("a/0.wav")));
+        for (int s = dataset.getRecordingStart(0); s < dataset.getRecordingStart(1); s++){
+            INDArray sample = dataset.getSample(s);
+            assertEquals(length, sample.getShape().getBatchAxisLength());
+            assertEquals(length, dataset.getLabel(s).getShape().getBatchAxisLength());
+            int first = (s - dataset.getRecordingStart(0)) * length;
+            assertArrayEquals(frames.samples(first, first + length).dup().getData(), sample.getData(), 1e-12);
+        }
+    }
+
+    private static MfccExtractor extractor(){
+        return new MfccExtractor.MfccExtractorBuilder()
+                .withWindowSize(256)
+                .withHopSize(128)
+                .withNbCoefficients(NB_COEFFICIENTS)
+                .build();
+    }
+
+    /**
+     * @return A directory with a sub-directory of recordings per label
+     */
+    private static Path directory(int[]... lengths) throws IOException {
+        Path directory = Files.createTempDirectory("pops");
+        for (int l = 0; l < lengths.length; l++){
+            Path label = Files.createDirectory(directory.resolve(String.valueOf((char) ('a' + l))));
+            for (int r = 0; r < lengths[l].length; r++){
+                Path file = label.resolve(r + ".wav");
+                Files.write(file, wave(lengths[l][r], 200 * (l + 1) + 50 * r));
+                file.toFile().deleteOnExit();
+            }
+            label.toFile().deleteOnExit();
+        }
+        directory.toFile().deleteOnExit();
+        return directory;
+    }
+
+    /**
+     * @return A 16-bit mono wave file of a sine
+     */
+    private static byte[] wave(int nbSamples, double frequency){
+        ByteBuffer res = ByteBuffer.allocate(44 + 2 * nbSamples).order(ByteOrder.LITTLE_ENDIAN);
+        res.put("RIFF".getBytes(StandardCharsets.US_ASCII)).putInt(36 + 2 * nbSamples).put("WAVE".getBytes(StandardCharsets.US_ASCII));
+        res.put("fmt ".getBytes(StandardCharsets.US_ASCII)).putInt(16);
+        res.putShort((short) 1).putShort((short) 1).putInt(SAMPLE_RATE).putInt(2 * SAMPLE_RATE);
+        res.putShort((short) 2).putShort((short) 16);
+        res.put("data".getBytes(StandardCharsets.US_ASCII)).putInt(2 * nbSamples);
+        for (int i = 0; i < nbSamples; i++){
+            res.putShort((short) (8000 * Math.sin(2 * Math.PI * frequency * i / SAMPLE_RATE)));
+        }
+        return res.array();
+    }
+}
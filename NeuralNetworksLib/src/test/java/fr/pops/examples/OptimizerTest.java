@@ -0,0 +1,142 @@
+package fr.pops.examples;
+
+import fr.pops.math.ndarray.BaseNDArray;
+import fr.pops.math.ndarray.INDArray;
+import fr.pops.optimizer.Optimizer;
+import fr.pops.popscst.cst.EnumCst;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class OptimizerTest {
+
+    private static final int SIZE = 37;
+    private static final int NB_STEPS = 5;
+    private static final int BATCH_SIZE = 4;
+    private static final double LEARNING_RATE = 0.05;
+    private static final double MOMENTUM = 0.9;
+    private static final double DECAY = 0.95;
+    private static final double BETA_1 = 0.8;
+    private static final double BETA_2 = 0.99;
+    private static final double EPSILON = 1e-6;
+    private static final double WEIGHT_DECAY = 0.1;
+    private static final double TOLERANCE = 1e-12;
+
+    @Test
+    public void testNone(){
+        this.testRule(EnumCst.Optimizer.NONE, true);
+    }
+
+    @Test
+    public void testMomentum(){
+        this.testRule(EnumCst.Optimizer.MOMENTUM, true);
+    }
+
+    @Test
+    public void testNesterov(){
+        this.testRule(EnumCst.Optimizer.NESTEROV, true);
+    }
+
+    @Test
+    public void testAdagrad(){
+        this.testRule(EnumCst.Optimizer.ADAGRAD, true);
+    }
+
+    @Test
+    public void testRmsProp(){
+        this.testRule(EnumCst.Optimizer.RMSPROP, true);
+    }
+
+    @Test
+    public void testAdam(){
+        this.testRule(EnumCst.Optimizer.ADAM, true);
+    }
+
+    @Test
+    public void testAdamW(){
+        this.testRule(EnumCst.Optimizer.ADAMW, true);
+        this.testRule(EnumCst.Optimizer.ADAMW, false);
+    }
+
+    /**
+     * Several updates of the optimizer against the scalar update rule applied value by value
+     */
+    private void testRule(EnumCst.Optimizer type, boolean decayed){
+        Optimizer optimizer = new Optimizer.OptimizerBuilder().withType(type)
+                                                              .withMomentum(MOMENTUM)
+                                                              .withDecay(DECAY)
+                                                              .withBetas(BETA_1, BETA_2)
+                                                              .withEpsilon(EPSILON)
+                                                              .withWeightDecay(WEIGHT_DECAY)
+                                                              .build();
+        Random random = new Random(type.ordinal());
+        double[] w = random(random);
+        double[] m = new double[SIZE];
+        double[] v = new double[SIZE];
+        INDArray value = new BaseNDArray(w.clone(), SIZE);
+        INDArray firstMoments = new BaseNDArray(new double[SIZE], SIZE);
+        INDArray secondMoments = new BaseNDArray(new double[SIZE], SIZE);
+
+        for (int t = 1; t <= NB_STEPS; t++){
+            double[] g = random(random);
+            optimizer.nextStep();
+            optimizer.update(value, new BaseNDArray(g.clone(), SIZE), firstMoments, secondMoments, LEARNING_RATE, BATCH_SIZE, decayed);
+            for (int i = 0; i < SIZE; i++){
+                reference(type, decayed, t, w, m, v, g, i);
+            }
+            assertArrayEquals(w, value.getData(), TOLERANCE);
+            assertArrayEquals(m, firstMoments.getData(), TOLERANCE);
+            assertArrayEquals(v, secondMoments.getData(), TOLERANCE);
+        }
+        assertEquals(NB_STEPS, optimizer.getStep());
+    }
+
+    /**
+     * Update rule of a single value at step t
+     */
+    private static void reference(EnumCst.Optimizer type, boolean decayed, int t, double[] w, double[] m, double[] v, double[] g, int i){
+        double grad = g[i] / BATCH_SIZE;
+        switch (type){
+            case MOMENTUM:
+                m[i] = MOMENTUM * m[i] + grad;
+                w[i] -= LEARNING_RATE * m[i];
+                break;
+            case NESTEROV:
+                m[i] = MOMENTUM * m[i] + grad;
+                w[i] -= LEARNING_RATE * (grad + MOMENTUM * m[i]);
+                break;
+            case ADAGRAD:
+                v[i] += grad * grad;
+                w[i] -= LEARNING_RATE * grad / (Math.sqrt(v[i]) + EPSILON);
+                break;
+            case RMSPROP:
+                v[i] = DECAY * v[i] + (1 - DECAY) * grad * grad;
+                w[i] -= LEARNING_RATE * grad / (Math.sqrt(v[i]) + EPSILON);
+                break;
+            case ADAM:
+            case ADAMW:
+                m[i] = BETA_1 * m[i] + (1 - BETA_1) * grad;
+                v[i] = BETA_2 * v[i] + (1 - BETA_2) * grad * grad;
+                double first = m[i] / (1 - Math.pow(BETA_1, t));
+                double second = v[i] / (1 - Math.pow(BETA_2, t));
+                if (type == EnumCst.Optimizer.ADAMW && decayed){
+                    w[i] -= LEARNING_RATE * WEIGHT_DECAY * w[i];
+                }
+                w[i] -= LEARNING_RATE * first / (Math.sqrt(second) + EPSILON);
+                break;
+            default:
+                w[i] -= LEARNING_RATE * grad;
+        }
+    }
+
+    private static double[] random(Random random){
+        double[] res = new double[SIZE];
+        for (int i = 0; i < SIZE; i++){
+            res[i] = 2 * random.nextDouble() - 1;
+        }
+        return res;
+    }
+}
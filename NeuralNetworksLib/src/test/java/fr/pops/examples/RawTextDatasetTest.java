@@ -0,0 +1,83 @@
+package fr.pops.examples;
+
+import fr.pops.datareader.BatchLoader;
+import fr.pops.datareader.RawTextDataset;
+import fr.pops.math.ndarray.INDArray;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class RawTextDatasetTest {
+
+    private static final String TEXT = "the quick brown fox jumps";
+    private static final int SEQUENCE_LENGTH = 6;
+
+    /**
+     * The characters after the last whole sequence are dropped
+     */
+    @Test
+    public void testSequencesHaveSameLength() throws IOException {
+        RawTextDataset dataset = dataset(TEXT, SEQUENCE_LENGTH);
+        assertEquals((TEXT.length() - 1) / SEQUENCE_LENGTH, dataset.getNbOfTrainingSamples());
+        for (int i = 0; i < dataset.getNbOfTrainingSamples(); i++){
+            assertEquals(SEQUENCE_LENGTH, dataset.getSequenceLength(i));
+            assertEquals(SEQUENCE_LENGTH, dataset.getSample(i).getShape().getBatchAxisLength());
+        }
+
+        // The label of a character is the next one
+        INDArray label = dataset.getLabel(3);
+        for (int t = 0; t < SEQUENCE_LENGTH; t++){
+            double[] expected = new double[dataset.getDictionarySize()];
+            expected[dataset.getToken(3 * SEQUENCE_LENGTH + t + 1)] = 1;
+            assertArrayEquals(expected, label.sample(t).dup().getData(), 0.0d);
+        }
+    }
+
+    /**
+     * Every sequence can be stacked by a loader
+     */
+    @Test
+    public void testSequencesAreStacked() throws IOException {
+        RawTextDataset dataset = dataset(TEXT, SEQUENCE_LENGTH);
+        int nbSequences = dataset.getNbOfTrainingSamples();
+        try (BatchLoader loader = new BatchLoader.BatchLoaderBuilder()
+                .withDataReader(dataset)
+                .withBatchSize(nbSequences)
+                .withShuffle(false)
+                .build()){
+            double[] served = loader.next().getSamples().dup().getData();
+            int size = dataset.getSample(0).getShape().getSize();
+            assertEquals(nbSequences * size, served.length);
+            for (int i = 0; i < nbSequences; i++){
+                double[] sequence = new double[size];
+                System.arraycopy(served, i * size, sequence, 0, size);
+                assertArrayEquals(dataset.getSample(i).getData(), sequence, 0.0d);
+            }
+        }
+    }
+
+    /**
+     * A text shorter than a sequence is a single shorter sequence
+     */
+    @Test
+    public void testShortText() throws IOException {
+        RawTextDataset dataset = dataset("abc", SEQUENCE_LENGTH);
+        assertEquals(1, dataset.getNbOfTrainingSamples());
+        assertEquals(2, dataset.getSequenceLength(0));
+    }
+
+    private static RawTextDataset dataset(String text, int sequenceLength) throws IOException {
+        Path file = Files.createTempFile("pops", ".txt");
+        file.toFile().deleteOnExit();
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+        RawTextDataset dataset = new RawTextDataset(file).withSequenceLength(sequenceLength);
+        dataset.buildDataset();
+        return dataset;
+    }
+}
@@ -0,0 +1,107 @@
+package fr.pops.examples;
+
+import fr.pops.math.FFT;
+import fr.pops.popscst.cst.EnumCst;
+import fr.pops.speechrecognizer.Spectrogram;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class SpectrogramTest {
+
+    private static final int WINDOW_SIZE = 256;
+    private static final int HOP_SIZE = 100;
+    // Not a multiple of the hop: the last frames run past the end of the signal
+    private static final int SIGNAL_LENGTH = 10037;
+    // Samples handed by each read of the source, unrelated to the hop and the block size
+    private static final int READ_LENGTH = 333;
+
+    /**
+     * One frame per block, a few frames per block and the whole signal in one parallel block give the magnitudes of each frame transformed on its own
+     */
+    @Test
+    public void testBlocksMatchFrames() throws IOException {
+        double[] signal = signal();
+        for (boolean power : new boolean[]{false, true}){
+            double[][] expected = reference(signal, power);
+            assertEquals((SIGNAL_LENGTH + HOP_SIZE - 1) / HOP_SIZE, expected.length);
+            for (int framesPerBlock : new int[]{1, 7, 1000}){
+                double[][] actual = spectrogram(signal, framesPerBlock, power);
+                assertEquals(expected.length, actual.length);
+                for (int f = 0; f < expected.length; f++){
+                    assertArrayEquals(expected[f], actual[f], 0.0d);
+                }
+            }
+        }
+    }
+
+    /*****************************************
+     *
+     * Helpers
+     *
+     *****************************************/
+    private static double[] signal(){
+        Random random = new Random(21);
+        double[] res = new double[SIGNAL_LENGTH];
+        for (int i = 0; i < SIGNAL_LENGTH; i++){
+            res[i] = Math.sin(0.05 * i) + 0.1 * (2 * random.nextDouble() - 1);
+        }
+        return res;
+    }
+
+    /**
+     * Stream the signal through a spectrogram, checking that the blocks follow each other
+     */
+    private static double[][] spectrogram(double[] signal, int framesPerBlock, boolean power) throws IOException {
+        Spectrogram spectrogram = new Spectrogram.SpectrogramBuilder().withWindowSize(WINDOW_SIZE)
+                                                                      .withHopSize(HOP_SIZE)
+                                                                      .withFramesPerBlock(framesPerBlock)
+                                                                      .withWindowFunction(EnumCst.WindowFunctions.HANN)
+                                                                      .withPower(power)
+                                                                      .build();
+        int[] position = new int[1];
+        List<double[]> frames = new ArrayList<>();
+        spectrogram.process((dst, offset, length) -> {
+            int read = Math.min(Math.min(length, READ_LENGTH), SIGNAL_LENGTH - position[0]);
+            System.arraycopy(signal, position[0], dst, offset, read);
+            position[0] += read;
+            return read;
+        }, (firstFrame, magnitudes, nbFrames) -> {
+            assertEquals(frames.size(), firstFrame);
+            for (int f = 0; f < nbFrames; f++){
+                frames.add(magnitudes[f].clone());
+            }
+        });
+        return frames.toArray(new double[0][]);
+    }
+
+    /**
+     * Each frame padded with zeros past the end of the signal, windowed and transformed on its own
+     */
+    private static double[][] reference(double[] signal, boolean power){
+        double[] window = Spectrogram.windowCoefficients(EnumCst.WindowFunctions.HANN, WINDOW_SIZE);
+        List<double[]> frames = new ArrayList<>();
+        for (int start = 0; start < SIGNAL_LENGTH; start += HOP_SIZE){
+            double[] frame = new double[WINDOW_SIZE];
+            for (int i = 0; i < WINDOW_SIZE && start + i < SIGNAL_LENGTH; i++){
+                frame[i] = signal[start + i] * window[i];
+            }
+            double[] re = new double[WINDOW_SIZE / 2 + 1];
+            double[] im = new double[WINDOW_SIZE / 2 + 1];
+            FFT.realTransform(frame, 0, WINDOW_SIZE, re, im);
+            double[] magnitudes = new double[WINDOW_SIZE / 2 + 1];
+            for (int k = 0; k < magnitudes.length; k++){
+                double squared = re[k] * re[k] + im[k] * im[k];
+                magnitudes[k] = power ? squared : Math.sqrt(squared);
+            }
+            frames.add(magnitudes);
+        }
+        return frames.toArray(new double[0][]);
+    }
+}
@@ -0,0 +1,60 @@
+package fr.pops.examples;
+
+import fr.pops.datareader.DataReader;
+import fr.pops.math.ndarray.BaseNDArray;
+import fr.pops.nn.layers.DenseLayer;
+import fr.pops.nn.networks.Classifier;
+import fr.pops.nn.networks.NeuralNetworkConfiguration;
+import fr.pops.popscst.cst.EnumCst;
+
+import java.util.Random;
+
+/**
+ * Small seeded dataset shared by the tests: each class lights up its own block of inputs
+ */
+public class SyntheticReader extends DataReader {
+
+    public static final int NB_INPUTS = 12;
+    public static final int NB_CLASSES = 3;
+
+    public SyntheticReader(int nbSamples, long seed){
+        Random random = new Random(seed);
+        this.nbOfTrainingSamples = nbSamples;
+        this.nbOfLabels = NB_CLASSES;
+        for (int s = 0; s < nbSamples; s++){
+            int c = random.nextInt(NB_CLASSES);
+            double[] x = new double[NB_INPUTS];
+            for (int i = 0; i < NB_INPUTS; i++){
+                x[i] = 0.1d * random.nextDouble() + (i / (NB_INPUTS / NB_CLASSES) == c ? 0.9d : 0.0d);
+            }
+            double[] label = new double[NB_CLASSES];
+            label[c] = 1;
+            this.dataset.add(new BaseNDArray(x, NB_INPUTS));
+            this.labels.add(new BaseNDArray(label, NB_CLASSES));
+        }
+    }
+
+    /**
+     * @return A builder of a small classifier reading this dataset
+     */
+    public NeuralNetworkConfiguration.NeuralNetworkConfigurationBuilder configuration(int nbIterations, int batchSize){
+        return new NeuralNetworkConfiguration.NeuralNetworkConfigurationBuilder()
+                .withLearningRate(0.5d)
+                .withBatchSize(batchSize)
+                .withNbIterations(nbIterations)
+                .withRegularisation(false)
+                .withDataReader(this)
+                .withInputLayer(NB_INPUTS)
+                .withLayer(new DenseLayer.DenseLayerBuilder().withNOut(8).withActivationFunction("sigmoid").withWeightInit(EnumCst.WeightsInitMethod.XAVIER).build())
+                .withLayer(new DenseLayer.DenseLayerBuilder().withNOut(NB_CLASSES).withActivationFunction("sigmoid").withWeightInit(EnumCst.WeightsInitMethod.XAVIER).build());
+    }
+
+    /**
+     * @return An initialized classifier built from the configuration
+     */
+    public static Classifier classifier(NeuralNetworkConfiguration configuration){
+        Classifier classifier = new Classifier(configuration);
+        classifier.init();
+        return classifier;
+    }
+}
@@ -0,0 +1,79 @@
+package fr.pops.examples;
+
+import fr.pops.math.ArrayUtil;
+import fr.pops.math.ndarray.INDArray;
+import fr.pops.nn.networks.Classifier;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TrainerTest {
+
+    private static final int NB_SAMPLES = 60;
+    private static final int NB_ITERATIONS = 120;
+    private static final int BATCH_SIZE = 10;
+
+    /**
+     * Splitting the mini-batches between workers gives the parameters of the training on a single thread
+     */
+    @Test
+    public void testDataParallelMatchesStandard(){
+        SyntheticReader reader = new SyntheticReader(NB_SAMPLES, 5);
+        for (int prefetchDepth : new int[]{0, 2}){
+            for (int nbWorkers : new int[]{2, 3}){
+                Classifier reference = SyntheticReader.classifier(reader.configuration(NB_ITERATIONS, BATCH_SIZE)
+                                                                        .withPrefetchDepth(prefetchDepth)
+                                                                        .withShuffle(true)
+                                                                        .withSeed(9)
+                                                                        .build());
+                Classifier parallel = SyntheticReader.classifier(reader.configuration(NB_ITERATIONS, BATCH_SIZE)
+                                                                       .withPrefetchDepth(prefetchDepth)
+                                                                       .withShuffle(true)
+                                                                       .withSeed(9)
+                                                                       .withNbWorkers(nbWorkers)
+                                                                       .build());
+                copyParameters(reference, parallel);
+
+                reference.train();
+                parallel.train();
+
+                assertEquals(NB_ITERATIONS, parallel.getCurrentEpoch());
+                assertTrue(maxDifference(reference, parallel) < 1e-12, "Workers: " + nbWorkers + ", prefetch: " + prefetchDepth);
+            }
+        }
+    }
+
+    /*****************************************
+     *
+     * Helpers
+     *
+     *****************************************/
+    private static void copyParameters(Classifier from, Classifier to){
+        for (int l = 0; l < from.getNeuralNetworkConfiguration().getNbLayers(); l++){
+            List<INDArray> src = from.getNeuralNetworkConfiguration().getLayers().get(l).getParameters();
+            List<INDArray> dst = to.getNeuralNetworkConfiguration().getLayers().get(l).getParameters();
+            for (int i = 0; i < src.size(); i++){
+                ArrayUtil.copyInto(src.get(i), dst.get(i));
+            }
+        }
+    }
+
+    private static double maxDifference(Classifier a, Classifier b){
+        double res = 0;
+        for (int l = 0; l < a.getNeuralNetworkConfiguration().getNbLayers(); l++){
+            List<INDArray> pa = a.getNeuralNetworkConfiguration().getLayers().get(l).getParameters();
+            List<INDArray> pb = b.getNeuralNetworkConfiguration().getLayers().get(l).getParameters();
+            for (int i = 0; i < pa.size(); i++){
+                double[] x = pa.get(i).getData();
+                double[] y = pb.get(i).getData();
+                for (int k = 0; k < pa.get(i).getShape().getSize(); k++){
+                    res = Math.max(res, Math.abs(x[pa.get(i).getOffset() + k] - y[pb.get(i).getOffset() + k]));
+                }
+            }
+        }
+        return res;
+    }
+}
@@ -0,0 +1,111 @@
+package fr.pops.examples;
+
+import fr.pops.datareader.WaveReader;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class WaveReaderTest {
+
+    private static final int SAMPLE_RATE = 8000;
+    private static final double TOLERANCE = 1e-3;
+
+    /**
+     * 12-bit samples are stored on 2 bytes, left-justified
+     */
+    @Test
+    public void testTwelveBitStereo() throws IOException {
+        double[] left = {0.5d, -0.25d, 0.0d};
+        double[] right = {-0.5d, 0.75d, 0.125d};
+        ByteBuffer data = ByteBuffer.allocate(left.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+        for (int f = 0; f < left.length; f++){
+            data.putShort((short) (((int) Math.round(left[f] * 2047)) << 4));
+            data.putShort((short) (((int) Math.round(right[f] * 2047)) << 4));
+        }
+        WaveReader reader = read(wave(2, 12, 2, data.array(), data.capacity()));
+
+        assertEquals(left.length, reader.getNbData());
+        double[] interleaved = new double[2 * left.length];
+        assertEquals(left.length, reader.readInterleaved(interleaved, 0, left.length));
+        for (int f = 0; f < left.length; f++){
+            assertEquals(left[f], interleaved[2 * f], TOLERANCE);
+            assertEquals(right[f], interleaved[2 * f + 1], TOLERANCE);
+        }
+        reader.close();
+    }
+
+    /**
+     * 20-bit samples are stored on 3 bytes
+     */
+    @Test
+    public void testTwentyBitMono() throws IOException {
+        double[] expected = {0.5d, -0.75d, 0.25d, 0.0d};
+        byte[] data = new byte[3 * expected.length];
+        for (int f = 0; f < expected.length; f++){
+            int value = ((int) Math.round(expected[f] * 524287)) << 4;
+            data[3 * f] = (byte) value;
+            data[3 * f + 1] = (byte) (value >> 8);
+            data[3 * f + 2] = (byte) (value >> 16);
+        }
+        WaveReader reader = read(wave(1, 20, 3, data, data.length));
+
+        double[] samples = new double[expected.length];
+        assertEquals(expected.length, reader.readSamples(samples, 0, expected.length));
+        assertArrayEquals(expected, samples, TOLERANCE);
+        reader.close();
+    }
+
+    /**
+     * A data chunck of size 0 or 0xFFFFFFFF runs until the end of the file
+     */
+    @Test
+    public void testUnknownDataSize() throws IOException {
+        ByteBuffer data = ByteBuffer.allocate(10).order(ByteOrder.LITTLE_ENDIAN);
+        for (int f = 0; f < 5; f++){
+            data.putShort((short) (1000 * f));
+        }
+        for (int size : new int[]{0, 0xFFFFFFFF}){
+            WaveReader reader = read(wave(1, 16, 2, data.array(), size));
+            assertEquals(5, reader.getNbData());
+            double[] samples = new double[5];
+            assertEquals(5, reader.readSamples(samples, 0, 5));
+            assertEquals(4000.0d / 32767, samples[4], 1e-12);
+            reader.close();
+        }
+    }
+
+    /*****************************************
+     *
+     * Helpers
+     *
+     *****************************************/
+    /**
+     * @return A PCM wave file with the given data chunck
+     */
+    private static byte[] wave(int nbChannels, int bitsPerSample, int bytesPerSample, byte[] data, int dataSize){
+        ByteBuffer res = ByteBuffer.allocate(44 + data.length).order(ByteOrder.LITTLE_ENDIAN);
+        res.put("RIFF".getBytes(StandardCharsets.US_ASCII)).putInt(36 + data.length).put("WAVE".getBytes(StandardCharsets.US_ASCII));
+        res.put("fmt ".getBytes(StandardCharsets.US_ASCII)).putInt(16);
+        res.putShort((short) 1).putShort((short) nbChannels).putInt(SAMPLE_RATE).putInt(SAMPLE_RATE * nbChannels * bytesPerSample);
+        res.putShort((short) (nbChannels * bytesPerSample)).putShort((short) bitsPerSample);
+        res.put("data".getBytes(StandardCharsets.US_ASCII)).putInt(dataSize).put(data);
+        return res.array();
+    }
+
+    private static WaveReader read(byte[] file) throws IOException {
+        Path path = Files.createTempFile("pops", ".wav");
+        path.toFile().deleteOnExit();
+        Files.write(path, file);
+        WaveReader reader = new WaveReader(path);
+        reader.readHeader();
+        return reader;
+    }
+}
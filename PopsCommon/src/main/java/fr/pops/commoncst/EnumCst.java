@@ -92,6 +92,11 @@ public class EnumCst {
      */
     public enum Optimizer { NONE, ADAGRAD }
 
+    /**
+     * Pooling method
+     */
+    public enum PoolingMethod { MAX, AVERAGE }
+
     /*****************************************
      *
      * Misc Enums
@@ -100,11 +105,16 @@ public class EnumCst {
     /**
      * Value type
      */
-    public enum DataTypes { INTEGER, DOUBLE }
+    public enum DataTypes { INTEGER, DOUBLE, FLOAT }
 
     /**
      * Colors of an image
      */
     public enum ImageTypes { COLORIZED, GREYSCALE }
 
+    /**
+     * Window applied to the frames of a signal
+     */
+    public enum WindowFunctions { RECTANGULAR, HANN, HAMMING }
+
 }
@@ -20,12 +20,15 @@
 package fr.pops.math;
 
 import fr.pops.math.ndarray.BaseNDArray;
+import fr.pops.math.ndarray.DataBuffer;
+import fr.pops.math.ndarray.HeapDoubleDataBuffer;
+import fr.pops.math.ndarray.HeapFloatDataBuffer;
 import fr.pops.math.ndarray.Shape;
 import fr.pops.math.ndarray.INDArray;
 
 import java.util.AbstractMap;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
 import java.util.function.Function;
 
 @SuppressWarnings("unused")
@@ -84,10 +87,16 @@ public abstract class ArrayUtil {
             System.out.println("Null Array in ArrayUtil.apply");
             return new BaseNDArray(new double[0], 1);
         }
+        INDArray a = ArrayUtil.contiguous(arr);
+        DataBuffer buffer = a.getDataBuffer();
+        double[] data = ArrayUtil.onHeapDoubles(a) ? a.getData() : null;
+        int offset = a.getOffset();
         double[] res = new double[arr.getShape().getSize()];
-        for (int i = 0; i < arr.getShape().getSize(); i++){
-            res[i] = f.apply(arr.getData()[i]);
-        }
+        Parallel.forRange(0, res.length, res.length, (from, to) -> {
+            for (int i = from; i < to; i++){
+                res[i] = f.apply(data != null ? data[offset + i] : buffer.getDouble(offset + i));
+            }
+        });
         return new BaseNDArray.BaseNDArrayBuilder().withData(res)
                                                    .withShape(arr.getShape())
                                                    .build();
@@ -121,20 +130,8 @@ public abstract class ArrayUtil {
         }
         int m = arr.getShape().getXAxisLength();
         int n = arr.getShape().getYAxisLength();
-        double[] res = new double[arr.getShape().getSize()];
-
-        int offset = 0;
-        int count = 0;
-        for (int i = 0; i < arr.getShape().getSize(); i++){
-            res[i] = arr.getData()[count];
-            if (count + n >= arr.getShape().getSize()){
-                offset++;
-                count = offset;
-            } else {
-                count += n;
-            }
-        }
-        return new BaseNDArray(res, n, m);
+        INDArray res = new BaseNDArray(new double[arr.getShape().getSize()], n, m);
+        return ArrayUtil.transposeInto(ArrayUtil.contiguous(arr), res);
     }
 
     /**
@@ -145,52 +142,267 @@ public abstract class ArrayUtil {
 
     /**
      * TODO: complete this method for CNN and 3D arrays like double[][][]
+     * If arr2 is a batch, arr1 is applied to each of its samples
      * @param arr1 First INDArray
      * @param arr2 Second INDArray
      * @return A column array representing the dot product of arr1 and arr2
      */
     public static INDArray dot(INDArray arr1, INDArray arr2) {
+        int m = arr1.getShape().getXAxisLength();
+        int n = arr1.getShape().getYAxisLength();
+        int p = arr2.getShape().getYAxisLength();
+        int batch = arr2.getShape().getBatchAxisLength();
+        INDArray res = new BaseNDArray(new double[m * p * batch],  m == 1 && n > 1 ? p : m, m == 1 && n > 1 ? m : p, 1, batch);
+        return ArrayUtil.dot(arr1, arr2, res);
+    }
+
+    /**
+     * Compute the dot product of arr1 and arr2 into a preallocated array
+     * Nothing is allocated, the product is run by the Gemm kernels
+     * If arr2 is a batch, arr1 is applied to each of its samples and out holds one result per sample
+     * @param arr1 First INDArray
+     * @param arr2 Second INDArray
+     * @param out The array receiving the result. Its size must be the number of rows of arr1
+     *            times the number of columns of arr2, times the number of samples. Its shape is left untouched
+     * @return The array out
+     */
+    public static INDArray dot(INDArray arr1, INDArray arr2, INDArray out) {
         if (arr1.getShape().getYAxisLength() != arr2.getShape().getXAxisLength()){
             System.out.println("In ArrayUtil.dot: the first array must have the same number of columns than the number of rows of the second array.");
+            return out;
+        } else if (arr1.getShape().getBatchAxisLength() != 1){
+            System.out.println("In ArrayUtil.dot: the first array cannot be a batch.");
+            return out;
         }
 
         int m = arr1.getShape().getXAxisLength();
         int n = arr1.getShape().getYAxisLength();
         int p = arr2.getShape().getYAxisLength();
+        int batch = arr2.getShape().getBatchAxisLength();
+        if (out.getShape().getSize() != m * p * batch){
+            System.out.println("In ArrayUtil.dot: the output array must have a size of " + m * p * batch + ".");
+            return out;
+        }
 
-        double[] res = new double[m * p];
+        if (!out.isContiguous()){
+            System.out.println("In ArrayUtil.dot: the output array must be contiguous.");
+            return out;
+        }
 
-        // Transpose the 2nd array
-        INDArray tArr2 = ArrayUtil.transpose(arr2);
+        if (batch > 1){
+            ArrayUtil.dotOnBatch(m, n, p, batch, arr1, arr2, out);
+            return out;
+        }
 
-        // Build the lists of rows
-        List<double[]> arr1Rows = new ArrayList<>();
-        int count = 0;
-        for (int i = 0; i < m; i++) {
-            double[] buffer = new double[n];
-            System.arraycopy(arr1.getData(), count, buffer, 0, n);
-            arr1Rows.add(buffer);
-            count += n;
-        }
-        List<double[]> tArr2Rows = new ArrayList<>();
-        count = 0;
-        for (int j = 0; j < p; j++) {
-            double[] buffer = new double[n];
-            System.arraycopy(tArr2.getData(), count, buffer, 0, n);
-            tArr2Rows.add(buffer);
-            count += n;
-        }
-
-        // Loop over the rows
-        count = 0;
-        for (double[] rowArr1 : arr1Rows){
-            for (double[] rowArr2 : tArr2Rows){
-                double[] buffer = ArrayUtil.hadamard(rowArr1, rowArr2);
-                res[count] = ArrayUtil.sum(buffer);
-                count++;
+        // Dispatch on the backends
+        if (ArrayUtil.onHeapDoubles(arr1, arr2, out)){
+            ArrayUtil.dotOnHeapDoubles(m, n, p, arr1, arr2, out);
+        } else if (arr1.getDataBuffer() instanceof HeapFloatDataBuffer && ArrayUtil.onHeapDoubles(arr2, out)
+                   && p == 1 && ArrayUtil.isMatrixOperand(arr1) && (n == 1 || arr2.getStrides()[0] == 1)){
+            // Single precision matrix times double vector: the matrix is read as floats
+            boolean transA = arr1.getStrides()[1] != 1;
+            int lda = transA ? arr1.getStrides()[1] : arr1.getStrides()[0];
+            Gemm.gemv(transA, transA ? n : m, transA ? m : n, 1.0d,
+                      ((HeapFloatDataBuffer) arr1.getDataBuffer()).getFloatData(), arr1.getOffset(), lda,
+                      arr2.getData(), arr2.getOffset(),
+                      0.0d, out.getData(), out.getOffset());
+        } else {
+            // Other backends are widened to doubles
+            INDArray a = ArrayUtil.onHeapDoubles(arr1) ? arr1 : ArrayUtil.toHeapDoubles(arr1);
+            INDArray b = ArrayUtil.onHeapDoubles(arr2) ? arr2 : ArrayUtil.toHeapDoubles(arr2);
+            INDArray res = ArrayUtil.onHeapDoubles(out) ? out : new BaseNDArray(new double[m * p], m * p);
+            ArrayUtil.dotOnHeapDoubles(m, n, p, a, b, res);
+            if (res != out){
+                res.getDataBuffer().copyTo(0, out.getDataBuffer(), out.getOffset(), m * p);
             }
         }
-        return new BaseNDArray(res,  m == 1 && n > 1 ? p : m, m == 1 && n > 1 ? m : p);
+        return out;
+    }
+
+    /**
+     * Dot product of arrays stored in double arrays
+     * @param m The number of rows of arr1
+     * @param n The number of columns of arr1
+     * @param p The number of columns of arr2
+     * @param arr1 First INDArray
+     * @param arr2 Second INDArray
+     * @param out The contiguous array receiving the result
+     */
+    private static void dotOnHeapDoubles(int m, int n, int p, INDArray arr1, INDArray arr2, INDArray out){
+        if (ArrayUtil.isCompact(arr1) && ArrayUtil.isCompact(arr2) && out.getOffset() == 0){
+            Gemm.matmul(m, n, p, arr1.getData(), arr2.getData(), out.getData());
+            return;
+        }
+
+        // Views: the strides give the leading dimension and whether the operand is transposed
+        INDArray a = ArrayUtil.isMatrixOperand(arr1) ? arr1 : arr1.dup();
+        INDArray b = ArrayUtil.isMatrixOperand(arr2) ? arr2 : arr2.dup();
+        boolean transA = a.getStrides()[1] != 1;
+        boolean transB = b.getStrides()[1] != 1;
+        int lda = transA ? a.getStrides()[1] : a.getStrides()[0];
+        int ldb = transB ? b.getStrides()[1] : b.getStrides()[0];
+        if (p == 1 && (n == 1 || b.getStrides()[0] == 1)){
+            // Matrix-vector: the stored matrix is m x n, or n x m when transposed
+            Gemm.gemv(transA, transA ? n : m, transA ? m : n, 1.0d,
+                      a.getData(), a.getOffset(), lda,
+                      b.getData(), b.getOffset(),
+                      0.0d, out.getData(), out.getOffset());
+        } else {
+            Gemm.gemm(transA, transB, m, p, n,
+                      1.0d, a.getData(), a.getOffset(), lda,
+                      b.getData(), b.getOffset(), ldb,
+                      0.0d, out.getData(), out.getOffset(), p);
+        }
+    }
+
+    /**
+     * Dot product of a matrix with every sample of a batch
+     * A batch of vectors is read as a (batch x n) row-major matrix so the whole batch
+     * is a single matrix-matrix product:
+     *      transpose(out) = transpose(arr2) . transpose(arr1)
+     * Other batches are handled sample by sample
+     * @param m The number of rows of arr1
+     * @param n The number of columns of arr1
+     * @param p The number of columns of each sample of arr2
+     * @param batch The number of samples
+     * @param arr1 The matrix
+     * @param arr2 The batch
+     * @param out The contiguous array receiving one result per sample
+     */
+    private static void dotOnBatch(int m, int n, int p, int batch, INDArray arr1, INDArray arr2, INDArray out){
+        if (p == 1 && ArrayUtil.onHeapDoubles(arr1, arr2, out) && ArrayUtil.isMatrixOperand(arr1) && arr2.isContiguous()){
+            // arr1 is either stored m x n or is the transposed view of a n x m matrix
+            boolean rowMajor = arr1.getStrides()[1] == 1;
+            int ld = rowMajor ? arr1.getStrides()[0] : arr1.getStrides()[1];
+            Gemm.gemm(false, rowMajor, batch, m, n,
+                      1.0d, arr2.getData(), arr2.getOffset(), n,
+                      arr1.getData(), arr1.getOffset(), ld,
+                      0.0d, out.getData(), out.getOffset(), m);
+        } else {
+            for (int b = 0; b < batch; b++){
+                ArrayUtil.dot(arr1, arr2.sample(b), out.sample(b));
+            }
+        }
+    }
+
+    /**
+     * Accumulate the outer products of the samples of two batches
+     *      out = out + sum_b x_b . transpose(y_b)
+     * The batches are read as row-major (batch x m) and (batch x n) matrices
+     * so the sum is a single matrix-matrix product:
+     *      out = out + transpose(x) . y
+     * A single sample is a rank-1 update, accumulated row by row without packing
+     * @param x The batch of vectors of size m
+     * @param y The batch of vectors of size n
+     * @param out The contiguous m x n matrix to accumulate into
+     * @return The array out
+     */
+    public static INDArray addOuterProducts(INDArray x, INDArray y, INDArray out){
+        int batch = x.getShape().getBatchAxisLength();
+        int m = x.getShape().getSampleSize();
+        int n = y.getShape().getSampleSize();
+        if (y.getShape().getBatchAxisLength() != batch || out.getShape().getSize() != m * n){
+            System.out.println("In ArrayUtil.addOuterProducts: the batches must have the same number of samples and out a size of " + m * n + ".");
+            return out;
+        } else if (!x.isContiguous() || !y.isContiguous() || !out.isContiguous()){
+            System.out.println("In ArrayUtil.addOuterProducts: the arrays must be contiguous.");
+            return out;
+        }
+
+        if (batch == 1 && ArrayUtil.onHeapDoubles(x, y, out)){
+            Gemm.ger(m, n, 1.0d, x.getData(), x.getOffset(), y.getData(), y.getOffset(), out.getData(), out.getOffset(), n);
+        } else if (ArrayUtil.onHeapDoubles(x, y, out)){
+            Gemm.gemm(true, false, m, n, batch,
+                      1.0d, x.getData(), x.getOffset(), m,
+                      y.getData(), y.getOffset(), n,
+                      1.0d, out.getData(), out.getOffset(), n);
+        } else {
+            DataBuffer xBuffer = x.getDataBuffer();
+            DataBuffer yBuffer = y.getDataBuffer();
+            DataBuffer outBuffer = out.getDataBuffer();
+            for (int b = 0; b < batch; b++){
+                int offX = x.getOffset() + b * m;
+                int offY = y.getOffset() + b * n;
+                for (int i = 0; i < m; i++){
+                    double xi = xBuffer.getDouble(offX + i);
+                    int row = out.getOffset() + i * n;
+                    for (int j = 0; j < n; j++){
+                        outBuffer.putDouble(row + j, outBuffer.getDouble(row + j) + xi * yBuffer.getDouble(offY + j));
+                    }
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Accumulate every sample of a batch
+     *      out = out + sum_b arr_b
+     * @param arr The batch
+     * @param out The array of the size of one sample to accumulate into
+     * @return The array out
+     */
+    public static INDArray addSamples(INDArray arr, INDArray out){
+        int batch = arr.getShape().getBatchAxisLength();
+        if (batch == 1){
+            return ArrayUtil.addInPlace(out, arr);
+        }
+        for (int b = 0; b < batch; b++){
+            ArrayUtil.addInPlace(out, arr.sample(b));
+        }
+        return out;
+    }
+
+    /**
+     * Add the same array to every sample of a batch
+     *      arr_b = arr_b + other
+     * @param arr The batch, modified
+     * @param other The array of the size of one sample to add
+     * @return The array arr
+     */
+    public static INDArray addToSamples(INDArray arr, INDArray other){
+        int batch = arr.getShape().getBatchAxisLength();
+        if (batch == 1){
+            return ArrayUtil.addInPlace(arr, other);
+        }
+        for (int b = 0; b < batch; b++){
+            ArrayUtil.addInPlace(arr.sample(b), other);
+        }
+        return arr;
+    }
+
+    /**
+     * @param arr The array to convert
+     * @return A compact copy of arr stored in a double array
+     */
+    private static INDArray toHeapDoubles(INDArray arr){
+        INDArray res = new BaseNDArray.BaseNDArrayBuilder().zeros(arr.getShape()).build();
+        for (int c = 0; c < arr.getShape().getZAxisLength(); c++){
+            for (int i = 0; i < arr.getShape().getXAxisLength(); i++){
+                for (int j = 0; j < arr.getShape().getYAxisLength(); j++){
+                    res.set(i, j, c, arr.get(i, j, c));
+                }
+            }
+        }
+        return res;
+    }
+
+    /**
+     * @param arr The array to check
+     * @return True if arr is a compact row-major matrix starting at the beginning of its buffer
+     */
+    private static boolean isCompact(INDArray arr){
+        return arr.getOffset() == 0 && arr.isContiguous();
+    }
+
+    /**
+     * A 2D view can be handed to the Gemm kernels if either its rows or its columns are contiguous
+     * @param arr The array to check
+     * @return True if arr can be read by the Gemm kernels without copy
+     */
+    private static boolean isMatrixOperand(INDArray arr){
+        int[] strides = arr.getStrides();
+        return arr.getShape().getZAxisLength() == 1 && (strides[1] == 1 || strides[0] == 1);
     }
 
     /**
@@ -208,9 +420,13 @@ public abstract class ArrayUtil {
             return new BaseNDArray(new double[0], 1);
         }
 
+        double[] a = arr1.getData();
+        double[] b = arr2.getData();
+        int offA = arr1.getOffset();
+        int offB = arr2.getOffset();
         double[] res = new double[arr1.getShape().getSize()];
-        for (int i = 0; i < arr1.getShape().getSize(); i++){
-            res[i] = arr1.getData()[i] + arr2.getData()[i];
+        for (int i = 0; i < res.length; i++){
+            res[i] = a[offA + i] + b[offB + i];
         }
         return new BaseNDArray.BaseNDArrayBuilder().withData(res)
                                                    .withShape(arr1.getShape())
@@ -233,13 +449,10 @@ public abstract class ArrayUtil {
             return new BaseNDArray(new double[0], 1);
         }
 
-        double[] res = new double[arr1.getShape().getSize()];
-        for (int i = 0; i < arr1.getShape().getSize(); i++){
-            res[i] = arr1.getData()[i] * arr2.getData()[i];
-        }
-        return new BaseNDArray.BaseNDArrayBuilder().withData(res)
-                                                   .withShape(arr1.getShape())
-                                                   .build();
+        INDArray res = new BaseNDArray.BaseNDArrayBuilder().withData(new double[arr1.getShape().getSize()])
+                                                           .withShape(arr1.getShape())
+                                                           .build();
+        return ArrayUtil.hadamardInto(ArrayUtil.contiguous(arr1), ArrayUtil.contiguous(arr2), res);
     }
 
     /**
@@ -262,6 +475,313 @@ public abstract class ArrayUtil {
         return res;
     }
 
+    /*****************************************
+     *
+     * In place / output buffer methods
+     *
+     *****************************************/
+    /**
+     * Compute arr1 + arr2 component-wise into out
+     * out can be arr1 or arr2
+     * @param arr1 First INDArray
+     * @param arr2 Second INDArray
+     * @param out The array receiving the result
+     * @return The array out
+     */
+    public static INDArray addInto(INDArray arr1, INDArray arr2, INDArray out){
+        if (!ArrayUtil.areCompatible("addInto", arr1, arr2, out)){
+            return out;
+        } else if (!ArrayUtil.onHeapDoubles(arr1, arr2, out)){
+            ArrayUtil.applyOnBuffers(Double::sum, arr1, arr2, out);
+            return out;
+        }
+        double[] a = arr1.getData();
+        double[] b = arr2.getData();
+        double[] res = out.getData();
+        int offA = arr1.getOffset();
+        int offB = arr2.getOffset();
+        int offRes = out.getOffset();
+        int size = out.getShape().getSize();
+        Parallel.forRange(0, size, size, (from, to) -> {
+            VectorKernels.add(a, offA + from, b, offB + from, res, offRes + from, to - from);
+        });
+        return out;
+    }
+
+    /**
+     * Compute arr1 = arr1 + arr2 component-wise
+     * @param arr1 The array to add to, modified
+     * @param arr2 The array to add
+     * @return The array arr1
+     */
+    public static INDArray addInPlace(INDArray arr1, INDArray arr2){
+        return ArrayUtil.addInto(arr1, arr2, arr1);
+    }
+
+    /**
+     * Compute the Hadamard product of arr1 and arr2 into out
+     * out can be arr1 or arr2
+     * @param arr1 First INDArray
+     * @param arr2 Second INDArray
+     * @param out The array receiving the result
+     * @return The array out
+     */
+    public static INDArray hadamardInto(INDArray arr1, INDArray arr2, INDArray out){
+        if (!ArrayUtil.areCompatible("hadamardInto", arr1, arr2, out)){
+            return out;
+        } else if (!ArrayUtil.onHeapDoubles(arr1, arr2, out)){
+            ArrayUtil.applyOnBuffers((a, b) -> a * b, arr1, arr2, out);
+            return out;
+        }
+        double[] a = arr1.getData();
+        double[] b = arr2.getData();
+        double[] res = out.getData();
+        int offA = arr1.getOffset();
+        int offB = arr2.getOffset();
+        int offRes = out.getOffset();
+        int size = out.getShape().getSize();
+        Parallel.forRange(0, size, size, (from, to) -> {
+            VectorKernels.mul(a, offA + from, b, offB + from, res, offRes + from, to - from);
+        });
+        return out;
+    }
+
+    /**
+     * Compute arr1 = arr1 * arr2 component-wise
+     * @param arr1 The array to multiply, modified
+     * @param arr2 The array to multiply with
+     * @return The array arr1
+     */
+    public static INDArray hadamardInPlace(INDArray arr1, INDArray arr2){
+        return ArrayUtil.hadamardInto(arr1, arr2, arr1);
+    }
+
+    /**
+     * Compute arr = alpha * arr
+     * @param alpha The factor to apply
+     * @param arr The array to scale, modified
+     * @return The array arr
+     */
+    public static INDArray scaleInPlace(double alpha, INDArray arr){
+        if (!ArrayUtil.areCompatible("scaleInPlace", arr)){
+            return arr;
+        } else if (!ArrayUtil.onHeapDoubles(arr)){
+            ArrayUtil.applyOnBuffers((a, b) -> alpha * a, arr, arr, arr);
+            return arr;
+        }
+        double[] data = arr.getData();
+        int offset = arr.getOffset();
+        int size = arr.getShape().getSize();
+        Parallel.forRange(0, size, size, (from, to) -> {
+            VectorKernels.scale(alpha, data, offset + from, to - from);
+        });
+        return arr;
+    }
+
+    /**
+     * Compute arr = -arr
+     * @param arr The array to negate, modified
+     * @return The array arr
+     */
+    public static INDArray negateInPlace(INDArray arr){
+        return ArrayUtil.scaleInPlace(-1.0d, arr);
+    }
+
+    /**
+     * Compute y = alpha * x + y
+     * @param alpha The factor to apply to x
+     * @param x The array to add
+     * @param y The array to add to, modified
+     * @return The array y
+     */
+    public static INDArray axpy(double alpha, INDArray x, INDArray y){
+        if (!ArrayUtil.areCompatible("axpy", x, y)){
+            return y;
+        } else if (!ArrayUtil.onHeapDoubles(x, y)){
+            ArrayUtil.applyOnBuffers((a, b) -> alpha * a + b, x, y, y);
+            return y;
+        }
+        double[] a = x.getData();
+        double[] res = y.getData();
+        int offA = x.getOffset();
+        int offRes = y.getOffset();
+        int size = y.getShape().getSize();
+        Parallel.forRange(0, size, size, (from, to) -> {
+            VectorKernels.axpy(alpha, a, offA + from, res, offRes + from, to - from);
+        });
+        return y;
+    }
+
+    /**
+     * Apply f to every components of arr into out
+     * out can be arr
+     * @param f Function to apply to each array components
+     * @param arr The input array
+     * @param out The array receiving the result
+     * @return The array out
+     */
+    public static INDArray applyInto(DoubleUnaryOperator f, INDArray arr, INDArray out){
+        if (!ArrayUtil.areCompatible("applyInto", arr, out)){
+            return out;
+        } else if (!ArrayUtil.onHeapDoubles(arr, out)){
+            ArrayUtil.applyOnBuffers((a, b) -> f.applyAsDouble(a), arr, arr, out);
+            return out;
+        }
+        double[] data = arr.getData();
+        double[] res = out.getData();
+        int offData = arr.getOffset();
+        int offRes = out.getOffset();
+        int size = out.getShape().getSize();
+        Parallel.forRange(0, size, size, (from, to) -> {
+            for (int i = from; i < to; i++){
+                res[offRes + i] = f.applyAsDouble(data[offData + i]);
+            }
+        });
+        return out;
+    }
+
+    /**
+     * Apply f to every components of arr
+     * @param f Function to apply to each array components
+     * @param arr The array to modify
+     * @return The array arr
+     */
+    public static INDArray applyInPlace(DoubleUnaryOperator f, INDArray arr){
+        return ArrayUtil.applyInto(f, arr, arr);
+    }
+
+    /**
+     * Copy the values of arr into out
+     * @param arr The array to copy
+     * @param out The array receiving the values
+     * @return The array out
+     */
+    public static INDArray copyInto(INDArray arr, INDArray out){
+        if (!ArrayUtil.areCompatible("copyInto", arr, out)){
+            return out;
+        }
+        arr.getDataBuffer().copyTo(arr.getOffset(), out.getDataBuffer(), out.getOffset(), out.getShape().getSize());
+        return out;
+    }
+
+    /**
+     * Transpose arr into out
+     * Only the values are written, the shape of out is left to the caller
+     * @param arr The input array to transpose
+     * @param out The array receiving the result, it cannot be arr
+     * @return The array out
+     */
+    public static INDArray transposeInto(INDArray arr, INDArray out){
+        if (!ArrayUtil.areCompatible("transposeInto", arr, out)){
+            return out;
+        }
+        int m = arr.getShape().getXAxisLength();
+        int n = arr.getShape().getYAxisLength();
+        int offData = arr.getOffset();
+        int offRes = out.getOffset();
+        if (!ArrayUtil.onHeapDoubles(arr, out)){
+            DataBuffer data = arr.getDataBuffer();
+            DataBuffer res = out.getDataBuffer();
+            for (int i = 0; i < m; i++){
+                for (int j = 0; j < n; j++){
+                    res.putDouble(offRes + j * m + i, data.getDouble(offData + i * n + j));
+                }
+            }
+            return out;
+        }
+        double[] data = arr.getData();
+        double[] res = out.getData();
+        for (int i = 0; i < m; i++){
+            for (int j = 0; j < n; j++){
+                res[offRes + j * m + i] = data[offData + i * n + j];
+            }
+        }
+        return out;
+    }
+
+    /**
+     * @param arrays The arrays to check
+     * @return True if all the arrays are stored in double arrays, the fast path of the kernels
+     */
+    static boolean onHeapDoubles(INDArray... arrays){
+        for (INDArray arr : arrays){
+            if (!(arr.getDataBuffer() instanceof HeapDoubleDataBuffer)){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Element-wise kernel used when an operand is not stored in a double array
+     * The elements are read and written through the buffers: out[i] = f(arr1[i], arr2[i])
+     * @param f The function to apply
+     * @param arr1 First INDArray
+     * @param arr2 Second INDArray
+     * @param out The array receiving the result
+     */
+    private static void applyOnBuffers(DoubleBinaryOperator f, INDArray arr1, INDArray arr2, INDArray out){
+        DataBuffer a = arr1.getDataBuffer();
+        DataBuffer b = arr2.getDataBuffer();
+        DataBuffer res = out.getDataBuffer();
+        int offA = arr1.getOffset();
+        int offB = arr2.getOffset();
+        int offRes = out.getOffset();
+        int size = out.getShape().getSize();
+        Parallel.forRange(0, size, size, (from, to) -> {
+            for (int i = from; i < to; i++){
+                res.putDouble(offRes + i, f.applyAsDouble(a.getDouble(offA + i), b.getDouble(offB + i)));
+            }
+        });
+    }
+
+    /**
+     * Reduction used when the array is not stored in a double array
+     * The elements are read through the buffer, the backing array is never materialised
+     * @param f The reduction, res = f(res, arr[i])
+     * @param identity The initial value of the reduction
+     * @param arr The contiguous array to reduce
+     * @return The reduced value
+     */
+    private static double reduceOnBuffer(DoubleBinaryOperator f, double identity, INDArray arr){
+        DataBuffer data = arr.getDataBuffer();
+        int offset = arr.getOffset();
+        double res = identity;
+        for (int i = 0; i < arr.getShape().getSize(); i++){
+            res = f.applyAsDouble(res, data.getDouble(offset + i));
+        }
+        return res;
+    }
+
+    /**
+     * @param arr An array or a view
+     * @return arr if its components are contiguous, a compact copy otherwise
+     */
+    private static INDArray contiguous(INDArray arr){
+        return arr.isContiguous() ? arr : arr.dup();
+    }
+
+    /**
+     * Check that all the arrays have the same number of components
+     * and that their components are contiguous, views are accepted
+     * @param method The name of the calling method, used in the error message
+     * @param arrays The arrays to check
+     * @return True if all the arrays can be processed element by element
+     */
+    private static boolean areCompatible(String method, INDArray... arrays){
+        int size = arrays[0].getShape().getSize();
+        for (INDArray arr : arrays){
+            if (arr.getShape().getSize() != size){
+                System.out.println("Arrays must have the same size in ArrayUtil." + method);
+                return false;
+            } else if (!arr.isContiguous()){
+                System.out.println("Arrays must be contiguous in ArrayUtil." + method + ", use dup first.");
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * TODO: Deal with odd numbers fo padding
      * Add padding all around the input array in the X and Y axis directions
@@ -356,7 +876,7 @@ public abstract class ArrayUtil {
 
     /**
      * Convolution of arr by filter
-     * Assuming, for now,  arr.shape.xAxisLength == arr.shape.yAxisLength && filter.shape.xAxisLength == filter.shape.yAxisLength
+     * The filter slides over every channels at once and the channels are summed
      * @param arr The array to convolve
      * @param filter The filter to make the convolution
      * @param stride The stride used to slide the filter
@@ -366,68 +886,25 @@ public abstract class ArrayUtil {
         if (arr.getShape().getSize() == 0 || filter.getShape().getSize() == 0){
             System.out.println("Null Array in ArrayUtil.convolve");
             return new BaseNDArray(new double[0],1);
-        } else if (arr.getShape().getXAxisLength() != arr.getShape().getYAxisLength()
-                || filter.getShape().getXAxisLength() != filter.getShape().getYAxisLength()) {
-            System.out.println("Each Arr and filter channels must be squared in ArrayUtil.convolve");
-            return new BaseNDArray(new double[0],1);
         } else if (arr.getShape().getZAxisLength() != filter.getShape().getZAxisLength()){
             System.out.println("Arr and filter must have the same depth in ArrayUtil.convolve");
             return new BaseNDArray(new double[0],1);
         }
-        
-        // Initialize the result
-        int nbSlides = ((arr.getShape().getXAxisLength() - filter.getShape().getXAxisLength()) / stride) + 1;
-        int xAxisLength = nbSlides;
-        int yAxisLength = nbSlides;
-        int zAxisLength = 1;
-        double[] res = new double[xAxisLength * yAxisLength];
 
-        // Split the arr into the channels
-        List<double[]> arrChannels = new ArrayList<>();
-        int arrCounter = 0;
-        for (int i = 0; i < arr.getShape().getZAxisLength(); i++){
-            double[] buffer = new double[arr.getShape().getXAxisLength() * arr.getShape().getYAxisLength()];
-            System.arraycopy(arr.getData(), arrCounter, buffer, 0, buffer.length);
-            arrChannels.add(buffer);
-            arrCounter += buffer.length;
-        }
-
-        // Split the filter into the channels
-        List<double[]> filterChannels = new ArrayList<>();
-        int filterCounter = 0;
-        for (int i = 0; i < arr.getShape().getZAxisLength(); i++){
-            double[] buffer = new double[filter.getShape().getXAxisLength() * filter.getShape().getYAxisLength()];
-            System.arraycopy(filter.getData(), filterCounter, buffer, 0, buffer.length);
-            filterChannels.add(buffer);
-            filterCounter += buffer.length;
-        }
-
-        // Loop over the channels of the array
-        int paddingSize = (arr.getShape().getXAxisLength() - filter.getShape().getXAxisLength());
-        paddingSize = paddingSize % 2 == 0 ? paddingSize / 2 : (int) (Math.floor((double) paddingSize / 2) + 1);
-        int index = 0;
-        for (int i = 0; i < arrChannels.size(); i++) {
-            int offset = 0;
-            for (int s = 0; s < nbSlides * nbSlides; s++){
-                double[] buffer = ArrayUtil.addPaddingFlattened2DArray(filterChannels.get(i),
-                        filter.getShape().getXAxisLength(),
-                        filter.getShape().getYAxisLength(),
-                        paddingSize,
-                        offset);
-                double[] hadamardArrFilter = ArrayUtil.hadamard(arrChannels.get(i), buffer);
-                res[index] += ArrayUtil.sum(hadamardArrFilter);
-                offset += offset != 0 && (index + 1) % nbSlides == 0 ? filter.getShape().getXAxisLength() : stride;
-                index++;
-            }
-            index = 0;
-        }
-        return new BaseNDArray(res, xAxisLength, yAxisLength, zAxisLength);
+        Convolution convolution = new Convolution.ConvolutionBuilder().withInputShape(arr.getShape())
+                                                                      .withKernelShape(filter.getShape().getXAxisLength(), filter.getShape().getYAxisLength())
+                                                                      .withNbFilters(1)
+                                                                      .withStride(stride)
+                                                                      .build();
+        INDArray res = new BaseNDArray.BaseNDArrayBuilder().zeros(convolution.getOutputShape()).build();
+        convolution.forward(arr, filter.getData(), res);
+        return res;
     }
 
     /**
-     * Convolution of a specific channel of the arr by filter
-     * Assuming, for now,  arr.shape.xAxisLength == arr.shape.yAxisLength && filter.shape.xAxisLength == filter.shape.yAxisLength
+     * Convolution of a specific channel of the arr by the first channel of filter
      * @param arr The array to convolve
+     * @param channel The channel of arr to convolve
      * @param filter The filter to make the convolution
      * @param stride The stride used to slide the filter
      * @return The convoluted array
@@ -436,195 +913,105 @@ public abstract class ArrayUtil {
         if (arr.getShape().getSize() == 0 || filter.getShape().getSize() == 0){
             System.out.println("Null Array in ArrayUtil.convolve");
             return new BaseNDArray(new double[0],1);
-        } else if (arr.getShape().getXAxisLength() != arr.getShape().getYAxisLength()
-                || filter.getShape().getXAxisLength() != filter.getShape().getYAxisLength()) {
-            System.out.println("Each Arr and filter channels must be squared in ArrayUtil.convolve");
+        } else if (channel >= arr.getShape().getZAxisLength()){
+            System.out.println("Unknown channel in ArrayUtil.convolve");
             return new BaseNDArray(new double[0],1);
         }
 
-        // Initialize the result
-        int nbSlides = ((arr.getShape().getXAxisLength() - filter.getShape().getXAxisLength()) / stride) + 1;
-        int xAxisLength = nbSlides;
-        int yAxisLength = nbSlides;
-        int zAxisLength = 1;
-        double[] res = new double[xAxisLength * yAxisLength];
-
-        // Split the arr into the channels
-        List<double[]> arrChannels = new ArrayList<>();
-        int arrCounter = 0;
-        for (int i = 0; i < arr.getShape().getZAxisLength(); i++){
-            double[] buffer = new double[arr.getShape().getXAxisLength() * arr.getShape().getYAxisLength()];
-            System.arraycopy(arr.getData(), arrCounter, buffer, 0, buffer.length);
-            arrChannels.add(buffer);
-            arrCounter += buffer.length;
-        }
-
-        // Loop over the channels of the array
-        int paddingSize = (arr.getShape().getXAxisLength() - filter.getShape().getXAxisLength());
-        paddingSize = paddingSize % 2 == 0 ? paddingSize / 2 : (int) (Math.floor((double) paddingSize / 2) + 1);
-        int index = 0;
-        int offset = 0;
-        for (int s = 0; s < nbSlides * nbSlides; s++){
-            double[] buffer = ArrayUtil.addPaddingFlattened2DArray(arr.getData(),
-                    filter.getShape().getXAxisLength(),
-                    filter.getShape().getYAxisLength(),
-                    paddingSize,
-                    offset);
-            double[] hadamardArrFilter = ArrayUtil.hadamard(arrChannels.get(channel), buffer);
-            res[index] += ArrayUtil.sum(hadamardArrFilter);
-            offset += offset != 0 && (index + 1) % nbSlides == 0 ? filter.getShape().getXAxisLength() : stride;
-            index++;
-        }
-        return new BaseNDArray(res, xAxisLength, yAxisLength, zAxisLength);
+        int height = arr.getShape().getXAxisLength();
+        int width = arr.getShape().getYAxisLength();
+        int kernelHeight = filter.getShape().getXAxisLength();
+        int kernelWidth = filter.getShape().getYAxisLength();
+        int outputHeight = Convolution.outputLength(height, kernelHeight, stride, 0);
+        int outputWidth = Convolution.outputLength(width, kernelWidth, stride, 0);
+
+        // Lower the channel then multiply by the filter
+        double[] col = new double[kernelHeight * kernelWidth * outputHeight * outputWidth];
+        Convolution.im2col(arr.getData(), channel * height * width, 1, height, width, kernelHeight, kernelWidth, stride, 0, col);
+        double[] res = new double[outputHeight * outputWidth];
+        Gemm.gemv(true, kernelHeight * kernelWidth, outputHeight * outputWidth, 1.0d, col, 0, outputHeight * outputWidth,
+                  filter.getData(), 0, 0.0d, res, 0);
+        return new BaseNDArray(res, outputHeight, outputWidth, 1);
     }
 
     /**
      * Max pooling function to reduce the number of elements in the input array
      * @param arr The array to reduce the size of
-     * @param filterShape The shape of the identity filter to apply
-     * @param stride The stride used to slide the filter
+     * @param filterShape The shape of the pooling window
+     * @param stride The stride used to slide the window
      * @return The pooled array
      */
     public static INDArray maxPool(INDArray arr, Shape filterShape, int stride){
         if (arr.getShape().getSize() == 0){
             System.out.println("Null Array in ArrayUtil.maxPool");
             return new BaseNDArray(new double[0],1);
-        }  else if (filterShape.getXAxisLength() != filterShape.getYAxisLength()){
-            System.out.println("ArrayUtil.maxPool doesn't know how to deal with non squared filters");
-            return new BaseNDArray(new double[0],1);
         }
 
-        // Initialize the result
-        int filterSize = filterShape.getXAxisLength(); // || FilterShape.getYAxisLength(), doesn't matter, sizes have been previously checked
-        int nbSlides = ((arr.getShape().getXAxisLength() - filterSize) / stride) + 1;
-        int xAxisLength = nbSlides;
-        int yAxisLength = nbSlides;
-        int zAxisLength = arr.getShape().getZAxisLength();
-        double[] res = new double[xAxisLength * yAxisLength * zAxisLength];
-
-        // Split the arr into the channels
-        List<double[]> channels = new ArrayList<>();
-        int counter = 0;
-        for (int i = 0; i < arr.getShape().getZAxisLength(); i++){
-            double[] buffer = new double[arr.getShape().getXAxisLength() * arr.getShape().getYAxisLength()];
-            System.arraycopy(arr.getData(), counter, buffer, 0, buffer.length);
-            channels.add(buffer);
-            counter += buffer.length;
-        }
-
-        // Loop over the channels
-        INDArray filter = new BaseNDArray.BaseNDArrayBuilder().ones(filterSize, filterSize).build();
-        int paddingSize = (arr.getShape().getXAxisLength() - filter.getShape().getXAxisLength());
-        paddingSize = paddingSize % 2 == 0 ? paddingSize / 2 : (int) (Math.floor((float)paddingSize / 2) + 1);
-        int index = 0;
-        for (double[] channel : channels){
-            int offset = 0;
-            for (int i = 0; i < nbSlides * nbSlides; i++){
-                double[] buffer = ArrayUtil.addPaddingFlattened2DArray(filter.getData(),
-                        filter.getShape().getXAxisLength(),
-                        filter.getShape().getYAxisLength(),
-                        paddingSize,
-                        offset);
-                double[] hadamardArrFilter = ArrayUtil.hadamard(channel, buffer);
-                res[index] = ArrayUtil.max(hadamardArrFilter);
-                offset += offset != 0 && (index + 1) % nbSlides == 0 ? filter.getShape().getXAxisLength() : stride;
-                index++;
-            }
-        }
-
-        return new BaseNDArray(res, xAxisLength, yAxisLength, zAxisLength);
+        Pooling pooling = new Pooling.PoolingBuilder().withInputShape(arr.getShape())
+                                                      .withKernelShape(filterShape.getXAxisLength(), filterShape.getYAxisLength())
+                                                      .withStride(stride)
+                                                      .build();
+        INDArray res = new BaseNDArray.BaseNDArrayBuilder().zeros(pooling.getOutputShape()).build();
+        pooling.forward(arr, res);
+        return res;
     }
 
     /**
      * Max pooling function to reduce the number of elements in the input array
+     * Prefer the Pooling class to reuse the mask across calls
      * @param arr The array to reduce the size of
-     * @param filterShape The shape of the identity filter to apply
-     * @param stride The stride used to slide the filter
-     * @return The pooled array
+     * @param filterShape The shape of the pooling window
+     * @param stride The stride used to slide the window
+     * @return The mask, index in arr of each pooled value, and the pooled array
      */
-    public static AbstractMap.SimpleEntry<Integer[], INDArray> maskedMaxPool(INDArray arr, Shape filterShape, int stride){
+    public static AbstractMap.SimpleEntry<int[], INDArray> maskedMaxPool(INDArray arr, Shape filterShape, int stride){
         if (arr.getShape().getSize() == 0){
             System.out.println("Null Array in ArrayUtil.maxPool");
-            return new AbstractMap.SimpleEntry<>(new Integer[0], new BaseNDArray(new double[0],1));
-        }  else if (filterShape.getXAxisLength() != filterShape.getYAxisLength()){
-            System.out.println("ArrayUtil.maxPool doesn't know how to deal with non squared filters");
-            return new AbstractMap.SimpleEntry<>(new Integer[0], new BaseNDArray(new double[0],1));
-        }
-
-        // Initialize the result
-        int filterSize = filterShape.getXAxisLength(); // || FilterShape.getYAxisLength(), doesn't matter, sizes have been previously checked
-        int nbSlides = ((arr.getShape().getXAxisLength() - filterSize) / stride) + 1;
-        int xAxisLength = nbSlides;
-        int yAxisLength = nbSlides;
-        int zAxisLength = arr.getShape().getZAxisLength();
-        double[] res = new double[xAxisLength * yAxisLength * zAxisLength];
-        int maskChannelIndex = 0;
-        Integer[] mask = new Integer[xAxisLength * yAxisLength * zAxisLength];
-
-        // Split the arr into the channels
-        List<double[]> channels = new ArrayList<>();
-        int counter = 0;
-        for (int i = 0; i < arr.getShape().getZAxisLength(); i++){
-            double[] buffer = new double[arr.getShape().getXAxisLength() * arr.getShape().getYAxisLength()];
-            System.arraycopy(arr.getData(), counter, buffer, 0, buffer.length);
-            channels.add(buffer);
-            counter += buffer.length;
-        }
-
-        // Loop over the channels
-        INDArray filter = new BaseNDArray.BaseNDArrayBuilder().ones(filterSize, filterSize).build();
-        int paddingSize = (arr.getShape().getXAxisLength() - filter.getShape().getXAxisLength());
-        paddingSize = paddingSize % 2 == 0 ? paddingSize / 2 : (int) (Math.floor((float)paddingSize / 2) + 1);
-        int index = 0;
-        for (double[] channel : channels){
-            int offset = 0;
-            for (int i = 0; i < nbSlides * nbSlides; i++){
-                double[] buffer = ArrayUtil.addPaddingFlattened2DArray(filter.getData(),
-                        filter.getShape().getXAxisLength(),
-                        filter.getShape().getYAxisLength(),
-                        paddingSize,
-                        offset);
-                double[] hadamardArrFilter = ArrayUtil.hadamard(channel, buffer);
-                AbstractMap.SimpleEntry<Integer, Double> maskedMaxPair = ArrayUtil.maskedMax(hadamardArrFilter);
-                res[index] = maskedMaxPair.getKey();
-                mask[index] = maskedMaxPair.getKey() + maskChannelIndex * channel.length;
-                offset += offset != 0 && (index + 1) % nbSlides == 0 ? filter.getShape().getXAxisLength() : stride;
-                index++;
-            }
-            maskChannelIndex++;
+            return new AbstractMap.SimpleEntry<>(new int[0], new BaseNDArray(new double[0],1));
         }
 
-        return new AbstractMap.SimpleEntry<>(mask,
-                          new BaseNDArray.BaseNDArrayBuilder().withData(res).withShape(xAxisLength, yAxisLength, zAxisLength).build());
+        Pooling pooling = new Pooling.PoolingBuilder().withInputShape(arr.getShape())
+                                                      .withKernelShape(filterShape.getXAxisLength(), filterShape.getYAxisLength())
+                                                      .withStride(stride)
+                                                      .build();
+        INDArray res = new BaseNDArray.BaseNDArrayBuilder().zeros(pooling.getOutputShape()).build();
+        pooling.forward(arr, res);
+        return new AbstractMap.SimpleEntry<>(pooling.getMask(), res);
     }
 
     /**
      * Pass the array through the mask
      * @param arr The array to filter
      * @param mask The mask to pass through
+     * @param outShape The shape of the array before pooling
      * @return The arr passed through the mask
      */
-    public static INDArray invPool(INDArray arr, Integer[] mask, Shape outShape){
+    public static INDArray invPool(INDArray arr, int[] mask, Shape outShape){
+        INDArray res = new BaseNDArray.BaseNDArrayBuilder().zeros(outShape).build();
+        ArrayUtil.invPool(arr, mask, res);
+        return res;
+    }
+
+    /**
+     * Pass the array through the mask, no allocation
+     * @param arr The array to filter
+     * @param mask The mask to pass through
+     * @param out The contiguous array receiving the result, stored in a double array, overwritten
+     */
+    public static void invPool(INDArray arr, int[] mask, INDArray out){
         if (arr.getShape().getSize() == 0){
             System.out.println("Null Array in ArrayUtil.invPool");
-            return new BaseNDArray(new double[0],1);
-        } else if (arr.getShape().getXAxisLength() != arr.getShape().getYAxisLength()){
-            System.out.println("ArrayUtil.invPool doesn't know how to deal with non squared arrays");
-            return new BaseNDArray(new double[0],1);
+            return;
         } else if (arr.getShape().getSize() != mask.length) {
             System.out.println("Arr and mask must have the same size in ArrayUtil.invPool.");
-            return new BaseNDArray(new double[0],1);
-        }
-
-        // Initialisation
-        double[] res = new double[outShape.getSize()];
-
-        // Loop over the elements of the output INDArray
-        for (int i = 0; i < mask.length; i++){
-            res[mask[i]] = arr.getData()[i];
+            return;
+        } else if (!out.isContiguous() || !ArrayUtil.onHeapDoubles(out)){
+            // Written through its double array, any other buffer would only receive a copy
+            System.out.println("In ArrayUtil.invPool: the output array must be contiguous and stored in a double array.");
+            return;
         }
-
-        return new BaseNDArray.BaseNDArrayBuilder().withData(res).withShape(outShape).build();
+        INDArray sigma = ArrayUtil.contiguous(arr);
+        Pooling.invMaxPool(sigma.getData(), sigma.getOffset(), mask, out.getData(), out.getOffset(), out.getShape().getSize());
     }
 
 
@@ -645,9 +1032,14 @@ public abstract class ArrayUtil {
      * @return A double representing the product of the array elements
      */
     public static double prod(INDArray arr){
+        INDArray a = ArrayUtil.contiguous(arr);
+        if (!ArrayUtil.onHeapDoubles(a)){
+            return ArrayUtil.reduceOnBuffer((x, y) -> x * y, 1, a);
+        }
+        double[] data = a.getData();
         double res = 1;
-        for (double value : arr.getData()){
-            res *= value;
+        for (int i = 0; i < a.getShape().getSize(); i++){
+            res *= data[a.getOffset() + i];
         }
         return res;
     }
@@ -661,11 +1053,11 @@ public abstract class ArrayUtil {
             System.out.println("Null Array in ArrayUtil.sum");
             return 0;
         }
-        double res = 0;
-        for (int i = 0; i < arr.getShape().getSize(); i++){
-            res += arr.getData()[i];
+        INDArray a = ArrayUtil.contiguous(arr);
+        if (!ArrayUtil.onHeapDoubles(a)){
+            return ArrayUtil.reduceOnBuffer(Double::sum, 0, a);
         }
-        return res;
+        return VectorKernels.sum(a.getData(), a.getOffset(), a.getShape().getSize());
     }
 
     /**
@@ -677,11 +1069,7 @@ public abstract class ArrayUtil {
             System.out.println("Null Array in ArrayUtil.sum");
             return 0;
         }
-        double res = 0;
-        for (double v : arr) {
-            res += v;
-        }
-        return res;
+        return VectorKernels.sum(arr, 0, arr.length);
     }
 
     /**
@@ -694,14 +1082,15 @@ public abstract class ArrayUtil {
             System.out.println("Null Array in ArrayUtil.diag");
             return new BaseNDArray(new double[0], 1);
         }
-        int count = 0;
-        double[] res = new double[arr.getShape().getSize() * arr.getShape().getSize()];
-        for (int i = 0; i < arr.getShape().getSize() - 1; i++){
-            res[count] = arr.getData()[i];
-            count += arr.getShape().getSize() + 1;
+        // The values are read through the buffer: getData copies float and off-heap buffers
+        INDArray a = ArrayUtil.contiguous(arr);
+        DataBuffer data = a.getDataBuffer();
+        int size = a.getShape().getSize();
+        double[] res = new double[size * size];
+        for (int i = 0; i < size; i++){
+            res[i * (size + 1)] = data.getDouble(a.getOffset() + i);
         }
-        res[res.length - 1] = arr.getData()[arr.getShape().getSize() - 1];
-        return new BaseNDArray(res, arr.getShape().getSize() * arr.getShape().getSize());
+        return new BaseNDArray(res, size * size);
     }
 
     /**
@@ -713,11 +1102,11 @@ public abstract class ArrayUtil {
             System.out.println("Null Array in ArrayUtil.max");
             return 0;
         }
-        double res = arr.getData()[0];
-        for(int i = 1; i < arr.getShape().getSize(); i++){
-            res = Math.max(res, arr.getData()[i]);
+        INDArray a = ArrayUtil.contiguous(arr);
+        if (!ArrayUtil.onHeapDoubles(a)){
+            return ArrayUtil.reduceOnBuffer(Math::max, Double.NEGATIVE_INFINITY, a);
         }
-        return res;
+        return VectorKernels.max(a.getData(), a.getOffset(), a.getShape().getSize());
     }
 
     /**
@@ -729,11 +1118,7 @@ public abstract class ArrayUtil {
             System.out.println("Null Array in ArrayUtil.max");
             return 0;
         }
-        double res = arr[0];
-        for(int i = 1; i < arr.length; i++){
-            res = Math.max(res, arr[i]);
-        }
-        return res;
+        return VectorKernels.max(arr, 0, arr.length);
     }
 
     /**
@@ -768,9 +1153,14 @@ public abstract class ArrayUtil {
             System.out.println("Null Array in ArrayUtil.min");
             return 0;
         }
-        double res = arr.getData()[0];
-        for(int i = 1; i < arr.getShape().getSize(); i++){
-            res = Math.min(res, arr.getData()[i]);
+        INDArray a = ArrayUtil.contiguous(arr);
+        if (!ArrayUtil.onHeapDoubles(a)){
+            return ArrayUtil.reduceOnBuffer(Math::min, Double.POSITIVE_INFINITY, a);
+        }
+        double[] data = a.getData();
+        double res = data[a.getOffset()];
+        for(int i = 1; i < a.getShape().getSize(); i++){
+            res = Math.min(res, data[a.getOffset() + i]);
         }
         return res;
     }
@@ -0,0 +1,464 @@
+/*******************************************************************************
+ *
+ *                         PPPP     OOOO     PPPP    SSSS
+ *                        PP  PP   OO  OO   PP  PP  SS
+ *                        PP  PP  OO    OO  PP  PP  SS
+ *                        PP  PP  OO    OO  PP  PP   SSSS
+ *                        PPPP    OO    OO  PPPP        SS
+ *                        PP       OO  OO   PP          SS
+ *                        PP        OOOO    PP       SSSS
+ *
+ * Name: Convolution.java
+ *
+ * Description: Class defining a convolution engine.
+ *              The input is lowered with im2col so that a convolution by
+ *              every filters at once is a single matrix multiplication.
+ *              The backward passes use the same lowering: col2im scatters
+ *              the gradient back onto the input.
+ *
+ *              Arrays are stored channel by channel, each channel row-major:
+ *                  index = c * height * width + i * width + j
+ *              Filters are packed in a nbFilters x (channels * kh * kw) matrix,
+ *              one filter per row, in the same channel-major order.
+ *
+ * Author: Charles MERINO
+ *
+ * Date: 18/10/2026
+ *
+ ******************************************************************************/
+package fr.pops.math;
+
+import fr.pops.math.ndarray.INDArray;
+import fr.pops.math.ndarray.Shape;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+@SuppressWarnings("unused")
+public class Convolution implements Serializable {
+
+    /*****************************************
+     *
+     * Attributes
+     *
+     *****************************************/
+    // Input geometry
+    private int channels;
+    private int height;
+    private int width;
+
+    // Kernel geometry
+    private int nbFilters;
+    private int kernelHeight;
+    private int kernelWidth;
+    private int stride;
+    private int padding;
+
+    // Output geometry
+    private int outputHeight;
+    private int outputWidth;
+
+    // Lowered input: (channels * kernelHeight * kernelWidth) x (outputHeight * outputWidth)
+    private double[] col;
+
+    /*****************************************
+     *
+     * Ctor
+     *
+     *****************************************/
+    /**
+     * Standard ctor, use the builder
+     */
+    private Convolution(){
+        // Nothing to be done
+    }
+
+    /*****************************************
+     *
+     * Methods
+     *
+     *****************************************/
+    /**
+     * Convolve the input by every filters
+     *      out = filters . im2col(input)
+     * A batch is convolved sample by sample, each sample being a matrix-matrix product
+     * The output channels are shared between the threads
+     * @param input The input of shape (height, width, channels, batch)
+     * @param filters The packed filters, nbFilters x (channels * kh * kw)
+     * @param out The array receiving the result, of shape (outputHeight, outputWidth, nbFilters, batch),
+     *            stored in a double array
+     */
+    public void forward(INDArray input, double[] filters, INDArray out){
+        if (!canWrite("forward", out)){
+            return;
+        }
+        int k = this.getColRows();
+        int p = this.getColCols();
+        // Fetched once: other buffers than double arrays are copied
+        double[] inData = input.getData();
+        double[] outData = out.getData();
+        for (int b = 0; b < input.getShape().getBatchAxisLength(); b++){
+            im2col(inData, input.getOffset() + b * this.getInputSize(), this.channels, this.height, this.width,
+                   this.kernelHeight, this.kernelWidth, this.stride, this.padding, this.col);
+            int offOut = out.getOffset() + b * this.getOutputSize();
+            Parallel.forRange(0, this.nbFilters, (long) this.nbFilters * p * k, (from, to) ->
+                    Gemm.gemm(false, false, to - from, p, k,
+                              1.0d, filters, from * k, k,
+                              this.col, 0, p,
+                              0.0d, outData, offOut + from * p, p));
+        }
+    }
+
+    /**
+     * Gradient of the loss with respect to the input
+     *      dInput = col2im(transpose(filters) . sigma)
+     * @param sigma The error on the output, of shape (outputHeight, outputWidth, nbFilters, batch)
+     * @param filters The packed filters, nbFilters x (channels * kh * kw)
+     * @param dInput The array receiving the gradient, of shape (height, width, channels, batch),
+     *               stored in a double array
+     */
+    public void backwardData(INDArray sigma, double[] filters, INDArray dInput){
+        if (!canWrite("backwardData", dInput)){
+            return;
+        }
+        int k = this.getColRows();
+        int p = this.getColCols();
+        double[] sigmaData = sigma.getData();
+        double[] dInputData = dInput.getData();
+        for (int b = 0; b < sigma.getShape().getBatchAxisLength(); b++){
+            Gemm.gemm(true, false, k, p, this.nbFilters,
+                      1.0d, filters, 0, k,
+                      sigmaData, sigma.getOffset() + b * this.getOutputSize(), p,
+                      0.0d, this.col, 0, p);
+            col2im(this.col, this.channels, this.height, this.width,
+                   this.kernelHeight, this.kernelWidth, this.stride, this.padding,
+                   dInputData, dInput.getOffset() + b * this.getInputSize());
+        }
+    }
+
+    /**
+     * Gradient of the loss with respect to the filters
+     *      dFilters = sigma . transpose(im2col(input))
+     * The gradients of the samples of a batch are summed
+     * The filters are shared between the threads
+     * @param input The input of the forward pass, of shape (height, width, channels, batch)
+     * @param sigma The error on the output, of shape (outputHeight, outputWidth, nbFilters, batch)
+     * @param dFilters The array receiving the packed gradient, nbFilters x (channels * kh * kw)
+     * @param accumulate True to add the gradient to dFilters, false to overwrite it
+     */
+    public void backwardFilters(INDArray input, INDArray sigma, double[] dFilters, boolean accumulate){
+        int k = this.getColRows();
+        int p = this.getColCols();
+        double[] inData = input.getData();
+        double[] sigmaData = sigma.getData();
+        for (int b = 0; b < input.getShape().getBatchAxisLength(); b++){
+            im2col(inData, input.getOffset() + b * this.getInputSize(), this.channels, this.height, this.width,
+                   this.kernelHeight, this.kernelWidth, this.stride, this.padding, this.col);
+            int offSigma = sigma.getOffset() + b * this.getOutputSize();
+            double beta = accumulate || b > 0 ? 1.0d : 0.0d;
+            Parallel.forRange(0, this.nbFilters, (long) this.nbFilters * p * k, (from, to) ->
+                    Gemm.gemm(false, true, to - from, k, p,
+                              1.0d, sigmaData, offSigma + from * p, p,
+                              this.col, 0, p,
+                              beta, dFilters, from * k, k));
+        }
+    }
+
+    /**
+     * The results are written through the double array of the output
+     * @param method The name of the calling method
+     * @param out The array receiving the result
+     * @return True if out is a contiguous array stored in a double array
+     */
+    private static boolean canWrite(String method, INDArray out){
+        if (!out.isContiguous() || !ArrayUtil.onHeapDoubles(out)){
+            System.out.println("In Convolution." + method + ": the output array must be contiguous and stored in a double array.");
+            return false;
+        }
+        return true;
+    }
+
+    /*****************************************
+     *
+     * Static methods
+     *
+     *****************************************/
+    /**
+     * @param inputLength The length of the input along an axis
+     * @param kernelLength The length of the kernel along the same axis
+     * @param stride The stride
+     * @param padding The zero padding added on both sides
+     * @return The length of the output along this axis
+     */
+    public static int outputLength(int inputLength, int kernelLength, int stride, int padding){
+        return (inputLength + 2 * padding - kernelLength) / stride + 1;
+    }
+
+    /**
+     * Lower the input: every receptive field becomes a column
+     * Row (c * kh + ki) * kw + kj, column oi * outputWidth + oj holds
+     * in[c][oi * stride + ki - padding][oj * stride + kj - padding], 0 outside the input
+     * @param in The input array
+     * @param offIn The index of the first element of the input
+     * @param channels The number of channels of the input
+     * @param height The height of the input
+     * @param width The width of the input
+     * @param kernelHeight The height of the kernel
+     * @param kernelWidth The width of the kernel
+     * @param stride The stride
+     * @param padding The zero padding
+     * @param col The array receiving the lowered input
+     */
+    public static void im2col(double[] in, int offIn, int channels, int height, int width,
+                              int kernelHeight, int kernelWidth, int stride, int padding,
+                              double[] col){
+        int outputHeight = outputLength(height, kernelHeight, stride, padding);
+        int outputWidth = outputLength(width, kernelWidth, stride, padding);
+        int index = 0;
+        for (int c = 0; c < channels; c++){
+            int channelOffset = offIn + c * height * width;
+            for (int ki = 0; ki < kernelHeight; ki++){
+                for (int kj = 0; kj < kernelWidth; kj++){
+                    for (int oi = 0; oi < outputHeight; oi++){
+                        int i = oi * stride + ki - padding;
+                        if (i < 0 || i >= height){
+                            Arrays.fill(col, index, index + outputWidth, 0.0d);
+                            index += outputWidth;
+                            continue;
+                        }
+                        int rowOffset = channelOffset + i * width;
+                        if (stride == 1 && padding == 0){
+                            // Contiguous receptive fields
+                            System.arraycopy(in, rowOffset + kj, col, index, outputWidth);
+                            index += outputWidth;
+                        } else {
+                            for (int oj = 0; oj < outputWidth; oj++){
+                                int j = oj * stride + kj - padding;
+                                col[index++] = j < 0 || j >= width ? 0.0d : in[rowOffset + j];
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Inverse of im2col: every column is scattered back onto the input
+     * Overlapping receptive fields are summed
+     * @param col The lowered array
+     * @param channels The number of channels of the input
+     * @param height The height of the input
+     * @param width The width of the input
+     * @param kernelHeight The height of the kernel
+     * @param kernelWidth The width of the kernel
+     * @param stride The stride
+     * @param padding The zero padding
+     * @param out The array receiving the result, overwritten
+     * @param offOut The index of the first element of the result
+     */
+    public static void col2im(double[] col, int channels, int height, int width,
+                              int kernelHeight, int kernelWidth, int stride, int padding,
+                              double[] out, int offOut){
+        int outputHeight = outputLength(height, kernelHeight, stride, padding);
+        int outputWidth = outputLength(width, kernelWidth, stride, padding);
+        Arrays.fill(out, offOut, offOut + channels * height * width, 0.0d);
+        int index = 0;
+        for (int c = 0; c < channels; c++){
+            int channelOffset = offOut + c * height * width;
+            for (int ki = 0; ki < kernelHeight; ki++){
+                for (int kj = 0; kj < kernelWidth; kj++){
+                    for (int oi = 0; oi < outputHeight; oi++){
+                        int i = oi * stride + ki - padding;
+                        if (i < 0 || i >= height){
+                            index += outputWidth;
+                            continue;
+                        }
+                        int rowOffset = channelOffset + i * width;
+                        for (int oj = 0; oj < outputWidth; oj++){
+                            int j = oj * stride + kj - padding;
+                            if (j >= 0 && j < width){
+                                out[rowOffset + j] += col[index];
+                            }
+                            index++;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /*****************************************
+     *
+     * Getters
+     *
+     *****************************************/
+    /**
+     * @return The shape of the output: (outputHeight, outputWidth, nbFilters)
+     */
+    public Shape getOutputShape(){
+        return new Shape(this.outputHeight, this.outputWidth, this.nbFilters);
+    }
+
+    /**
+     * @return The shape of the input: (height, width, channels)
+     */
+    public Shape getInputShape(){
+        return new Shape(this.height, this.width, this.channels);
+    }
+
+    /**
+     * @return The number of elements of one sample of the input
+     */
+    public int getInputSize(){
+        return this.channels * this.height * this.width;
+    }
+
+    /**
+     * @return The number of elements of one sample of the output
+     */
+    public int getOutputSize(){
+        return this.nbFilters * this.outputHeight * this.outputWidth;
+    }
+
+    /**
+     * @return The number of values in one filter: channels * kh * kw
+     */
+    public int getColRows(){
+        return this.channels * this.kernelHeight * this.kernelWidth;
+    }
+
+    /**
+     * @return The number of output positions per filter
+     */
+    public int getColCols(){
+        return this.outputHeight * this.outputWidth;
+    }
+
+    /**
+     * @return The number of filters
+     */
+    public int getNbFilters(){
+        return this.nbFilters;
+    }
+
+    /**
+     * @return The stride
+     */
+    public int getStride(){
+        return this.stride;
+    }
+
+    /**
+     * @return The padding
+     */
+    public int getPadding(){
+        return this.padding;
+    }
+
+    /*****************************************
+     *
+     * Builder
+     *
+     *****************************************/
+    public static class ConvolutionBuilder {
+
+        /*****************************************
+         *
+         * Attributes
+         *
+         *****************************************/
+        private int channels = 1;
+        private int height = 1;
+        private int width = 1;
+        private int nbFilters = 1;
+        private int kernelHeight = 1;
+        private int kernelWidth = 1;
+        private int stride = 1;
+        private int padding = 0;
+
+        /*****************************************
+         *
+         * With methods
+         *
+         *****************************************/
+        /**
+         * @param shape The shape of the input: (height, width, channels)
+         * @return The builder itself
+         */
+        public ConvolutionBuilder withInputShape(Shape shape){
+            this.height = shape.getXAxisLength();
+            this.width = shape.getYAxisLength();
+            this.channels = shape.getZAxisLength();
+            return this;
+        }
+
+        /**
+         * @param kernelHeight The height of the filters
+         * @param kernelWidth The width of the filters
+         * @return The builder itself
+         */
+        public ConvolutionBuilder withKernelShape(int kernelHeight, int kernelWidth){
+            this.kernelHeight = kernelHeight;
+            this.kernelWidth = kernelWidth;
+            return this;
+        }
+
+        /**
+         * @param nbFilters The number of filters, depth of the output
+         * @return The builder itself
+         */
+        public ConvolutionBuilder withNbFilters(int nbFilters){
+            this.nbFilters = nbFilters;
+            return this;
+        }
+
+        /**
+         * @param stride The step used to slide the filters
+         * @return The builder itself
+         */
+        public ConvolutionBuilder withStride(int stride){
+            this.stride = stride;
+            return this;
+        }
+
+        /**
+         * @param padding The zero padding added around each channel of the input
+         * @return The builder itself
+         */
+        public ConvolutionBuilder withPadding(int padding){
+            this.padding = padding;
+            return this;
+        }
+
+        /*****************************************
+         *
+         * Build method
+         *
+         *****************************************/
+        /**
+         * Build the convolution and allocate its workspace
+         * @return The convolution
+         */
+        public Convolution build(){
+            Convolution convolution = new Convolution();
+            convolution.channels = this.channels;
+            convolution.height = this.height;
+            convolution.width = this.width;
+            convolution.nbFilters = this.nbFilters;
+            convolution.kernelHeight = this.kernelHeight;
+            convolution.kernelWidth = this.kernelWidth;
+            convolution.stride = Math.max(1, this.stride);
+            convolution.padding = Math.max(0, this.padding);
+            convolution.outputHeight = outputLength(this.height, this.kernelHeight, convolution.stride, convolution.padding);
+            convolution.outputWidth = outputLength(this.width, this.kernelWidth, convolution.stride, convolution.padding);
+            if (convolution.outputHeight <= 0 || convolution.outputWidth <= 0){
+                System.out.println("The kernel is larger than the padded input in Convolution.");
+                convolution.outputHeight = Math.max(0, convolution.outputHeight);
+                convolution.outputWidth = Math.max(0, convolution.outputWidth);
+            }
+            convolution.col = new double[convolution.getColRows() * convolution.getColCols()];
+            return convolution;
+        }
+    }
+}
@@ -19,6 +19,9 @@
  ******************************************************************************/
 package fr.pops.math;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 public abstract class FFT {
 
     /*****************************************
@@ -29,6 +32,9 @@ public abstract class FFT {
     // Misc
     private final static double factorRadius = 1;
 
+    // Plans already computed, by size
+    private final static Map<Integer, Plan> PLANS = new ConcurrentHashMap<>();
+
     /*****************************************
      *
      * Main methods
@@ -90,59 +96,187 @@ public abstract class FFT {
     }
 
     /**
-     *
-     * @param x
-     * @return
+     * Transform computed in place on primitive arrays
+     * @param x The input values, its length must be a power of 2
+     * @return The transform of x
      */
     public static Complex[] fft(Complex[] x) {
         int N = x.length;
-        // If there is only one element in the input array
-        if (N == 1) { return x; }
-
         // Control the size N, needs to be a power of 2
-        if (N % 2 != 0) {
+        if (!isPowerOf2(N)) {
             System.out.println("N ain't a power of 2.");
+            return x;
         }
 
-        // Separate the array into odd and even numbers and compute their respective FFT
-        Complex[] even = new Complex[N/2];
-        for (int i = 0; i < N/2; i++) {
-            even[i] = x[2 * i];
+        double[] re = new double[N];
+        double[] im = new double[N];
+        for (int i = 0; i < N; i++) {
+            re[i] = x[i].getRe();
+            im[i] = x[i].getIm();
         }
-        Complex[] q = fft(even);
+        transform(re, im, N);
 
-        Complex[] odd = new Complex[N/2];
-        for (int i = 0; i < N/2; i++) {
-            odd[i] = x[2 * i + 1];
+        Complex[] res = new Complex[N];
+        for (int k = 0; k < N; k++) {
+            res[k] = new Complex(re[k], im[k]);
         }
-        Complex[] r = fft(odd);
+        return res;
+    }
 
-        // Combine both with the formula
-        Complex[] res = new Complex[N];
-        for (int k = 0; k < N / 2; k++) {
-            Complex w = factor(N, k);
-            res[k] = Complex.add(q[k], Complex.times(w, r[k]));
-            res[k + N / 2] = Complex.minus(q[k], Complex.times(w, r[k]));
+    /**
+     * In place iterative radix-2 transform of the first n values
+     * Nothing is allocated once the plan of size n is cached
+     * @param re The real parts, replaced by the real parts of the transform
+     * @param im The imaginary parts, replaced by the imaginary parts of the transform
+     * @param n The number of values, a power of 2
+     */
+    public static void transform(double[] re, double[] im, int n) {
+        if (!isPowerOf2(n) || re.length < n || im.length < n) {
+            System.out.println("Invalid size in FFT.transform: " + n + ". It must be a power of 2 not greater than the arrays length.");
+            return;
         }
+        Plan plan = getPlan(n);
 
-        return res;
+        // Bit reversal permutation
+        int[] reversed = plan.reversed;
+        for (int i = 0; i < n; i++) {
+            int j = reversed[i];
+            if (i < j) {
+                double tmp = re[i];
+                re[i] = re[j];
+                re[j] = tmp;
+                tmp = im[i];
+                im[i] = im[j];
+                im[j] = tmp;
+            }
+        }
+
+        // Butterflies, the twiddle factor of a stage of size s is w_n^(k * n / s)
+        double[] cos = plan.cos;
+        double[] sin = plan.sin;
+        for (int size = 2; size <= n; size <<= 1) {
+            int half = size >> 1;
+            int step = n / size;
+            for (int start = 0; start < n; start += size) {
+                for (int k = 0; k < half; k++) {
+                    double wr = cos[k * step];
+                    double wi = sin[k * step];
+                    int i = start + k;
+                    int j = i + half;
+                    double tr = wr * re[j] - wi * im[j];
+                    double ti = wr * im[j] + wi * re[j];
+                    re[j] = re[i] - tr;
+                    im[j] = im[i] - ti;
+                    re[i] += tr;
+                    im[i] += ti;
+                }
+            }
+        }
     }
 
     /**
-     * Factor w_N^k
-     * @param N
-     * @param k
-     * @return
+     * Transform of n real values
+     * The transform of a real signal is Hermitian, X[n - k] = conj(X[k]),
+     * so only the bins 0 to n / 2 are computed. The values are packed in pairs
+     * into a complex signal of size n / 2 whose transform is then split
+     * @param x The real input values, left untouched
+     * @param offset The index of the first value in x
+     * @param n The number of values, a power of 2 greater than 1
+     * @param re Receives the real parts of the bins 0 to n / 2, length at least n / 2 + 1
+     * @param im Receives the imaginary parts of the bins 0 to n / 2, length at least n / 2 + 1
+     */
+    public static void realTransform(double[] x, int offset, int n, double[] re, double[] im) {
+        int half = n >> 1;
+        if (n < 2 || !isPowerOf2(n) || re.length <= half || im.length <= half || x.length < offset + n) {
+            System.out.println("Invalid size in FFT.realTransform: " + n + ". It must be a power of 2 greater than 1, the outputs need n / 2 + 1 values.");
+            return;
+        }
+
+        // z[k] = x[2k] + i x[2k + 1]
+        for (int k = 0; k < half; k++) {
+            re[k] = x[offset + 2 * k];
+            im[k] = x[offset + 2 * k + 1];
+        }
+        transform(re, im, half);
+
+        // Split Z into the transforms of the even and odd values: X[k] = E[k] + w_n^k O[k]
+        double z0r = re[0];
+        double z0i = im[0];
+        re[0] = z0r + z0i;
+        im[0] = 0;
+        re[half] = z0r - z0i;
+        im[half] = 0;
+        Plan plan = getPlan(n);
+        for (int k = 1; k <= half / 2; k++) {
+            int l = half - k;
+            double ar = re[k], ai = im[k];
+            double br = re[l], bi = im[l];
+            double er = 0.5 * (ar + br);
+            double ei = 0.5 * (ai - bi);
+            double or = 0.5 * (ai + bi);
+            double oi = -0.5 * (ar - br);
+            double wr = plan.cos[k];
+            double wi = plan.sin[k];
+            double tr = wr * or - wi * oi;
+            double ti = wr * oi + wi * or;
+            re[k] = er + tr;
+            im[k] = ei + ti;
+            re[l] = er - tr;
+            im[l] = -(ei - ti);
+        }
+    }
+
+    /**
+     * The plan is computed once per size and shared by all threads
+     * @param n The size of the transform, a power of 2
+     * @return The twiddle factors and the bit reversal permutation of size n
+     */
+    public static Plan getPlan(int n) {
+        return PLANS.computeIfAbsent(n, Plan::new);
+    }
+
+    /**
+     * @param n The number to check
+     * @return True if n is a power of 2
+     */
+    public static boolean isPowerOf2(int n) {
+        return n > 0 && (n & (n - 1)) == 0;
+    }
+
+    /*****************************************
+     *
+     * Plan
+     *
+     *****************************************/
+    /**
+     * Precomputed tables of a transform of size n
      */
-    // Factor w_N^k
-    private static Complex factor(int N, int k) {
-        double theta = 0;
-        try {
-            theta = - 2 * Math.PI * k / N;
-        }catch (ArithmeticException e){
-            System.out.println("ArithmeticException when computing the factor : division by zero.");
+    public static class Plan {
+
+        private final int size;
+        // reversed[i] is i with its log2(n) bits reversed
+        private final int[] reversed;
+        // w_n^k = cos[k] + i sin[k] = exp(-2 i pi k / n), for k < n / 2
+        private final double[] cos;
+        private final double[] sin;
+
+        private Plan(int n) {
+            this.size = n;
+            this.reversed = new int[n];
+            int bits = Integer.numberOfTrailingZeros(n);
+            for (int i = 1; i < n; i++) {
+                this.reversed[i] = Integer.reverse(i) >>> (Integer.SIZE - bits);
+            }
+            this.cos = new double[Math.max(1, n / 2)];
+            this.sin = new double[Math.max(1, n / 2)];
+            for (int k = 0; k < n / 2; k++) {
+                double theta = - 2 * Math.PI * k / n;
+                this.cos[k] = factorRadius * Math.cos(theta);
+                this.sin[k] = factorRadius * Math.sin(theta);
+            }
         }
-        return new Complex(factorRadius * Math.cos(theta), factorRadius * Math.sin(theta));
+
+        public int getSize() { return this.size; }
     }
 
 }
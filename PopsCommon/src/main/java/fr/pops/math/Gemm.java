@@ -0,0 +1,591 @@
+/*******************************************************************************
+ *
+ *                         PPPP     OOOO     PPPP    SSSS
+ *                        PP  PP   OO  OO   PP  PP  SS
+ *                        PP  PP  OO    OO  PP  PP  SS
+ *                        PP  PP  OO    OO  PP  PP   SSSS
+ *                        PPPP    OO    OO  PPPP        SS
+ *                        PP       OO  OO   PP          SS
+ *                        PP        OOOO    PP       SSSS
+ *
+ * Name: Gemm.java
+ *
+ * Description: Class defining the matrix multiplication kernels.
+ *              General matrix-matrix products are cache-blocked and
+ *              register-tiled, matrix-vector and vector-matrix products
+ *              and rank-1 updates have their own specialized paths.
+ *              All matrices are flat row-major arrays and every kernel writes
+ *              into a caller-supplied output buffer.
+ *              Large products are split by blocks of rows of the output
+ *              following the policy of Parallel.
+ *
+ * Author: Charles MERINO
+ *
+ * Date: 18/10/2026
+ *
+ ******************************************************************************/
+package fr.pops.math;
+
+public abstract class Gemm {
+
+    /*****************************************
+     *
+     * Static Attributes
+     *
+     *****************************************/
+    // Register tile: MR rows of op(A) times NR columns of op(B)
+    private static final int MR = 4;
+    private static final int NR = 4;
+
+    // Cache blocks: a MC x KC panel of op(A) stays in L2,
+    // a KC x NC panel of op(B) stays in L3
+    private static final int MC = 96;
+    private static final int KC = 256;
+    private static final int NC = 1024;
+
+    // Below this number of multiply-adds packing costs more than it saves
+    private static final long SMALL_GEMM_THRESHOLD = 32L * 32L * 32L;
+
+    // Packing buffers, allocated once per thread
+    private static final ThreadLocal<double[]> PACKED_A = ThreadLocal.withInitial(() -> new double[MC * KC]);
+    private static final ThreadLocal<double[]> PACKED_B = ThreadLocal.withInitial(() -> new double[KC * NC]);
+
+    /*****************************************
+     *
+     * Methods
+     *
+     *****************************************/
+    /**
+     * Compute c = a . b where a is m x n and b is n x p
+     * The product is dispatched to the matrix-vector, vector-matrix
+     * or general kernel depending on the shapes
+     * @param m The number of rows of a
+     * @param n The number of columns of a, rows of b
+     * @param p The number of columns of b
+     * @param a The first matrix, row-major
+     * @param b The second matrix, row-major
+     * @param c The output buffer of size m * p, overwritten
+     */
+    public static void matmul(int m, int n, int p, double[] a, double[] b, double[] c){
+        if (p == 1){
+            gemv(false, m, n, 1.0d, a, 0, n, b, 0, 0.0d, c, 0);
+        } else if (m == 1){
+            gemv(true, n, p, 1.0d, b, 0, p, a, 0, 0.0d, c, 0);
+        } else {
+            gemm(false, false, m, p, n, 1.0d, a, 0, n, b, 0, p, 0.0d, c, 0, p);
+        }
+    }
+
+    /**
+     * General matrix multiplication
+     *      c = alpha * op(a) . op(b) + beta * c
+     * where op(x) is either x or its transpose
+     * @param transA True if a must be transposed
+     * @param transB True if b must be transposed
+     * @param m The number of rows of op(a) and c
+     * @param n The number of columns of op(b) and c
+     * @param k The number of columns of op(a), rows of op(b)
+     * @param alpha The factor applied to the product
+     * @param a The first matrix, row-major
+     * @param offA The index of the first element of a
+     * @param lda The distance between two rows of a
+     * @param b The second matrix, row-major
+     * @param offB The index of the first element of b
+     * @param ldb The distance between two rows of b
+     * @param beta The factor applied to c before accumulating. 0 overwrites c
+     * @param c The output matrix, row-major
+     * @param offC The index of the first element of c
+     * @param ldc The distance between two rows of c
+     */
+    public static void gemm(boolean transA, boolean transB, int m, int n, int k,
+                            double alpha, double[] a, int offA, int lda,
+                            double[] b, int offB, int ldb,
+                            double beta, double[] c, int offC, int ldc){
+        if (m == 0 || n == 0){
+            return;
+        }
+
+        // c = beta * c
+        scale(beta, c, offC, ldc, m, n);
+        if (k == 0 || alpha == 0){
+            return;
+        }
+
+        // Small products do not need any blocking
+        if ((long) m * n * k <= SMALL_GEMM_THRESHOLD){
+            naiveGemm(transA, transB, m, n, k, alpha, a, offA, lda, b, offB, ldb, c, offC, ldc);
+            return;
+        }
+
+        // Blocked product: the panel of op(b) is shared, each thread packs its own blocks of op(a)
+        double[] packedB = PACKED_B.get();
+        int rowBlock = rowBlockLength(m);
+        int nbRowBlocks = (m + rowBlock - 1) / rowBlock;
+        for (int jc = 0; jc < n; jc += NC){
+            int nc = Math.min(NC, n - jc);
+            int offCBlock = offC + jc;
+            for (int pc = 0; pc < k; pc += KC){
+                int kc = Math.min(KC, k - pc);
+                int pcBlock = pc;
+                packB(transB, b, offB, ldb, pc, jc, kc, nc, packedB);
+                Parallel.forRange(0, nbRowBlocks, (long) m * nc * kc, (from, to) -> {
+                    double[] packedA = PACKED_A.get();
+                    for (int block = from; block < to; block++){
+                        int ic = block * rowBlock;
+                        int mc = Math.min(rowBlock, m - ic);
+                        packA(transA, a, offA, lda, ic, pcBlock, mc, kc, packedA);
+                        macroKernel(mc, nc, kc, alpha, packedA, packedB, c, offCBlock + ic * ldc, ldc);
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Matrix-vector multiplication
+     *      y = alpha * op(a) . x + beta * y
+     * a is m x n before op is applied.
+     * The vector-matrix product x . a is the transposed case
+     * @param transA True to compute with the transpose of a
+     * @param m The number of rows of a
+     * @param n The number of columns of a
+     * @param alpha The factor applied to the product
+     * @param a The matrix, row-major
+     * @param offA The index of the first element of a
+     * @param lda The distance between two rows of a
+     * @param x The input vector
+     * @param offX The index of the first element of x
+     * @param beta The factor applied to y before accumulating. 0 overwrites y
+     * @param y The output vector
+     * @param offY The index of the first element of y
+     */
+    public static void gemv(boolean transA, int m, int n, double alpha,
+                            double[] a, int offA, int lda,
+                            double[] x, int offX,
+                            double beta, double[] y, int offY){
+        // Each thread computes its own part of y
+        if (transA){
+            Parallel.forRange(0, n, (long) m * n, (from, to) ->
+                    gemvT(m, to - from, alpha, a, offA + from, lda, x, offX, beta, y, offY + from));
+        } else {
+            Parallel.forRange(0, m, (long) m * n, (from, to) ->
+                    gemvN(to - from, n, alpha, a, offA + from * lda, lda, x, offX, beta, y, offY + from));
+        }
+    }
+
+    /**
+     * Matrix-vector multiplication with a single precision matrix
+     *      y = alpha * op(a) . x + beta * y
+     * The products are accumulated in double precision
+     * @param transA True to compute with the transpose of a
+     * @param m The number of rows of a
+     * @param n The number of columns of a
+     * @param alpha The factor applied to the product
+     * @param a The matrix, row-major
+     * @param offA The index of the first element of a
+     * @param lda The distance between two rows of a
+     * @param x The input vector
+     * @param offX The index of the first element of x
+     * @param beta The factor applied to y before accumulating. 0 overwrites y
+     * @param y The output vector
+     * @param offY The index of the first element of y
+     */
+    public static void gemv(boolean transA, int m, int n, double alpha,
+                            float[] a, int offA, int lda,
+                            double[] x, int offX,
+                            double beta, double[] y, int offY){
+        // Each thread computes its own part of y
+        if (transA){
+            Parallel.forRange(0, n, (long) m * n, (from, to) ->
+                    gemvT(m, to - from, alpha, a, offA + from, lda, x, offX, beta, y, offY + from));
+        } else {
+            Parallel.forRange(0, m, (long) m * n, (from, to) ->
+                    gemvN(to - from, n, alpha, a, offA + from * lda, lda, x, offX, beta, y, offY + from));
+        }
+    }
+
+    /**
+     * Rank-1 update of a matrix
+     *      a = a + alpha * x . transpose(y)
+     * Each row of a is updated by a single axpy, nothing is allocated
+     * @param m The number of rows of a, the size of x
+     * @param n The number of columns of a, the size of y
+     * @param alpha The factor applied to the outer product
+     * @param x The column vector
+     * @param offX The index of the first element of x
+     * @param y The row vector
+     * @param offY The index of the first element of y
+     * @param a The matrix to accumulate into, row-major
+     * @param offA The index of the first element of a
+     * @param lda The distance between two rows of a
+     */
+    public static void ger(int m, int n, double alpha,
+                           double[] x, int offX,
+                           double[] y, int offY,
+                           double[] a, int offA, int lda){
+        // Each thread updates its own rows of a
+        Parallel.forRange(0, m, (long) m * n, (from, to) -> {
+            for (int i = from; i < to; i++){
+                double xi = alpha * x[offX + i];
+                if (xi != 0){
+                    VectorKernels.axpy(xi, y, offY, a, offA + i * lda, n);
+                }
+            }
+        });
+    }
+
+    /*****************************************
+     *
+     * Matrix-vector kernels
+     *
+     *****************************************/
+    /**
+     * y = alpha * a . x + beta * y
+     * Four rows of a are streamed at once so that every load of x is reused 4 times
+     */
+    private static void gemvN(int m, int n, double alpha,
+                              double[] a, int offA, int lda,
+                              double[] x, int offX,
+                              double beta, double[] y, int offY){
+        int i = 0;
+        for (; i + 3 < m; i += 4){
+            int r0 = offA + i * lda;
+            int r1 = r0 + lda;
+            int r2 = r1 + lda;
+            int r3 = r2 + lda;
+            double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+            for (int j = 0; j < n; j++){
+                double xj = x[offX + j];
+                s0 += a[r0 + j] * xj;
+                s1 += a[r1 + j] * xj;
+                s2 += a[r2 + j] * xj;
+                s3 += a[r3 + j] * xj;
+            }
+            y[offY + i] = combine(alpha, s0, beta, y[offY + i]);
+            y[offY + i + 1] = combine(alpha, s1, beta, y[offY + i + 1]);
+            y[offY + i + 2] = combine(alpha, s2, beta, y[offY + i + 2]);
+            y[offY + i + 3] = combine(alpha, s3, beta, y[offY + i + 3]);
+        }
+        for (; i < m; i++){
+            double s = VectorKernels.dot(a, offA + i * lda, x, offX, n);
+            y[offY + i] = combine(alpha, s, beta, y[offY + i]);
+        }
+    }
+
+    /**
+     * y = alpha * transpose(a) . x + beta * y
+     * Rows of a are accumulated four at a time into y, all accesses are contiguous
+     */
+    private static void gemvT(int m, int n, double alpha,
+                              double[] a, int offA, int lda,
+                              double[] x, int offX,
+                              double beta, double[] y, int offY){
+        scale(beta, y, offY, n, 1, n);
+        if (alpha == 0){
+            return;
+        }
+        int i = 0;
+        for (; i + 3 < m; i += 4){
+            int r0 = offA + i * lda;
+            int r1 = r0 + lda;
+            int r2 = r1 + lda;
+            int r3 = r2 + lda;
+            double x0 = alpha * x[offX + i];
+            double x1 = alpha * x[offX + i + 1];
+            double x2 = alpha * x[offX + i + 2];
+            double x3 = alpha * x[offX + i + 3];
+            for (int j = 0; j < n; j++){
+                y[offY + j] += x0 * a[r0 + j] + x1 * a[r1 + j] + x2 * a[r2 + j] + x3 * a[r3 + j];
+            }
+        }
+        for (; i < m; i++){
+            int r = offA + i * lda;
+            double xi = alpha * x[offX + i];
+            if (xi == 0){
+                continue;
+            }
+            for (int j = 0; j < n; j++){
+                y[offY + j] += xi * a[r + j];
+            }
+        }
+    }
+
+    /**
+     * Single precision version of gemvN
+     */
+    private static void gemvN(int m, int n, double alpha,
+                              float[] a, int offA, int lda,
+                              double[] x, int offX,
+                              double beta, double[] y, int offY){
+        int i = 0;
+        for (; i + 3 < m; i += 4){
+            int r0 = offA + i * lda;
+            int r1 = r0 + lda;
+            int r2 = r1 + lda;
+            int r3 = r2 + lda;
+            double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+            for (int j = 0; j < n; j++){
+                double xj = x[offX + j];
+                s0 += a[r0 + j] * xj;
+                s1 += a[r1 + j] * xj;
+                s2 += a[r2 + j] * xj;
+                s3 += a[r3 + j] * xj;
+            }
+            y[offY + i] = combine(alpha, s0, beta, y[offY + i]);
+            y[offY + i + 1] = combine(alpha, s1, beta, y[offY + i + 1]);
+            y[offY + i + 2] = combine(alpha, s2, beta, y[offY + i + 2]);
+            y[offY + i + 3] = combine(alpha, s3, beta, y[offY + i + 3]);
+        }
+        for (; i < m; i++){
+            int r = offA + i * lda;
+            double s = 0;
+            for (int j = 0; j < n; j++){
+                s += a[r + j] * x[offX + j];
+            }
+            y[offY + i] = combine(alpha, s, beta, y[offY + i]);
+        }
+    }
+
+    /**
+     * Single precision version of gemvT
+     */
+    private static void gemvT(int m, int n, double alpha,
+                              float[] a, int offA, int lda,
+                              double[] x, int offX,
+                              double beta, double[] y, int offY){
+        scale(beta, y, offY, n, 1, n);
+        if (alpha == 0){
+            return;
+        }
+        int i = 0;
+        for (; i + 3 < m; i += 4){
+            int r0 = offA + i * lda;
+            int r1 = r0 + lda;
+            int r2 = r1 + lda;
+            int r3 = r2 + lda;
+            double x0 = alpha * x[offX + i];
+            double x1 = alpha * x[offX + i + 1];
+            double x2 = alpha * x[offX + i + 2];
+            double x3 = alpha * x[offX + i + 3];
+            for (int j = 0; j < n; j++){
+                y[offY + j] += x0 * a[r0 + j] + x1 * a[r1 + j] + x2 * a[r2 + j] + x3 * a[r3 + j];
+            }
+        }
+        for (; i < m; i++){
+            int r = offA + i * lda;
+            double xi = alpha * x[offX + i];
+            if (xi == 0){
+                continue;
+            }
+            for (int j = 0; j < n; j++){
+                y[offY + j] += xi * a[r + j];
+            }
+        }
+    }
+
+    /*****************************************
+     *
+     * Matrix-matrix kernels
+     *
+     *****************************************/
+    /**
+     * Plain i-k-j loop used for small products
+     */
+    private static void naiveGemm(boolean transA, boolean transB, int m, int n, int k,
+                                  double alpha, double[] a, int offA, int lda,
+                                  double[] b, int offB, int ldb,
+                                  double[] c, int offC, int ldc){
+        for (int i = 0; i < m; i++){
+            int rowC = offC + i * ldc;
+            for (int p = 0; p < k; p++){
+                double aip = alpha * (transA ? a[offA + p * lda + i] : a[offA + i * lda + p]);
+                if (aip == 0){
+                    continue;
+                }
+                if (transB){
+                    for (int j = 0; j < n; j++){
+                        c[rowC + j] += aip * b[offB + j * ldb + p];
+                    }
+                } else {
+                    int rowB = offB + p * ldb;
+                    for (int j = 0; j < n; j++){
+                        c[rowC + j] += aip * b[rowB + j];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Copy a mc x kc block of op(a) into MR-row slivers
+     * Sliver r holds op(a)[ic + r * MR + 0..MR][pc + 0..kc] interleaved by column
+     * Rows past mc are padded with zeros
+     */
+    private static void packA(boolean transA, double[] a, int offA, int lda,
+                              int ic, int pc, int mc, int kc, double[] packed){
+        int index = 0;
+        for (int ir = 0; ir < mc; ir += MR){
+            int rows = Math.min(MR, mc - ir);
+            for (int p = 0; p < kc; p++){
+                for (int r = 0; r < MR; r++){
+                    if (r < rows){
+                        int i = ic + ir + r;
+                        int q = pc + p;
+                        packed[index] = transA ? a[offA + q * lda + i] : a[offA + i * lda + q];
+                    } else {
+                        packed[index] = 0;
+                    }
+                    index++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Copy a kc x nc block of op(b) into NR-column slivers
+     * Sliver s holds op(b)[pc + 0..kc][jc + s * NR + 0..NR] interleaved by row
+     * Columns past nc are padded with zeros
+     */
+    private static void packB(boolean transB, double[] b, int offB, int ldb,
+                              int pc, int jc, int kc, int nc, double[] packed){
+        int index = 0;
+        for (int jr = 0; jr < nc; jr += NR){
+            int cols = Math.min(NR, nc - jr);
+            for (int p = 0; p < kc; p++){
+                int q = pc + p;
+                for (int s = 0; s < NR; s++){
+                    if (s < cols){
+                        int j = jc + jr + s;
+                        packed[index] = transB ? b[offB + j * ldb + q] : b[offB + q * ldb + j];
+                    } else {
+                        packed[index] = 0;
+                    }
+                    index++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Multiply the packed blocks and accumulate into c
+     */
+    private static void macroKernel(int mc, int nc, int kc, double alpha,
+                                    double[] packedA, double[] packedB,
+                                    double[] c, int offC, int ldc){
+        for (int jr = 0; jr < nc; jr += NR){
+            int cols = Math.min(NR, nc - jr);
+            for (int ir = 0; ir < mc; ir += MR){
+                int rows = Math.min(MR, mc - ir);
+                microKernel(kc, alpha, packedA, ir * kc, packedB, jr * kc,
+                            c, offC + ir * ldc + jr, ldc, rows, cols);
+            }
+        }
+    }
+
+    /**
+     * 4 x 4 register tile: 16 accumulators are kept in registers
+     * while the packed slivers are streamed contiguously
+     */
+    private static void microKernel(int kc, double alpha,
+                                    double[] packedA, int offA,
+                                    double[] packedB, int offB,
+                                    double[] c, int offC, int ldc,
+                                    int rows, int cols){
+        double c00 = 0, c01 = 0, c02 = 0, c03 = 0;
+        double c10 = 0, c11 = 0, c12 = 0, c13 = 0;
+        double c20 = 0, c21 = 0, c22 = 0, c23 = 0;
+        double c30 = 0, c31 = 0, c32 = 0, c33 = 0;
+
+        int ia = offA;
+        int ib = offB;
+        for (int p = 0; p < kc; p++){
+            double a0 = packedA[ia];
+            double a1 = packedA[ia + 1];
+            double a2 = packedA[ia + 2];
+            double a3 = packedA[ia + 3];
+            double b0 = packedB[ib];
+            double b1 = packedB[ib + 1];
+            double b2 = packedB[ib + 2];
+            double b3 = packedB[ib + 3];
+
+            c00 += a0 * b0; c01 += a0 * b1; c02 += a0 * b2; c03 += a0 * b3;
+            c10 += a1 * b0; c11 += a1 * b1; c12 += a1 * b2; c13 += a1 * b3;
+            c20 += a2 * b0; c21 += a2 * b1; c22 += a2 * b2; c23 += a2 * b3;
+            c30 += a3 * b0; c31 += a3 * b1; c32 += a3 * b2; c33 += a3 * b3;
+
+            ia += MR;
+            ib += NR;
+        }
+
+        if (rows == MR && cols == NR){
+            int r0 = offC;
+            int r1 = r0 + ldc;
+            int r2 = r1 + ldc;
+            int r3 = r2 + ldc;
+            c[r0] += alpha * c00; c[r0 + 1] += alpha * c01; c[r0 + 2] += alpha * c02; c[r0 + 3] += alpha * c03;
+            c[r1] += alpha * c10; c[r1 + 1] += alpha * c11; c[r1 + 2] += alpha * c12; c[r1 + 3] += alpha * c13;
+            c[r2] += alpha * c20; c[r2 + 1] += alpha * c21; c[r2 + 2] += alpha * c22; c[r2 + 3] += alpha * c23;
+            c[r3] += alpha * c30; c[r3 + 1] += alpha * c31; c[r3 + 2] += alpha * c32; c[r3 + 3] += alpha * c33;
+        } else {
+            // Edge tile: only write back the valid part
+            storeRow(c, offC, cols, alpha, c00, c01, c02, c03);
+            if (rows > 1) storeRow(c, offC + ldc, cols, alpha, c10, c11, c12, c13);
+            if (rows > 2) storeRow(c, offC + 2 * ldc, cols, alpha, c20, c21, c22, c23);
+            if (rows > 3) storeRow(c, offC + 3 * ldc, cols, alpha, c30, c31, c32, c33);
+        }
+    }
+
+    /*****************************************
+     *
+     * Helpers
+     *
+     *****************************************/
+    /**
+     * Blocks of rows are at most MC long and there are enough of them to feed every thread
+     * @param m The number of rows of c
+     * @return The number of rows of c computed by each block, a multiple of MR when possible
+     */
+    private static int rowBlockLength(int m){
+        int nbBlocks = Math.max((m + MC - 1) / MC, Math.min(Parallel.getNbThreads(), (m + MR - 1) / MR));
+        int length = (m + nbBlocks - 1) / nbBlocks;
+        return Math.min(MC, (length + MR - 1) / MR * MR);
+    }
+
+    /**
+     * Accumulate the first cols values of a tile row into c
+     */
+    private static void storeRow(double[] c, int offC, int cols, double alpha,
+                                 double v0, double v1, double v2, double v3){
+        c[offC] += alpha * v0;
+        if (cols > 1) c[offC + 1] += alpha * v1;
+        if (cols > 2) c[offC + 2] += alpha * v2;
+        if (cols > 3) c[offC + 3] += alpha * v3;
+    }
+
+    /**
+     * c = beta * c on a rows x cols block
+     * beta = 0 clears the block so that NaN or garbage never leaks in
+     */
+    private static void scale(double beta, double[] c, int offC, int ldc, int rows, int cols){
+        if (beta == 1){
+            return;
+        }
+        for (int i = 0; i < rows; i++){
+            int row = offC + i * ldc;
+            if (beta == 0){
+                java.util.Arrays.fill(c, row, row + cols, 0.0d);
+            } else {
+                for (int j = 0; j < cols; j++){
+                    c[row + j] *= beta;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return alpha * s + beta * y, with beta = 0 ignoring y
+     */
+    private static double combine(double alpha, double s, double beta, double y){
+        return beta == 0 ? alpha * s : alpha * s + beta * y;
+    }
+}
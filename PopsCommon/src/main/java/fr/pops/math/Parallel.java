@@ -0,0 +1,287 @@
+/*******************************************************************************
+ *
+ *                         PPPP     OOOO     PPPP    SSSS
+ *                        PP  PP   OO  OO   PP  PP  SS
+ *                        PP  PP  OO    OO  PP  PP  SS
+ *                        PP  PP  OO    OO  PP  PP   SSSS
+ *                        PPPP    OO    OO  PPPP        SS
+ *                        PP       OO  OO   PP          SS
+ *                        PP        OOOO    PP       SSSS
+ *
+ * Name: Parallel.java
+ *
+ * Description: Class defining the parallel execution policy of the math kernels.
+ *              A range of independent items, rows of a matrix, output channels
+ *              or chunks of an array, is split into as many tasks as threads
+ *              and run on a shared fork-join pool.
+ *              Kernels whose amount of work is below a threshold stay sequential.
+ *
+ * Author: Charles MERINO
+ *
+ * Date: 18/10/2026
+ *
+ ******************************************************************************/
+package fr.pops.math;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
+
+public abstract class Parallel {
+
+    /*****************************************
+     *
+     * Static Attributes
+     *
+     *****************************************/
+    // Below this amount of work, multiply-adds or element operations, forking costs more than it saves
+    public static final long DEFAULT_THRESHOLD = 1L << 16;
+
+    // Global policy
+    private static volatile int nbThreads = Runtime.getRuntime().availableProcessors();
+    private static volatile long threshold = DEFAULT_THRESHOLD;
+    private static SharedPool pool;
+
+    // Per-call override of the number of threads, 0 when not set
+    private static final ThreadLocal<Integer> LOCAL_NB_THREADS = ThreadLocal.withInitial(() -> 0);
+
+    /*****************************************
+     *
+     * Shared pool
+     *
+     *****************************************/
+    /**
+     * Pool counting the calls running on it
+     * A pool replaced by setNbThreads is only shut down once its last call returns
+     */
+    private static class SharedPool {
+        private final ForkJoinPool forkJoinPool;
+        private int nbUsers = 0;
+        private boolean retired = false;
+
+        private SharedPool(int nbThreads){
+            this.forkJoinPool = new ForkJoinPool(nbThreads);
+        }
+    }
+
+    /*****************************************
+     *
+     * Task
+     *
+     *****************************************/
+    /**
+     * Work on the items [from, to[ of a range
+     */
+    @FunctionalInterface
+    public interface RangeTask {
+        void run(int from, int to);
+    }
+
+    /*****************************************
+     *
+     * Methods
+     *
+     *****************************************/
+    /**
+     * Run a task over a range of independent items with the current number of threads
+     * @param from The first item
+     * @param to The item after the last one
+     * @param work The total amount of work, compared to the threshold
+     * @param task The task to run on each part of the range
+     */
+    public static void forRange(int from, int to, long work, RangeTask task){
+        forRange(getNbThreads(), from, to, work, task);
+    }
+
+    /**
+     * Run a task over a range of independent items
+     * The range is split into at most nbThreads contiguous parts
+     * It runs sequentially in the calling thread if the work is below the threshold,
+     * if a single thread is requested or if it is already called from a fork-join task
+     * @param nbThreads The number of parts to split the range into
+     * @param from The first item
+     * @param to The item after the last one
+     * @param work The total amount of work, compared to the threshold
+     * @param task The task to run on each part of the range
+     */
+    public static void forRange(int nbThreads, int from, int to, long work, RangeTask task){
+        int length = to - from;
+        int nbTasks = Math.min(nbThreads, length);
+        if (nbTasks <= 1 || work < threshold || ForkJoinTask.inForkJoinPool()){
+            task.run(from, to);
+            return;
+        }
+        int grain = (length + nbTasks - 1) / nbTasks;
+        SharedPool shared = acquire();
+        try {
+            shared.forkJoinPool.invoke(new RangeAction(task, from, to, grain));
+        } finally {
+            release(shared);
+        }
+    }
+
+    /**
+     * Run the given call with another number of threads
+     * The global setting is left untouched, other threads are not affected
+     * @param nbThreads The number of threads the kernels run by call may use
+     * @param call The call to run
+     * @return The result of the call
+     */
+    public static <T> T withNbThreads(int nbThreads, Supplier<T> call){
+        int previous = LOCAL_NB_THREADS.get();
+        LOCAL_NB_THREADS.set(Math.max(1, nbThreads));
+        try {
+            return call.get();
+        } finally {
+            LOCAL_NB_THREADS.set(previous);
+        }
+    }
+
+    /**
+     * Run the given call with another number of threads
+     * @param nbThreads The number of threads the kernels run by call may use
+     * @param call The call to run
+     */
+    public static void withNbThreads(int nbThreads, Runnable call){
+        withNbThreads(nbThreads, () -> {
+            call.run();
+            return null;
+        });
+    }
+
+    /*****************************************
+     *
+     * Getters
+     *
+     *****************************************/
+    /**
+     * @return The number of threads used by the kernels called from this thread
+     */
+    public static int getNbThreads(){
+        int local = LOCAL_NB_THREADS.get();
+        return local > 0 ? local : nbThreads;
+    }
+
+    /**
+     * @return The amount of work below which the kernels stay sequential
+     */
+    public static long getThreshold(){
+        return threshold;
+    }
+
+    /**
+     * The pool is created on first use with the global number of threads
+     * It is shut down by the next call to setNbThreads, unless the kernels are running on it:
+     * tasks must be submitted to it before the number of threads changes
+     * @return The shared pool running the kernels
+     */
+    public static synchronized ForkJoinPool getPool(){
+        return current().forkJoinPool;
+    }
+
+    /*****************************************
+     *
+     * Setters
+     *
+     *****************************************/
+    /**
+     * Set the global number of threads
+     * The shared pool is rebuilt on next use, 1 makes every kernel sequential
+     * The kernels running on the previous pool complete on it before it is shut down
+     * @param nbThreads The number of threads
+     */
+    public static synchronized void setNbThreads(int nbThreads){
+        if (nbThreads < 1){
+            System.out.println("Invalid number of threads in Parallel: " + nbThreads + ". It must be at least 1.");
+            return;
+        }
+        Parallel.nbThreads = nbThreads;
+        if (pool != null){
+            pool.retired = true;
+            if (pool.nbUsers == 0){
+                pool.forkJoinPool.shutdown();
+            }
+            pool = null;
+        }
+    }
+
+    /**
+     * @param threshold The amount of work below which the kernels stay sequential
+     */
+    public static void setThreshold(long threshold){
+        Parallel.threshold = Math.max(0, threshold);
+    }
+
+    /*****************************************
+     *
+     * Private methods
+     *
+     *****************************************/
+    /**
+     * @return The current pool, created with the global number of threads if needed
+     */
+    private static synchronized SharedPool current(){
+        if (pool == null){
+            pool = new SharedPool(Math.max(1, nbThreads));
+        }
+        return pool;
+    }
+
+    /**
+     * @return The current pool, which won't be shut down until released
+     */
+    private static synchronized SharedPool acquire(){
+        SharedPool res = current();
+        res.nbUsers++;
+        return res;
+    }
+
+    /**
+     * Shut the pool down if it has been replaced and this was its last call
+     * @param shared A pool obtained from acquire
+     */
+    private static synchronized void release(SharedPool shared){
+        shared.nbUsers--;
+        if (shared.retired && shared.nbUsers == 0){
+            shared.forkJoinPool.shutdown();
+        }
+    }
+
+    /*****************************************
+     *
+     * Fork-join action
+     *
+     *****************************************/
+    /**
+     * Split the range in halves until the parts are small enough
+     */
+    private static class RangeAction extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final RangeTask task;
+        private final int from;
+        private final int to;
+        private final int grain;
+
+        private RangeAction(RangeTask task, int from, int to, int grain){
+            this.task = task;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute(){
+            if (this.to - this.from <= this.grain){
+                this.task.run(this.from, this.to);
+                return;
+            }
+            int nbParts = (this.to - this.from + this.grain - 1) / this.grain;
+            int middle = this.from + (nbParts / 2) * this.grain;
+            invokeAll(new RangeAction(this.task, this.from, middle, this.grain),
+                      new RangeAction(this.task, middle, this.to, this.grain));
+        }
+    }
+}
@@ -0,0 +1,491 @@
+/*******************************************************************************
+ *
+ *                         PPPP     OOOO     PPPP    SSSS
+ *                        PP  PP   OO  OO   PP  PP  SS
+ *                        PP  PP  OO    OO  PP  PP  SS
+ *                        PP  PP  OO    OO  PP  PP   SSSS
+ *                        PPPP    OO    OO  PPPP        SS
+ *                        PP       OO  OO   PP          SS
+ *                        PP        OOOO    PP       SSSS
+ *
+ * Name: Pooling.java
+ *
+ * Description: Class defining a pooling engine.
+ *              Each window is scanned directly in the input, the max
+ *              pooling keeps the index of the selected value in a mask
+ *              so that the inverse pooling is a simple scatter.
+ *
+ *              Arrays are stored channel by channel, each channel row-major:
+ *                  index = c * height * width + i * width + j
+ *
+ * Author: Charles MERINO
+ *
+ * Date: 18/10/2026
+ *
+ ******************************************************************************/
+package fr.pops.math;
+
+import fr.pops.commoncst.EnumCst;
+import fr.pops.math.ndarray.INDArray;
+import fr.pops.math.ndarray.Shape;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+@SuppressWarnings("unused")
+public class Pooling implements Serializable {
+
+    /*****************************************
+     *
+     * Attributes
+     *
+     *****************************************/
+    // Input geometry
+    private int channels;
+    private int height;
+    private int width;
+
+    // Window geometry
+    private EnumCst.PoolingMethod method;
+    private int kernelHeight;
+    private int kernelWidth;
+    private int stride;
+    private int padding;
+
+    // Output geometry
+    private int outputHeight;
+    private int outputWidth;
+
+    // Index in the input of the value selected by each output, max pooling only
+    private int[] mask;
+
+    /*****************************************
+     *
+     * Ctor
+     *
+     *****************************************/
+    /**
+     * Standard ctor, use the builder
+     */
+    private Pooling(){
+        // Nothing to be done
+    }
+
+    /*****************************************
+     *
+     * Methods
+     *
+     *****************************************/
+    /**
+     * Pool the input
+     * The mask is updated for max pooling, it is grown to hold every sample of a batch
+     * @param input The input of shape (height, width, channels, batch)
+     * @param out The array receiving the result, of shape (outputHeight, outputWidth, channels, batch),
+     *            stored in a double array
+     */
+    public void forward(INDArray input, INDArray out){
+        if (!canWrite("forward", out)){
+            return;
+        }
+        int inputSize = this.channels * this.height * this.width;
+        int outputSize = this.channels * this.outputHeight * this.outputWidth;
+        int batch = input.getShape().getBatchAxisLength();
+        if (this.method == EnumCst.PoolingMethod.MAX && this.mask.length < batch * outputSize){
+            this.mask = new int[batch * outputSize];
+        }
+        // Fetched once: other buffers than double arrays are copied
+        double[] inData = input.getData();
+        double[] outData = out.getData();
+        for (int b = 0; b < batch; b++){
+            if (this.method == EnumCst.PoolingMethod.AVERAGE){
+                averagePool(inData, input.getOffset() + b * inputSize, this.channels, this.height, this.width,
+                            this.kernelHeight, this.kernelWidth, this.stride, this.padding,
+                            outData, out.getOffset() + b * outputSize);
+            } else {
+                maxPool(inData, input.getOffset() + b * inputSize, this.channels, this.height, this.width,
+                        this.kernelHeight, this.kernelWidth, this.stride, this.padding,
+                        outData, out.getOffset() + b * outputSize, this.mask, b * outputSize);
+            }
+        }
+    }
+
+    /**
+     * Scatter the error on the output back onto the input
+     * @param sigma The error on the output, of shape (outputHeight, outputWidth, channels, batch)
+     * @param dInput The array receiving the result, of shape (height, width, channels, batch), overwritten,
+     *               stored in a double array
+     */
+    public void backward(INDArray sigma, INDArray dInput){
+        if (!canWrite("backward", dInput)){
+            return;
+        }
+        int inputSize = this.channels * this.height * this.width;
+        int outputSize = this.channels * this.outputHeight * this.outputWidth;
+        double[] sigmaData = sigma.getData();
+        double[] dInputData = dInput.getData();
+        for (int b = 0; b < sigma.getShape().getBatchAxisLength(); b++){
+            if (this.method == EnumCst.PoolingMethod.AVERAGE){
+                invAveragePool(sigmaData, sigma.getOffset() + b * outputSize, this.channels, this.height, this.width,
+                               this.kernelHeight, this.kernelWidth, this.stride, this.padding,
+                               dInputData, dInput.getOffset() + b * inputSize);
+            } else {
+                invMaxPool(sigmaData, sigma.getOffset() + b * outputSize, this.mask, b * outputSize, outputSize,
+                           dInputData, dInput.getOffset() + b * inputSize, inputSize);
+            }
+        }
+    }
+
+    /**
+     * The results are written through the double array of the output
+     * @param method The name of the calling method
+     * @param out The array receiving the result
+     * @return True if out is a contiguous array stored in a double array
+     */
+    private static boolean canWrite(String method, INDArray out){
+        if (!out.isContiguous() || !ArrayUtil.onHeapDoubles(out)){
+            System.out.println("In Pooling." + method + ": the output array must be contiguous and stored in a double array.");
+            return false;
+        }
+        return true;
+    }
+
+    /*****************************************
+     *
+     * Static methods
+     *
+     *****************************************/
+    /**
+     * Max pooling
+     * Padded positions are ignored, a window lying fully in the padding outputs 0
+     * and gets the index -1 in the mask
+     * @param in The input array
+     * @param offIn The index of the first element of the input
+     * @param channels The number of channels of the input
+     * @param height The height of the input
+     * @param width The width of the input
+     * @param kernelHeight The height of the window
+     * @param kernelWidth The width of the window
+     * @param stride The stride
+     * @param padding The padding
+     * @param out The array receiving the result
+     * @param offOut The index of the first element of the result
+     * @param mask The array receiving the index, relative to offIn, of each selected value
+     */
+    public static void maxPool(double[] in, int offIn, int channels, int height, int width,
+                               int kernelHeight, int kernelWidth, int stride, int padding,
+                               double[] out, int offOut, int[] mask){
+        maxPool(in, offIn, channels, height, width, kernelHeight, kernelWidth, stride, padding, out, offOut, mask, 0);
+    }
+
+    /**
+     * Max pooling writing its mask from the given index, used for batches
+     * @param in The input array
+     * @param offIn The index of the first element of the input
+     * @param channels The number of channels of the input
+     * @param height The height of the input
+     * @param width The width of the input
+     * @param kernelHeight The height of the window
+     * @param kernelWidth The width of the window
+     * @param stride The stride
+     * @param padding The padding
+     * @param out The array receiving the result
+     * @param offOut The index of the first element of the result
+     * @param mask The array receiving the index, relative to offIn, of each selected value
+     * @param offMask The index of the first element of the mask
+     */
+    public static void maxPool(double[] in, int offIn, int channels, int height, int width,
+                               int kernelHeight, int kernelWidth, int stride, int padding,
+                               double[] out, int offOut, int[] mask, int offMask){
+        int outputHeight = Convolution.outputLength(height, kernelHeight, stride, padding);
+        int outputWidth = Convolution.outputLength(width, kernelWidth, stride, padding);
+        int index = 0;
+        for (int c = 0; c < channels; c++){
+            int channelOffset = c * height * width;
+            for (int oi = 0; oi < outputHeight; oi++){
+                int iStart = Math.max(0, oi * stride - padding);
+                int iEnd = Math.min(height, oi * stride - padding + kernelHeight);
+                for (int oj = 0; oj < outputWidth; oj++){
+                    int jStart = Math.max(0, oj * stride - padding);
+                    int jEnd = Math.min(width, oj * stride - padding + kernelWidth);
+                    double max = Double.NEGATIVE_INFINITY;
+                    int argMax = -1;
+                    for (int i = iStart; i < iEnd; i++){
+                        int rowOffset = channelOffset + i * width;
+                        for (int j = jStart; j < jEnd; j++){
+                            double value = in[offIn + rowOffset + j];
+                            if (value > max || argMax < 0){
+                                max = value;
+                                argMax = rowOffset + j;
+                            }
+                        }
+                    }
+                    out[offOut + index] = argMax < 0 ? 0.0d : max;
+                    mask[offMask + index] = argMax;
+                    index++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Average pooling
+     * Padded positions are not counted in the average
+     * @param in The input array
+     * @param offIn The index of the first element of the input
+     * @param channels The number of channels of the input
+     * @param height The height of the input
+     * @param width The width of the input
+     * @param kernelHeight The height of the window
+     * @param kernelWidth The width of the window
+     * @param stride The stride
+     * @param padding The padding
+     * @param out The array receiving the result
+     * @param offOut The index of the first element of the result
+     */
+    public static void averagePool(double[] in, int offIn, int channels, int height, int width,
+                                   int kernelHeight, int kernelWidth, int stride, int padding,
+                                   double[] out, int offOut){
+        int outputHeight = Convolution.outputLength(height, kernelHeight, stride, padding);
+        int outputWidth = Convolution.outputLength(width, kernelWidth, stride, padding);
+        int index = offOut;
+        for (int c = 0; c < channels; c++){
+            int channelOffset = offIn + c * height * width;
+            for (int oi = 0; oi < outputHeight; oi++){
+                int iStart = Math.max(0, oi * stride - padding);
+                int iEnd = Math.min(height, oi * stride - padding + kernelHeight);
+                for (int oj = 0; oj < outputWidth; oj++){
+                    int jStart = Math.max(0, oj * stride - padding);
+                    int jEnd = Math.min(width, oj * stride - padding + kernelWidth);
+                    double sum = 0.0d;
+                    for (int i = iStart; i < iEnd; i++){
+                        int rowOffset = channelOffset + i * width;
+                        for (int j = jStart; j < jEnd; j++){
+                            sum += in[rowOffset + j];
+                        }
+                    }
+                    int count = (iEnd - iStart) * (jEnd - jStart);
+                    out[index++] = count > 0 ? sum / count : 0.0d;
+                }
+            }
+        }
+    }
+
+    /**
+     * Inverse of the max pooling: each value is sent back to the index stored in the mask
+     * Values sharing the same index, overlapping windows, are summed
+     * @param sigma The array to scatter, one value per mask entry
+     * @param offSigma The index of the first element of sigma
+     * @param mask The mask computed by the max pooling
+     * @param out The array receiving the result, overwritten
+     * @param offOut The index of the first element of the result
+     * @param outSize The number of elements of the result
+     */
+    public static void invMaxPool(double[] sigma, int offSigma, int[] mask, double[] out, int offOut, int outSize){
+        invMaxPool(sigma, offSigma, mask, 0, mask.length, out, offOut, outSize);
+    }
+
+    /**
+     * Inverse of the max pooling reading a part of the mask, used for batches
+     * @param sigma The array to scatter, one value per mask entry
+     * @param offSigma The index of the first element of sigma
+     * @param mask The mask computed by the max pooling
+     * @param offMask The index of the first element of the mask
+     * @param maskLength The number of mask entries to read
+     * @param out The array receiving the result, overwritten
+     * @param offOut The index of the first element of the result
+     * @param outSize The number of elements of the result
+     */
+    public static void invMaxPool(double[] sigma, int offSigma, int[] mask, int offMask, int maskLength,
+                                  double[] out, int offOut, int outSize){
+        Arrays.fill(out, offOut, offOut + outSize, 0.0d);
+        for (int i = 0; i < maskLength; i++){
+            int index = mask[offMask + i];
+            if (index >= 0){
+                out[offOut + index] += sigma[offSigma + i];
+            }
+        }
+    }
+
+    /**
+     * Inverse of the average pooling: each value is shared equally by its window
+     * @param sigma The array to scatter
+     * @param offSigma The index of the first element of sigma
+     * @param channels The number of channels of the result
+     * @param height The height of the result
+     * @param width The width of the result
+     * @param kernelHeight The height of the window
+     * @param kernelWidth The width of the window
+     * @param stride The stride
+     * @param padding The padding
+     * @param out The array receiving the result, overwritten
+     * @param offOut The index of the first element of the result
+     */
+    public static void invAveragePool(double[] sigma, int offSigma, int channels, int height, int width,
+                                      int kernelHeight, int kernelWidth, int stride, int padding,
+                                      double[] out, int offOut){
+        int outputHeight = Convolution.outputLength(height, kernelHeight, stride, padding);
+        int outputWidth = Convolution.outputLength(width, kernelWidth, stride, padding);
+        Arrays.fill(out, offOut, offOut + channels * height * width, 0.0d);
+        int index = offSigma;
+        for (int c = 0; c < channels; c++){
+            int channelOffset = offOut + c * height * width;
+            for (int oi = 0; oi < outputHeight; oi++){
+                int iStart = Math.max(0, oi * stride - padding);
+                int iEnd = Math.min(height, oi * stride - padding + kernelHeight);
+                for (int oj = 0; oj < outputWidth; oj++){
+                    int jStart = Math.max(0, oj * stride - padding);
+                    int jEnd = Math.min(width, oj * stride - padding + kernelWidth);
+                    int count = (iEnd - iStart) * (jEnd - jStart);
+                    double value = count > 0 ? sigma[index] / count : 0.0d;
+                    for (int i = iStart; i < iEnd; i++){
+                        int rowOffset = channelOffset + i * width;
+                        for (int j = jStart; j < jEnd; j++){
+                            out[rowOffset + j] += value;
+                        }
+                    }
+                    index++;
+                }
+            }
+        }
+    }
+
+    /*****************************************
+     *
+     * Getters
+     *
+     *****************************************/
+    /**
+     * @return The shape of the output: (outputHeight, outputWidth, channels)
+     */
+    public Shape getOutputShape(){
+        return new Shape(this.outputHeight, this.outputWidth, this.channels);
+    }
+
+    /**
+     * @return The shape of the input: (height, width, channels)
+     */
+    public Shape getInputShape(){
+        return new Shape(this.height, this.width, this.channels);
+    }
+
+    /**
+     * @return The pooling method
+     */
+    public EnumCst.PoolingMethod getMethod(){
+        return this.method;
+    }
+
+    /**
+     * The mask is reused and overwritten by each forward pass
+     * @return The index in the input of each output value, max pooling only
+     */
+    public int[] getMask(){
+        return this.mask;
+    }
+
+    /*****************************************
+     *
+     * Builder
+     *
+     *****************************************/
+    public static class PoolingBuilder {
+
+        /*****************************************
+         *
+         * Attributes
+         *
+         *****************************************/
+        private int channels = 1;
+        private int height = 1;
+        private int width = 1;
+        private EnumCst.PoolingMethod method = EnumCst.PoolingMethod.MAX;
+        private int kernelHeight = 1;
+        private int kernelWidth = 1;
+        private int stride = 1;
+        private int padding = 0;
+
+        /*****************************************
+         *
+         * With methods
+         *
+         *****************************************/
+        /**
+         * @param shape The shape of the input: (height, width, channels)
+         * @return The builder itself
+         */
+        public PoolingBuilder withInputShape(Shape shape){
+            this.height = shape.getXAxisLength();
+            this.width = shape.getYAxisLength();
+            this.channels = shape.getZAxisLength();
+            return this;
+        }
+
+        /**
+         * @param method The pooling method
+         * @return The builder itself
+         */
+        public PoolingBuilder withMethod(EnumCst.PoolingMethod method){
+            this.method = method;
+            return this;
+        }
+
+        /**
+         * @param kernelHeight The height of the window
+         * @param kernelWidth The width of the window
+         * @return The builder itself
+         */
+        public PoolingBuilder withKernelShape(int kernelHeight, int kernelWidth){
+            this.kernelHeight = kernelHeight;
+            this.kernelWidth = kernelWidth;
+            return this;
+        }
+
+        /**
+         * @param stride The step used to slide the window
+         * @return The builder itself
+         */
+        public PoolingBuilder withStride(int stride){
+            this.stride = stride;
+            return this;
+        }
+
+        /**
+         * @param padding The padding added around each channel of the input
+         * @return The builder itself
+         */
+        public PoolingBuilder withPadding(int padding){
+            this.padding = padding;
+            return this;
+        }
+
+        /*****************************************
+         *
+         * Build method
+         *
+         *****************************************/
+        /**
+         * Build the pooling and allocate its mask
+         * @return The pooling
+         */
+        public Pooling build(){
+            Pooling pooling = new Pooling();
+            pooling.channels = this.channels;
+            pooling.height = this.height;
+            pooling.width = this.width;
+            pooling.method = this.method == null ? EnumCst.PoolingMethod.MAX : this.method;
+            pooling.kernelHeight = this.kernelHeight;
+            pooling.kernelWidth = this.kernelWidth;
+            pooling.stride = Math.max(1, this.stride);
+            pooling.padding = Math.max(0, this.padding);
+            pooling.outputHeight = Convolution.outputLength(this.height, this.kernelHeight, pooling.stride, pooling.padding);
+            pooling.outputWidth = Convolution.outputLength(this.width, this.kernelWidth, pooling.stride, pooling.padding);
+            if (pooling.outputHeight <= 0 || pooling.outputWidth <= 0){
+                System.out.println("The window is larger than the padded input in Pooling.");
+                pooling.outputHeight = Math.max(0, pooling.outputHeight);
+                pooling.outputWidth = Math.max(0, pooling.outputWidth);
+            }
+            pooling.mask = new int[pooling.outputHeight * pooling.outputWidth * pooling.channels];
+            return pooling;
+        }
+    }
+}
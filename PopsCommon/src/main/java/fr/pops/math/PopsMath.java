@@ -68,8 +68,17 @@ public abstract class PopsMath<T, R> implements Function<T, R> {
     public static Function<Double, Double> sigmoid = (x) -> 1 / (1 + Math.exp(-x));
     public static Function<Double, Double> dsigmoid = (x) -> Math.exp(-x) / Math.pow((1 + Math.exp(-x)), 2);
 
-    // Softmax
-    public static Function<INDArray, INDArray> softmax = (X) -> fr.pops.math.ArrayUtil.apply(x -> (Math.exp(x) / fr.pops.math.ArrayUtil.sum(ArrayUtil.apply(Math::exp, X))), X);
+    // Softmax, normalised over each sample of a batch
+    public static Function<INDArray, INDArray> softmax = (X) -> {
+        INDArray x = X.isContiguous() ? X : X.dup();
+        double[] data = x.getData();
+        double[] res = new double[x.getShape().getSize()];
+        int sampleSize = x.getShape().getSampleSize();
+        for (int b = 0; b < x.getShape().getBatchAxisLength(); b++){
+            softmax(data, x.getOffset() + b * sampleSize, res, b * sampleSize, sampleSize);
+        }
+        return new fr.pops.math.ndarray.BaseNDArray.BaseNDArrayBuilder().withData(res).withShape(X.getShape()).build();
+    };
     public static Function<INDArray, INDArray> dsoftmax = (X) -> ArrayUtil.apply(x -> 0 * x + 1, X);
 
     // ReLu
@@ -80,6 +89,43 @@ public abstract class PopsMath<T, R> implements Function<T, R> {
     public static Function<Double, Double> tanh = Math::tanh;
     public static Function<Double, Double> dtanh = (x) -> 1 - Math.pow(Math.tanh(x), 2);
 
+    /**
+     * Numerically stable softmax on a segment of an array
+     * The maximum is subtracted before exponentiating so that exp never overflows
+     * and the sum of the exponentials is only computed once
+     * @param x The input values
+     * @param out The array receiving the result. It can be x
+     * @param offset The index of the first value of the segment
+     * @param length The length of the segment
+     */
+    public static void softmax(double[] x, double[] out, int offset, int length){
+        softmax(x, offset, out, offset, length);
+    }
+
+    /**
+     * Numerically stable softmax of x[offX .. offX + length[ into out[offOut .. offOut + length[
+     * @param x The input values
+     * @param offX The index of the first value of the segment
+     * @param out The array receiving the result. It can be x
+     * @param offOut The index receiving the first value
+     * @param length The length of the segment
+     */
+    public static void softmax(double[] x, int offX, double[] out, int offOut, int length){
+        if (length == 0){
+            return;
+        }
+        double max = VectorKernels.max(x, offX, length);
+        double sum = 0;
+        for (int i = 0; i < length; i++){
+            out[offOut + i] = Math.exp(x[offX + i] - max);
+            sum += out[offOut + i];
+        }
+        double invSum = 1.0d / sum;
+        for (int i = 0; i < length; i++){
+            out[offOut + i] *= invSum;
+        }
+    }
+
     // Kronecker
     public static int kronecker(int i, int j) { return i == j ? 1 : 0; }
 
@@ -21,9 +21,7 @@
  ******************************************************************************/
 package fr.pops.math;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 
 public class Specter {
 
@@ -32,11 +30,12 @@ public class Specter {
      * Attributes
      *
      *****************************************/
-    private List<Complex[]> inputData;
-    private List<Complex[]> fftData = new ArrayList<>();
-    private Double[] frequencies;
-    private Double[] time;
-    private Double[][] amp;
+    private List<double[]> inputData;
+    // Magnitudes of the bins 0 to wdwSize / 2 of each window
+    private double[][] fftData = new double[0][];
+    private double[] frequencies;
+    private double[] time;
+    private double[][] amp;
 
     /*****************************************
      *
@@ -44,10 +43,9 @@ public class Specter {
      *
      *****************************************/
     /**
-     *
-     * @param data
+     * @param data The windows of the signal, their size is a power of 2
      */
-    public Specter(List<Complex[]> data){
+    public Specter(List<double[]> data){
         this.inputData = data;
     }
 
@@ -57,14 +55,25 @@ public class Specter {
      *
      *****************************************/
     /**
-     *
+     * Real transform of each window
+     * The work arrays are allocated once for all the windows
      */
     public void computeSpecter(){
-
-        this.fftData =  this.inputData.stream()
-                                          .map(FFT::fft)
-                                          .collect(Collectors.toList());
-
+        this.fftData = new double[this.inputData.size()][];
+        if (this.inputData.isEmpty()){
+            return;
+        }
+        int wdwSize = this.inputData.get(0).length;
+        double[] re = new double[wdwSize / 2 + 1];
+        double[] im = new double[wdwSize / 2 + 1];
+        for (int i = 0; i < this.fftData.length; i++){
+            FFT.realTransform(this.inputData.get(i), 0, wdwSize, re, im);
+            double[] magnitudes = new double[wdwSize / 2 + 1];
+            for (int k = 0; k < magnitudes.length; k++){
+                magnitudes[k] = Math.sqrt(re[k] * re[k] + im[k] * im[k]);
+            }
+            this.fftData[i] = magnitudes;
+        }
     }
 
     /**
@@ -75,23 +84,23 @@ public class Specter {
      */
     public void buildFrequenciesAmp(double Fs, double duration, int wdwSize){
         int maxIndex = wdwSize / 2;
-        double timeStep = 0.5 * duration / this.fftData.size();
+        double timeStep = 0.5 * duration / this.fftData.length;
         double c = Fs / wdwSize;
         double max = 0;
-        this.frequencies = new Double[maxIndex];
-        this.time = new Double[this.fftData.size()];
-        this.amp = new Double[maxIndex][this.fftData.size()];
+        this.frequencies = new double[maxIndex];
+        this.time = new double[this.fftData.length];
+        this.amp = new double[maxIndex][this.fftData.length];
         for (int i = 0; i < maxIndex; i++){
             this.frequencies[i] = i * c;
         }
 
-        for (int i = 0; i < this.fftData.size(); i++){
+        for (int i = 0; i < this.fftData.length; i++){
             this.time[i] = i * timeStep;
         }
 
-        for (int i = 0; i < this.fftData.size(); i++){
+        for (int i = 0; i < this.fftData.length; i++){
             for (int j = 0; j < maxIndex; j++){
-                this.amp[j][i] = this.fftData.get(i)[j].getRadius();
+                this.amp[j][i] = this.fftData[i][j];
                 if (this.amp[j][i] > max){
                     max = this.amp[j][i];
                 }
@@ -104,7 +113,10 @@ public class Specter {
      * Getters
      *
      *****************************************/
-    public List<Complex[]> getSpecter(){
+    /**
+     * @return The magnitudes of the bins 0 to wdwSize / 2 of each window
+     */
+    public double[][] getSpecter(){
         return this.fftData;
     }
 
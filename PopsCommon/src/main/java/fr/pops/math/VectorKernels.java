@@ -0,0 +1,407 @@
+/*******************************************************************************
+ *
+ *                         PPPP     OOOO     PPPP    SSSS
+ *                        PP  PP   OO  OO   PP  PP  SS
+ *                        PP  PP  OO    OO  PP  PP  SS
+ *                        PP  PP  OO    OO  PP  PP   SSSS
+ *                        PPPP    OO    OO  PPPP        SS
+ *                        PP       OO  OO   PP          SS
+ *                        PP        OOOO    PP       SSSS
+ *
+ * Name: VectorKernels.java
+ *
+ * Description: Class defining the backend of the inner loops of the math kernels:
+ *              element-wise operations, sums, maxima and dot products on
+ *              contiguous segments of double arrays.
+ *              The backend is selected once at startup. The vector one, built on the
+ *              JDK vector API by the vector-api profile, is the default when the JVM
+ *              runs with --add-modules jdk.incubator.vector, the lanes one otherwise.
+ *              The scalar one is the reference.
+ *
+ * Author: Charles MERINO
+ *
+ * Date: 18/10/2026
+ *
+ ******************************************************************************/
+package fr.pops.math;
+
+public abstract class VectorKernels {
+
+    /*****************************************
+     *
+     * Static Attributes
+     *
+     *****************************************/
+    // System property selecting the backend: scalar, lanes, vector or the name of a class implementing Backend
+    public static final String BACKEND_PROPERTY = "fr.pops.math.vectorKernels";
+
+    // Module of the JDK vector API, only present on recent JDKs and when added with --add-modules
+    public static final String VECTOR_MODULE = "jdk.incubator.vector";
+
+    // Backend built on the vector API, compiled by the vector-api profile
+    public static final String VECTOR_BACKEND = "fr.pops.math.VectorApiBackend";
+
+    // Number of independent accumulators of the lanes backend
+    private static final int LANES = 4;
+
+    // Reference backend, values are processed one by one in index order
+    public static final Backend SCALAR = new ScalarBackend();
+
+    // Default backend, loops are shaped for the auto-vectorizer of the JIT
+    public static final Backend LANES_BACKEND = new LanesBackend();
+
+    private static volatile Backend backend = selectBackend(System.getProperty(BACKEND_PROPERTY));
+
+    /*****************************************
+     *
+     * Backend
+     *
+     *****************************************/
+    /**
+     * Operations on the segments [off, off + length[ of double arrays
+     * Output segments may be the same as input ones
+     */
+    public interface Backend {
+
+        /**
+         * @return The name of the backend
+         */
+        String getName();
+
+        /**
+         * res = a + b
+         */
+        void add(double[] a, int offA, double[] b, int offB, double[] res, int offRes, int length);
+
+        /**
+         * res = a * b component-wise
+         */
+        void mul(double[] a, int offA, double[] b, int offB, double[] res, int offRes, int length);
+
+        /**
+         * y = y + alpha * x
+         */
+        void axpy(double alpha, double[] x, int offX, double[] y, int offY, int length);
+
+        /**
+         * x = alpha * x
+         */
+        void scale(double alpha, double[] x, int offX, int length);
+
+        /**
+         * @return The sum of the values
+         */
+        double sum(double[] x, int offX, int length);
+
+        /**
+         * @return The maximal value, not defined for an empty segment
+         */
+        double max(double[] x, int offX, int length);
+
+        /**
+         * @return The scalar product of the two segments
+         */
+        double dot(double[] x, int offX, double[] y, int offY, int length);
+    }
+
+    /*****************************************
+     *
+     * Methods
+     *
+     *****************************************/
+    /**
+     * res = a + b
+     */
+    public static void add(double[] a, int offA, double[] b, int offB, double[] res, int offRes, int length){
+        backend.add(a, offA, b, offB, res, offRes, length);
+    }
+
+    /**
+     * res = a * b component-wise
+     */
+    public static void mul(double[] a, int offA, double[] b, int offB, double[] res, int offRes, int length){
+        backend.mul(a, offA, b, offB, res, offRes, length);
+    }
+
+    /**
+     * y = y + alpha * x
+     */
+    public static void axpy(double alpha, double[] x, int offX, double[] y, int offY, int length){
+        backend.axpy(alpha, x, offX, y, offY, length);
+    }
+
+    /**
+     * x = alpha * x
+     */
+    public static void scale(double alpha, double[] x, int offX, int length){
+        backend.scale(alpha, x, offX, length);
+    }
+
+    /**
+     * @return The sum of the values
+     */
+    public static double sum(double[] x, int offX, int length){
+        return backend.sum(x, offX, length);
+    }
+
+    /**
+     * @return The maximal value of a non empty segment
+     */
+    public static double max(double[] x, int offX, int length){
+        return backend.max(x, offX, length);
+    }
+
+    /**
+     * @return The scalar product of the two segments
+     */
+    public static double dot(double[] x, int offX, double[] y, int offY, int length){
+        return backend.dot(x, offX, y, offY, length);
+    }
+
+    /**
+     * @param name scalar, lanes, vector or the name of a class implementing Backend
+     * @return The backend, null if it cannot be loaded
+     */
+    public static Backend load(String name){
+        if (name.equalsIgnoreCase("lanes")){
+            return LANES_BACKEND;
+        } else if (name.equalsIgnoreCase("scalar")){
+            return SCALAR;
+        } else if (!isVectorModuleAvailable()){
+            return null;
+        }
+        try {
+            String className = name.equalsIgnoreCase("vector") ? VECTOR_BACKEND : name;
+            return (Backend) Class.forName(className).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | ClassCastException | LinkageError e){
+            return null;
+        }
+    }
+
+    /**
+     * @return True if the module of the JDK vector API is loaded
+     */
+    public static boolean isVectorModuleAvailable(){
+        return ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent();
+    }
+
+    /*****************************************
+     *
+     * Getters
+     *
+     *****************************************/
+    public static Backend getBackend(){ return backend; }
+
+    /*****************************************
+     *
+     * Setters
+     *
+     *****************************************/
+    /**
+     * @param backend The backend used by the kernels from now on
+     */
+    public static void setBackend(Backend backend){
+        if (backend == null){
+            System.out.println("Null backend in VectorKernels. The current one is kept: " + VectorKernels.backend.getName());
+            return;
+        }
+        VectorKernels.backend = backend;
+    }
+
+    /*****************************************
+     *
+     * Private methods
+     *
+     *****************************************/
+    /**
+     * A backend built on the vector API is only loaded if the vector module is available
+     * Without property, the vector backend is used when it can be loaded
+     * @param name The value of the system property, null when not set
+     * @return The requested backend, the lanes one if it cannot be used
+     */
+    private static Backend selectBackend(String name){
+        if (name == null || name.isEmpty()){
+            Backend vector = load("vector");
+            return vector != null ? vector : LANES_BACKEND;
+        }
+        Backend res = load(name);
+        if (res == null){
+            System.out.println("Unable to load the backend " + name + (isVectorModuleAvailable() ? "" : ", module " + VECTOR_MODULE + " not available")
+                               + ". The lanes backend is used instead.");
+            return LANES_BACKEND;
+        }
+        return res;
+    }
+
+    /*****************************************
+     *
+     * Scalar backend
+     *
+     *****************************************/
+    private static class ScalarBackend implements Backend {
+
+        @Override
+        public String getName(){ return "scalar"; }
+
+        @Override
+        public void add(double[] a, int offA, double[] b, int offB, double[] res, int offRes, int length){
+            for (int i = 0; i < length; i++){
+                res[offRes + i] = a[offA + i] + b[offB + i];
+            }
+        }
+
+        @Override
+        public void mul(double[] a, int offA, double[] b, int offB, double[] res, int offRes, int length){
+            for (int i = 0; i < length; i++){
+                res[offRes + i] = a[offA + i] * b[offB + i];
+            }
+        }
+
+        @Override
+        public void axpy(double alpha, double[] x, int offX, double[] y, int offY, int length){
+            for (int i = 0; i < length; i++){
+                y[offY + i] += alpha * x[offX + i];
+            }
+        }
+
+        @Override
+        public void scale(double alpha, double[] x, int offX, int length){
+            for (int i = 0; i < length; i++){
+                x[offX + i] *= alpha;
+            }
+        }
+
+        @Override
+        public double sum(double[] x, int offX, int length){
+            double res = 0;
+            for (int i = 0; i < length; i++){
+                res += x[offX + i];
+            }
+            return res;
+        }
+
+        @Override
+        public double max(double[] x, int offX, int length){
+            double res = x[offX];
+            for (int i = 1; i < length; i++){
+                res = Math.max(res, x[offX + i]);
+            }
+            return res;
+        }
+
+        @Override
+        public double dot(double[] x, int offX, double[] y, int offY, int length){
+            double res = 0;
+            for (int i = 0; i < length; i++){
+                res += x[offX + i] * y[offY + i];
+            }
+            return res;
+        }
+    }
+
+    /*****************************************
+     *
+     * Lanes backend
+     *
+     *****************************************/
+    /**
+     * Element-wise loops are plain counted loops over the absolute indices,
+     * the form the JIT turns into packed SIMD instructions
+     * Reductions keep one accumulator per lane, combined at the end,
+     * so that consecutive additions do not wait for each other.
+     * Their rounding differs slightly from the scalar backend
+     */
+    private static class LanesBackend implements Backend {
+
+        @Override
+        public String getName(){ return "lanes"; }
+
+        @Override
+        public void add(double[] a, int offA, double[] b, int offB, double[] res, int offRes, int length){
+            int shiftA = offA - offRes;
+            int shiftB = offB - offRes;
+            for (int i = offRes; i < offRes + length; i++){
+                res[i] = a[i + shiftA] + b[i + shiftB];
+            }
+        }
+
+        @Override
+        public void mul(double[] a, int offA, double[] b, int offB, double[] res, int offRes, int length){
+            int shiftA = offA - offRes;
+            int shiftB = offB - offRes;
+            for (int i = offRes; i < offRes + length; i++){
+                res[i] = a[i + shiftA] * b[i + shiftB];
+            }
+        }
+
+        @Override
+        public void axpy(double alpha, double[] x, int offX, double[] y, int offY, int length){
+            int shift = offX - offY;
+            for (int i = offY; i < offY + length; i++){
+                y[i] += alpha * x[i + shift];
+            }
+        }
+
+        @Override
+        public void scale(double alpha, double[] x, int offX, int length){
+            for (int i = offX; i < offX + length; i++){
+                x[i] *= alpha;
+            }
+        }
+
+        @Override
+        public double sum(double[] x, int offX, int length){
+            double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+            int end = offX + length - length % LANES;
+            int i = offX;
+            for (; i < end; i += LANES){
+                s0 += x[i];
+                s1 += x[i + 1];
+                s2 += x[i + 2];
+                s3 += x[i + 3];
+            }
+            for (; i < offX + length; i++){
+                s0 += x[i];
+            }
+            return (s0 + s1) + (s2 + s3);
+        }
+
+        @Override
+        public double max(double[] x, int offX, int length){
+            if (length < LANES){
+                return SCALAR.max(x, offX, length);
+            }
+            double m0 = x[offX], m1 = x[offX + 1], m2 = x[offX + 2], m3 = x[offX + 3];
+            int end = offX + length - length % LANES;
+            int i = offX + LANES;
+            for (; i < end; i += LANES){
+                m0 = Math.max(m0, x[i]);
+                m1 = Math.max(m1, x[i + 1]);
+                m2 = Math.max(m2, x[i + 2]);
+                m3 = Math.max(m3, x[i + 3]);
+            }
+            for (; i < offX + length; i++){
+                m0 = Math.max(m0, x[i]);
+            }
+            return Math.max(Math.max(m0, m1), Math.max(m2, m3));
+        }
+
+        @Override
+        public double dot(double[] x, int offX, double[] y, int offY, int length){
+            double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+            int shift = offY - offX;
+            int end = offX + length - length % LANES;
+            int i = offX;
+            for (; i < end; i += LANES){
+                s0 += x[i] * y[i + shift];
+                s1 += x[i + 1] * y[i + 1 + shift];
+                s2 += x[i + 2] * y[i + 2 + shift];
+                s3 += x[i + 3] * y[i + 3 + shift];
+            }
+            for (; i < offX + length; i++){
+                s0 += x[i] * y[i + shift];
+            }
+            return (s0 + s1) + (s2 + s3);
+        }
+    }
+}
@@ -11,6 +11,10 @@
  * Name: BaseNDArray.java
  *
  * Description: Class defining the basic N-Dimensional arrays.
+ *              An array is a window over a buffer: the element (i, j, c)
+ *              is stored at offset + i * rowStride + j * columnStride + c * channelStride.
+ *              Views share the buffer of the array they come from,
+ *              dup is the only method making a copy.
  *
  * Author: Charles MERINO
  *
@@ -37,10 +41,16 @@ public class BaseNDArray implements INDArray {
      * Attributes
      *
      *****************************************/
-    // TODO: Turn this into an DataBuffer
-    private double[] data;
+    private DataBuffer buffer;
     private Shape shape;
 
+    // Location of the elements in the buffer
+    private int offset;
+    private int rowStride;
+    private int columnStride;
+    private int channelStride;
+    private int batchStride;
+
     /*****************************************
      *
      * Ctors
@@ -59,7 +69,8 @@ public class BaseNDArray implements INDArray {
      */
     public BaseNDArray(int... shape){
         this.shape = new Shape.ShapeBuilder().withShape(shape).build();
-        this.data = new double[this.shape.getSize()];
+        this.buffer = new HeapDoubleDataBuffer(this.shape.getSize());
+        this.setCompactStrides();
     }
 
     /**
@@ -68,7 +79,8 @@ public class BaseNDArray implements INDArray {
      */
     public BaseNDArray(double[] data, int... shape){
         this.shape = new Shape.ShapeBuilder().withShape(shape).build();
-        this.data = data;
+        this.buffer = new HeapDoubleDataBuffer(data);
+        this.setCompactStrides();
     }
 
     /**
@@ -77,7 +89,38 @@ public class BaseNDArray implements INDArray {
      */
     public BaseNDArray(double[][] data, int... shape){
         this.shape = new Shape.ShapeBuilder().withShape(shape).build();
-        this.data = ArrayUtil.flatten(data);
+        this.buffer = new HeapDoubleDataBuffer(ArrayUtil.flatten(data));
+        this.setCompactStrides();
+    }
+
+    /**
+     * @param buffer The buffer holding the data, it is not copied
+     * @param shape Tuple of array dimension
+     */
+    public BaseNDArray(DataBuffer buffer, int... shape){
+        this.shape = new Shape.ShapeBuilder().withShape(shape).build();
+        this.buffer = buffer;
+        this.setCompactStrides();
+    }
+
+    /**
+     * Build a view over the given buffer
+     * @param buffer The buffer
+     * @param shape The shape of the view
+     * @param offset The index of the element (0, 0, 0)
+     * @param rowStride The distance between two rows
+     * @param columnStride The distance between two columns
+     * @param channelStride The distance between two channels
+     * @param batchStride The distance between two samples of the batch
+     */
+    private BaseNDArray(DataBuffer buffer, Shape shape, int offset, int rowStride, int columnStride, int channelStride, int batchStride){
+        this.buffer = buffer;
+        this.shape = shape;
+        this.offset = offset;
+        this.rowStride = rowStride;
+        this.columnStride = columnStride;
+        this.channelStride = channelStride;
+        this.batchStride = batchStride;
     }
 
     /*****************************************
@@ -90,8 +133,13 @@ public class BaseNDArray implements INDArray {
      * @param arr The BaseNDArray to copy
      */
     public BaseNDArray(BaseNDArray arr){
-        this.data = arr.data;
+        this.buffer = arr.buffer;
         this.shape = arr.shape;
+        this.offset = arr.offset;
+        this.rowStride = arr.rowStride;
+        this.columnStride = arr.columnStride;
+        this.channelStride = arr.channelStride;
+        this.batchStride = arr.batchStride;
     }
 
     /**
@@ -100,8 +148,14 @@ public class BaseNDArray implements INDArray {
      * @param arr The INDArray to copy
      */
     public BaseNDArray(INDArray arr){
-        this.data = arr.getData();
+        this.buffer = arr.getDataBuffer();
         this.shape = arr.getShape();
+        this.offset = arr.getOffset();
+        int[] strides = arr.getStrides();
+        this.rowStride = strides[0];
+        this.columnStride = strides[1];
+        this.channelStride = strides[2];
+        this.batchStride = strides[3];
     }
 
     /*****************************************
@@ -117,9 +171,11 @@ public class BaseNDArray implements INDArray {
     public void reshape(int... shape){
         if (ArrayUtil.prod(shape) != this.shape.getSize()){
             System.out.println("INDArray cannot be reshaped. Sizes don't match.");
-        }
-        else {
+        } else if (!this.isContiguous()){
+            System.out.println("INDArray cannot be reshaped. Its elements are not contiguous, use dup first.");
+        } else {
             this.shape = new Shape.ShapeBuilder().withShape(shape).build();
+            this.setCompactStrides();
         }
     }
 
@@ -131,8 +187,11 @@ public class BaseNDArray implements INDArray {
     public void reshape(Shape shape){
         if (shape.getSize() != this.shape.getSize()){
             System.out.println("INDArray cannot be reshaped. Sizes don't match.");
+        } else if (!this.isContiguous()){
+            System.out.println("INDArray cannot be reshaped. Its elements are not contiguous, use dup first.");
         } else {
             this.shape = shape;
+            this.setCompactStrides();
         }
     }
 
@@ -168,8 +227,8 @@ public class BaseNDArray implements INDArray {
         } else if (arr.getShape().getSize() > this.shape.getSize()){
             System.out.println("INDArray cannot be push. The array to stack is larger than the root array.");
         } // else if ( cannot push because of (this.shape.zLength - offset) * this.shape.xLength * this.shape.yLength - (this.shape.zLength - offset) * arr.xLength * arr.yLength > 0){}
-        int startIndex = offset * this.shape.getXAxisLength() * this.shape.getYAxisLength();
-        System.arraycopy(arr.getData(), 0, this.data, startIndex, arr.getShape().getSize());
+        INDArray channels = this.channel(offset, Math.min(this.shape.getZAxisLength(), offset + arr.getShape().getZAxisLength()));
+        ArrayUtil.copyInto(arr, channels);
     }
 
     /**
@@ -182,44 +241,204 @@ public class BaseNDArray implements INDArray {
     }
 
     /**
-     * Extract a specific channel of the calling BaseNDArray
+     * Extract a copy of a specific channel of the calling BaseNDArray
+     * Use channel to get the same values without copying them
      * @param channel The index of the channel to extract
      */
     @Override
     public INDArray extractChannel(int channel) {
-        if (this.shape.getZAxisLength() < channel){
+        if (channel < 0 || this.shape.getZAxisLength() <= channel){
             System.out.println("Cannot extract the specified channel of the array.");
             return new BaseNDArray(this);
         }
-        double[] res = new double[this.shape.getXAxisLength() * this.shape.getYAxisLength()];
-        int startIndex = channel * this.shape.getXAxisLength() * this.shape.getYAxisLength();
-        System.arraycopy(this.getData(), startIndex, res, 0, this.shape.getXAxisLength() * this.shape.getYAxisLength());
-        return new BaseNDArray.BaseNDArrayBuilder().withData(res).withShape(this.shape.getXAxisLength(), this.shape.getYAxisLength()).build();
+        INDArray res = this.channel(channel).dup();
+        res.reshape(this.shape.getXAxisLength(), this.shape.getYAxisLength());
+        return res;
     }
 
     /**
      * Turn literally the INDArray upside down
-     * @return The calling INDArray turned upside down
+     * @return A copy of the calling INDArray turned upside down
      *         It is a symmetry along both X and Y axis per depth
      */
     @Override
     public INDArray rot180(){
         int counter = 0;
         double[] res = new double[this.shape.getSize()];
-        // Loop over the depth
-        double[] buffer = new double[this.shape.getXAxisLength() * this.shape.getYAxisLength()];
         for (int c = 0; c < this.shape.getZAxisLength(); c++){
-            int startIndex = c * this.shape.getXAxisLength() * this.shape.getYAxisLength();
-            System.arraycopy(this.getData(), startIndex, buffer, 0, this.shape.getXAxisLength() * this.shape.getYAxisLength());
-            // Loop over the values in the buffer
-            for (int i = buffer.length - 1; i >= 0; i--){
-                res[counter] = buffer[i];
-                counter++;
+            for (int i = this.shape.getXAxisLength() - 1; i >= 0; i--){
+                for (int j = this.shape.getYAxisLength() - 1; j >= 0; j--){
+                    res[counter++] = this.get(i, j, c);
+                }
             }
         }
         return new BaseNDArray.BaseNDArrayBuilder().withData(res).withShape(this.shape).build();
     }
 
+    /**
+     * View over a single channel, the buffer is shared
+     * @param channel The index of the channel
+     * @return The channel of shape (x, y, 1)
+     */
+    @Override
+    public INDArray channel(int channel){
+        return this.channel(channel, channel + 1);
+    }
+
+    /**
+     * View over the channels from (inclusive) to (exclusive), the buffer is shared
+     * @param from The first channel
+     * @param to The channel after the last one
+     * @return The channels of shape (x, y, to - from)
+     */
+    @Override
+    public INDArray channel(int from, int to){
+        if (from < 0 || to > this.shape.getZAxisLength() || from >= to){
+            System.out.println("Invalid channels in BaseNDArray.channel: [" + from + ", " + to + ").");
+            return this;
+        }
+        Shape viewShape = new Shape(this.shape.getXAxisLength(), this.shape.getYAxisLength(), to - from, this.shape.getBatchAxisLength());
+        return new BaseNDArray(this.buffer, viewShape, this.offset + from * this.channelStride,
+                               this.rowStride, this.columnStride, this.channelStride, this.batchStride);
+    }
+
+    /**
+     * View over the rows from (inclusive) to (exclusive) of every channel, the buffer is shared
+     * @param from The first row
+     * @param to The row after the last one
+     * @return The rows of shape (to - from, y, z)
+     */
+    @Override
+    public INDArray rows(int from, int to){
+        if (from < 0 || to > this.shape.getXAxisLength() || from >= to){
+            System.out.println("Invalid rows in BaseNDArray.rows: [" + from + ", " + to + ").");
+            return this;
+        }
+        Shape viewShape = new Shape(to - from, this.shape.getYAxisLength(), this.shape.getZAxisLength(), this.shape.getBatchAxisLength());
+        return new BaseNDArray(this.buffer, viewShape, this.offset + from * this.rowStride,
+                               this.rowStride, this.columnStride, this.channelStride, this.batchStride);
+    }
+
+    /**
+     * View over a single sample of the batch, the buffer is shared
+     * @param sample The index of the sample
+     * @return The sample of shape (x, y, z)
+     */
+    @Override
+    public INDArray sample(int sample){
+        return this.samples(sample, sample + 1);
+    }
+
+    /**
+     * View over the samples from (inclusive) to (exclusive) of the batch, the buffer is shared
+     * @param from The first sample
+     * @param to The sample after the last one
+     * @return The samples of shape (x, y, z, to - from)
+     */
+    @Override
+    public INDArray samples(int from, int to){
+        if (from < 0 || to > this.shape.getBatchAxisLength() || from >= to){
+            System.out.println("Invalid samples in BaseNDArray.samples: [" + from + ", " + to + ").");
+            return this;
+        }
+        Shape viewShape = new Shape(this.shape.getXAxisLength(), this.shape.getYAxisLength(), this.shape.getZAxisLength(), to - from);
+        return new BaseNDArray(this.buffer, viewShape, this.offset + from * this.batchStride,
+                               this.rowStride, this.columnStride, this.channelStride, this.batchStride);
+    }
+
+    /**
+     * View over the transpose of each channel, the buffer is shared
+     * @return The transposed array of shape (y, x, z)
+     */
+    @Override
+    public INDArray transposeView(){
+        Shape viewShape = new Shape(this.shape.getYAxisLength(), this.shape.getXAxisLength(), this.shape.getZAxisLength(), this.shape.getBatchAxisLength());
+        return new BaseNDArray(this.buffer, viewShape, this.offset,
+                               this.columnStride, this.rowStride, this.channelStride, this.batchStride);
+    }
+
+    /**
+     * View with another shape, the buffer is shared
+     * The elements must be contiguous
+     * @param shape The shape of the view
+     * @return The reshaped view
+     */
+    @Override
+    public INDArray reshapeView(Shape shape){
+        if (shape.getSize() != this.shape.getSize()){
+            System.out.println("INDArray cannot be reshaped. Sizes don't match.");
+            return this;
+        } else if (!this.isContiguous()){
+            System.out.println("INDArray cannot be reshaped. Its elements are not contiguous, use dup first.");
+            return this;
+        }
+        BaseNDArray res = new BaseNDArray(this.buffer, shape, this.offset, 0, 0, 0, 0);
+        res.setCompactStrides();
+        return res;
+    }
+
+    /**
+     * @return A compact copy of the array, it does not share anything with the calling array
+     */
+    @Override
+    public INDArray dup(){
+        DataBuffer res = this.buffer.allocate(this.shape.getSize());
+        if (this.isContiguous()){
+            this.buffer.copyTo(this.offset, res, 0, res.length());
+        } else {
+            int counter = 0;
+            for (int n = 0; n < this.shape.getBatchAxisLength(); n++){
+                int sampleOffset = this.offset + n * this.batchStride;
+                for (int c = 0; c < this.shape.getZAxisLength(); c++){
+                    for (int i = 0; i < this.shape.getXAxisLength(); i++){
+                        for (int j = 0; j < this.shape.getYAxisLength(); j++){
+                            res.putDouble(counter++, this.buffer.getDouble(sampleOffset + i * this.rowStride + j * this.columnStride + c * this.channelStride));
+                        }
+                    }
+                }
+            }
+        }
+        return new BaseNDArray.BaseNDArrayBuilder().withDataBuffer(res).withShape(this.shape).build();
+    }
+
+    /**
+     * @param i The row
+     * @param j The column
+     * @param c The channel
+     * @return The element (i, j, c)
+     */
+    @Override
+    public double get(int i, int j, int c){
+        return this.buffer.getDouble(this.offset + i * this.rowStride + j * this.columnStride + c * this.channelStride);
+    }
+
+    /**
+     * @param i The row
+     * @param j The column
+     * @param c The channel
+     * @param value The value to give to the element (i, j, c)
+     */
+    @Override
+    public void set(int i, int j, int c, double value){
+        this.buffer.putDouble(this.offset + i * this.rowStride + j * this.columnStride + c * this.channelStride, value);
+    }
+
+    /**
+     * @return True if the elements are stored one after the other, sample by sample,
+     *         channel by channel and row by row, from the offset
+     */
+    @Override
+    public boolean isContiguous(){
+        int x = this.shape.getXAxisLength();
+        int y = this.shape.getYAxisLength();
+        int z = this.shape.getZAxisLength();
+        int b = this.shape.getBatchAxisLength();
+        return (y <= 1 || this.columnStride == 1)
+                && (x <= 1 || this.rowStride == y)
+                && (z <= 1 || this.channelStride == x * y)
+                && (b <= 1 || this.batchStride == x * y * z);
+    }
+
     @Override
     public boolean assertOrdering(char ordering){
         boolean res = ordering == 'C' || ordering == 'F';
@@ -232,12 +451,46 @@ public class BaseNDArray implements INDArray {
      * Getters
      *
      *****************************************/
+    /**
+     * For views the buffer is shared: the elements start at getOffset
+     * and are located with getStrides
+     * Only the heap double backend returns its own array, the other backends
+     * return a copy which cannot be used to modify the array
+     * @return The elements as a double array
+     */
     @Override
-    public double[] getData() { return this.data; }
+    public double[] getData() { return this.buffer.asDoubleArray(); }
+
+    @Override
+    public DataBuffer getDataBuffer() { return this.buffer; }
 
     @Override
     public Shape getShape() { return this.shape; }
 
+    @Override
+    public int getOffset() { return this.offset; }
+
+    /**
+     * @return The row, column, channel and batch strides
+     */
+    @Override
+    public int[] getStrides() { return new int[]{this.rowStride, this.columnStride, this.channelStride, this.batchStride}; }
+
+    /*****************************************
+     *
+     * Private methods
+     *
+     *****************************************/
+    /**
+     * Set the strides of a compact row-major array, channel by channel and sample by sample
+     */
+    private void setCompactStrides(){
+        this.columnStride = 1;
+        this.rowStride = this.shape.getYAxisLength();
+        this.channelStride = this.shape.getXAxisLength() * this.shape.getYAxisLength();
+        this.batchStride = this.shape.getSampleSize();
+    }
+
     /*****************************************
      *
      * Setter
@@ -264,7 +517,9 @@ public class BaseNDArray implements INDArray {
         for (int i = 0; i < this.shape.getSize(); i++)
         {
             // New line
-            message.append(String.format(StrCst.INDARRAY_VALUES_FORMAT, data[i])).append(spaceBetweenValues);
+            int channelSize = this.shape.getXAxisLength() * this.shape.getYAxisLength();
+            double value = this.get((i % channelSize) / this.shape.getYAxisLength(), i % this.shape.getYAxisLength(), i / channelSize);
+            message.append(String.format(StrCst.INDARRAY_VALUES_FORMAT, value)).append(spaceBetweenValues);
 
             if ((i + 1) % this.shape.getYAxisLength() == 0)
             {
@@ -311,6 +566,7 @@ public class BaseNDArray implements INDArray {
          *
          *****************************************/
         private double[] data;
+        private DataBuffer buffer;
         private Shape shape;
 
         /*****************************************
@@ -327,6 +583,16 @@ public class BaseNDArray implements INDArray {
             return this;
         }
 
+        /**
+         * @param buffer The buffer holding the data, any backend
+         * @return The builder itself
+         */
+        public BaseNDArrayBuilder withDataBuffer(DataBuffer buffer){
+            this.buffer = buffer;
+            this.data = null;
+            return this;
+        }
+
         /**
          * @param shape The shape of the data to store
          * @return The builder itself
@@ -420,12 +686,16 @@ public class BaseNDArray implements INDArray {
          * Build method
          */
         public BaseNDArray build(){
+            DataBuffer dataBuffer = this.data != null ? new HeapDoubleDataBuffer(this.data) : this.buffer;
+            if (dataBuffer == null){
+                dataBuffer = new HeapDoubleDataBuffer(this.shape == null ? 0 : this.shape.getSize());
+            }
             if (this.shape == null){
-                this.shape = new Shape(data.length);
+                this.shape = new Shape(dataBuffer.length());
                 System.out.println("Unknown shape in the builder.");
             }
 
-            return new BaseNDArray(this.data, shape.getXAxisLength(), shape.getYAxisLength(), shape.getZAxisLength());
+            return new BaseNDArray(dataBuffer, shape.getXAxisLength(), shape.getYAxisLength(), shape.getZAxisLength(), shape.getBatchAxisLength());
         }
 
     }
@@ -0,0 +1,109 @@
+/*******************************************************************************
+ *
+ *                         PPPP     OOOO     PPPP    SSSS
+ *                        PP  PP   OO  OO   PP  PP  SS
+ *                        PP  PP  OO    OO  PP  PP  SS
+ *                        PP  PP  OO    OO  PP  PP   SSSS
+ *                        PPPP    OO    OO  PPPP        SS
+ *                        PP       OO  OO   PP          SS
+ *                        PP        OOOO    PP       SSSS
+ *
+ * Name: DataBuffer.java
+ *
+ * Description: Interface class defining the storage of the N-Dimensional arrays.
+ *              The values are read and written as doubles whatever
+ *              the backend: heap double[], heap float[] or off-heap memory.
+ *
+ * Author: Charles MERINO
+ *
+ * Date: 18/10/2026
+ *
+ ******************************************************************************/
+package fr.pops.math.ndarray;
+
+import fr.pops.commoncst.EnumCst;
+
+import java.io.Serializable;
+
+public interface DataBuffer extends Serializable {
+
+    /*****************************************
+     *
+     * Methods
+     *
+     *****************************************/
+    /**
+     * @param i The index of the element
+     * @return The element as a double
+     */
+    public double getDouble(int i);
+
+    /**
+     * @param i The index of the element
+     * @param value The value to store, rounded if the buffer holds floats
+     */
+    public void putDouble(int i, double value);
+
+    /**
+     * Heap double buffers return their backing array
+     * Every other backend returns a copy: writing into it does not modify the buffer
+     * @return The elements as a double array
+     */
+    public double[] asDoubleArray();
+
+    /**
+     * @param length The number of elements
+     * @return A new buffer of the same backend and type, filled with zeros
+     */
+    public DataBuffer allocate(int length);
+
+    /**
+     * Fill a range of the buffer
+     * @param from The first index, inclusive
+     * @param to The last index, exclusive
+     * @param value The value to give to the elements
+     */
+    public default void fill(int from, int to, double value){
+        for (int i = from; i < to; i++){
+            this.putDouble(i, value);
+        }
+    }
+
+    /**
+     * Copy length elements of this buffer into dst
+     * @param offset The index of the first element to copy
+     * @param dst The buffer receiving the elements
+     * @param dstOffset The index of the first element to write
+     * @param length The number of elements to copy
+     */
+    public default void copyTo(int offset, DataBuffer dst, int dstOffset, int length){
+        for (int i = 0; i < length; i++){
+            dst.putDouble(dstOffset + i, this.getDouble(offset + i));
+        }
+    }
+
+    /*****************************************
+     *
+     * Getters
+     *
+     *****************************************/
+    /**
+     * @return The type of the stored elements
+     */
+    public EnumCst.DataTypes getDataType();
+
+    /**
+     * @return The number of elements
+     */
+    public int length();
+
+    /**
+     * @return The size in bytes of one element
+     */
+    public int getElementSize();
+
+    /**
+     * @return True if the elements are stored outside the Java heap
+     */
+    public boolean isDirect();
+}
@@ -0,0 +1,190 @@
+/*******************************************************************************
+ *
+ *                         PPPP     OOOO     PPPP    SSSS
+ *                        PP  PP   OO  OO   PP  PP  SS
+ *                        PP  PP  OO    OO  PP  PP  SS
+ *                        PP  PP  OO    OO  PP  PP   SSSS
+ *                        PPPP    OO    OO  PPPP        SS
+ *                        PP       OO  OO   PP          SS
+ *                        PP        OOOO    PP       SSSS
+ *
+ * Name: DirectDataBuffer.java
+ *
+ * Description: Class defining a data buffer stored outside the Java heap.
+ *              It wraps a ByteBuffer: either a direct buffer allocated
+ *              here or a buffer given by the caller, like a memory-mapped
+ *              file, which is then read without copy.
+ *              Elements are doubles or floats.
+ *
+ * Author: Charles MERINO
+ *
+ * Date: 18/10/2026
+ *
+ ******************************************************************************/
+package fr.pops.math.ndarray;
+
+import fr.pops.commoncst.EnumCst;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+public class DirectDataBuffer implements DataBuffer {
+
+    /*****************************************
+     *
+     * Attributes
+     *
+     *****************************************/
+    private transient ByteBuffer byteBuffer;
+    private EnumCst.DataTypes dataType;
+    private int length;
+
+    /*****************************************
+     *
+     * Ctors
+     *
+     *****************************************/
+    /**
+     * Allocate a direct buffer in the native byte order
+     * @param dataType The type of the elements: DOUBLE or FLOAT
+     * @param length The number of elements, initialized to 0
+     */
+    public DirectDataBuffer(EnumCst.DataTypes dataType, int length){
+        this.dataType = checkDataType(dataType);
+        this.length = length;
+        this.byteBuffer = ByteBuffer.allocateDirect(length * this.getElementSize()).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Wrap the remaining bytes of the given buffer, nothing is copied
+     * The byte order of the given buffer is kept
+     * @param byteBuffer The buffer holding the elements, a MappedByteBuffer for instance
+     * @param dataType The type of the elements: DOUBLE or FLOAT
+     */
+    public DirectDataBuffer(ByteBuffer byteBuffer, EnumCst.DataTypes dataType){
+        this.dataType = checkDataType(dataType);
+        this.byteBuffer = byteBuffer.slice().order(byteBuffer.order());
+        this.length = this.byteBuffer.capacity() / this.getElementSize();
+    }
+
+    /*****************************************
+     *
+     * Parent methods
+     *
+     *****************************************/
+    @Override
+    public double getDouble(int i){
+        return this.dataType == EnumCst.DataTypes.FLOAT ? this.byteBuffer.getFloat(i * Float.BYTES)
+                                                        : this.byteBuffer.getDouble(i * Double.BYTES);
+    }
+
+    @Override
+    public void putDouble(int i, double value){
+        if (this.dataType == EnumCst.DataTypes.FLOAT){
+            this.byteBuffer.putFloat(i * Float.BYTES, (float) value);
+        } else {
+            this.byteBuffer.putDouble(i * Double.BYTES, value);
+        }
+    }
+
+    /**
+     * @return A copy of the elements read as doubles
+     */
+    @Override
+    public double[] asDoubleArray(){
+        double[] res = new double[this.length];
+        if (this.dataType == EnumCst.DataTypes.DOUBLE){
+            this.byteBuffer.duplicate().order(this.byteBuffer.order()).asDoubleBuffer().get(res);
+        } else {
+            for (int i = 0; i < res.length; i++){
+                res[i] = this.byteBuffer.getFloat(i * Float.BYTES);
+            }
+        }
+        return res;
+    }
+
+    @Override
+    public DataBuffer allocate(int length){ return new DirectDataBuffer(this.dataType, length); }
+
+    /*****************************************
+     *
+     * Getters
+     *
+     *****************************************/
+    /**
+     * The returned buffer shares the memory of this one, its position and limit are independent
+     * It can be handed to a channel or a socket without copy
+     * @return The bytes holding the elements
+     */
+    public ByteBuffer getByteBuffer(){
+        return this.byteBuffer.duplicate().order(this.byteBuffer.order());
+    }
+
+    @Override
+    public EnumCst.DataTypes getDataType(){ return this.dataType; }
+
+    @Override
+    public int length(){ return this.length; }
+
+    @Override
+    public int getElementSize(){
+        return this.dataType == EnumCst.DataTypes.FLOAT ? Float.BYTES : Double.BYTES;
+    }
+
+    @Override
+    public boolean isDirect(){ return true; }
+
+    /*****************************************
+     *
+     * Private methods
+     *
+     *****************************************/
+    /**
+     * @param dataType The requested type
+     * @return The type if supported, DOUBLE otherwise
+     */
+    private static EnumCst.DataTypes checkDataType(EnumCst.DataTypes dataType){
+        if (dataType != EnumCst.DataTypes.DOUBLE && dataType != EnumCst.DataTypes.FLOAT){
+            System.out.println("Unsupported data type in DirectDataBuffer: " + dataType + ". DOUBLE is used instead.");
+            return EnumCst.DataTypes.DOUBLE;
+        }
+        return dataType;
+    }
+
+    /*****************************************
+     *
+     * Serialization
+     *
+     *****************************************/
+    /**
+     * The elements are written after the type and the length
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        for (int i = 0; i < this.length; i++){
+            if (this.dataType == EnumCst.DataTypes.FLOAT){
+                out.writeFloat(this.byteBuffer.getFloat(i * Float.BYTES));
+            } else {
+                out.writeDouble(this.byteBuffer.getDouble(i * Double.BYTES));
+            }
+        }
+    }
+
+    /**
+     * The elements are read back into a new direct buffer
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        this.byteBuffer = ByteBuffer.allocateDirect(this.length * this.getElementSize()).order(ByteOrder.nativeOrder());
+        for (int i = 0; i < this.length; i++){
+            if (this.dataType == EnumCst.DataTypes.FLOAT){
+                this.byteBuffer.putFloat(i * Float.BYTES, in.readFloat());
+            } else {
+                this.byteBuffer.putDouble(i * Double.BYTES, in.readDouble());
+            }
+        }
+    }
+}
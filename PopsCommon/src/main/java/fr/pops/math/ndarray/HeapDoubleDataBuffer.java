@@ -0,0 +1,106 @@
+/*******************************************************************************
+ *
+ *                         PPPP     OOOO     PPPP    SSSS
+ *                        PP  PP   OO  OO   PP  PP  SS
+ *                        PP  PP  OO    OO  PP  PP  SS
+ *                        PP  PP  OO    OO  PP  PP   SSSS
+ *                        PPPP    OO    OO  PPPP        SS
+ *                        PP       OO  OO   PP          SS
+ *                        PP        OOOO    PP       SSSS
+ *
+ * Name: HeapDoubleDataBuffer.java
+ *
+ * Description: Class defining a data buffer backed by a double array.
+ *              Default backend of the N-Dimensional arrays.
+ *
+ * Author: Charles MERINO
+ *
+ * Date: 18/10/2026
+ *
+ ******************************************************************************/
+package fr.pops.math.ndarray;
+
+import fr.pops.commoncst.EnumCst;
+
+import java.util.Arrays;
+
+public class HeapDoubleDataBuffer implements DataBuffer {
+
+    /*****************************************
+     *
+     * Attributes
+     *
+     *****************************************/
+    private final double[] data;
+
+    /*****************************************
+     *
+     * Ctors
+     *
+     *****************************************/
+    /**
+     * @param length The number of elements, initialized to 0
+     */
+    public HeapDoubleDataBuffer(int length){
+        this.data = new double[length];
+    }
+
+    /**
+     * Wrap the given array, it is not copied
+     * @param data The elements
+     */
+    public HeapDoubleDataBuffer(double[] data){
+        this.data = data;
+    }
+
+    /*****************************************
+     *
+     * Parent methods
+     *
+     *****************************************/
+    @Override
+    public double getDouble(int i){ return this.data[i]; }
+
+    @Override
+    public void putDouble(int i, double value){ this.data[i] = value; }
+
+    /**
+     * @return The backing array, not a copy
+     */
+    @Override
+    public double[] asDoubleArray(){ return this.data; }
+
+    @Override
+    public DataBuffer allocate(int length){ return new HeapDoubleDataBuffer(length); }
+
+    @Override
+    public void fill(int from, int to, double value){
+        Arrays.fill(this.data, from, to, value);
+    }
+
+    @Override
+    public void copyTo(int offset, DataBuffer dst, int dstOffset, int length){
+        if (dst instanceof HeapDoubleDataBuffer){
+            System.arraycopy(this.data, offset, ((HeapDoubleDataBuffer) dst).data, dstOffset, length);
+        } else {
+            DataBuffer.super.copyTo(offset, dst, dstOffset, length);
+        }
+    }
+
+    /*****************************************
+     *
+     * Getters
+     *
+     *****************************************/
+    @Override
+    public EnumCst.DataTypes getDataType(){ return EnumCst.DataTypes.DOUBLE; }
+
+    @Override
+    public int length(){ return this.data.length; }
+
+    @Override
+    public int getElementSize(){ return Double.BYTES; }
+
+    @Override
+    public boolean isDirect(){ return false; }
+}
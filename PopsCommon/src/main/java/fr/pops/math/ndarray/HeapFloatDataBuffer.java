@@ -0,0 +1,130 @@
+/*******************************************************************************
+ *
+ *                         PPPP     OOOO     PPPP    SSSS
+ *                        PP  PP   OO  OO   PP  PP  SS
+ *                        PP  PP  OO    OO  PP  PP  SS
+ *                        PP  PP  OO    OO  PP  PP   SSSS
+ *                        PPPP    OO    OO  PPPP        SS
+ *                        PP       OO  OO   PP          SS
+ *                        PP        OOOO    PP       SSSS
+ *
+ * Name: HeapFloatDataBuffer.java
+ *
+ * Description: Class defining a data buffer backed by a float array.
+ *              Half the memory of the double backend, values are
+ *              rounded to single precision when written.
+ *
+ * Author: Charles MERINO
+ *
+ * Date: 18/10/2026
+ *
+ ******************************************************************************/
+package fr.pops.math.ndarray;
+
+import fr.pops.commoncst.EnumCst;
+
+import java.util.Arrays;
+
+public class HeapFloatDataBuffer implements DataBuffer {
+
+    /*****************************************
+     *
+     * Attributes
+     *
+     *****************************************/
+    private final float[] data;
+
+    /*****************************************
+     *
+     * Ctors
+     *
+     *****************************************/
+    /**
+     * @param length The number of elements, initialized to 0
+     */
+    public HeapFloatDataBuffer(int length){
+        this.data = new float[length];
+    }
+
+    /**
+     * Wrap the given array, it is not copied
+     * @param data The elements
+     */
+    public HeapFloatDataBuffer(float[] data){
+        this.data = data;
+    }
+
+    /**
+     * Round the given values to single precision
+     * @param data The elements to copy
+     */
+    public HeapFloatDataBuffer(double[] data){
+        this.data = new float[data.length];
+        for (int i = 0; i < data.length; i++){
+            this.data[i] = (float) data[i];
+        }
+    }
+
+    /*****************************************
+     *
+     * Parent methods
+     *
+     *****************************************/
+    @Override
+    public double getDouble(int i){ return this.data[i]; }
+
+    @Override
+    public void putDouble(int i, double value){ this.data[i] = (float) value; }
+
+    /**
+     * @return A copy of the elements widened to double
+     */
+    @Override
+    public double[] asDoubleArray(){
+        double[] res = new double[this.data.length];
+        for (int i = 0; i < res.length; i++){
+            res[i] = this.data[i];
+        }
+        return res;
+    }
+
+    @Override
+    public DataBuffer allocate(int length){ return new HeapFloatDataBuffer(length); }
+
+    @Override
+    public void fill(int from, int to, double value){
+        Arrays.fill(this.data, from, to, (float) value);
+    }
+
+    @Override
+    public void copyTo(int offset, DataBuffer dst, int dstOffset, int length){
+        if (dst instanceof HeapFloatDataBuffer){
+            System.arraycopy(this.data, offset, ((HeapFloatDataBuffer) dst).data, dstOffset, length);
+        } else {
+            DataBuffer.super.copyTo(offset, dst, dstOffset, length);
+        }
+    }
+
+    /*****************************************
+     *
+     * Getters
+     *
+     *****************************************/
+    /**
+     * Used by the kernels having a single precision path
+     * @return The backing array, not a copy
+     */
+    public float[] getFloatData(){ return this.data; }
+
+    @Override
+    public EnumCst.DataTypes getDataType(){ return EnumCst.DataTypes.FLOAT; }
+
+    @Override
+    public int length(){ return this.data.length; }
+
+    @Override
+    public int getElementSize(){ return Float.BYTES; }
+
+    @Override
+    public boolean isDirect(){ return false; }
+}
@@ -73,6 +73,75 @@ public interface INDArray extends Serializable {
      * @return The calling INDArray turned upside down
      */
     public INDArray rot180();
+
+    /*****************************************
+     *
+     * Views
+     *
+     *****************************************/
+    /**
+     * @param channel The index of the channel
+     * @return A view over the channel sharing the buffer
+     */
+    public INDArray channel(int channel);
+
+    /**
+     * @param from The first channel
+     * @param to The channel after the last one
+     * @return A view over the channels sharing the buffer
+     */
+    public INDArray channel(int from, int to);
+
+    /**
+     * @param from The first row
+     * @param to The row after the last one
+     * @return A view over the rows of every channel sharing the buffer
+     */
+    public INDArray rows(int from, int to);
+
+    /**
+     * @param sample The index of the sample in the batch
+     * @return A view over the sample sharing the buffer
+     */
+    public INDArray sample(int sample);
+
+    /**
+     * @param from The first sample
+     * @param to The sample after the last one
+     * @return A view over the samples of the batch sharing the buffer
+     */
+    public INDArray samples(int from, int to);
+
+    /**
+     * @return A transposed view of each channel sharing the buffer
+     */
+    public INDArray transposeView();
+
+    /**
+     * @param shape The shape of the view
+     * @return A reshaped view sharing the buffer
+     */
+    public INDArray reshapeView(Shape shape);
+
+    /**
+     * @return A compact copy of the array
+     */
+    public INDArray dup();
+
+    /**
+     * @return The element (i, j, c)
+     */
+    public double get(int i, int j, int c);
+
+    /**
+     * Set the element (i, j, c)
+     */
+    public void set(int i, int j, int c, double value);
+
+    /**
+     * @return True if the elements are stored contiguously from the offset
+     */
+    public boolean isContiguous();
     /*****************************************
      *
      * Assertions
@@ -92,8 +161,14 @@ public interface INDArray extends Serializable {
      *****************************************/
     public double[] getData();
 
+    public DataBuffer getDataBuffer();
+
     public Shape getShape();
 
+    public int getOffset();
+
+    public int[] getStrides();
+
     /*****************************************
      *
      * Cast
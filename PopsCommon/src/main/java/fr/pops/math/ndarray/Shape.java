@@ -19,7 +19,9 @@
  ******************************************************************************/
 package fr.pops.math.ndarray;
 
-public class Shape {
+import java.io.Serializable;
+
+public class Shape implements Serializable {
 
     /*****************************************
      *
@@ -46,6 +48,7 @@ public class Shape {
      *  s    a_m,1 a_m,2 ... a_m,n
      *
      *  Z axis is the depth for tensors.
+     *  The batch axis stacks the samples of a mini-batch, one tensor after the other.
      *
      *     - A vector: xAxisLength = m
      *                 yAxisLength = 0
@@ -59,11 +62,18 @@ public class Shape {
      *                 yAxisLength = n
      *                 zAxisLength = p
      *
+     *     - A batch:  xAxisLength = m
+     *                 yAxisLength = n
+     *                 zAxisLength = p
+     *                 batchAxisLength = b
+     *
+     *  The size counts every sample of the batch.
      */
     private int size;
     private int xAxisLength;
     private int yAxisLength;
     private int zAxisLength;
+    private int batchAxisLength = DEFAULT_AXIS_LENGTH;
 
     /*****************************************
      *
@@ -115,12 +125,14 @@ public class Shape {
      * @param m X axis for tensors
      * @param n Y axis for tensors
      * @param p Z axis for tensors
+     * @param b Number of samples in the batch
      */
-    private Shape(int m, int n, int p, int size){
-        this.size = size;
+    public Shape(int m, int n, int p, int b){
+        size = m * n * p * b;
         xAxisLength = m;
         yAxisLength = n;
         zAxisLength = p;
+        batchAxisLength = b;
     }
 
     /*****************************************
@@ -135,10 +147,20 @@ public class Shape {
     public Shape(Shape shape){
         this.xAxisLength = shape.xAxisLength;
         this.yAxisLength = shape.yAxisLength;
-        this.zAxisLength = shape.yAxisLength;
+        this.zAxisLength = shape.zAxisLength;
+        this.batchAxisLength = shape.batchAxisLength;
         this.size = shape.size;
     }
 
+    /**
+     * Create the shape of a batch of samples of the given shape
+     * @param sampleShape The shape of one sample
+     * @param b Number of samples in the batch
+     */
+    public Shape(Shape sampleShape, int b){
+        this(sampleShape.xAxisLength, sampleShape.yAxisLength, sampleShape.zAxisLength, b);
+    }
+
 
     /*****************************************
      *
@@ -153,6 +175,20 @@ public class Shape {
 
     public int getZAxisLength() { return zAxisLength; }
 
+    public int getBatchAxisLength() { return batchAxisLength; }
+
+    /**
+     * @return The number of elements of one sample of the batch
+     */
+    public int getSampleSize() { return xAxisLength * yAxisLength * zAxisLength; }
+
+    /**
+     * @return The shape of one sample of the batch
+     */
+    public Shape getSampleShape() {
+        return this.batchAxisLength == DEFAULT_AXIS_LENGTH ? this : new Shape(xAxisLength, yAxisLength, zAxisLength);
+    }
+
     /*****************************************
      *
      * Cast
@@ -164,7 +200,8 @@ public class Shape {
      */
     @Override
     public String toString(){
-        return "(" + this.xAxisLength + ", " + this.yAxisLength + ", " + this.zAxisLength + ")";
+        return "(" + this.xAxisLength + ", " + this.yAxisLength + ", " + this.zAxisLength
+                + (this.batchAxisLength != DEFAULT_AXIS_LENGTH ? ", " + this.batchAxisLength : "") + ")";
     }
 
     /*****************************************
@@ -182,7 +219,7 @@ public class Shape {
         private int xAxisLength;
         private int yAxisLength;
         private int zAxisLength;
-        private int size;
+        private int batchAxisLength = DEFAULT_AXIS_LENGTH;
 
         /*****************************************
          *
@@ -190,11 +227,11 @@ public class Shape {
          *
          *****************************************/
         /**
-         *
-         * @param shape
+         * @param shape The lengths along X, Y, Z and the batch axis. Missing axes have a length of 1
          */
         public ShapeBuilder withShape(int... shape){
 
+            batchAxisLength = DEFAULT_AXIS_LENGTH;
             if (shape.length == 1){
                 xAxisLength = shape[0];
                 yAxisLength = DEFAULT_AXIS_LENGTH;
@@ -209,12 +246,16 @@ public class Shape {
                 xAxisLength = shape[0];
                 yAxisLength = shape[1];
                 zAxisLength = shape[2];
+            }
+            else if (shape.length == 4){
+                xAxisLength = shape[0];
+                yAxisLength = shape[1];
+                zAxisLength = shape[2];
+                batchAxisLength = shape[3];
             } else {
                 System.out.println("Unknown given shape. You gave: " + shape.length + " elements." );
             }
 
-            size = xAxisLength * yAxisLength * zAxisLength;
-
             return this;
         }
 
@@ -224,7 +265,7 @@ public class Shape {
          *
          *****************************************/
         public Shape build(){
-            return new Shape(xAxisLength, yAxisLength, zAxisLength, size);
+            return new Shape(xAxisLength, yAxisLength, zAxisLength, batchAxisLength);
         }
     }
 }
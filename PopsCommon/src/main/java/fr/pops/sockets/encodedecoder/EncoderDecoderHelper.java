@@ -22,6 +22,7 @@
 package fr.pops.sockets.encodedecoder;
 
 import fr.pops.math.ndarray.BaseNDArray;
+import fr.pops.math.ndarray.INDArray;
 import fr.pops.math.ndarray.Shape;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.buffer.impl.BufferImpl;
@@ -337,8 +338,9 @@ public class EncoderDecoderHelper {
         this.encodeInt32(array.getShape().getZAxisLength());
 
         // Array
+        INDArray values = array.isContiguous() ? array : array.dup();
         for (int i = 0; i < size; i++){
-            byte[] arr = EncoderDecoder.encodeDouble(array.getData()[i]);
+            byte[] arr = EncoderDecoder.encodeDouble(values.getDataBuffer().getDouble(values.getOffset() + i));
             this.put(arr, arr.length);
         }
     }
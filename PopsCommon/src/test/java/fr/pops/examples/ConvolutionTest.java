@@ -0,0 +1,177 @@
+package fr.pops.examples;
+
+import fr.pops.commoncst.EnumCst;
+import fr.pops.math.ArrayUtil;
+import fr.pops.math.Convolution;
+import fr.pops.math.Pooling;
+import fr.pops.math.ndarray.BaseNDArray;
+import fr.pops.math.ndarray.HeapFloatDataBuffer;
+import fr.pops.math.ndarray.INDArray;
+import fr.pops.math.ndarray.Shape;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ConvolutionTest {
+
+    private static final int BATCH = 2;
+    private static final double TOLERANCE = 1e-10;
+
+    /**
+     * The backward pass is the adjoint of the forward pass:
+     *      <forward(x), y> = <x, backwardData(y)>
+     */
+    @Test
+    public void testConvolutionBackwardDataIsAdjoint(){
+        Random random = new Random(7);
+        Convolution convolution = convolution();
+        double[] filters = random(random, convolution.getNbFilters() * convolution.getColRows());
+        INDArray x = array(random, convolution.getInputShape());
+        INDArray y = array(random, convolution.getOutputShape());
+
+        INDArray out = zeros(convolution.getOutputShape());
+        convolution.forward(x, filters, out);
+        INDArray dInput = zeros(convolution.getInputShape());
+        convolution.backwardData(y, filters, dInput);
+
+        assertEquals(inner(out, y), inner(x, dInput), TOLERANCE);
+    }
+
+    /**
+     * The gradient of the filters is the adjoint of the forward pass with respect to the filters:
+     *      <forward(x, w), y> = <w, backwardFilters(x, y)>
+     */
+    @Test
+    public void testConvolutionBackwardFiltersIsAdjoint(){
+        Random random = new Random(11);
+        Convolution convolution = convolution();
+        double[] filters = random(random, convolution.getNbFilters() * convolution.getColRows());
+        INDArray x = array(random, convolution.getInputShape());
+        INDArray y = array(random, convolution.getOutputShape());
+
+        INDArray out = zeros(convolution.getOutputShape());
+        convolution.forward(x, filters, out);
+        double[] dFilters = new double[filters.length];
+        convolution.backwardFilters(x, y, dFilters, false);
+
+        double expected = 0;
+        for (int i = 0; i < filters.length; i++){
+            expected += filters[i] * dFilters[i];
+        }
+        assertEquals(inner(out, y), expected, TOLERANCE);
+    }
+
+    /**
+     * An output which isn't stored in a double array is left untouched
+     */
+    @Test
+    public void testConvolutionRejectsNonDoubleOutput(){
+        Random random = new Random(13);
+        Convolution convolution = convolution();
+        double[] filters = random(random, convolution.getNbFilters() * convolution.getColRows());
+        INDArray x = array(random, convolution.getInputShape());
+        Shape shape = new Shape(convolution.getOutputShape(), BATCH);
+        INDArray out = new BaseNDArray.BaseNDArrayBuilder()
+                .withDataBuffer(new HeapFloatDataBuffer(shape.getSize()))
+                .withShape(shape)
+                .build();
+
+        convolution.forward(x, filters, out);
+        assertEquals(0.0d, inner(out, out), 0.0d);
+    }
+
+    @Test
+    public void testAveragePoolingIsAdjoint(){
+        this.testPoolingIsAdjoint(EnumCst.PoolingMethod.AVERAGE);
+    }
+
+    @Test
+    public void testMaxPoolingIsAdjoint(){
+        this.testPoolingIsAdjoint(EnumCst.PoolingMethod.MAX);
+    }
+
+    /**
+     * Max pooling is linear once the mask is set: <pool(x), y> = <x, backward(y)>
+     */
+    private void testPoolingIsAdjoint(EnumCst.PoolingMethod method){
+        Random random = new Random(17);
+        Pooling pooling = new Pooling.PoolingBuilder()
+                .withInputShape(new Shape(6, 5, 2))
+                .withMethod(method)
+                .withKernelShape(2, 3)
+                .withStride(2)
+                .withPadding(1)
+                .build();
+        INDArray x = array(random, pooling.getInputShape());
+        INDArray y = array(random, pooling.getOutputShape());
+
+        INDArray out = zeros(pooling.getOutputShape());
+        pooling.forward(x, out);
+        INDArray dInput = zeros(pooling.getInputShape());
+        pooling.backward(y, dInput);
+
+        assertEquals(inner(out, y), inner(x, dInput), TOLERANCE);
+    }
+
+    /**
+     * The inverse pooling reads and writes the samples of batches at their offset
+     */
+    @Test
+    public void testInvPoolOverViews(){
+        int[] mask = new int[]{3, 0, 2};
+        INDArray sigma = new BaseNDArray(new double[]{1, 2, 3, 10, 20, 30}, 3, 1, 1, 2);
+        INDArray out = zeros(new Shape(4));
+        ArrayUtil.invPool(sigma.sample(1), mask, out.sample(1));
+        assertEquals(Arrays.toString(new double[]{0, 0, 0, 0, 20, 0, 30, 10}), Arrays.toString(out.getData()));
+
+        // A float output would only receive a copy
+        INDArray floats = new BaseNDArray(new HeapFloatDataBuffer(4), 4);
+        ArrayUtil.invPool(sigma.sample(1), mask, floats);
+        assertEquals(0.0d, inner(floats, floats), 0.0d);
+    }
+
+    /*****************************************
+     *
+     * Helpers
+     *
+     *****************************************/
+    private static Convolution convolution(){
+        return new Convolution.ConvolutionBuilder()
+                .withInputShape(new Shape(7, 6, 3))
+                .withKernelShape(3, 2)
+                .withNbFilters(4)
+                .withStride(2)
+                .withPadding(1)
+                .build();
+    }
+
+    private static double[] random(Random random, int size){
+        double[] data = new double[size];
+        for (int i = 0; i < size; i++){
+            data[i] = 2 * random.nextDouble() - 1;
+        }
+        return data;
+    }
+
+    private static INDArray array(Random random, Shape sampleShape){
+        Shape shape = new Shape(sampleShape, BATCH);
+        return new BaseNDArray.BaseNDArrayBuilder().withData(random(random, shape.getSize())).withShape(shape).build();
+    }
+
+    private static INDArray zeros(Shape sampleShape){
+        return new BaseNDArray.BaseNDArrayBuilder().zeros(new Shape(sampleShape, BATCH)).build();
+    }
+
+    private static double inner(INDArray a, INDArray b){
+        double[] dataA = a.getData();
+        double[] dataB = b.getData();
+        double res = 0;
+        for (int i = 0; i < a.getShape().getSize(); i++){
+            res += dataA[a.getOffset() + i] * dataB[b.getOffset() + i];
+        }
+        return res;
+    }
+}
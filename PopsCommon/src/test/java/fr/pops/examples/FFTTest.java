@@ -0,0 +1,97 @@
+package fr.pops.examples;
+
+import fr.pops.math.Complex;
+import fr.pops.math.FFT;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+public class FFTTest {
+
+    private static final double TOLERANCE = 1e-9;
+
+    /**
+     * The in place transform matches the definition of the DFT
+     */
+    @Test
+    public void testTransform(){
+        Random random = new Random(11);
+        for (int n = 1; n <= 256; n <<= 1){
+            double[] re = random(random, n);
+            double[] im = random(random, n);
+            double[][] expected = dft(re, im);
+            FFT.transform(re, im, n);
+            assertArrayEquals(expected[0], re, TOLERANCE);
+            assertArrayEquals(expected[1], im, TOLERANCE);
+        }
+    }
+
+    /**
+     * The transform of Complex values matches the DFT
+     */
+    @Test
+    public void testFft(){
+        Random random = new Random(12);
+        int n = 64;
+        double[] re = random(random, n);
+        double[] im = random(random, n);
+        Complex[] x = new Complex[n];
+        for (int i = 0; i < n; i++){
+            x[i] = new Complex(re[i], im[i]);
+        }
+        Complex[] res = FFT.fft(x);
+        double[][] expected = dft(re, im);
+        for (int k = 0; k < n; k++){
+            assertArrayEquals(new double[]{ expected[0][k], expected[1][k] }, new double[]{ res[k].getRe(), res[k].getIm() }, TOLERANCE);
+        }
+    }
+
+    /**
+     * The transform of real values gives the bins 0 to n / 2 of the DFT
+     */
+    @Test
+    public void testRealTransform(){
+        Random random = new Random(13);
+        for (int n = 2; n <= 256; n <<= 1){
+            int offset = 3;
+            double[] x = random(random, n + offset);
+            double[] signal = new double[n];
+            System.arraycopy(x, offset, signal, 0, n);
+            double[][] expected = dft(signal, new double[n]);
+
+            double[] re = new double[n / 2 + 1];
+            double[] im = new double[n / 2 + 1];
+            FFT.realTransform(x, offset, n, re, im);
+            for (int k = 0; k <= n / 2; k++){
+                assertArrayEquals(new double[]{ expected[0][k], expected[1][k] }, new double[]{ re[k], im[k] }, TOLERANCE);
+            }
+        }
+    }
+
+    /**
+     * X[k] = sum over j of x[j] . exp(-2 i pi j k / n)
+     * @return The real and imaginary parts of the DFT
+     */
+    private static double[][] dft(double[] re, double[] im){
+        int n = re.length;
+        double[][] res = new double[2][n];
+        for (int k = 0; k < n; k++){
+            for (int j = 0; j < n; j++){
+                double angle = -2 * Math.PI * ((long) j * k % n) / n;
+                res[0][k] += re[j] * Math.cos(angle) - im[j] * Math.sin(angle);
+                res[1][k] += re[j] * Math.sin(angle) + im[j] * Math.cos(angle);
+            }
+        }
+        return res;
+    }
+
+    private static double[] random(Random random, int n){
+        double[] res = new double[n];
+        for (int i = 0; i < n; i++){
+            res[i] = 2 * random.nextDouble() - 1;
+        }
+        return res;
+    }
+}
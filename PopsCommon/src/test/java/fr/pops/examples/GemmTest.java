@@ -0,0 +1,167 @@
+package fr.pops.examples;
+
+import fr.pops.math.Gemm;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class GemmTest {
+
+    private static final double TOLERANCE = 1e-9;
+    // Padding of the leading dimensions and offset of the first element
+    private static final int PADDING = 3;
+    private static final int OFFSET = 5;
+
+    /**
+     * Small products, products just above the blocking threshold and products spanning several cache blocks
+     */
+    private static final int[][] SIZES = new int[][]{
+            {1, 1, 1}, {3, 5, 2}, {7, 9, 13}, {33, 31, 35}, {97, 101, 257}, {130, 9, 300}
+    };
+
+    /**
+     * c = alpha * op(a) . op(b) + beta * c against a triple loop, for every transposition
+     */
+    @Test
+    public void testGemm(){
+        Random random = new Random(3);
+        for (int[] size : SIZES){
+            int m = size[0];
+            int n = size[1];
+            int k = size[2];
+            for (int t = 0; t < 4; t++){
+                boolean transA = (t & 1) != 0;
+                boolean transB = (t & 2) != 0;
+                int lda = (transA ? m : k) + PADDING;
+                int ldb = (transB ? k : n) + PADDING;
+                int ldc = n + PADDING;
+                double[] a = random(random, OFFSET + (transA ? k : m) * lda);
+                double[] b = random(random, OFFSET + (transB ? n : k) * ldb);
+                double[] c = random(random, OFFSET + m * ldc);
+                double[] expected = c.clone();
+                double alpha = 1.5;
+                double beta = 0.5;
+
+                for (int i = 0; i < m; i++){
+                    for (int j = 0; j < n; j++){
+                        double s = 0;
+                        for (int p = 0; p < k; p++){
+                            double aip = transA ? a[OFFSET + p * lda + i] : a[OFFSET + i * lda + p];
+                            double bpj = transB ? b[OFFSET + j * ldb + p] : b[OFFSET + p * ldb + j];
+                            s += aip * bpj;
+                        }
+                        expected[OFFSET + i * ldc + j] = alpha * s + beta * c[OFFSET + i * ldc + j];
+                    }
+                }
+                Gemm.gemm(transA, transB, m, n, k, alpha, a, OFFSET, lda, b, OFFSET, ldb, beta, c, OFFSET, ldc);
+                assertClose(expected, c, m + "x" + n + "x" + k + " transA=" + transA + " transB=" + transB);
+            }
+        }
+    }
+
+    /**
+     * y = alpha * op(a) . x + beta * y in double and single precision
+     */
+    @Test
+    public void testGemv(){
+        Random random = new Random(4);
+        for (int[] size : SIZES){
+            int m = size[0];
+            int n = size[2];
+            int lda = n + PADDING;
+            double[] a = random(random, OFFSET + m * lda);
+            float[] aFloat = new float[a.length];
+            for (int i = 0; i < a.length; i++){
+                aFloat[i] = (float) a[i];
+            }
+            for (boolean transA : new boolean[]{false, true}){
+                int sizeX = transA ? m : n;
+                int sizeY = transA ? n : m;
+                double[] x = random(random, OFFSET + sizeX);
+                double[] y = random(random, OFFSET + sizeY);
+                double[] expected = y.clone();
+                double[] expectedFloat = y.clone();
+                for (int i = 0; i < sizeY; i++){
+                    double s = 0;
+                    double sFloat = 0;
+                    for (int j = 0; j < sizeX; j++){
+                        int index = OFFSET + (transA ? j * lda + i : i * lda + j);
+                        s += a[index] * x[OFFSET + j];
+                        sFloat += aFloat[index] * x[OFFSET + j];
+                    }
+                    expected[OFFSET + i] = 2 * s - y[OFFSET + i];
+                    expectedFloat[OFFSET + i] = 2 * sFloat - y[OFFSET + i];
+                }
+                double[] yFloat = y.clone();
+                Gemm.gemv(transA, m, n, 2, a, OFFSET, lda, x, OFFSET, -1, y, OFFSET);
+                Gemm.gemv(transA, m, n, 2, aFloat, OFFSET, lda, x, OFFSET, -1, yFloat, OFFSET);
+                assertClose(expected, y, "gemv " + m + "x" + n + " transA=" + transA);
+                assertClose(expectedFloat, yFloat, "float gemv " + m + "x" + n + " transA=" + transA);
+            }
+        }
+    }
+
+    /**
+     * a = a + alpha * x . transpose(y)
+     */
+    @Test
+    public void testGer(){
+        Random random = new Random(5);
+        int m = 37;
+        int n = 29;
+        int lda = n + PADDING;
+        double[] x = random(random, OFFSET + m);
+        double[] y = random(random, OFFSET + n);
+        double[] a = random(random, OFFSET + m * lda);
+        double[] expected = a.clone();
+        for (int i = 0; i < m; i++){
+            for (int j = 0; j < n; j++){
+                expected[OFFSET + i * lda + j] += 0.5 * x[OFFSET + i] * y[OFFSET + j];
+            }
+        }
+        Gemm.ger(m, n, 0.5, x, OFFSET, y, OFFSET, a, OFFSET, lda);
+        assertClose(expected, a, "ger");
+    }
+
+    /**
+     * The dispatch of matmul on the shapes: matrix-vector, vector-matrix and general products
+     */
+    @Test
+    public void testMatmul(){
+        Random random = new Random(6);
+        for (int[] size : new int[][]{{40, 50, 1}, {1, 50, 40}, {64, 70, 80}}){
+            int m = size[0];
+            int n = size[1];
+            int p = size[2];
+            double[] a = random(random, m * n);
+            double[] b = random(random, n * p);
+            double[] c = random(random, m * p);
+            double[] expected = new double[m * p];
+            for (int i = 0; i < m; i++){
+                for (int j = 0; j < p; j++){
+                    for (int q = 0; q < n; q++){
+                        expected[i * p + j] += a[i * n + q] * b[q * p + j];
+                    }
+                }
+            }
+            Gemm.matmul(m, n, p, a, b, c);
+            assertClose(expected, c, "matmul " + m + "x" + n + "x" + p);
+        }
+    }
+
+    private static void assertClose(double[] expected, double[] actual, String message){
+        for (int i = 0; i < expected.length; i++){
+            assertEquals(expected[i], actual[i], TOLERANCE, message + " at " + i);
+        }
+    }
+
+    private static double[] random(Random random, int size){
+        double[] res = new double[size];
+        for (int i = 0; i < size; i++){
+            res[i] = 2 * random.nextDouble() - 1;
+        }
+        return res;
+    }
+}
@@ -1,9 +1,15 @@
 package fr.pops.examples;
 
+import fr.pops.math.ArrayUtil;
 import fr.pops.math.Matrix4f;
+import fr.pops.math.PopsMath;
+import fr.pops.math.ndarray.BaseNDArray;
+import fr.pops.math.ndarray.HeapFloatDataBuffer;
+import fr.pops.math.ndarray.INDArray;
 import org.junit.Test;
 
 import java.util.Arrays;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
@@ -21,4 +27,134 @@ public class MathTest {
         };
         assertEquals(Arrays.toString(expectedArray), Arrays.toString(Matrix4f.times(A, B).getValue()));
     }
+
+    @Test
+    public void testDot(){
+        INDArray A = new BaseNDArray(new double[]{1, 2, 3, 4, 5, 6}, 2, 3);
+        INDArray B = new BaseNDArray(new double[]{7, 8, 9, 10, 11, 12}, 3, 2);
+        INDArray x = new BaseNDArray(new double[]{1, 0, -1}, 3);
+        assertEquals(Arrays.toString(new double[]{58, 64, 139, 154}), Arrays.toString(ArrayUtil.dot(A, B).getData()));
+        assertEquals(Arrays.toString(new double[]{-2, -2}), Arrays.toString(ArrayUtil.dot(A, x).getData()));
+    }
+
+    /**
+     * The reductions read the values of a view, not the beginning of its buffer
+     */
+    @Test
+    public void testReductionsOverViews(){
+        double[] values = new double[]{1, 2, 3, 10, 20, 30};
+        INDArray[] batches = new INDArray[]{
+                new BaseNDArray(values, 3, 1, 1, 2),
+                new BaseNDArray(new HeapFloatDataBuffer(values), 3, 1, 1, 2)
+        };
+        for (INDArray batch : batches){
+            INDArray sample = batch.sample(1);
+            assertEquals(60, ArrayUtil.sum(sample), 0);
+            assertEquals(30, ArrayUtil.max(sample), 0);
+            assertEquals(20, ArrayUtil.average(sample), 0);
+        }
+
+        // Non-contiguous view
+        INDArray matrix = new BaseNDArray(new double[]{1, -2, 3, 4, 5, -6}, 2, 3).transposeView();
+        assertEquals(5, ArrayUtil.sum(matrix), 0);
+        assertEquals(5, ArrayUtil.max(matrix), 0);
+    }
+
+    /**
+     * The element-wise operations read the values of a view with its offset and strides
+     */
+    @Test
+    public void testElementWiseOverViews(){
+        double[] values = new double[]{1, 2, 3, 4, 10, 20, 30, 40};
+        INDArray[] batches = new INDArray[]{
+                new BaseNDArray(values, 2, 2, 1, 2),
+                new BaseNDArray(new HeapFloatDataBuffer(values), 2, 2, 1, 2)
+        };
+        for (INDArray batch : batches){
+            INDArray sample = batch.sample(1);
+            assertEquals(Arrays.toString(new double[]{100, 400, 900, 1600}), Arrays.toString(ArrayUtil.hadamard(sample, sample).getData()));
+            assertEquals(10, ArrayUtil.min(sample), 0);
+            assertEquals(240000, ArrayUtil.prod(sample), 0);
+            assertEquals(Arrays.toString(new double[]{10, 30, 20, 40}), Arrays.toString(ArrayUtil.transpose(sample).getData()));
+            assertEquals(Arrays.toString(new double[]{-10, -20, -30, -40}), Arrays.toString(ArrayUtil.apply(x -> -x, sample).getData()));
+        }
+
+        // Non-contiguous view: the values are read in the order of the view
+        INDArray transposed = new BaseNDArray(new double[]{1, 2, 3, 4, 5, 6}, 2, 3).transposeView();
+        assertEquals(Arrays.toString(new double[]{2, 8, 4, 10, 6, 12}), Arrays.toString(ArrayUtil.apply(x -> 2 * x, transposed).getData()));
+        assertEquals(Arrays.toString(new double[]{1, 16, 4, 25, 9, 36}), Arrays.toString(ArrayUtil.hadamard(transposed, transposed).getData()));
+        assertEquals(Arrays.toString(new double[]{1, 2, 3, 4, 5, 6}), Arrays.toString(ArrayUtil.transpose(transposed).getData()));
+        assertEquals(720, ArrayUtil.prod(transposed), 0);
+        assertEquals(1, ArrayUtil.min(transposed), 0);
+    }
+
+    @Test
+    public void testDiagOverView(){
+        INDArray batch = new BaseNDArray(new HeapFloatDataBuffer(new double[]{1, 2, 3, 4}), 2, 1, 1, 2);
+        assertEquals(Arrays.toString(new double[]{3, 0, 0, 4}), Arrays.toString(ArrayUtil.diag(batch.sample(1)).getData()));
+    }
+
+    /**
+     * Each sample of a batch is normalised on its own, a view is read from its offset
+     */
+    @Test
+    public void testSoftmaxPerSample(){
+        double[] values = new double[]{0, 0, 1, 2, 3, 4};
+        INDArray batch = new BaseNDArray(values, 2, 1, 1, 3);
+        double[] res = PopsMath.softmax.apply(batch).getData();
+        double e = Math.exp(1);
+        double[] expected = new double[]{0.5, 0.5, 1 / (1 + e), e / (1 + e), 1 / (1 + e), e / (1 + e)};
+        for (int i = 0; i < expected.length; i++){
+            assertEquals(expected[i], res[i], 1e-12);
+        }
+        double[] sample = PopsMath.softmax.apply(batch.sample(2)).getData();
+        assertEquals(expected[4], sample[0], 1e-12);
+        assertEquals(expected[5], sample[1], 1e-12);
+    }
+
+    /**
+     * out + sum_b x_b . transpose(y_b) against an explicit sum, for a single sample (rank-1 update),
+     * a batch (matrix product) and float buffers (element by element)
+     */
+    @Test
+    public void testAddOuterProducts(){
+        Random random = new Random(23);
+        int m = 40;
+        int n = 30;
+        for (int batch : new int[]{1, 3, 40}){
+            for (boolean floats : new boolean[]{false, true}){
+                INDArray x = array(random, floats, m, 1, 1, batch);
+                INDArray y = array(random, floats, n, 1, 1, batch);
+                INDArray out = array(random, floats, m, n);
+
+                double[] expected = out.getData();
+                double[] dataX = x.getData();
+                double[] dataY = y.getData();
+                for (int b = 0; b < batch; b++){
+                    for (int i = 0; i < m; i++){
+                        for (int j = 0; j < n; j++){
+                            expected[i * n + j] += dataX[b * m + i] * dataY[b * n + j];
+                        }
+                    }
+                }
+                ArrayUtil.addOuterProducts(x, y, out);
+                double[] actual = out.getData();
+                for (int i = 0; i < m * n; i++){
+                    assertEquals(expected[i], actual[i], floats ? 1e-4 : 1e-10, "batch " + batch + (floats ? " float" : "") + " at " + i);
+                }
+            }
+        }
+    }
+
+    private static INDArray array(Random random, boolean floats, int... shape){
+        int size = 1;
+        for (int length : shape){
+            size *= length;
+        }
+        double[] values = new double[size];
+        for (int i = 0; i < size; i++){
+            values[i] = 2 * random.nextDouble() - 1;
+        }
+        return floats ? new BaseNDArray(new HeapFloatDataBuffer(values), shape) : new BaseNDArray(values, shape);
+    }
 }
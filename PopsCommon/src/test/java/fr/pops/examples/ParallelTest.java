@@ -0,0 +1,50 @@
+package fr.pops.examples;
+
+import fr.pops.math.Parallel;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class ParallelTest {
+
+    private static final int LENGTH = 1000;
+    private static final int NB_CALLS = 2000;
+
+    /**
+     * Changing the number of threads while kernels run lets them complete on the previous pool
+     */
+    @Test
+    public void testSetNbThreadsWhileRunning() throws InterruptedException {
+        int nbThreads = Parallel.getNbThreads();
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        AtomicInteger nbItems = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        Thread kernels = new Thread(() -> {
+            try {
+                for (int i = 0; i < NB_CALLS; i++){
+                    Parallel.forRange(4, 0, LENGTH, Long.MAX_VALUE, (from, to) -> {
+                        started.countDown();
+                        nbItems.addAndGet(to - from);
+                    });
+                }
+            } catch (Throwable t){
+                error.set(t);
+            }
+        });
+        kernels.start();
+        started.await();
+        for (int i = 0; kernels.isAlive(); i++){
+            Parallel.setNbThreads(2 + i % 3);
+        }
+        kernels.join();
+        Parallel.setNbThreads(nbThreads);
+
+        assertNull(error.get());
+        assertEquals(NB_CALLS * LENGTH, nbItems.get());
+    }
+}
@@ -0,0 +1,83 @@
+package fr.pops.examples;
+
+import fr.pops.math.VectorKernels;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class VectorKernelsTest {
+
+    private static final double TOLERANCE = 1e-12;
+
+    @Test
+    public void testLanesMatchesScalar(){
+        this.testMatchesScalar(VectorKernels.load("lanes"));
+    }
+
+    /**
+     * Only run when the JVM has the vector module and the vector-api profile built the backend
+     */
+    @Test
+    public void testVectorMatchesScalar(){
+        VectorKernels.Backend vector = VectorKernels.load("vector");
+        if (vector == null){
+            return;
+        }
+        this.testMatchesScalar(vector);
+    }
+
+    @Test
+    public void testUnknownBackendIsNotLoaded(){
+        assertNull(VectorKernels.load("fr.pops.math.NoSuchBackend"));
+        assertNotNull(VectorKernels.getBackend());
+    }
+
+    /**
+     * Every operation, on segments of every length around the width of the vectors, at odd offsets
+     */
+    private void testMatchesScalar(VectorKernels.Backend backend){
+        VectorKernels.Backend scalar = VectorKernels.SCALAR;
+        Random random = new Random(21);
+        for (int length = 1; length < 40; length++){
+            double[] a = random(random, length + 3);
+            double[] b = random(random, length + 5);
+
+            double[] expected = new double[length + 2];
+            double[] actual = new double[length + 2];
+            scalar.add(a, 3, b, 5, expected, 2, length);
+            backend.add(a, 3, b, 5, actual, 2, length);
+            assertArrayEquals(expected, actual, 0.0d);
+
+            scalar.mul(a, 3, b, 5, expected, 2, length);
+            backend.mul(a, 3, b, 5, actual, 2, length);
+            assertArrayEquals(expected, actual, 0.0d);
+
+            double[] y = random(random, length + 1);
+            double[] z = y.clone();
+            scalar.axpy(0.7d, a, 3, y, 1, length);
+            backend.axpy(0.7d, a, 3, z, 1, length);
+            assertArrayEquals(y, z, TOLERANCE);
+
+            scalar.scale(-1.3d, y, 1, length);
+            backend.scale(-1.3d, z, 1, length);
+            assertArrayEquals(y, z, TOLERANCE);
+
+            assertEquals(scalar.sum(a, 3, length), backend.sum(a, 3, length), TOLERANCE);
+            assertEquals(scalar.max(a, 3, length), backend.max(a, 3, length), 0.0d);
+            assertEquals(scalar.dot(a, 3, b, 5, length), backend.dot(a, 3, b, 5, length), TOLERANCE);
+        }
+    }
+
+    private static double[] random(Random random, int size){
+        double[] res = new double[size];
+        for (int i = 0; i < size; i++){
+            res[i] = 2 * random.nextDouble() - 1;
+        }
+        return res;
+    }
+}
@@ -0,0 +1,168 @@
+/*******************************************************************************
+ *
+ *                         PPPP     OOOO     PPPP    SSSS
+ *                        PP  PP   OO  OO   PP  PP  SS
+ *                        PP  PP  OO    OO  PP  PP  SS
+ *                        PP  PP  OO    OO  PP  PP   SSSS
+ *                        PPPP    OO    OO  PPPP        SS
+ *                        PP       OO  OO   PP          SS
+ *                        PP        OOOO    PP       SSSS
+ *
+ * Name: VectorApiBackend.java
+ *
+ * Description: Backend of VectorKernels built on the JDK vector API.
+ *              It is compiled by the vector-api profile only, and loaded by
+ *              VectorKernels when the jdk.incubator.vector module is added
+ *              to the JVM with --add-modules.
+ *
+ * Author: Charles MERINO
+ *
+ * Date: 18/10/2026
+ *
+ ******************************************************************************/
+package fr.pops.math;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+public class VectorApiBackend implements VectorKernels.Backend {
+
+    /*****************************************
+     *
+     * Static Attributes
+     *
+     *****************************************/
+    // Widest vectors of the CPU
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    /*****************************************
+     *
+     * Ctor
+     *
+     *****************************************/
+    /**
+     * Loaded by VectorKernels
+     */
+    public VectorApiBackend(){
+        // Nothing to be done
+    }
+
+    /*****************************************
+     *
+     * Parent methods
+     *
+     *****************************************/
+    @Override
+    public String getName(){ return "vector" + SPECIES.length(); }
+
+    @Override
+    public void add(double[] a, int offA, double[] b, int offB, double[] res, int offRes, int length){
+        int bound = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()){
+            DoubleVector va = DoubleVector.fromArray(SPECIES, a, offA + i);
+            DoubleVector vb = DoubleVector.fromArray(SPECIES, b, offB + i);
+            va.add(vb).intoArray(res, offRes + i);
+        }
+        for (; i < length; i++){
+            res[offRes + i] = a[offA + i] + b[offB + i];
+        }
+    }
+
+    @Override
+    public void mul(double[] a, int offA, double[] b, int offB, double[] res, int offRes, int length){
+        int bound = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()){
+            DoubleVector va = DoubleVector.fromArray(SPECIES, a, offA + i);
+            DoubleVector vb = DoubleVector.fromArray(SPECIES, b, offB + i);
+            va.mul(vb).intoArray(res, offRes + i);
+        }
+        for (; i < length; i++){
+            res[offRes + i] = a[offA + i] * b[offB + i];
+        }
+    }
+
+    @Override
+    public void axpy(double alpha, double[] x, int offX, double[] y, int offY, int length){
+        int bound = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()){
+            DoubleVector vx = DoubleVector.fromArray(SPECIES, x, offX + i);
+            DoubleVector vy = DoubleVector.fromArray(SPECIES, y, offY + i);
+            vx.mul(alpha).add(vy).intoArray(y, offY + i);
+        }
+        for (; i < length; i++){
+            y[offY + i] += alpha * x[offX + i];
+        }
+    }
+
+    @Override
+    public void scale(double alpha, double[] x, int offX, int length){
+        int bound = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()){
+            DoubleVector.fromArray(SPECIES, x, offX + i).mul(alpha).intoArray(x, offX + i);
+        }
+        for (; i < length; i++){
+            x[offX + i] *= alpha;
+        }
+    }
+
+    /**
+     * One accumulator per lane, reduced at the end: the rounding differs slightly from the scalar backend
+     */
+    @Override
+    public double sum(double[] x, int offX, int length){
+        int bound = SPECIES.loopBound(length);
+        DoubleVector acc = DoubleVector.zero(SPECIES);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()){
+            acc = acc.add(DoubleVector.fromArray(SPECIES, x, offX + i));
+        }
+        double res = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++){
+            res += x[offX + i];
+        }
+        return res;
+    }
+
+    @Override
+    public double max(double[] x, int offX, int length){
+        int bound = SPECIES.loopBound(length);
+        if (bound == 0){
+            return VectorKernels.SCALAR.max(x, offX, length);
+        }
+        DoubleVector acc = DoubleVector.fromArray(SPECIES, x, offX);
+        int i = SPECIES.length();
+        for (; i < bound; i += SPECIES.length()){
+            acc = acc.max(DoubleVector.fromArray(SPECIES, x, offX + i));
+        }
+        double res = acc.reduceLanes(VectorOperators.MAX);
+        for (; i < length; i++){
+            res = Math.max(res, x[offX + i]);
+        }
+        return res;
+    }
+
+    /**
+     * One accumulator per lane, reduced at the end: the rounding differs slightly from the scalar backend
+     */
+    @Override
+    public double dot(double[] x, int offX, double[] y, int offY, int length){
+        int bound = SPECIES.loopBound(length);
+        DoubleVector acc = DoubleVector.zero(SPECIES);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()){
+            DoubleVector vx = DoubleVector.fromArray(SPECIES, x, offX + i);
+            DoubleVector vy = DoubleVector.fromArray(SPECIES, y, offY + i);
+            acc = vx.fma(vy, acc);
+        }
+        double res = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++){
+            res += x[offX + i] * y[offY + i];
+        }
+        return res;
+    }
+}